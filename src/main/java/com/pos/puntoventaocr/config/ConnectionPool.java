@@ -0,0 +1,421 @@
+package com.pos.puntoventaocr.config;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool acotado de conexiones JDBC.
+ * Las conexiones entregadas son proxies: al cerrarlas regresan al pool en lugar de
+ * cerrar el socket, por lo que los DAO pueden seguir usando try-with-resources.
+ */
+public class ConnectionPool {
+
+    // Si la conexión se usó hace menos de este tiempo no se valida al prestarla
+    private static final long VENTANA_SIN_VALIDACION_MS = 500;
+    private static final int TIMEOUT_VALIDACION_SEG = 2;
+    private static final long INTERVALO_MANTENIMIENTO_MS = 30_000;
+
+    private final String url;
+    private final String usuario;
+    private final String password;
+    private final int minimo;
+    private final int maximo;
+    private final long esperaMaximaMs;
+    private final long inactividadMaximaMs;
+    private final long vidaMaximaMs;
+
+    // LIFO: se reutiliza primero la conexión más reciente (la más "caliente")
+    private final BlockingDeque<ConexionFisica> libres = new LinkedBlockingDeque<>();
+    private final Semaphore permisos;
+    private final AtomicInteger totalConexiones = new AtomicInteger();
+    private final AtomicInteger activas = new AtomicInteger();
+    private final AtomicInteger esperando = new AtomicInteger();
+    private final AtomicLong prestamos = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong esperaTotalNanos = new AtomicLong();
+    private final AtomicLong esperaMaximaNanos = new AtomicLong();
+    private final ScheduledExecutorService mantenimiento;
+    private volatile boolean cerrado = false;
+
+    public ConnectionPool(String url, String usuario, String password, int minimo, int maximo,
+                          long esperaMaximaMs, long inactividadMaximaMs, long vidaMaximaMs) {
+        if (maximo <= 0 || minimo < 0 || minimo > maximo) {
+            throw new IllegalArgumentException("Tamaño de pool inválido: minimo=" + minimo + ", maximo=" + maximo);
+        }
+        this.url = url;
+        this.usuario = usuario;
+        this.password = password;
+        this.minimo = minimo;
+        this.maximo = maximo;
+        this.esperaMaximaMs = esperaMaximaMs;
+        this.inactividadMaximaMs = inactividadMaximaMs;
+        this.vidaMaximaMs = vidaMaximaMs;
+        this.permisos = new Semaphore(maximo, true);
+
+        this.mantenimiento = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "pool-conexiones-mantenimiento");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        mantenimiento.scheduleWithFixedDelay(this::mantener,
+                INTERVALO_MANTENIMIENTO_MS, INTERVALO_MANTENIMIENTO_MS, TimeUnit.MILLISECONDS);
+
+        completarMinimo();
+    }
+
+    // Obtener una conexión del pool (bloquea hasta esperaMaximaMs si el pool está lleno)
+    public Connection getConnection() throws SQLException {
+        if (cerrado) {
+            throw new SQLException("El pool de conexiones está cerrado");
+        }
+
+        long inicio = System.nanoTime();
+        esperando.incrementAndGet();
+        try {
+            if (!permisos.tryAcquire(esperaMaximaMs, TimeUnit.MILLISECONDS)) {
+                timeouts.incrementAndGet();
+                throw new SQLException("Tiempo de espera agotado al obtener conexión (" + esperaMaximaMs +
+                        " ms, activas=" + activas.get() + "/" + maximo + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrumpido mientras se esperaba una conexión", e);
+        } finally {
+            esperando.decrementAndGet();
+        }
+        registrarEspera(System.nanoTime() - inicio);
+
+        try {
+            ConexionFisica conexion;
+            while (true) {
+                conexion = libres.pollFirst();
+                if (conexion == null) {
+                    conexion = crearConexion();
+                    break;
+                }
+                if (!conexion.expirada() && conexion.valida()) {
+                    break;
+                }
+                descartar(conexion);
+            }
+
+            activas.incrementAndGet();
+            prestamos.incrementAndGet();
+            return conexion.envolver();
+
+        } catch (SQLException | RuntimeException e) {
+            permisos.release();
+            throw e;
+        }
+    }
+
+    // Cerrar el pool y todas las conexiones libres
+    public void cerrar() {
+        cerrado = true;
+        mantenimiento.shutdownNow();
+
+        ConexionFisica conexion;
+        while ((conexion = libres.pollFirst()) != null) {
+            descartar(conexion);
+        }
+    }
+
+    public Estadisticas obtenerEstadisticas() {
+        long totalPrestamos = prestamos.get();
+        double esperaPromedioMs = totalPrestamos > 0
+                ? esperaTotalNanos.get() / 1_000_000.0 / totalPrestamos
+                : 0.0;
+
+        return new Estadisticas(
+                activas.get(),
+                libres.size(),
+                totalConexiones.get(),
+                esperando.get(),
+                totalPrestamos,
+                timeouts.get(),
+                esperaPromedioMs,
+                esperaMaximaNanos.get() / 1_000_000.0,
+                minimo,
+                maximo
+        );
+    }
+
+    // Métodos privados auxiliares
+    private ConexionFisica crearConexion() throws SQLException {
+        Connection conn = DriverManager.getConnection(url, usuario, password);
+        totalConexiones.incrementAndGet();
+        return new ConexionFisica(conn);
+    }
+
+    private void devolver(ConexionFisica conexion) {
+        boolean reutilizable = conexion.restablecer();
+
+        if (reutilizable && !cerrado && !conexion.expirada() && totalConexiones.get() <= maximo) {
+            conexion.ultimoUso = System.currentTimeMillis();
+            libres.offerFirst(conexion);
+        } else {
+            descartar(conexion);
+        }
+
+        activas.decrementAndGet();
+        permisos.release();
+    }
+
+    private void descartar(ConexionFisica conexion) {
+        totalConexiones.decrementAndGet();
+        try {
+            conexion.fisica.close();
+        } catch (SQLException e) {
+            System.err.println("Error al cerrar conexión física: " + e.getMessage());
+        }
+    }
+
+    private void registrarEspera(long nanos) {
+        esperaTotalNanos.addAndGet(nanos);
+        esperaMaximaNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    // Desalojo de conexiones inactivas o expiradas y reposición del mínimo
+    private void mantener() {
+        try {
+            long ahora = System.currentTimeMillis();
+            List<ConexionFisica> candidatas = new ArrayList<>(libres);
+
+            for (ConexionFisica conexion : candidatas) {
+                boolean inactiva = ahora - conexion.ultimoUso > inactividadMaximaMs
+                        && totalConexiones.get() > minimo;
+
+                if ((inactiva || conexion.expirada()) && libres.remove(conexion)) {
+                    descartar(conexion);
+                }
+            }
+
+            completarMinimo();
+        } catch (RuntimeException e) {
+            System.err.println("Error en mantenimiento del pool: " + e.getMessage());
+        }
+    }
+
+    private void completarMinimo() {
+        while (!cerrado) {
+            if (totalConexiones.incrementAndGet() > minimo) {
+                totalConexiones.decrementAndGet();
+                return;
+            }
+            try {
+                Connection conn = DriverManager.getConnection(url, usuario, password);
+                libres.offerLast(new ConexionFisica(conn));
+            } catch (SQLException e) {
+                totalConexiones.decrementAndGet();
+                System.err.println("No se pudo precalentar el pool de conexiones: " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    // Conexión física administrada por el pool
+    private class ConexionFisica {
+        private final Connection fisica;
+        private final long creada;
+        private volatile long ultimoUso;
+        // Estado de sesión que cambió quien la tomó prestada; restablecer() lo deshace.
+        // Solo lo toca el hilo que la tiene prestada y la cola de libres publica los cambios
+        private boolean soloLecturaModificada = false;
+        private int aislamientoOriginal = -1;
+
+        ConexionFisica(Connection fisica) {
+            this.fisica = fisica;
+            this.creada = System.currentTimeMillis();
+            this.ultimoUso = creada;
+        }
+
+        boolean expirada() {
+            return vidaMaximaMs > 0 && System.currentTimeMillis() - creada > vidaMaximaMs;
+        }
+
+        boolean valida() {
+            if (System.currentTimeMillis() - ultimoUso < VENTANA_SIN_VALIDACION_MS) {
+                return true;
+            }
+            try {
+                return fisica.isValid(TIMEOUT_VALIDACION_SEG);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        // Deja la conexión lista para el siguiente préstamo
+        boolean restablecer() {
+            try {
+                if (fisica.isClosed()) {
+                    return false;
+                }
+                if (!fisica.getAutoCommit()) {
+                    fisica.rollback();
+                    fisica.setAutoCommit(true);
+                }
+                if (soloLecturaModificada) {
+                    fisica.setReadOnly(false);
+                    soloLecturaModificada = false;
+                }
+                if (aislamientoOriginal >= 0) {
+                    fisica.setTransactionIsolation(aislamientoOriginal);
+                    aislamientoOriginal = -1;
+                }
+                fisica.clearWarnings();
+                return true;
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        // Antes de un cambio de estado de sesión, para poder deshacerlo al devolverla
+        void antesDeModificar(String metodo) throws SQLException {
+            if ("setReadOnly".equals(metodo)) {
+                soloLecturaModificada = true;
+            } else if ("setTransactionIsolation".equals(metodo) && aislamientoOriginal < 0) {
+                aislamientoOriginal = fisica.getTransactionIsolation();
+            }
+        }
+
+        Connection envolver() {
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new ConexionPrestada(this));
+        }
+    }
+
+    // Proxy de la conexión prestada: close() la devuelve al pool y cierra sus statements
+    private class ConexionPrestada implements InvocationHandler {
+        private final ConexionFisica conexion;
+        private final List<Statement> statements = new ArrayList<>();
+        // volatile: isClosed() puede consultarse desde otro hilo que el que la devolvió
+        private volatile boolean cerrada = false;
+
+        ConexionPrestada(ConexionFisica conexion) {
+            this.conexion = conexion;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    cerrar();
+                    return null;
+                case "isClosed":
+                    return cerrada || conexion.fisica.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "ConexionPrestada[" + conexion.fisica + "]";
+                default:
+                    break;
+            }
+
+            if (cerrada) {
+                throw new SQLException("La conexión ya fue devuelta al pool");
+            }
+
+            conexion.antesDeModificar(method.getName());
+            try {
+                Object resultado = method.invoke(conexion.fisica, args);
+                if (resultado instanceof Statement) {
+                    statements.add((Statement) resultado);
+                }
+                return resultado;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        private void cerrar() {
+            if (cerrada) {
+                return;
+            }
+            cerrada = true;
+
+            for (Statement statement : statements) {
+                try {
+                    statement.close();
+                } catch (SQLException e) {
+                    // El statement ya no es utilizable; se ignora
+                }
+            }
+            statements.clear();
+
+            devolver(conexion);
+        }
+    }
+
+    // Clase para estadísticas del pool
+    public static class Estadisticas {
+        private int activas;
+        private int inactivas;
+        private int total;
+        private int esperando;
+        private long prestamos;
+        private long timeouts;
+        private double esperaPromedioMs;
+        private double esperaMaximaMs;
+        private int minimo;
+        private int maximo;
+
+        public Estadisticas(int activas, int inactivas, int total, int esperando, long prestamos,
+                            long timeouts, double esperaPromedioMs, double esperaMaximaMs,
+                            int minimo, int maximo) {
+            this.activas = activas;
+            this.inactivas = inactivas;
+            this.total = total;
+            this.esperando = esperando;
+            this.prestamos = prestamos;
+            this.timeouts = timeouts;
+            this.esperaPromedioMs = esperaPromedioMs;
+            this.esperaMaximaMs = esperaMaximaMs;
+            this.minimo = minimo;
+            this.maximo = maximo;
+        }
+
+        // Getters
+        public int getActivas() { return activas; }
+        public int getInactivas() { return inactivas; }
+        public int getTotal() { return total; }
+        public int getEsperando() { return esperando; }
+        public long getPrestamos() { return prestamos; }
+        public long getTimeouts() { return timeouts; }
+        public double getEsperaPromedioMs() { return esperaPromedioMs; }
+        public double getEsperaMaximaMs() { return esperaMaximaMs; }
+        public int getMinimo() { return minimo; }
+        public int getMaximo() { return maximo; }
+
+        public double getPorcentajeUso() {
+            return maximo > 0 ? (activas * 100.0) / maximo : 0.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Pool{activas=%d, inactivas=%d, total=%d/%d, esperando=%d, " +
+                            "prestamos=%d, timeouts=%d, esperaPromedio=%.2f ms, esperaMaxima=%.2f ms}",
+                    activas, inactivas, total, maximo, esperando, prestamos, timeouts,
+                    esperaPromedioMs, esperaMaximaMs);
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package com.pos.puntoventaocr.config;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
 public class DatabaseConnection {
@@ -11,19 +10,26 @@ public class DatabaseConnection {
     private static final String USER = "root";
     private static final String PASSWORD = "";
 
-    private static Connection connection = null;
+    // Configuración del pool (se puede ajustar por tienda con -Dpos.db.pool.*)
+    private static final int POOL_MINIMO = Integer.getInteger("pos.db.pool.minimo", 2);
+    private static final int POOL_MAXIMO = Integer.getInteger("pos.db.pool.maximo", 10);
+    private static final long POOL_ESPERA_MS = Long.getLong("pos.db.pool.esperaMs", 5_000L);
+    private static final long POOL_INACTIVIDAD_MS = Long.getLong("pos.db.pool.inactividadMs", 600_000L);
+    private static final long POOL_VIDA_MAXIMA_MS = Long.getLong("pos.db.pool.vidaMaximaMs", 1_800_000L);
+
+    // Aplicar las migraciones pendientes al abrir el pool (-Dpos.db.migrar=false para omitirlo)
+    private static final boolean MIGRAR_AL_INICIAR =
+            Boolean.parseBoolean(System.getProperty("pos.db.migrar", "true"));
+
+    private static volatile ConnectionPool pool = null;
 
     // Constructor privado para evitar instanciación
     private DatabaseConnection() {}
 
-    // Obtener una conexión a la base de datos
+    // Obtener una conexión del pool; al cerrarla regresa al pool
     public static Connection getConnection() {
         try {
-            if (connection == null || connection.isClosed()) {
-                Class.forName("com.mysql.cj.jdbc.Driver");
-                connection = DriverManager.getConnection(URL, USER, PASSWORD);
-                System.out.println("Conexión a base de datos establecida");
-            }
+            return obtenerPool().getConnection();
         } catch (ClassNotFoundException e) {
             System.err.println("Error: Driver MySQL no encontrado");
             e.printStackTrace();
@@ -31,29 +37,78 @@ public class DatabaseConnection {
             System.err.println("Error al conectar a la base de datos: " + e.getMessage());
             e.printStackTrace();
         }
-        return connection;
+        return null;
     }
 
-    // Cerrar la conexión a la base de datos
-    public static void closeConnection() {
-        try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
-                System.out.println("Conexión a base de datos cerrada");
-            }
-        } catch (SQLException e) {
-            System.err.println("Error al cerrar la conexión: " + e.getMessage());
-            e.printStackTrace();
+    // Cerrar el pool y todas sus conexiones
+    public static synchronized void closeConnection() {
+        if (pool != null) {
+            pool.cerrar();
+            pool = null;
+            System.out.println("Pool de conexiones cerrado");
         }
     }
 
     // Probar la conexión a la base de datos
     public static boolean testConnection() {
-        try {
-            Connection conn = getConnection();
+        try (Connection conn = getConnection()) {
             return conn != null && !conn.isClosed();
         } catch (SQLException e) {
             return false;
         }
     }
-}
\ No newline at end of file
+
+    // Estadísticas del pool para dimensionarlo por tienda
+    public static ConnectionPool.Estadisticas obtenerEstadisticasPool() {
+        ConnectionPool actual = pool;
+        if (actual == null) {
+            return new ConnectionPool.Estadisticas(0, 0, 0, 0, 0, 0, 0.0, 0.0, POOL_MINIMO, POOL_MAXIMO);
+        }
+        return actual.obtenerEstadisticas();
+    }
+
+    private static ConnectionPool obtenerPool() throws ClassNotFoundException, SQLException {
+        ConnectionPool actual = pool;
+        if (actual != null) {
+            return actual;
+        }
+        synchronized (DatabaseConnection.class) {
+            if (pool == null) {
+                Class.forName("com.mysql.cj.jdbc.Driver");
+                ConnectionPool nuevo = new ConnectionPool(URL, USER, PASSWORD, POOL_MINIMO, POOL_MAXIMO,
+                        POOL_ESPERA_MS, POOL_INACTIVIDAD_MS, POOL_VIDA_MAXIMA_MS);
+                try {
+                    migrarEsquema(nuevo);
+                } catch (SQLException e) {
+                    // Sin esquema al día no se entregan conexiones; el siguiente getConnection lo reintenta
+                    nuevo.cerrar();
+                    throw e;
+                }
+                System.out.println("Pool de conexiones inicializado (" + POOL_MINIMO + "-" + POOL_MAXIMO + ")");
+                pool = nuevo;
+            }
+            return pool;
+        }
+    }
+
+    // Se llama antes de publicar el pool: nadie recibe conexiones antes de que el esquema esté al día.
+    // Si la migración falla el pool no se publica y getConnection devuelve null.
+    private static void migrarEsquema(ConnectionPool nuevoPool) throws SQLException {
+        if (!MIGRAR_AL_INICIAR) {
+            return;
+        }
+        try (Connection conn = nuevoPool.getConnection()) {
+            int aplicadas = new MigradorEsquema().migrar(conn);
+            if (aplicadas > 0) {
+                System.out.println("Esquema actualizado: " + aplicadas + " migración(es) aplicada(s)");
+            }
+        } catch (SQLException e) {
+            System.err.println("Error al migrar el esquema: " + e.getMessage());
+            throw e;
+        } catch (IllegalStateException e) {
+            // Migraciones mal empaquetadas (índice o archivo faltante, versiones no consecutivas)
+            System.err.println("Error al migrar el esquema: " + e.getMessage());
+            throw new SQLException("Migraciones inválidas: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.pos.puntoventaocr.config;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Migraciones versionadas del esquema, aplicadas al abrir el pool de conexiones.
+ * Las migraciones son los archivos listados en db/migraciones/migraciones.txt (V<n>__<descripcion>.sql).
+ * Cada una aplicada queda en esquema_migraciones con su SHA-256 y el de la cadena completa
+ * (hash de la cadena anterior más el de la migración), así que la última fila resume todo el historial.
+ *
+ * Al arrancar basta leer esa última fila por clave primaria y compararla con la cadena local: si coinciden
+ * el esquema está al día y no se inspecciona nada más. Solo si no coinciden se toma un candado con nombre
+ * (GET_LOCK) para que una sola terminal migre a la vez, se validan los hashes de lo ya aplicado y se
+ * aplican las versiones pendientes en orden.
+ *
+ * Una base creada antes con database/schema.sql (tablas sin esquema_migraciones) se toma como versión 1.
+ */
+public class MigradorEsquema {
+
+    private static final String CARPETA = "/db/migraciones/";
+    private static final String INDICE = CARPETA + "migraciones.txt";
+    private static final Pattern NOMBRE = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+    private static final String CANDADO = "punto_venta_ocr.migraciones";
+    private static final int ESPERA_CANDADO_SEG = 300;
+    private static final int ERROR_TABLA_NO_EXISTE = 1146;
+
+    private final List<Migracion> migraciones;
+
+    public MigradorEsquema() {
+        this.migraciones = cargarMigraciones();
+    }
+
+    /**
+     * Deja el esquema en la última versión; devuelve cuántas migraciones se aplicaron
+     */
+    public int migrar(Connection conn) throws SQLException {
+        if (migraciones.isEmpty() || estaAlDia(conn)) {
+            return 0;
+        }
+
+        try (Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT GET_LOCK('" + CANDADO + "', " + ESPERA_CANDADO_SEG + ")")) {
+                if (!rs.next() || rs.getInt(1) != 1) {
+                    throw new SQLException("No se obtuvo el candado de migraciones; otra terminal sigue migrando");
+                }
+            }
+            try {
+                // Otra terminal pudo terminar de migrar mientras se esperaba el candado
+                crearTablaMigraciones(stmt);
+                return aplicarPendientes(conn);
+            } finally {
+                stmt.execute("DO RELEASE_LOCK('" + CANDADO + "')");
+            }
+        }
+    }
+
+    public int getVersionActual() {
+        return migraciones.isEmpty() ? 0 : ultima().version;
+    }
+
+    // Métodos privados auxiliares
+
+    // Camino rápido: una lectura por clave primaria
+    private boolean estaAlDia(Connection conn) throws SQLException {
+        String sql = "SELECT version, checksum_cadena FROM esquema_migraciones ORDER BY version DESC LIMIT 1";
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            Migracion ultima = ultima();
+            return rs.next() && rs.getInt("version") == ultima.version
+                    && ultima.checksumCadena.equals(rs.getString("checksum_cadena"));
+        } catch (SQLException e) {
+            if (e.getErrorCode() == ERROR_TABLA_NO_EXISTE) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    private int aplicarPendientes(Connection conn) throws SQLException {
+        List<String> aplicadas = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT version, checksum FROM esquema_migraciones ORDER BY version")) {
+            while (rs.next()) {
+                aplicadas.add(rs.getString("checksum"));
+                int version = rs.getInt("version");
+                if (version != aplicadas.size()) {
+                    throw new SQLException("Historial de migraciones incompleto: falta la versión " + aplicadas.size());
+                }
+            }
+        }
+
+        if (aplicadas.size() > migraciones.size()) {
+            // La base ya está en una versión más nueva que esta terminal: no se toca
+            System.err.println("El esquema está en la versión " + aplicadas.size() +
+                    " y esta terminal solo conoce hasta la " + migraciones.size() + "; actualice la aplicación");
+            return 0;
+        }
+        for (int i = 0; i < aplicadas.size(); i++) {
+            if (!migraciones.get(i).checksum.equals(aplicadas.get(i))) {
+                throw new SQLException("La migración " + migraciones.get(i).nombre +
+                        " cambió después de aplicarse; los cambios deben ir en una versión nueva");
+            }
+        }
+
+        int inicio = aplicadas.size();
+        if (inicio == 0 && existeTabla(conn, "ventas")) {
+            registrar(conn, migraciones.get(0), 0);
+            System.out.println("Esquema existente registrado como línea base (" + migraciones.get(0).nombre + ")");
+            inicio = 1;
+        }
+
+        for (int i = inicio; i < migraciones.size(); i++) {
+            Migracion migracion = migraciones.get(i);
+            long comienzo = System.nanoTime();
+            try (Statement stmt = conn.createStatement()) {
+                for (String sentencia : dividirSentencias(migracion.sql)) {
+                    stmt.execute(sentencia);
+                }
+            } catch (SQLException e) {
+                // El DDL de MySQL no es transaccional: lo ya ejecutado queda y la versión no se registra
+                throw new SQLException("Error al aplicar la migración " + migracion.nombre + ": " + e.getMessage(), e);
+            }
+            long duracionMs = (System.nanoTime() - comienzo) / 1_000_000;
+            registrar(conn, migracion, duracionMs);
+            System.out.println("Migración aplicada: " + migracion.nombre + " (" + duracionMs + " ms)");
+        }
+        return migraciones.size() - inicio;
+    }
+
+    private static void crearTablaMigraciones(Statement stmt) throws SQLException {
+        stmt.execute("CREATE TABLE IF NOT EXISTS esquema_migraciones (" +
+                "version INT PRIMARY KEY, " +
+                "nombre VARCHAR(200) NOT NULL, " +
+                "checksum CHAR(64) NOT NULL, " +
+                "checksum_cadena CHAR(64) NOT NULL, " +
+                "fecha_aplicacion TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                "duracion_ms BIGINT NOT NULL DEFAULT 0)");
+    }
+
+    private static void registrar(Connection conn, Migracion migracion, long duracionMs) throws SQLException {
+        String sql = "INSERT INTO esquema_migraciones (version, nombre, checksum, checksum_cadena, duracion_ms) " +
+                "VALUES (?, ?, ?, ?, ?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, migracion.version);
+            pstmt.setString(2, migracion.nombre);
+            pstmt.setString(3, migracion.checksum);
+            pstmt.setString(4, migracion.checksumCadena);
+            pstmt.setLong(5, duracionMs);
+            pstmt.executeUpdate();
+        }
+    }
+
+    private static boolean existeTabla(Connection conn, String tabla) throws SQLException {
+        DatabaseMetaData metaData = conn.getMetaData();
+        try (ResultSet rs = metaData.getTables(conn.getCatalog(), null, tabla, new String[]{"TABLE"})) {
+            return rs.next();
+        }
+    }
+
+    private Migracion ultima() {
+        return migraciones.get(migraciones.size() - 1);
+    }
+
+    private static List<Migracion> cargarMigraciones() {
+        List<Migracion> lista = new ArrayList<>();
+        String cadena = "";
+        for (String nombre : leerLineas(INDICE)) {
+            Matcher matcher = NOMBRE.matcher(nombre);
+            if (!matcher.matches()) {
+                throw new IllegalStateException("Nombre de migración inválido: " + nombre);
+            }
+            int version = Integer.parseInt(matcher.group(1));
+            if (version != lista.size() + 1) {
+                throw new IllegalStateException("Las migraciones deben ser consecutivas desde V1: " + nombre);
+            }
+            // Fin de línea normalizado para que todas las terminales calculen el mismo hash
+            String sql = String.join("\n", leerLineasCompletas(CARPETA + nombre));
+            String checksum = sha256(sql);
+            cadena = sha256(cadena + checksum);
+            lista.add(new Migracion(version, nombre, sql, checksum, cadena));
+        }
+        return lista;
+    }
+
+    private static List<String> leerLineas(String recurso) {
+        List<String> lineas = new ArrayList<>();
+        for (String linea : leerLineasCompletas(recurso)) {
+            String limpia = linea.trim();
+            if (!limpia.isEmpty() && !limpia.startsWith("#")) {
+                lineas.add(limpia);
+            }
+        }
+        return lineas;
+    }
+
+    private static List<String> leerLineasCompletas(String recurso) {
+        InputStream entrada = MigradorEsquema.class.getResourceAsStream(recurso);
+        if (entrada == null) {
+            throw new IllegalStateException("No se encontró el recurso " + recurso);
+        }
+        List<String> lineas = new ArrayList<>();
+        try (BufferedReader lector = new BufferedReader(new InputStreamReader(entrada, StandardCharsets.UTF_8))) {
+            String linea;
+            while ((linea = lector.readLine()) != null) {
+                lineas.add(linea);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Error al leer " + recurso + ": " + e.getMessage(), e);
+        }
+        return lineas;
+    }
+
+    /**
+     * Separa un script en sentencias por ';', sin cortar dentro de cadenas ni comentarios
+     */
+    static List<String> dividirSentencias(String script) {
+        List<String> sentencias = new ArrayList<>();
+        StringBuilder actual = new StringBuilder();
+        int i = 0;
+        while (i < script.length()) {
+            char c = script.charAt(i);
+            if (c == '-' && script.startsWith("--", i) || c == '#') {
+                int fin = script.indexOf('\n', i);
+                i = fin < 0 ? script.length() : fin;
+                continue;
+            }
+            if (c == '/' && script.startsWith("/*", i)) {
+                int fin = script.indexOf("*/", i + 2);
+                i = fin < 0 ? script.length() : fin + 2;
+                continue;
+            }
+            if (c == '\'' || c == '"' || c == '`') {
+                int fin = i + 1;
+                while (fin < script.length() && script.charAt(fin) != c) {
+                    fin += script.charAt(fin) == '\\' ? 2 : 1;
+                }
+                fin = Math.min(fin + 1, script.length());
+                actual.append(script, i, fin);
+                i = fin;
+                continue;
+            }
+            if (c == ';') {
+                agregarSentencia(sentencias, actual);
+            } else {
+                actual.append(c);
+            }
+            i++;
+        }
+        agregarSentencia(sentencias, actual);
+        return sentencias;
+    }
+
+    private static void agregarSentencia(List<String> sentencias, StringBuilder actual) {
+        String sentencia = actual.toString().trim();
+        if (!sentencia.isEmpty()) {
+            sentencias.add(sentencia);
+        }
+        actual.setLength(0);
+    }
+
+    private static String sha256(String texto) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(texto.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    private static class Migracion {
+        private final int version;
+        private final String nombre;
+        private final String sql;
+        private final String checksum;
+        private final String checksumCadena;
+
+        Migracion(int version, String nombre, String sql, String checksum, String checksumCadena) {
+            this.version = version;
+            this.nombre = nombre;
+            this.sql = sql;
+            this.checksum = checksum;
+            this.checksumCadena = checksumCadena;
+        }
+    }
+}
@@ -4,8 +4,11 @@ import com.pos.puntoventaocr.dao.ProductoDAO;
 import com.pos.puntoventaocr.dao.CategoriaDAO;
 import com.pos.puntoventaocr.models.Producto;
 import com.pos.puntoventaocr.models.Categoria;
+import com.pos.puntoventaocr.services.ProductoCache;
 import com.pos.puntoventaocr.utils.AlertUtils;
+import com.pos.puntoventaocr.utils.BusquedaDiferida;
 import com.pos.puntoventaocr.utils.SessionManager;
+import javafx.application.Platform;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -65,9 +68,11 @@ public class GestionarProductosController implements Initializable {
     @FXML private Button btnDuplicar;
 
     private ProductoDAO productoDAO;
+    private ProductoCache productoCache;
     private CategoriaDAO categoriaDAO;
     private SessionManager sessionManager;
     private ObservableList<Producto> productosData;
+    private BusquedaDiferida<FiltroProductos, List<Producto>> busquedaProductos;
     private Producto productoSeleccionado;
     private String rutaImagenSeleccionada;
     private boolean modoEdicion = false;
@@ -75,9 +80,13 @@ public class GestionarProductosController implements Initializable {
     @Override
     public void initialize(URL location, ResourceBundle resources) {
         productoDAO = new ProductoDAO();
+        productoCache = ProductoCache.getInstance();
         categoriaDAO = new CategoriaDAO();
         sessionManager = SessionManager.getInstance();
         productosData = FXCollections.observableArrayList();
+        busquedaProductos = new BusquedaDiferida<>(this::buscarProductos, productosData::setAll,
+                e -> AlertUtils.mostrarError("Error", "Error al filtrar productos: " + e.getMessage()),
+                Platform::runLater);
 
         configurarTabla();
         configurarFormulario();
@@ -133,8 +142,8 @@ public class GestionarProductosController implements Initializable {
     private void configurarEventos() {
         // Eventos de búsqueda y filtros
         txtBuscar.textProperty().addListener((obs, oldText, newText) -> filtrarProductos());
-        cmbFiltroCategoria.setOnAction(e -> filtrarProductos());
-        cmbFiltroEstado.setOnAction(e -> filtrarProductos());
+        cmbFiltroCategoria.setOnAction(e -> busquedaProductos.solicitarAhora(filtroActual()));
+        cmbFiltroEstado.setOnAction(e -> busquedaProductos.solicitarAhora(filtroActual()));
 
         // Validaciones en tiempo real
         txtPrecioCompra.textProperty().addListener((obs, oldText, newText) -> validarNumero(txtPrecioCompra, newText));
@@ -149,12 +158,8 @@ public class GestionarProductosController implements Initializable {
     }
 
     private void cargarProductos() {
-        try {
-            List<Producto> productos = productoDAO.listarTodos();
-            productosData.setAll(productos);
-        } catch (Exception e) {
-            AlertUtils.mostrarError("Error", "No se pudieron cargar los productos: " + e.getMessage());
-        }
+        // Recarga respetando la búsqueda y los filtros actuales
+        busquedaProductos.solicitarAhora(filtroActual());
     }
 
     private void cargarCategorias() {
@@ -199,6 +204,7 @@ public class GestionarProductosController implements Initializable {
                     producto.setModificadoPor(sessionManager.getUsuarioActual().getIdUsuario());
 
                     if (productoDAO.actualizar(producto)) {
+                        productoCache.refrescarProducto(producto.getIdProducto());
                         AlertUtils.mostrarExito("Éxito", "Producto actualizado correctamente");
                         sessionManager.registrarActividad("Producto modificado: " + producto.getNombre());
                     } else {
@@ -209,6 +215,7 @@ public class GestionarProductosController implements Initializable {
                     producto.setCreadoPor(sessionManager.getUsuarioActual().getIdUsuario());
 
                     if (productoDAO.crear(producto)) {
+                        productoCache.refrescarProducto(producto.getIdProducto());
                         AlertUtils.mostrarExito("Éxito", "Producto registrado correctamente");
                         sessionManager.registrarActividad("Producto creado: " + producto.getNombre());
                     } else {
@@ -247,6 +254,7 @@ public class GestionarProductosController implements Initializable {
 
                 try {
                     if (productoDAO.eliminar(productoSeleccionado.getIdProducto())) {
+                        productoCache.refrescarProducto(productoSeleccionado.getIdProducto());
                         AlertUtils.mostrarExito("Éxito", "Producto eliminado correctamente");
                         sessionManager.registrarActividad("Producto eliminado: " + productoSeleccionado.getNombre());
                         cargarProductos();
@@ -323,25 +331,21 @@ public class GestionarProductosController implements Initializable {
     // === MÉTODOS AUXILIARES ===
 
     private void filtrarProductos() {
-        String textoBusqueda = txtBuscar.getText().toLowerCase();
-        Categoria categoriaFiltro = cmbFiltroCategoria.getValue();
-        String estadoFiltro = cmbFiltroEstado.getValue();
+        busquedaProductos.solicitar(filtroActual());
+    }
 
-        List<Producto> productos;
-        try {
-            productos = productoDAO.listarTodos();
-        } catch (Exception e) {
-            AlertUtils.mostrarError("Error", "Error al filtrar productos: " + e.getMessage());
-            return;
-        }
+    // Los controles se leen aquí, en el hilo de JavaFX; la búsqueda corre en otro hilo
+    private FiltroProductos filtroActual() {
+        return new FiltroProductos(txtBuscar.getText(), cmbFiltroCategoria.getValue(), cmbFiltroEstado.getValue());
+    }
 
-        List<Producto> productosFiltrados = productos.stream()
-                .filter(p -> {
-                    // Filtro por texto
-                    boolean cumpleTexto = textoBusqueda.isEmpty() ||
-                            p.getNombre().toLowerCase().contains(textoBusqueda) ||
-                            p.getCodigoBarras().toLowerCase().contains(textoBusqueda);
+    private List<Producto> buscarProductos(FiltroProductos filtro) {
+        Categoria categoriaFiltro = filtro.getCategoria();
+        String estadoFiltro = filtro.getEstado();
 
+        // Filtro por texto con el índice en memoria: ya viene ordenado por relevancia
+        return productoCache.buscar(filtro.getTexto(), 0, false).stream()
+                .filter(p -> {
                     // Filtro por categoría
                     boolean cumpleCategoria = categoriaFiltro == null ||
                             "Todas".equals(categoriaFiltro.getNombre()) ||
@@ -352,11 +356,9 @@ public class GestionarProductosController implements Initializable {
                             ("Activos".equals(estadoFiltro) && p.isEstado()) ||
                             ("Inactivos".equals(estadoFiltro) && !p.isEstado());
 
-                    return cumpleTexto && cumpleCategoria && cumpleEstado;
+                    return cumpleCategoria && cumpleEstado;
                 })
                 .toList();
-
-        productosData.setAll(productosFiltrados);
     }
 
     private void cargarProductoEnFormulario(Producto producto) {
@@ -550,4 +552,21 @@ public class GestionarProductosController implements Initializable {
             imgProducto.setImage(null);
         }
     }
+
+    // Criterio de búsqueda capturado de los controles
+    private static class FiltroProductos {
+        private final String texto;
+        private final Categoria categoria;
+        private final String estado;
+
+        FiltroProductos(String texto, Categoria categoria, String estado) {
+            this.texto = texto;
+            this.categoria = categoria;
+            this.estado = estado;
+        }
+
+        public String getTexto() { return texto; }
+        public Categoria getCategoria() { return categoria; }
+        public String getEstado() { return estado; }
+    }
 }
\ No newline at end of file
@@ -2,8 +2,11 @@ package com.pos.puntoventaocr.controllers;
 
 import com.pos.puntoventaocr.dao.UsuarioDAO;
 import com.pos.puntoventaocr.models.Usuario;
+import com.pos.puntoventaocr.services.ProductoCache;
 import com.pos.puntoventaocr.utils.AlertUtils;
+import com.pos.puntoventaocr.utils.GeneradorNumeroVenta;
 import com.pos.puntoventaocr.utils.SessionManager;
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
@@ -17,6 +20,7 @@ import javafx.stage.Stage;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.Optional;
 import java.util.ResourceBundle;
 
 public class LoginController implements Initializable {
@@ -43,6 +47,9 @@ public class LoginController implements Initializable {
 
         // Cargar último usuario si está guardado
         cargarUltimoUsuario();
+
+        // Revisar la configuración de la caja una vez, con la ventana ya visible
+        Platform.runLater(this::verificarTerminal);
     }
 
     @FXML
@@ -81,6 +88,10 @@ public class LoginController implements Initializable {
         new Thread(() -> {
             try {
                 Usuario usuarioAutenticado = usuarioDAO.autenticar(usuario, password);
+                if (usuarioAutenticado != null) {
+                    // El catálogo se carga mientras se abre la ventana principal, no en la primera búsqueda
+                    ProductoCache.getInstance().precargar();
+                }
 
                 javafx.application.Platform.runLater(() -> {
                     progressLogin.setVisible(false);
@@ -185,6 +196,33 @@ public class LoginController implements Initializable {
         });
     }
 
+    // Los números de venta necesitan la terminal de esta caja; la primera vez se pide y se guarda
+    private void verificarTerminal() {
+        if (GeneradorNumeroVenta.estaConfigurada()) {
+            return;
+        }
+        Optional<String> respuesta = AlertUtils.mostrarDialogoTexto("Configuración de la Caja",
+                "Número de esta caja (0 a " + GeneradorNumeroVenta.TERMINAL_MAXIMA +
+                        "). Debe ser distinto en cada caja de la tienda:");
+        if (!respuesta.isPresent()) {
+            AlertUtils.mostrarError("Caja sin Configurar",
+                    "No se podrán registrar ventas hasta configurar el número de caja.\n" +
+                            "Reinicie la aplicación o agregue terminal.id en " +
+                            GeneradorNumeroVenta.getArchivoConfiguracion());
+            return;
+        }
+        try {
+            GeneradorNumeroVenta.guardarTerminal(Integer.parseInt(respuesta.get().trim()));
+        } catch (IllegalArgumentException e) {
+            AlertUtils.mostrarError("Número de Caja Inválido",
+                    "Ingrese un número entre 0 y " + GeneradorNumeroVenta.TERMINAL_MAXIMA);
+            verificarTerminal();
+        } catch (IOException e) {
+            AlertUtils.mostrarError("Error", "No se pudo guardar el número de caja en " +
+                    GeneradorNumeroVenta.getArchivoConfiguracion() + ": " + e.getMessage());
+        }
+    }
+
     private void cargarUltimoUsuario() {
         // Implementar lógica para cargar el último usuario guardado
         // Por ahora solo un ejemplo
@@ -1,15 +1,18 @@
 package com.pos.puntoventaocr.controllers;
 
-import com.pos.puntoventaocr.dao.ProductoDAO;
-import com.pos.puntoventaocr.dao.VentaDAO;
 import com.pos.puntoventaocr.models.Producto;
 import com.pos.puntoventaocr.models.Venta;
 import com.pos.puntoventaocr.models.DetalleVenta;
+import com.pos.puntoventaocr.services.DiarioVentas;
+import com.pos.puntoventaocr.services.ProductoCache;
 import com.pos.puntoventaocr.utils.AlertUtils;
+import com.pos.puntoventaocr.utils.BusquedaDiferida;
 import com.pos.puntoventaocr.utils.SessionManager;
+import javafx.application.Platform;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
@@ -23,10 +26,14 @@ import java.net.URL;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.Map;
 import java.util.ResourceBundle;
 
 public class NuevaVentaController implements Initializable {
 
+    // Resultados que se muestran al buscar mientras se escribe
+    private static final int MAXIMO_RESULTADOS_BUSQUEDA = 200;
+
     // Información de la venta
     @FXML private Label lblNumeroVenta;
     @FXML private Label lblFechaHora;
@@ -67,20 +74,24 @@ public class NuevaVentaController implements Initializable {
     @FXML private Button btnCancelarVenta;
     @FXML private Button btnImprimirTicket;
 
-    private ProductoDAO productoDAO;
-    private VentaDAO ventaDAO;
+    private ProductoCache productoCache;
+    private DiarioVentas diarioVentas;
     private SessionManager sessionManager;
     private ObservableList<Producto> productosData;
     private ObservableList<DetalleVenta> carritoData;
+    private BusquedaDiferida<String, List<Producto>> busquedaProductos;
     private Venta ventaActual;
 
     @Override
     public void initialize(URL location, ResourceBundle resources) {
-        productoDAO = new ProductoDAO();
-        ventaDAO = new VentaDAO();
+        productoCache = ProductoCache.getInstance();
+        diarioVentas = DiarioVentas.getInstance();
         sessionManager = SessionManager.getInstance();
         productosData = FXCollections.observableArrayList();
         carritoData = FXCollections.observableArrayList();
+        busquedaProductos = new BusquedaDiferida<>(this::buscarProductos, productosData::setAll,
+                e -> AlertUtils.mostrarError("Error", "Error al filtrar productos: " + e.getMessage()),
+                Platform::runLater);
 
         configurarTablas();
         configurarFormulario();
@@ -189,8 +200,14 @@ public class NuevaVentaController implements Initializable {
     }
 
     private void inicializarVenta() {
-        ventaActual = new Venta();
-        ventaActual.setUsuario(sessionManager.getUsuarioActual());
+        try {
+            ventaActual = new Venta(sessionManager.getUsuarioActual(), null);
+        } catch (IllegalStateException e) {
+            // Caja sin número de terminal: la pantalla se muestra pero no se puede cobrar
+            ventaActual = new Venta();
+            ventaActual.setUsuario(sessionManager.getUsuarioActual());
+            AlertUtils.mostrarError("Caja sin Configurar", e.getMessage());
+        }
 
         // Actualizar información en pantalla
         lblNumeroVenta.setText(ventaActual.getNumeroVenta());
@@ -204,13 +221,21 @@ public class NuevaVentaController implements Initializable {
         btnImprimirTicket.setDisable(true);
     }
 
+    // Recarga la lista con la búsqueda actual fuera del hilo de JavaFX (la primera vez el caché se lee de la BD)
     private void cargarProductos() {
-        try {
-            List<Producto> productos = productoDAO.listarActivos();
-            productosData.setAll(productos);
-        } catch (Exception e) {
-            AlertUtils.mostrarError("Error", "No se pudieron cargar los productos: " + e.getMessage());
+        busquedaProductos.solicitarAhora(txtBuscarProducto.getText());
+    }
+
+    // Ventas cobradas antes que la BD rechazó al sincronizarlas; el operador debe revisarlas a mano
+    private void avisarVentasRechazadas() {
+        Map<String, String> rechazadas = diarioVentas.tomarRechazadas();
+        if (rechazadas.isEmpty()) {
+            return;
         }
+        StringBuilder detalle = new StringBuilder("Estas ventas ya cobradas no pudieron guardarse en la base de datos:\n");
+        rechazadas.forEach((numero, motivo) -> detalle.append("#").append(numero).append(": ").append(motivo).append("\n"));
+        detalle.append("Revíselas y regístrelas a mano.");
+        AlertUtils.mostrarAdvertencia("Ventas Rechazadas al Sincronizar", detalle.toString());
     }
 
     // === MÉTODOS DE ACCIÓN ===
@@ -277,44 +302,38 @@ public class NuevaVentaController implements Initializable {
     @FXML
     private void handleProcesarVenta(ActionEvent event) {
         if (validarVenta()) {
-            try {
-                // Configurar venta
-                ventaActual.setMetodoPago(cmbMetodoPago.getValue());
-                if ("TRANSFERENCIA".equals(cmbMetodoPago.getValue())) {
-                    ventaActual.setReferenciaTransferencia(txtReferenciaTransferencia.getText());
-                }
+            // Configurar venta
+            ventaActual.setMetodoPago(cmbMetodoPago.getValue());
+            if ("TRANSFERENCIA".equals(cmbMetodoPago.getValue())) {
+                ventaActual.setReferenciaTransferencia(txtReferenciaTransferencia.getText());
+            }
 
-                // Procesar venta
-                if (ventaDAO.crear(ventaActual)) {
-                    // Actualizar stock de productos
-                    for (DetalleVenta detalle : ventaActual.getDetalles()) {
-                        Producto producto = detalle.getProducto();
-                        int nuevoStock = producto.getCantidadStock() - detalle.getCantidad();
-                        productoDAO.actualizarStock(producto.getIdProducto(), nuevoStock);
+            // Procesar venta (el stock se descuenta dentro de la misma transacción).
+            // Sin conexión a la BD la venta queda en el diario local y se sincroniza después.
+            // El diario espera hasta que el escritor confirma, así que se registra fuera del hilo de JavaFX
+            Venta venta = ventaActual;
+            Task<DiarioVentas.Resultado> registro = new Task<>() {
+                @Override
+                protected DiarioVentas.Resultado call() {
+                    DiarioVentas.Resultado resultado = diarioVentas.registrar(venta);
+                    if (resultado.getEstado() == DiarioVentas.EstadoRegistro.RECHAZADA) {
+                        // Refrescar existencias por si otra terminal vendió el mismo producto
+                        productoCache.refrescarDelta();
                     }
-
-                    AlertUtils.mostrarExito("Venta Procesada",
-                            "Venta #" + ventaActual.getNumeroVenta() + " procesada correctamente\n" +
-                                    "Total: $" + ventaActual.getTotal());
-
-                    sessionManager.registrarActividad("Venta procesada: " + ventaActual.getNumeroVenta() +
-                            " - Total: $" + ventaActual.getTotal());
-
-                    btnImprimirTicket.setDisable(false);
-                    btnProcesarVenta.setDisable(true);
-                    btnAgregarProducto.setDisable(true);
-                    btnEliminarItem.setDisable(true);
-                    btnModificarCantidad.setDisable(true);
-
-                    // Recargar productos para actualizar stock
-                    cargarProductos();
-
-                } else {
-                    AlertUtils.mostrarError("Error", "No se pudo procesar la venta");
+                    return resultado;
                 }
-            } catch (Exception e) {
-                AlertUtils.mostrarError("Error", "Error al procesar la venta: " + e.getMessage());
-            }
+            };
+            registro.setOnSucceeded(e -> mostrarResultadoVenta(venta, registro.getValue()));
+            registro.setOnFailed(e -> {
+                bloquearControles(false);
+                Throwable error = registro.getException();
+                AlertUtils.mostrarError("Error", "Error al procesar la venta: " +
+                        (error != null ? error.getMessage() : "desconocido"));
+            });
+
+            // Evitar un doble cobro o cambios al carrito mientras se guarda
+            bloquearControles(true);
+            new Thread(registro, "registro-venta").start();
         }
     }
 
@@ -356,7 +375,7 @@ public class NuevaVentaController implements Initializable {
 
     private void buscarProductoPorCodigo(String codigo) {
         try {
-            Producto producto = productoDAO.buscarPorCodigoBarras(codigo);
+            Producto producto = productoCache.buscarPorCodigoBarras(codigo);
             if (producto != null) {
                 if (producto.isEstado() && producto.getCantidadStock() > 0) {
                     agregarProductoAlCarrito(producto);
@@ -374,18 +393,18 @@ public class NuevaVentaController implements Initializable {
         }
     }
 
+    // Se llama en cada tecla: la búsqueda espera a que se deje de escribir y corre fuera del hilo de JavaFX
     private void filtrarProductos(String filtro) {
-        if (filtro == null || filtro.trim().isEmpty()) {
-            cargarProductos();
-            return;
-        }
+        busquedaProductos.solicitar(filtro);
+    }
 
-        try {
-            List<Producto> productos = productoDAO.buscarPorNombre(filtro);
-            productosData.setAll(productos);
-        } catch (Exception e) {
-            AlertUtils.mostrarError("Error", "Error al filtrar productos: " + e.getMessage());
+    // Corre en el hilo de búsqueda; no toca controles
+    private List<Producto> buscarProductos(String filtro) {
+        if (filtro == null || filtro.trim().isEmpty()) {
+            return productoCache.listarActivos();
         }
+        // Índice en memoria: sin consulta a la BD por cada tecla
+        return productoCache.buscar(filtro, MAXIMO_RESULTADOS_BUSQUEDA, true);
     }
 
     private void agregarProductoAlCarrito(Producto producto) {
@@ -489,6 +508,11 @@ public class NuevaVentaController implements Initializable {
     private boolean validarVenta() {
         StringBuilder errores = new StringBuilder();
 
+        // Sin número de venta (caja sin terminal configurada) no se puede cobrar
+        if (ventaActual.getNumeroVenta() == null) {
+            errores.append("- Esta caja no tiene número de terminal configurado\n");
+        }
+
         // Validar que hay productos en el carrito
         if (carritoData.isEmpty()) {
             errores.append("- Debe agregar productos al carrito\n");
@@ -533,6 +557,56 @@ public class NuevaVentaController implements Initializable {
         return true;
     }
 
+    private void mostrarResultadoVenta(Venta venta, DiarioVentas.Resultado resultado) {
+        bloquearControles(false);
+
+        if (resultado.getEstado() != DiarioVentas.EstadoRegistro.RECHAZADA) {
+            if (resultado.getEstado() == DiarioVentas.EstadoRegistro.PENDIENTE_SINCRONIZAR) {
+                AlertUtils.mostrarAdvertencia("Venta Procesada sin Conexión",
+                        "Venta #" + venta.getNumeroVenta() + " cobrada correctamente\n" +
+                                "Total: $" + venta.getTotal() + "\n" +
+                                "No hay conexión con la base de datos; la venta se guardó localmente " +
+                                "y se sincronizará automáticamente.");
+            } else {
+                AlertUtils.mostrarExito("Venta Procesada",
+                        "Venta #" + venta.getNumeroVenta() + " procesada correctamente\n" +
+                                "Total: $" + venta.getTotal());
+            }
+
+            sessionManager.registrarActividad("Venta procesada: " + venta.getNumeroVenta() +
+                    " - Total: $" + venta.getTotal());
+
+            btnImprimirTicket.setDisable(false);
+            btnProcesarVenta.setDisable(true);
+            btnAgregarProducto.setDisable(true);
+            btnEliminarItem.setDisable(true);
+            btnModificarCantidad.setDisable(true);
+
+            // Recargar productos desde el caché (ya tiene el stock actualizado)
+            cargarProductos();
+
+            avisarVentasRechazadas();
+
+        } else {
+            String detalleError = resultado.getMensaje();
+            AlertUtils.mostrarError("Error", "No se pudo procesar la venta" +
+                    (detalleError != null ? ":\n" + detalleError : ""));
+            cargarProductos();
+        }
+    }
+
+    // Al desbloquear los botones vuelven al estado que corresponde al carrito y a la selección
+    private void bloquearControles(boolean bloquear) {
+        boolean sinSeleccion = tableCarrito.getSelectionModel().getSelectedItem() == null;
+        btnProcesarVenta.setDisable(bloquear || carritoData.isEmpty());
+        btnCancelarVenta.setDisable(bloquear);
+        btnAgregarProducto.setDisable(bloquear);
+        btnEliminarItem.setDisable(bloquear || sinSeleccion);
+        btnModificarCantidad.setDisable(bloquear || sinSeleccion);
+        tableProductos.setDisable(bloquear);
+        tableCarrito.setDisable(bloquear);
+    }
+
     private void reiniciarVenta() {
         carritoData.clear();
         inicializarVenta();
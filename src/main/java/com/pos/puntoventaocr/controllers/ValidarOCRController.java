@@ -5,7 +5,10 @@ import com.pos.puntoventaocr.dao.VentaDAO;
 import com.pos.puntoventaocr.models.ComprobanteOCR;
 import com.pos.puntoventaocr.models.ComprobanteOCR.EstadoOCR;
 import com.pos.puntoventaocr.models.MotorOCR;
+import com.pos.puntoventaocr.models.Usuario;
 import com.pos.puntoventaocr.models.Venta;
+import com.pos.puntoventaocr.services.DetectorReferencias;
+import com.pos.puntoventaocr.services.OcrJobService;
 import com.pos.puntoventaocr.utils.AlertUtils;
 import com.pos.puntoventaocr.utils.SessionManager;
 import javafx.beans.property.SimpleStringProperty;
@@ -18,6 +21,7 @@ import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
+import javafx.scene.layout.VBox;
 import javafx.stage.FileChooser;
 
 import java.io.File;
@@ -26,9 +30,20 @@ import java.net.URL;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.ResourceBundle;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class ValidarOCRController implements Initializable {
 
+    // Guardado y aprobación automática de comprobantes, fuera del hilo de JavaFX y del pool común
+    private static final ExecutorService EJECUTOR_APROBACION = Executors.newSingleThreadExecutor(r -> {
+        Thread hilo = new Thread(r, "ocr-aprobacion");
+        hilo.setDaemon(true);
+        return hilo;
+    });
+
     // Controles de la tabla
     @FXML private TableView<ComprobanteOCR> tableComprobantes;
     @FXML private TableColumn<ComprobanteOCR, String> colNumeroVenta;
@@ -71,8 +86,10 @@ public class ValidarOCRController implements Initializable {
     private VentaDAO ventaDAO;
     private SessionManager sessionManager;
     private MotorOCR motorOCR;
+    private OcrJobService ocrJobService;
     private ObservableList<ComprobanteOCR> comprobantesData;
     private ComprobanteOCR comprobanteSeleccionado;
+    private File archivoComprobante;
     private boolean modoEdicion = false;
 
     @Override
@@ -81,6 +98,7 @@ public class ValidarOCRController implements Initializable {
         ventaDAO = new VentaDAO();
         sessionManager = SessionManager.getInstance();
         motorOCR = MotorOCR.getInstance();
+        ocrJobService = OcrJobService.getInstance();
         comprobantesData = FXCollections.observableArrayList();
 
         configurarTabla();
@@ -208,6 +226,8 @@ public class ValidarOCRController implements Initializable {
                     imgComprobante.setImage(image);
                 }
 
+                archivoComprobante = file;
+
                 // Habilitar procesamiento OCR
                 btnProcesarOCR.setDisable(false);
 
@@ -221,7 +241,7 @@ public class ValidarOCRController implements Initializable {
 
     @FXML
     private void handleProcesarOCR(ActionEvent event) {
-        if (imgComprobante.getImage() == null) {
+        if (imgComprobante.getImage() == null || archivoComprobante == null) {
             AlertUtils.mostrarAdvertencia("Error", "Debe cargar una imagen primero");
             return;
         }
@@ -251,47 +271,85 @@ public class ValidarOCRController implements Initializable {
                 return;
             }
 
-            // Mostrar progreso
-            ProgressIndicator progress = new ProgressIndicator();
-            Alert progressAlert = new Alert(Alert.AlertType.INFORMATION);
+            // Procesar en el pool de trabajadores OCR (acotado al número de núcleos)
+            String rutaImagen = archivoComprobante.getAbsolutePath();
+            btnProcesarOCR.setDisable(true);
+            OcrJobService.Trabajo trabajo = ocrJobService.enviar(rutaImagen, venta);
+
+            // Mostrar progreso por etapa; cerrar el diálogo antes de terminar cancela el trabajo
+            ProgressBar progress = new ProgressBar(0);
+            progress.setPrefWidth(280);
+            Label lblEtapa = new Label("Procesando comprobante...");
+            Alert progressAlert = new Alert(Alert.AlertType.INFORMATION, null, ButtonType.CANCEL);
             progressAlert.setTitle("Procesando OCR");
             progressAlert.setHeaderText("Procesando comprobante...");
-            progressAlert.getDialogPane().setContent(progress);
+            progressAlert.getDialogPane().setContent(new VBox(8, lblEtapa, progress));
+            progressAlert.setOnHidden(e -> {
+                if (!trabajo.isTerminado()) {
+                    trabajo.cancelar();
+                }
+            });
             progressAlert.show();
 
-            // Procesar en hilo separado
-            new Thread(() -> {
-                try {
-                    // Simular ruta de imagen (en implementación real obtendrías la ruta del FileChooser)
-                    String rutaImagen = "/temp/comprobante_temp.jpg";
-
-                    // Procesar con OCR
-                    ComprobanteOCR comprobante = motorOCR.procesarComprobante(rutaImagen, venta);
-
+            trabajo.alAvanzar(etapa -> javafx.application.Platform.runLater(() -> {
+                progress.setProgress(etapa.getProgreso());
+                lblEtapa.setText(etapa.getDescripcion() + "...");
+            }));
+
+            // La aprobación automática va a la BD: se hace fuera del hilo de JavaFX
+            Usuario usuario = sessionManager.getUsuarioActual();
+            trabajo.getResultado().thenApplyAsync(comprobante ->
+                    comprobante != null && motorOCR.esAprobableAutomaticamente(comprobante)
+                            ? aprobarAutomaticamente(comprobante, usuario)
+                            : comprobante, EJECUTOR_APROBACION
+            ).whenComplete((comprobante, error) ->
                     javafx.application.Platform.runLater(() -> {
                         progressAlert.close();
-
-                        if (comprobante != null) {
+                        btnProcesarOCR.setDisable(false);
+
+                        Throwable causa = error instanceof CompletionException && error.getCause() != null
+                                ? error.getCause() : error;
+                        if (causa instanceof CancellationException) {
+                            sessionManager.registrarActividad("OCR cancelado para venta: " + numeroVenta);
+                        } else if (causa != null) {
+                            AlertUtils.mostrarError("Error", "Error al procesar OCR: " + causa.getMessage());
+                        } else if (comprobante != null && comprobante.getIdComprobante() > 0
+                                && comprobante.getEstadoValidacion() == EstadoOCR.VALIDADO) {
+                            // Lectura confiable que coincide con la venta: no pasa por la cola de revisión
+                            AlertUtils.mostrarExito("Comprobante aprobado",
+                                    "El comprobante coincide con la venta y se aprobó automáticamente.\n" +
+                                            "Referencia: " + comprobante.getReferenciaOperacion());
+                            sessionManager.registrarActividad("Comprobante OCR aprobado automáticamente: " +
+                                    comprobante.getReferenciaOperacion() + " (venta " + numeroVenta + ")");
+                            cargarComprobantes();
+                            limpiarFormulario();
+                        } else if (comprobante != null && comprobante.getIdComprobante() > 0) {
+                            // Se guardó pero la aprobación falló: sigue el camino normal de revisión
+                            AlertUtils.mostrarAdvertencia("Comprobante pendiente",
+                                    "El comprobante se guardó, pero no se pudo aprobar automáticamente.\n" +
+                                            "Quedó pendiente de revisión.");
+                            sessionManager.registrarActividad("OCR procesado para venta: " + numeroVenta);
+                            cargarComprobantes();
+                            limpiarFormulario();
+                        } else if (comprobante != null) {
                             // Cargar datos extraídos en el formulario
                             cargarComprobanteEnFormulario(comprobante);
                             habilitarFormulario(true);
 
-                            AlertUtils.mostrarExito("OCR Procesado",
-                                    "Comprobante procesado exitosamente. Revise los datos extraídos.");
+                            if (comprobante.isPosibleDuplicado()) {
+                                AlertUtils.mostrarAdvertencia("Posible duplicado",
+                                        comprobante.getObservaciones() + ".\n" +
+                                                "Verifique que el comprobante no se haya registrado antes.");
+                            } else {
+                                AlertUtils.mostrarExito("OCR Procesado",
+                                        "Comprobante procesado exitosamente. Revise los datos extraídos.");
+                            }
 
                             sessionManager.registrarActividad("OCR procesado para venta: " + numeroVenta);
                         } else {
                             AlertUtils.mostrarError("Error OCR", "No se pudo procesar el comprobante");
                         }
-                    });
-
-                } catch (Exception e) {
-                    javafx.application.Platform.runLater(() -> {
-                        progressAlert.close();
-                        AlertUtils.mostrarError("Error", "Error al procesar OCR: " + e.getMessage());
-                    });
-                }
-            }).start();
+                    }));
 
         } catch (Exception e) {
             AlertUtils.mostrarError("Error", "Error al procesar comprobante: " + e.getMessage());
@@ -376,6 +434,10 @@ public class ValidarOCRController implements Initializable {
                 actualizarComprobanteDesdeFormulario(comprobanteSeleccionado);
 
                 if (comprobanteDAO.actualizar(comprobanteSeleccionado)) {
+                    // La referencia pudo corregirse a mano en la validación
+                    if (comprobanteSeleccionado.getEstadoValidacion() != EstadoOCR.RECHAZADO) {
+                        DetectorReferencias.notificarInsercion(comprobanteSeleccionado.getReferenciaOperacion());
+                    }
                     AlertUtils.mostrarExito("Éxito", "Comprobante actualizado correctamente");
                     sessionManager.registrarActividad("Comprobante OCR modificado: " +
                             comprobanteSeleccionado.getReferenciaOperacion());
@@ -392,6 +454,21 @@ public class ValidarOCRController implements Initializable {
 
     // === MÉTODOS AUXILIARES ===
 
+    /**
+     * Guarda el comprobante y lo aprueba con ComprobanteOCRDAO.aprobar, igual que la validación
+     * manual y la ingesta por lotes. Si la aprobación falla queda guardado y pendiente de revisión.
+     */
+    private ComprobanteOCR aprobarAutomaticamente(ComprobanteOCR comprobante, Usuario usuario) {
+        if (!comprobanteDAO.crear(comprobante)) {
+            return comprobante;
+        }
+        DetectorReferencias.notificarInsercion(comprobante.getReferenciaOperacion());
+        if (comprobanteDAO.aprobar(comprobante.getIdComprobante(), usuario.getIdUsuario())) {
+            comprobante.aprobarComprobante(usuario);
+        }
+        return comprobante;
+    }
+
     private void filtrarComprobantes() {
         EstadoOCR estadoFiltro = cmbFiltroEstado.getValue();
         String referenciaFiltro = txtFiltroReferencia.getText().toLowerCase().trim();
@@ -521,6 +598,7 @@ public class ValidarOCRController implements Initializable {
     }
 
     private void limpiarFormulario() {
+        archivoComprobante = null;
         txtNumeroVenta.clear();
         txtBancoEmisor.clear();
         txtCuentaRemitente.clear();
@@ -9,6 +9,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class CategoriaDAO {
+    static final String SQL_LISTAR_ACTIVAS = "SELECT * FROM categorias WHERE estado = TRUE ORDER BY nombre";
+    static final String SQL_CONTAR_PRODUCTOS = "SELECT COUNT(*) FROM productos WHERE id_categoria = ? AND estado = TRUE";
 
     // Crear nueva categoría
     public boolean crear(Categoria categoria) {
@@ -132,11 +134,10 @@ public class CategoriaDAO {
     // Listar solo categorías activas
     public List<Categoria> listarActivas() {
         List<Categoria> categorias = new ArrayList<>();
-        String sql = "SELECT * FROM categorias WHERE estado = TRUE ORDER BY nombre";
 
         try (Connection conn = DatabaseConnection.getConnection();
              Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+             ResultSet rs = stmt.executeQuery(SQL_LISTAR_ACTIVAS)) {
 
             while (rs.next()) {
                 categorias.add(mapearCategoria(rs));
@@ -197,10 +198,8 @@ public class CategoriaDAO {
 
     // Contar productos por categoría
     public int contarProductosPorCategoria(int idCategoria) {
-        String sql = "SELECT COUNT(*) FROM productos WHERE id_categoria = ? AND estado = TRUE";
-
         try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+             PreparedStatement pstmt = conn.prepareStatement(SQL_CONTAR_PRODUCTOS)) {
 
             pstmt.setInt(1, idCategoria);
             ResultSet rs = pstmt.executeQuery();
@@ -11,11 +11,61 @@ import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 public class ComprobanteOCRDAO {
     private VentaDAO ventaDAO;
     private UsuarioDAO usuarioDAO;
 
+    private static final String SQL_INSERTAR = "INSERT INTO comprobantes_ocr (id_venta, imagen_original, imagen_procesada, " +
+            "banco_emisor, cuenta_remitente, monto_detectado, fecha_transferencia, " +
+            "referencia_operacion, nombre_beneficiario, estado_validacion, datos_extraidos, " +
+            "fecha_procesamiento, observaciones) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final int ERROR_LLAVE_DUPLICADA = 1062;
+
+    // Consultas cuyo plan de ejecución revisa VerificadorPlanesTest
+    static final String SQL_BUSCAR_POR_REFERENCIA = "SELECT co.*, v.numero_venta, v.total as venta_total, " +
+            "u.nombre_usuario, u.nombre as usuario_nombre, u.apellidos as usuario_apellidos " +
+            "FROM comprobantes_ocr co " +
+            "LEFT JOIN ventas v ON co.id_venta = v.id_venta " +
+            "LEFT JOIN usuarios u ON co.usuario_validador = u.id_usuario " +
+            "WHERE co.referencia_operacion = ?";
+    static final String SQL_LISTAR_POR_ESTADO = "SELECT co.*, v.numero_venta, v.total as venta_total, " +
+            "u.nombre_usuario, u.nombre as usuario_nombre, u.apellidos as usuario_apellidos " +
+            "FROM comprobantes_ocr co " +
+            "LEFT JOIN ventas v ON co.id_venta = v.id_venta " +
+            "LEFT JOIN usuarios u ON co.usuario_validador = u.id_usuario " +
+            "WHERE co.estado_validacion = ? " +
+            "ORDER BY co.fecha_procesamiento DESC";
+    static final String SQL_RECORRER_PENDIENTES = "SELECT co.*, v.numero_venta, v.total as venta_total, " +
+            "u.nombre_usuario, u.nombre as usuario_nombre, u.apellidos as usuario_apellidos " +
+            "FROM comprobantes_ocr co " +
+            "LEFT JOIN ventas v ON co.id_venta = v.id_venta " +
+            "LEFT JOIN usuarios u ON co.usuario_validador = u.id_usuario " +
+            "WHERE co.estado_validacion = ? " +
+            "AND (co.fecha_transferencia IS NULL OR co.fecha_transferencia BETWEEN ? AND ?) " +
+            "ORDER BY co.id_comprobante";
+    static final String SQL_LISTAR_POR_FECHA = "SELECT co.*, v.numero_venta, v.total as venta_total, " +
+            "u.nombre_usuario, u.nombre as usuario_nombre, u.apellidos as usuario_apellidos " +
+            "FROM comprobantes_ocr co " +
+            "LEFT JOIN ventas v ON co.id_venta = v.id_venta " +
+            "LEFT JOIN usuarios u ON co.usuario_validador = u.id_usuario " +
+            "WHERE co.fecha_procesamiento BETWEEN ? AND ? " +
+            "ORDER BY co.fecha_procesamiento DESC";
+    static final String SQL_EXISTE_REFERENCIA = "SELECT COUNT(*) FROM comprobantes_ocr WHERE referencia_operacion = ? " +
+            "AND estado_validacion != ?";
+    static final String SQL_RECORRER_REFERENCIAS = "SELECT referencia_operacion FROM comprobantes_ocr " +
+            "WHERE referencia_operacion IS NOT NULL AND estado_validacion != ?";
+    static final String SQL_ESTADISTICAS = "SELECT " +
+            "SUM(CASE WHEN estado_validacion = 'PENDIENTE' THEN 1 ELSE 0 END) as pendientes, " +
+            "SUM(CASE WHEN estado_validacion = 'VALIDADO' THEN 1 ELSE 0 END) as validados, " +
+            "SUM(CASE WHEN estado_validacion = 'RECHAZADO' THEN 1 ELSE 0 END) as rechazados, " +
+            "SUM(CASE WHEN estado_validacion = 'ERROR_PROCESAMIENTO' THEN 1 ELSE 0 END) as errores, " +
+            "COUNT(*) as total " +
+            "FROM comprobantes_ocr";
+
     public ComprobanteOCRDAO() {
         this.ventaDAO = new VentaDAO();
         this.usuarioDAO = new UsuarioDAO();
@@ -23,34 +73,10 @@ public class ComprobanteOCRDAO {
 
     // Crear nuevo comprobante OCR
     public boolean crear(ComprobanteOCR comprobante) {
-        String sql = "INSERT INTO comprobantes_ocr (id_venta, imagen_original, imagen_procesada, " +
-                "banco_emisor, cuenta_remitente, monto_detectado, fecha_transferencia, " +
-                "referencia_operacion, nombre_beneficiario, estado_validacion, datos_extraidos, " +
-                "fecha_procesamiento, observaciones) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-
         try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+             PreparedStatement pstmt = conn.prepareStatement(SQL_INSERTAR, Statement.RETURN_GENERATED_KEYS)) {
 
-            pstmt.setInt(1, comprobante.getVenta().getIdVenta());
-            pstmt.setString(2, comprobante.getImagenOriginal());
-            pstmt.setString(3, comprobante.getImagenProcesada());
-            pstmt.setString(4, comprobante.getBancoEmisor());
-            pstmt.setString(5, comprobante.getCuentaRemitente());
-            pstmt.setBigDecimal(6, comprobante.getMontoDetectado());
-
-            if (comprobante.getFechaTransferencia() != null) {
-                pstmt.setTimestamp(7, Timestamp.valueOf(comprobante.getFechaTransferencia()));
-            } else {
-                pstmt.setNull(7, Types.TIMESTAMP);
-            }
-
-            pstmt.setString(8, comprobante.getReferenciaOperacion());
-            pstmt.setString(9, comprobante.getNombreBeneficiario());
-            pstmt.setString(10, comprobante.getEstadoValidacion().name());
-            pstmt.setString(11, comprobante.getDatosExtraidos());
-            pstmt.setTimestamp(12, Timestamp.valueOf(comprobante.getFechaProcesamiento()));
-            pstmt.setString(13, comprobante.getObservaciones());
+            asignarParametrosInsercion(pstmt, comprobante);
 
             int filasAfectadas = pstmt.executeUpdate();
 
@@ -70,6 +96,80 @@ public class ComprobanteOCRDAO {
         return false;
     }
 
+    /**
+     * Inserta varios comprobantes en un solo lote y una sola transacción.
+     * Si el lote falla (por ejemplo, una referencia duplicada) se revierte y se inserta
+     * uno por uno para no perder el resto. Devuelve los comprobantes guardados, los que chocaron con
+     * una referencia_operacion ya registrada (UNIQUE) y los que la BD rechazó por otros datos;
+     * los que no están en ninguna lista fallaron por un error transitorio (conexión, bloqueo)
+     * y pueden reintentarse.
+     */
+    public ResultadoLote crearLote(List<ComprobanteOCR> comprobantes) {
+        List<ComprobanteOCR> guardados = new ArrayList<>();
+        List<ComprobanteOCR> rechazados = new ArrayList<>();
+        List<ComprobanteOCR> duplicados = new ArrayList<>();
+        if (comprobantes.isEmpty()) {
+            return new ResultadoLote(guardados, rechazados, duplicados);
+        }
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+
+            try (PreparedStatement pstmt = conn.prepareStatement(SQL_INSERTAR, Statement.RETURN_GENERATED_KEYS)) {
+                for (ComprobanteOCR comprobante : comprobantes) {
+                    asignarParametrosInsercion(pstmt, comprobante);
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+
+                try (ResultSet rs = pstmt.getGeneratedKeys()) {
+                    int i = 0;
+                    while (rs.next() && i < comprobantes.size()) {
+                        comprobantes.get(i++).setIdComprobante(rs.getInt(1));
+                    }
+                }
+                conn.commit();
+                guardados.addAll(comprobantes);
+                return new ResultadoLote(guardados, rechazados, duplicados);
+
+            } catch (SQLException e) {
+                conn.rollback();
+                System.err.println("Lote de comprobantes rechazado, se inserta uno por uno: " + e.getMessage());
+            }
+
+            // Reintento individual: cada fila en su propia transacción
+            conn.setAutoCommit(true);
+            try (PreparedStatement pstmt = conn.prepareStatement(SQL_INSERTAR, Statement.RETURN_GENERATED_KEYS)) {
+                for (ComprobanteOCR comprobante : comprobantes) {
+                    try {
+                        asignarParametrosInsercion(pstmt, comprobante);
+                        pstmt.executeUpdate();
+                        try (ResultSet rs = pstmt.getGeneratedKeys()) {
+                            if (rs.next()) {
+                                comprobante.setIdComprobante(rs.getInt(1));
+                            }
+                        }
+                        guardados.add(comprobante);
+                    } catch (SQLException e) {
+                        if (esReferenciaDuplicada(e)) {
+                            duplicados.add(comprobante);
+                        } else if (esErrorDeDatos(e)) {
+                            rechazados.add(comprobante);
+                        }
+                        System.err.println("Error al crear comprobante OCR " +
+                                comprobante.getImagenOriginal() + ": " + e.getMessage());
+                    }
+                }
+            }
+
+        } catch (SQLException e) {
+            System.err.println("Error al crear lote de comprobantes OCR: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return new ResultadoLote(guardados, rechazados, duplicados);
+    }
+
     // Actualizar comprobante OCR
     public boolean actualizar(ComprobanteOCR comprobante) {
         String sql = "UPDATE comprobantes_ocr SET imagen_procesada = ?, banco_emisor = ?, " +
@@ -121,7 +221,7 @@ public class ComprobanteOCRDAO {
         String sql = "SELECT co.*, v.numero_venta, v.total as venta_total, " +
                 "u.nombre_usuario, u.nombre as usuario_nombre, u.apellidos as usuario_apellidos " +
                 "FROM comprobantes_ocr co " +
-                "INNER JOIN ventas v ON co.id_venta = v.id_venta " +
+                "LEFT JOIN ventas v ON co.id_venta = v.id_venta " +
                 "LEFT JOIN usuarios u ON co.usuario_validador = u.id_usuario " +
                 "WHERE co.id_comprobante = ?";
 
@@ -145,15 +245,8 @@ public class ComprobanteOCRDAO {
 
     // Buscar comprobante por referencia
     public ComprobanteOCR buscarPorReferencia(String referencia) {
-        String sql = "SELECT co.*, v.numero_venta, v.total as venta_total, " +
-                "u.nombre_usuario, u.nombre as usuario_nombre, u.apellidos as usuario_apellidos " +
-                "FROM comprobantes_ocr co " +
-                "INNER JOIN ventas v ON co.id_venta = v.id_venta " +
-                "LEFT JOIN usuarios u ON co.usuario_validador = u.id_usuario " +
-                "WHERE co.referencia_operacion = ?";
-
         try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+             PreparedStatement pstmt = conn.prepareStatement(SQL_BUSCAR_POR_REFERENCIA)) {
 
             pstmt.setString(1, referencia);
             ResultSet rs = pstmt.executeQuery();
@@ -173,16 +266,9 @@ public class ComprobanteOCRDAO {
     // Listar comprobantes por estado
     public List<ComprobanteOCR> listarPorEstado(EstadoOCR estado) {
         List<ComprobanteOCR> comprobantes = new ArrayList<>();
-        String sql = "SELECT co.*, v.numero_venta, v.total as venta_total, " +
-                "u.nombre_usuario, u.nombre as usuario_nombre, u.apellidos as usuario_apellidos " +
-                "FROM comprobantes_ocr co " +
-                "INNER JOIN ventas v ON co.id_venta = v.id_venta " +
-                "LEFT JOIN usuarios u ON co.usuario_validador = u.id_usuario " +
-                "WHERE co.estado_validacion = ? " +
-                "ORDER BY co.fecha_procesamiento DESC";
 
         try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+             PreparedStatement pstmt = conn.prepareStatement(SQL_LISTAR_POR_ESTADO)) {
 
             pstmt.setString(1, estado.name());
             ResultSet rs = pstmt.executeQuery();
@@ -204,13 +290,80 @@ public class ComprobanteOCRDAO {
         return listarPorEstado(EstadoOCR.PENDIENTE);
     }
 
+    // Recorre los comprobantes pendientes con fecha de transferencia en el intervalo (o sin fecha),
+    // incluidos los que aún no tienen venta asociada (ingesta por lotes)
+    public void recorrerPendientes(LocalDateTime fechaInicio, LocalDateTime fechaFin, Consumer<ComprobanteOCR> consumidor) {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(SQL_RECORRER_PENDIENTES, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            pstmt.setFetchSize(Integer.MIN_VALUE); // Connector/J transmite fila por fila
+            pstmt.setString(1, EstadoOCR.PENDIENTE.name());
+            pstmt.setTimestamp(2, Timestamp.valueOf(fechaInicio));
+            pstmt.setTimestamp(3, Timestamp.valueOf(fechaFin));
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    consumidor.accept(mapearComprobanteOCR(rs));
+                }
+            }
+
+        } catch (SQLException e) {
+            System.err.println("Error al recorrer comprobantes pendientes: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Asocia comprobantes pendientes a su venta (id_comprobante -> id_venta) en un solo lote.
+     * Solo se modifican los que siguen pendientes y sin venta. Devuelve cuántos se asociaron.
+     */
+    public int asociarVentas(Map<Integer, Integer> ventaPorComprobante) {
+        if (ventaPorComprobante.isEmpty()) {
+            return 0;
+        }
+        String sql = "UPDATE comprobantes_ocr SET id_venta = ? " +
+                "WHERE id_comprobante = ? AND id_venta IS NULL AND estado_validacion = ?";
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                for (Map.Entry<Integer, Integer> entrada : ventaPorComprobante.entrySet()) {
+                    pstmt.setInt(1, entrada.getValue());
+                    pstmt.setInt(2, entrada.getKey());
+                    pstmt.setString(3, EstadoOCR.PENDIENTE.name());
+                    pstmt.addBatch();
+                }
+
+                int asociados = 0;
+                for (int filas : pstmt.executeBatch()) {
+                    // SUCCESS_NO_INFO (-2) cuenta como aplicado
+                    if (filas > 0 || filas == Statement.SUCCESS_NO_INFO) {
+                        asociados++;
+                    }
+                }
+                conn.commit();
+                return asociados;
+
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+
+        } catch (SQLException e) {
+            System.err.println("Error al asociar comprobantes a ventas: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return 0;
+    }
+
     // Listar todos los comprobantes
     public List<ComprobanteOCR> listarTodos() {
         List<ComprobanteOCR> comprobantes = new ArrayList<>();
         String sql = "SELECT co.*, v.numero_venta, v.total as venta_total, " +
                 "u.nombre_usuario, u.nombre as usuario_nombre, u.apellidos as usuario_apellidos " +
                 "FROM comprobantes_ocr co " +
-                "INNER JOIN ventas v ON co.id_venta = v.id_venta " +
+                "LEFT JOIN ventas v ON co.id_venta = v.id_venta " +
                 "LEFT JOIN usuarios u ON co.usuario_validador = u.id_usuario " +
                 "ORDER BY co.fecha_procesamiento DESC";
 
@@ -233,16 +386,9 @@ public class ComprobanteOCRDAO {
     // Listar comprobantes por fecha
     public List<ComprobanteOCR> listarPorFecha(LocalDateTime fechaInicio, LocalDateTime fechaFin) {
         List<ComprobanteOCR> comprobantes = new ArrayList<>();
-        String sql = "SELECT co.*, v.numero_venta, v.total as venta_total, " +
-                "u.nombre_usuario, u.nombre as usuario_nombre, u.apellidos as usuario_apellidos " +
-                "FROM comprobantes_ocr co " +
-                "INNER JOIN ventas v ON co.id_venta = v.id_venta " +
-                "LEFT JOIN usuarios u ON co.usuario_validador = u.id_usuario " +
-                "WHERE co.fecha_procesamiento BETWEEN ? AND ? " +
-                "ORDER BY co.fecha_procesamiento DESC";
 
         try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+             PreparedStatement pstmt = conn.prepareStatement(SQL_LISTAR_POR_FECHA)) {
 
             pstmt.setTimestamp(1, Timestamp.valueOf(fechaInicio));
             pstmt.setTimestamp(2, Timestamp.valueOf(fechaFin));
@@ -307,11 +453,8 @@ public class ComprobanteOCRDAO {
 
     // Verificar si existe una referencia duplicada
     public boolean existeReferencia(String referencia) {
-        String sql = "SELECT COUNT(*) FROM comprobantes_ocr WHERE referencia_operacion = ? " +
-                "AND estado_validacion != ?";
-
         try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+             PreparedStatement pstmt = conn.prepareStatement(SQL_EXISTE_REFERENCIA)) {
 
             pstmt.setString(1, referencia);
             pstmt.setString(2, EstadoOCR.RECHAZADO.name());
@@ -329,19 +472,88 @@ public class ComprobanteOCRDAO {
         return false;
     }
 
+    // Cantidad de referencias vigentes (no rechazadas), para dimensionar el detector de duplicados
+    public int contarReferencias() {
+        String sql = "SELECT COUNT(*) FROM comprobantes_ocr WHERE referencia_operacion IS NOT NULL " +
+                "AND estado_validacion != ?";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, EstadoOCR.RECHAZADO.name());
+            ResultSet rs = pstmt.executeQuery();
+
+            if (rs.next()) {
+                return rs.getInt(1);
+            }
+
+        } catch (SQLException e) {
+            System.err.println("Error al contar referencias: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return 0;
+    }
+
+    // Recorre las referencias vigentes sin cargarlas todas en memoria
+    public boolean recorrerReferencias(Consumer<String> consumidor) {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(SQL_RECORRER_REFERENCIAS, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            pstmt.setFetchSize(Integer.MIN_VALUE); // Connector/J transmite fila por fila
+            pstmt.setString(1, EstadoOCR.RECHAZADO.name());
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    consumidor.accept(rs.getString(1));
+                }
+            }
+            return true;
+
+        } catch (SQLException e) {
+            System.err.println("Error al recorrer referencias: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return false;
+    }
+
+    /**
+     * Referencias vigentes que coinciden con alguno de los patrones LIKE ('_' = un carácter).
+     * Los patrones deben llegar ya escapados.
+     */
+    public List<String> buscarReferenciasSimilares(List<String> patrones) {
+        List<String> referencias = new ArrayList<>();
+        if (patrones.isEmpty()) {
+            return referencias;
+        }
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(construirConsultaSimilares(patrones.size()))) {
+
+            pstmt.setString(1, EstadoOCR.RECHAZADO.name());
+            for (int i = 0; i < patrones.size(); i++) {
+                pstmt.setString(i + 2, patrones.get(i));
+            }
+            ResultSet rs = pstmt.executeQuery();
+
+            while (rs.next()) {
+                referencias.add(rs.getString(1));
+            }
+
+        } catch (SQLException e) {
+            System.err.println("Error al buscar referencias similares: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return referencias;
+    }
+
     // Obtener estadísticas de comprobantes
     public EstadisticasOCR obtenerEstadisticas() {
-        String sql = "SELECT " +
-                "SUM(CASE WHEN estado_validacion = 'PENDIENTE' THEN 1 ELSE 0 END) as pendientes, " +
-                "SUM(CASE WHEN estado_validacion = 'VALIDADO' THEN 1 ELSE 0 END) as validados, " +
-                "SUM(CASE WHEN estado_validacion = 'RECHAZADO' THEN 1 ELSE 0 END) as rechazados, " +
-                "SUM(CASE WHEN estado_validacion = 'ERROR_PROCESAMIENTO' THEN 1 ELSE 0 END) as errores, " +
-                "COUNT(*) as total " +
-                "FROM comprobantes_ocr";
-
         try (Connection conn = DatabaseConnection.getConnection();
              Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+             ResultSet rs = stmt.executeQuery(SQL_ESTADISTICAS)) {
 
             if (rs.next()) {
                 return new EstadisticasOCR(
@@ -361,6 +573,54 @@ public class ComprobanteOCRDAO {
         return new EstadisticasOCR(0, 0, 0, 0, 0);
     }
 
+    // Estado a excluir seguido de un LIKE por patrón
+    static String construirConsultaSimilares(int cantidadPatrones) {
+        StringBuilder sql = new StringBuilder("SELECT referencia_operacion FROM comprobantes_ocr " +
+                "WHERE estado_validacion != ? AND (");
+        for (int i = 0; i < cantidadPatrones; i++) {
+            sql.append(i > 0 ? " OR " : "").append("referencia_operacion LIKE ?");
+        }
+        return sql.append(") LIMIT 20").toString();
+    }
+
+    // Error 1062 sobre el índice UNIQUE de referencia_operacion (otra terminal ya la registró)
+    private static boolean esReferenciaDuplicada(SQLException e) {
+        return e instanceof SQLIntegrityConstraintViolationException && e.getErrorCode() == ERROR_LLAVE_DUPLICADA
+                && e.getMessage() != null && e.getMessage().contains("referencia_operacion");
+    }
+
+    // Restricciones (23xxx) y datos inválidos (22xxx): reintentar la misma fila no cambia el resultado
+    private static boolean esErrorDeDatos(SQLException e) {
+        return e instanceof SQLIntegrityConstraintViolationException || e instanceof SQLDataException;
+    }
+
+    // Parámetros de SQL_INSERTAR; la venta es opcional (comprobantes de lote aún sin conciliar)
+    private void asignarParametrosInsercion(PreparedStatement pstmt, ComprobanteOCR comprobante) throws SQLException {
+        if (comprobante.getVenta() != null) {
+            pstmt.setInt(1, comprobante.getVenta().getIdVenta());
+        } else {
+            pstmt.setNull(1, Types.INTEGER);
+        }
+        pstmt.setString(2, comprobante.getImagenOriginal());
+        pstmt.setString(3, comprobante.getImagenProcesada());
+        pstmt.setString(4, comprobante.getBancoEmisor());
+        pstmt.setString(5, comprobante.getCuentaRemitente());
+        pstmt.setBigDecimal(6, comprobante.getMontoDetectado());
+
+        if (comprobante.getFechaTransferencia() != null) {
+            pstmt.setTimestamp(7, Timestamp.valueOf(comprobante.getFechaTransferencia()));
+        } else {
+            pstmt.setNull(7, Types.TIMESTAMP);
+        }
+
+        pstmt.setString(8, comprobante.getReferenciaOperacion());
+        pstmt.setString(9, comprobante.getNombreBeneficiario());
+        pstmt.setString(10, comprobante.getEstadoValidacion().name());
+        pstmt.setString(11, comprobante.getDatosExtraidos());
+        pstmt.setTimestamp(12, Timestamp.valueOf(comprobante.getFechaProcesamiento()));
+        pstmt.setString(13, comprobante.getObservaciones());
+    }
+
     // Mapear ResultSet a ComprobanteOCR
     private ComprobanteOCR mapearComprobanteOCR(ResultSet rs) throws SQLException {
         ComprobanteOCR comprobante = new ComprobanteOCR();
@@ -384,12 +644,15 @@ public class ComprobanteOCRDAO {
         comprobante.setFechaProcesamiento(rs.getTimestamp("fecha_procesamiento").toLocalDateTime());
         comprobante.setObservaciones(rs.getString("observaciones"));
 
-        // Mapear venta básica
-        Venta venta = new Venta();
-        venta.setIdVenta(rs.getInt("id_venta"));
-        venta.setNumeroVenta(rs.getString("numero_venta"));
-        venta.setTotal(rs.getBigDecimal("venta_total"));
-        comprobante.setVenta(venta);
+        // Mapear venta básica (los comprobantes de ingesta por lotes pueden no tenerla)
+        int idVenta = rs.getInt("id_venta");
+        if (!rs.wasNull()) {
+            Venta venta = new Venta();
+            venta.setIdVenta(idVenta);
+            venta.setNumeroVenta(rs.getString("numero_venta"));
+            venta.setTotal(rs.getBigDecimal("venta_total"));
+            comprobante.setVenta(venta);
+        }
 
         // Mapear usuario validador si existe
         int idUsuarioValidador = rs.getInt("usuario_validador");
@@ -405,6 +668,25 @@ public class ComprobanteOCRDAO {
         return comprobante;
     }
 
+    // Resultado de crearLote
+    public static class ResultadoLote {
+        private final List<ComprobanteOCR> guardados;
+        private final List<ComprobanteOCR> rechazados;
+        private final List<ComprobanteOCR> duplicados;
+
+        public ResultadoLote(List<ComprobanteOCR> guardados, List<ComprobanteOCR> rechazados,
+                             List<ComprobanteOCR> duplicados) {
+            this.guardados = guardados;
+            this.rechazados = rechazados;
+            this.duplicados = duplicados;
+        }
+
+        // Getters
+        public List<ComprobanteOCR> getGuardados() { return guardados; }
+        public List<ComprobanteOCR> getRechazados() { return rechazados; }
+        public List<ComprobanteOCR> getDuplicados() { return duplicados; }
+    }
+
     // Clase para estadísticas OCR
     public static class EstadisticasOCR {
         private int pendientes;
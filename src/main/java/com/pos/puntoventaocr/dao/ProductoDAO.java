@@ -6,10 +6,41 @@ import com.pos.puntoventaocr.models.Categoria;
 
 import java.math.BigDecimal;
 import java.sql.*;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
 public class ProductoDAO {
+    // Consultas de productos (ver VerificadorPlanesTest)
+    static final String SQL_BUSCAR_POR_CODIGO_BARRAS = "SELECT p.*, c.nombre as categoria_nombre, c.descripcion as categoria_descripcion " +
+            "FROM productos p " +
+            "INNER JOIN categorias c ON p.id_categoria = c.id_categoria " +
+            "WHERE p.codigo_barras = ?";
+    static final String SQL_LISTAR_TODOS = "SELECT p.*, c.nombre as categoria_nombre, c.descripcion as categoria_descripcion " +
+            "FROM productos p " +
+            "INNER JOIN categorias c ON p.id_categoria = c.id_categoria " +
+            "ORDER BY p.nombre";
+    static final String SQL_LISTAR_ACTIVOS = "SELECT p.*, c.nombre as categoria_nombre, c.descripcion as categoria_descripcion " +
+            "FROM productos p " +
+            "INNER JOIN categorias c ON p.id_categoria = c.id_categoria " +
+            "WHERE p.estado = TRUE ORDER BY p.nombre";
+    static final String SQL_LISTAR_POR_CATEGORIA = "SELECT p.*, c.nombre as categoria_nombre, c.descripcion as categoria_descripcion " +
+            "FROM productos p " +
+            "INNER JOIN categorias c ON p.id_categoria = c.id_categoria " +
+            "WHERE p.id_categoria = ? AND p.estado = TRUE ORDER BY p.nombre";
+    static final String SQL_BUSCAR_POR_NOMBRE = "SELECT p.*, c.nombre as categoria_nombre, c.descripcion as categoria_descripcion " +
+            "FROM productos p " +
+            "INNER JOIN categorias c ON p.id_categoria = c.id_categoria " +
+            "WHERE p.nombre LIKE ? AND p.estado = TRUE ORDER BY p.nombre";
+    static final String SQL_LISTAR_MODIFICADOS_DESDE = "SELECT p.*, c.nombre as categoria_nombre, c.descripcion as categoria_descripcion " +
+            "FROM productos p " +
+            "INNER JOIN categorias c ON p.id_categoria = c.id_categoria " +
+            "WHERE p.fecha_modificacion >= ?";
+    static final String SQL_LISTAR_BAJO_STOCK = "SELECT p.*, c.nombre as categoria_nombre, c.descripcion as categoria_descripcion " +
+            "FROM productos p " +
+            "INNER JOIN categorias c ON p.id_categoria = c.id_categoria " +
+            "WHERE p.cantidad_stock <= p.stock_minimo AND p.estado = TRUE ORDER BY p.cantidad_stock";
+
     private CategoriaDAO categoriaDAO;
 
     public ProductoDAO() {
@@ -121,13 +152,8 @@ public class ProductoDAO {
 
     // Buscar producto por código de barras
     public Producto buscarPorCodigoBarras(String codigoBarras) {
-        String sql = "SELECT p.*, c.nombre as categoria_nombre, c.descripcion as categoria_descripcion " +
-                "FROM productos p " +
-                "INNER JOIN categorias c ON p.id_categoria = c.id_categoria " +
-                "WHERE p.codigo_barras = ?";
-
         try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+             PreparedStatement pstmt = conn.prepareStatement(SQL_BUSCAR_POR_CODIGO_BARRAS)) {
 
             pstmt.setString(1, codigoBarras);
             ResultSet rs = pstmt.executeQuery();
@@ -147,14 +173,10 @@ public class ProductoDAO {
     // Listar todos los productos
     public List<Producto> listarTodos() {
         List<Producto> productos = new ArrayList<>();
-        String sql = "SELECT p.*, c.nombre as categoria_nombre, c.descripcion as categoria_descripcion " +
-                "FROM productos p " +
-                "INNER JOIN categorias c ON p.id_categoria = c.id_categoria " +
-                "ORDER BY p.nombre";
 
         try (Connection conn = DatabaseConnection.getConnection();
              Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+             ResultSet rs = stmt.executeQuery(SQL_LISTAR_TODOS)) {
 
             while (rs.next()) {
                 productos.add(mapearProducto(rs));
@@ -171,14 +193,10 @@ public class ProductoDAO {
     // Listar productos activos
     public List<Producto> listarActivos() {
         List<Producto> productos = new ArrayList<>();
-        String sql = "SELECT p.*, c.nombre as categoria_nombre, c.descripcion as categoria_descripcion " +
-                "FROM productos p " +
-                "INNER JOIN categorias c ON p.id_categoria = c.id_categoria " +
-                "WHERE p.estado = TRUE ORDER BY p.nombre";
 
         try (Connection conn = DatabaseConnection.getConnection();
              Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+             ResultSet rs = stmt.executeQuery(SQL_LISTAR_ACTIVOS)) {
 
             while (rs.next()) {
                 productos.add(mapearProducto(rs));
@@ -195,13 +213,9 @@ public class ProductoDAO {
     // Listar productos por categoría
     public List<Producto> listarPorCategoria(int idCategoria) {
         List<Producto> productos = new ArrayList<>();
-        String sql = "SELECT p.*, c.nombre as categoria_nombre, c.descripcion as categoria_descripcion " +
-                "FROM productos p " +
-                "INNER JOIN categorias c ON p.id_categoria = c.id_categoria " +
-                "WHERE p.id_categoria = ? AND p.estado = TRUE ORDER BY p.nombre";
 
         try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+             PreparedStatement pstmt = conn.prepareStatement(SQL_LISTAR_POR_CATEGORIA)) {
 
             pstmt.setInt(1, idCategoria);
             ResultSet rs = pstmt.executeQuery();
@@ -221,13 +235,9 @@ public class ProductoDAO {
     // Buscar productos por nombre
     public List<Producto> buscarPorNombre(String nombre) {
         List<Producto> productos = new ArrayList<>();
-        String sql = "SELECT p.*, c.nombre as categoria_nombre, c.descripcion as categoria_descripcion " +
-                "FROM productos p " +
-                "INNER JOIN categorias c ON p.id_categoria = c.id_categoria " +
-                "WHERE p.nombre LIKE ? AND p.estado = TRUE ORDER BY p.nombre";
 
         try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+             PreparedStatement pstmt = conn.prepareStatement(SQL_BUSCAR_POR_NOMBRE)) {
 
             pstmt.setString(1, "%" + nombre + "%");
             ResultSet rs = pstmt.executeQuery();
@@ -244,48 +254,47 @@ public class ProductoDAO {
         return productos;
     }
 
-    // Listar productos con bajo stock
-    public List<Producto> listarBajoStock() {
+    // Listar productos modificados desde una fecha (refresco incremental del caché).
+    // Se usa >= porque fecha_modificacion tiene resolución de segundos.
+    public List<Producto> listarModificadosDesde(LocalDateTime desde) {
         List<Producto> productos = new ArrayList<>();
-        String sql = "SELECT p.*, c.nombre as categoria_nombre, c.descripcion as categoria_descripcion " +
-                "FROM productos p " +
-                "INNER JOIN categorias c ON p.id_categoria = c.id_categoria " +
-                "WHERE p.cantidad_stock <= p.stock_minimo AND p.estado = TRUE ORDER BY p.cantidad_stock";
 
         try (Connection conn = DatabaseConnection.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+             PreparedStatement pstmt = conn.prepareStatement(SQL_LISTAR_MODIFICADOS_DESDE)) {
+
+            pstmt.setTimestamp(1, Timestamp.valueOf(desde));
+            ResultSet rs = pstmt.executeQuery();
 
             while (rs.next()) {
                 productos.add(mapearProducto(rs));
             }
 
         } catch (SQLException e) {
-            System.err.println("Error al listar productos con bajo stock: " + e.getMessage());
+            System.err.println("Error al listar productos modificados: " + e.getMessage());
             e.printStackTrace();
         }
 
         return productos;
     }
 
-    // Actualizar stock de producto
-    public boolean actualizarStock(int idProducto, int nuevoStock) {
-        String sql = "UPDATE productos SET cantidad_stock = ? WHERE id_producto = ?";
+    // Listar productos con bajo stock
+    public List<Producto> listarBajoStock() {
+        List<Producto> productos = new ArrayList<>();
 
         try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setInt(1, nuevoStock);
-            pstmt.setInt(2, idProducto);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(SQL_LISTAR_BAJO_STOCK)) {
 
-            return pstmt.executeUpdate() > 0;
+            while (rs.next()) {
+                productos.add(mapearProducto(rs));
+            }
 
         } catch (SQLException e) {
-            System.err.println("Error al actualizar stock: " + e.getMessage());
+            System.err.println("Error al listar productos con bajo stock: " + e.getMessage());
             e.printStackTrace();
         }
 
-        return false;
+        return productos;
     }
 
     // Verificar si el código de barras ya existe
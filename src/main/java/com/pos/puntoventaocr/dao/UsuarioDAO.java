@@ -11,16 +11,15 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class UsuarioDAO {
+    static final String SQL_AUTENTICAR = "SELECT u.*, r.nombre_rol, r.descripcion as rol_descripcion " +
+            "FROM usuarios u " +
+            "INNER JOIN roles r ON u.id_rol = r.id_rol " +
+            "WHERE u.nombre_usuario = ?";
 
     // Autentica un usuario en el sistema
     public Usuario autenticar(String nombreUsuario, String password) {
-        String sql = "SELECT u.*, r.nombre_rol, r.descripcion as rol_descripcion " +
-                "FROM usuarios u " +
-                "INNER JOIN roles r ON u.id_rol = r.id_rol " +
-                "WHERE u.nombre_usuario = ?";
-
         try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+             PreparedStatement pstmt = conn.prepareStatement(SQL_AUTENTICAR)) {
 
             pstmt.setString(1, nombreUsuario);
             ResultSet rs = pstmt.executeQuery();
@@ -8,74 +8,130 @@ import com.pos.puntoventaocr.models.Producto;
 import com.pos.puntoventaocr.models.Categoria;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.sql.*;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class VentaDAO {
+    // Máximo de ids por consulta IN (...) al cargar detalles
+    private static final int TAMANO_BLOQUE_DETALLES = 500;
+    // Connector/J transmite fila por fila con este fetch size en ResultSets forward-only
+    private static final int FETCH_SIZE_STREAMING = Integer.MIN_VALUE;
+
+    // Consultas visibles en el paquete: VerificadorPlanesTest revisa con EXPLAIN que usen índices
+    static final String SQL_BUSCAR_POR_NUMERO = "SELECT v.*, u.nombre_usuario, u.nombre, u.apellidos " +
+            "FROM ventas v " +
+            "INNER JOIN usuarios u ON v.id_usuario = u.id_usuario " +
+            "WHERE v.numero_venta = ?";
+    static final String SQL_TRANSFERENCIAS_POR_CONCILIAR = "SELECT v.*, u.nombre_usuario, u.nombre, u.apellidos " +
+            "FROM ventas v " +
+            "INNER JOIN usuarios u ON v.id_usuario = u.id_usuario " +
+            "WHERE v.metodo_pago = 'TRANSFERENCIA' AND v.estado <> 'ANULADA' " +
+            "AND v.fecha_venta >= ? AND v.fecha_venta <= ? " +
+            "AND NOT EXISTS (SELECT 1 FROM comprobantes_ocr co " +
+            "WHERE co.id_venta = v.id_venta AND co.estado_validacion = 'VALIDADO') " +
+            "ORDER BY v.fecha_venta, v.id_venta";
+    static final String SQL_ESTADISTICAS = "SELECT SUM(num_ventas) as total_ventas, SUM(total) as total_ingresos FROM (" +
+            "SELECT num_ventas, total FROM resumen_ventas_dia WHERE fecha BETWEEN ? AND ? " +
+            "UNION ALL " +
+            "SELECT 1, total FROM ventas WHERE estado = 'COMPLETADA' " +
+            "AND ((fecha_venta >= ? AND fecha_venta < ?) OR (fecha_venta >= ? AND fecha_venta <= ?))" +
+            ") r";
+    static final String SQL_PRODUCTOS_MAS_VENDIDOS = "SELECT p.nombre, SUM(r.cantidad) as total_vendido, " +
+            "SUM(r.total) as total_ingresos FROM (" +
+            "SELECT id_producto, cantidad, total FROM resumen_productos_dia WHERE fecha BETWEEN ? AND ? " +
+            "UNION ALL " +
+            "SELECT dv.id_producto, dv.cantidad, dv.subtotal FROM detalle_ventas dv " +
+            "INNER JOIN ventas v ON dv.id_venta = v.id_venta " +
+            "WHERE v.estado = 'COMPLETADA' " +
+            "AND ((v.fecha_venta >= ? AND v.fecha_venta < ?) OR (v.fecha_venta >= ? AND v.fecha_venta <= ?))" +
+            ") r " +
+            "INNER JOIN productos p ON r.id_producto = p.id_producto " +
+            "GROUP BY p.id_producto, p.nombre " +
+            "HAVING total_vendido > 0 " +
+            "ORDER BY total_vendido DESC " +
+            "LIMIT ?";
+    // Resúmenes diarios. VALUES(col) en ON DUPLICATE KEY UPDATE está obsoleto desde MySQL 8.0.20: la fila
+    // nueva se nombra con el alias de la tabla derivada (nuevo.col), que además admite el GROUP BY del SELECT
+    static final String SQL_RESUMEN_VENTA = "INSERT INTO resumen_ventas_dia " +
+            "(fecha, id_usuario, metodo_pago, num_ventas, subtotal, impuestos, total) " +
+            "SELECT * FROM (SELECT DATE(fecha_venta) AS fecha, id_usuario, metodo_pago, ? AS num_ventas, " +
+            "? * subtotal AS subtotal, ? * impuestos AS impuestos, ? * total AS total " +
+            "FROM ventas WHERE id_venta = ?) AS nuevo " +
+            "ON DUPLICATE KEY UPDATE num_ventas = resumen_ventas_dia.num_ventas + nuevo.num_ventas, " +
+            "subtotal = resumen_ventas_dia.subtotal + nuevo.subtotal, " +
+            "impuestos = resumen_ventas_dia.impuestos + nuevo.impuestos, " +
+            "total = resumen_ventas_dia.total + nuevo.total";
+    static final String SQL_RESUMEN_PRODUCTOS = "INSERT INTO resumen_productos_dia (fecha, id_producto, cantidad, total) " +
+            "SELECT * FROM (SELECT DATE(v.fecha_venta) AS fecha, dv.id_producto, " +
+            "? * SUM(dv.cantidad) AS cantidad, ? * SUM(dv.subtotal) AS total " +
+            "FROM detalle_ventas dv INNER JOIN ventas v ON dv.id_venta = v.id_venta " +
+            "WHERE v.id_venta = ? GROUP BY DATE(v.fecha_venta), dv.id_producto) AS nuevo " +
+            "ON DUPLICATE KEY UPDATE cantidad = resumen_productos_dia.cantidad + nuevo.cantidad, " +
+            "total = resumen_productos_dia.total + nuevo.total";
+
     private UsuarioDAO usuarioDAO;
     private ProductoDAO productoDAO;
+    private String ultimoError;
+    private boolean sinConexion;
 
     public VentaDAO() {
         this.usuarioDAO = new UsuarioDAO();
         this.productoDAO = new ProductoDAO();
     }
 
-    // Crear nueva venta
+    // Crear nueva venta (encabezado, detalles y descuento de stock en una sola transacción).
+    // El caché de productos lo actualiza quien llama, en la capa de servicios.
     public boolean crear(Venta venta) {
+        ultimoError = null;
+        sinConexion = false;
         Connection conn = null;
         try {
             conn = DatabaseConnection.getConnection();
+            if (conn == null) {
+                ultimoError = "Sin conexión a la base de datos";
+                sinConexion = true;
+                return false;
+            }
             conn.setAutoCommit(false);
 
-            // Insertar venta
-            String sqlVenta = "INSERT INTO ventas (numero_venta, fecha_venta, id_usuario, metodo_pago, " +
-                    "subtotal, impuestos, total, estado, observaciones, referencia_transferencia) " +
-                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-
-            PreparedStatement pstmtVenta = conn.prepareStatement(sqlVenta, Statement.RETURN_GENERATED_KEYS);
-            pstmtVenta.setString(1, venta.getNumeroVenta());
-            pstmtVenta.setTimestamp(2, Timestamp.valueOf(venta.getFechaVenta()));
-            pstmtVenta.setInt(3, venta.getUsuario().getIdUsuario());
-            pstmtVenta.setString(4, venta.getMetodoPago());
-            pstmtVenta.setBigDecimal(5, venta.getSubtotal());
-            pstmtVenta.setBigDecimal(6, venta.getImpuestos());
-            pstmtVenta.setBigDecimal(7, venta.getTotal());
-            pstmtVenta.setString(8, venta.getEstado());
-            pstmtVenta.setString(9, venta.getObservaciones());
-            pstmtVenta.setString(10, venta.getReferenciaTransferencia());
-
-            int filasVenta = pstmtVenta.executeUpdate();
-
-            if (filasVenta > 0) {
-                ResultSet rs = pstmtVenta.getGeneratedKeys();
-                if (rs.next()) {
-                    venta.setIdVenta(rs.getInt(1));
-                }
-
-                // Insertar detalles de venta
-                String sqlDetalle = "INSERT INTO detalle_ventas (id_venta, id_producto, cantidad, " +
-                        "precio_unitario, subtotal, descuento) VALUES (?, ?, ?, ?, ?, ?)";
+            if (insertarVenta(conn, venta)) {
+                // Descontar stock en la misma transacción
+                descontarStock(conn, venta);
+                acumularResumen(conn, venta);
 
-                PreparedStatement pstmtDetalle = conn.prepareStatement(sqlDetalle);
-
-                for (DetalleVenta detalle : venta.getDetalles()) {
-                    pstmtDetalle.setInt(1, venta.getIdVenta());
-                    pstmtDetalle.setInt(2, detalle.getProducto().getIdProducto());
-                    pstmtDetalle.setInt(3, detalle.getCantidad());
-                    pstmtDetalle.setBigDecimal(4, detalle.getPrecioUnitario());
-                    pstmtDetalle.setBigDecimal(5, detalle.getSubtotal());
-                    pstmtDetalle.setBigDecimal(6, detalle.getDescuento());
-                    pstmtDetalle.addBatch();
-                }
-
-                pstmtDetalle.executeBatch();
                 conn.commit();
                 return true;
             }
 
+        } catch (StockInsuficienteException e) {
+            ultimoError = e.getMessage();
+            System.err.println("Venta cancelada: " + e.getMessage());
+            try {
+                conn.rollback();
+            } catch (SQLException rollbackEx) {
+                System.err.println("Error en rollback: " + rollbackEx.getMessage());
+            }
         } catch (SQLException e) {
+            ultimoError = e.getMessage();
+            sinConexion = esErrorConexion(e);
             System.err.println("Error al crear venta: " + e.getMessage());
             e.printStackTrace();
             try {
@@ -89,7 +145,77 @@ public class VentaDAO {
             try {
                 if (conn != null) {
                     conn.setAutoCommit(true);
+                    conn.close(); // Devolver la conexión al pool
+                }
+            } catch (SQLException e) {
+                System.err.println("Error al restaurar autocommit: " + e.getMessage());
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Registra una venta que ya se cobró sin conexión (diario local de ventas).
+     * Es idempotente por numero_venta: si ya existe no hace nada y devuelve true.
+     * El stock se descuenta sin condición, porque la mercancía ya se entregó.
+     */
+    public boolean registrarDesdeDiario(Venta venta) {
+        ultimoError = null;
+        sinConexion = false;
+        Connection conn = DatabaseConnection.getConnection();
+        if (conn == null) {
+            ultimoError = "Sin conexión a la base de datos";
+            sinConexion = true;
+            return false;
+        }
+
+        try {
+            if (existeNumeroVenta(conn, venta.getNumeroVenta())) {
+                return true;
+            }
+
+            conn.setAutoCommit(false);
+            try {
+                if (!insertarVenta(conn, venta)) {
+                    conn.rollback();
+                    return false;
+                }
+
+                String sql = "UPDATE productos SET cantidad_stock = cantidad_stock - ? WHERE id_producto = ?";
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    for (DetalleVenta detalle : venta.getDetalles()) {
+                        pstmt.setInt(1, detalle.getCantidad());
+                        pstmt.setInt(2, detalle.getProducto().getIdProducto());
+                        pstmt.addBatch();
+                    }
+                    pstmt.executeBatch();
                 }
+                acumularResumen(conn, venta);
+
+                conn.commit();
+                return true;
+
+            } catch (SQLIntegrityConstraintViolationException e) {
+                // Otra terminal (o un reintento anterior sin confirmación) ya la registró
+                conn.rollback();
+                if (existeNumeroVenta(conn, venta.getNumeroVenta())) {
+                    return true;
+                }
+                throw e;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+
+        } catch (SQLException e) {
+            ultimoError = e.getMessage();
+            sinConexion = esErrorConexion(e);
+            System.err.println("Error al registrar venta " + venta.getNumeroVenta() + " del diario: " + e.getMessage());
+        } finally {
+            try {
+                conn.setAutoCommit(true);
+                conn.close(); // Devolver la conexión al pool
             } catch (SQLException e) {
                 System.err.println("Error al restaurar autocommit: " + e.getMessage());
             }
@@ -113,7 +239,7 @@ public class VentaDAO {
 
             if (rs.next()) {
                 Venta venta = mapearVenta(rs);
-                cargarDetallesVenta(venta);
+                cargarDetallesVentas(conn, Collections.singletonList(venta));
                 return venta;
             }
 
@@ -127,20 +253,15 @@ public class VentaDAO {
 
     // Buscar venta por número
     public Venta buscarPorNumero(String numeroVenta) {
-        String sql = "SELECT v.*, u.nombre_usuario, u.nombre, u.apellidos " +
-                "FROM ventas v " +
-                "INNER JOIN usuarios u ON v.id_usuario = u.id_usuario " +
-                "WHERE v.numero_venta = ?";
-
         try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+             PreparedStatement pstmt = conn.prepareStatement(SQL_BUSCAR_POR_NUMERO)) {
 
             pstmt.setString(1, numeroVenta);
             ResultSet rs = pstmt.executeQuery();
 
             if (rs.next()) {
                 Venta venta = mapearVenta(rs);
-                cargarDetallesVenta(venta);
+                cargarDetallesVentas(conn, Collections.singletonList(venta));
                 return venta;
             }
 
@@ -167,70 +288,174 @@ public class VentaDAO {
         return listarVentas(null, null, idUsuario);
     }
 
+    // Listar solo encabezados de ventas por fecha (pantallas que no muestran partidas)
+    public List<Venta> listarEncabezadosPorFecha(LocalDateTime fechaInicio, LocalDateTime fechaFin) {
+        return listarVentas(fechaInicio, fechaFin, null, false);
+    }
+
     // Listar ventas con filtros
     public List<Venta> listarVentas(LocalDateTime fechaInicio, LocalDateTime fechaFin, Integer idUsuario) {
+        return listarVentas(fechaInicio, fechaFin, idUsuario, true);
+    }
+
+    // Listar ventas con filtros; los detalles se cargan en bloque (una consulta para todo el conjunto)
+    public List<Venta> listarVentas(LocalDateTime fechaInicio, LocalDateTime fechaFin, Integer idUsuario,
+                                    boolean incluirDetalles) {
         List<Venta> ventas = new ArrayList<>();
-        StringBuilder sql = new StringBuilder(
-                "SELECT v.*, u.nombre_usuario, u.nombre, u.apellidos " +
-                        "FROM ventas v " +
-                        "INNER JOIN usuarios u ON v.id_usuario = u.id_usuario " +
-                        "WHERE 1=1 ");
+        String sql = construirConsultaVentas(fechaInicio, fechaFin, idUsuario, null, 0);
 
-        if (fechaInicio != null) {
-            sql.append("AND v.fecha_venta >= ? ");
-        }
-        if (fechaFin != null) {
-            sql.append("AND v.fecha_venta <= ? ");
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            asignarParametrosConsulta(pstmt, fechaInicio, fechaFin, idUsuario, null, 0);
+            ResultSet rs = pstmt.executeQuery();
+
+            while (rs.next()) {
+                ventas.add(mapearVenta(rs));
+            }
+
+            if (incluirDetalles) {
+                cargarDetallesVentas(conn, ventas);
+            }
+
+        } catch (SQLException e) {
+            System.err.println("Error al listar ventas: " + e.getMessage());
+            e.printStackTrace();
         }
-        if (idUsuario != null) {
-            sql.append("AND v.id_usuario = ? ");
+
+        return ventas;
+    }
+
+    // Listar una página de ventas con paginación por cursor sobre (fecha_venta, id_venta).
+    // Pasar cursor null para la primera página y pagina.getSiguienteCursor() para las siguientes.
+    public PaginaVentas listarPagina(LocalDateTime fechaInicio, LocalDateTime fechaFin, Integer idUsuario,
+                                     CursorVenta cursor, int tamanoPagina, boolean incluirDetalles) {
+        if (tamanoPagina <= 0) {
+            throw new IllegalArgumentException("El tamaño de página debe ser mayor a 0");
         }
 
-        sql.append("ORDER BY v.fecha_venta DESC");
+        List<Venta> ventas = new ArrayList<>(tamanoPagina + 1);
+        // Se pide una fila extra para saber si hay más páginas sin un COUNT(*)
+        String sql = construirConsultaVentas(fechaInicio, fechaFin, idUsuario, cursor, tamanoPagina + 1);
 
         try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
-            int paramIndex = 1;
-            if (fechaInicio != null) {
-                pstmt.setTimestamp(paramIndex++, Timestamp.valueOf(fechaInicio));
-            }
-            if (fechaFin != null) {
-                pstmt.setTimestamp(paramIndex++, Timestamp.valueOf(fechaFin));
+            asignarParametrosConsulta(pstmt, fechaInicio, fechaFin, idUsuario, cursor, tamanoPagina + 1);
+            ResultSet rs = pstmt.executeQuery();
+
+            while (rs.next()) {
+                ventas.add(mapearVenta(rs));
             }
-            if (idUsuario != null) {
-                pstmt.setInt(paramIndex++, idUsuario);
+
+            boolean hayMas = ventas.size() > tamanoPagina;
+            if (hayMas) {
+                ventas.remove(ventas.size() - 1);
             }
 
-            ResultSet rs = pstmt.executeQuery();
+            if (incluirDetalles) {
+                cargarDetallesVentas(conn, ventas);
+            }
 
-            while (rs.next()) {
-                Venta venta = mapearVenta(rs);
-                cargarDetallesVenta(venta);
-                ventas.add(venta);
+            CursorVenta siguiente = null;
+            if (hayMas) {
+                Venta ultima = ventas.get(ventas.size() - 1);
+                siguiente = new CursorVenta(ultima.getFechaVenta(), ultima.getIdVenta());
             }
+            return new PaginaVentas(ventas, siguiente);
 
         } catch (SQLException e) {
-            System.err.println("Error al listar ventas: " + e.getMessage());
+            System.err.println("Error al listar página de ventas: " + e.getMessage());
             e.printStackTrace();
         }
 
-        return ventas;
+        return new PaginaVentas(ventas, null);
+    }
+
+    // Recorrer ventas sin materializar el historial completo en memoria.
+    // El Stream debe cerrarse (try-with-resources) para liberar la conexión.
+    public Stream<Venta> streamVentas(LocalDateTime fechaInicio, LocalDateTime fechaFin, Integer idUsuario,
+                                      boolean incluirDetalles) {
+        IteradorVentas iterador = new IteradorVentas(fechaInicio, fechaFin, idUsuario, incluirDetalles);
+        return StreamSupport.stream(
+                        Spliterators.spliteratorUnknownSize(iterador, Spliterator.ORDERED | Spliterator.NONNULL),
+                        false)
+                .onClose(iterador::close);
+    }
+
+    // Variante con callback de streamVentas; la conexión se libera al terminar
+    public void recorrerVentas(LocalDateTime fechaInicio, LocalDateTime fechaFin, Integer idUsuario,
+                               boolean incluirDetalles, Consumer<Venta> consumidor) {
+        try (Stream<Venta> ventas = streamVentas(fechaInicio, fechaFin, idUsuario, incluirDetalles)) {
+            ventas.forEach(consumidor);
+        }
+    }
+
+    // Recorre, fila por fila y sin detalles, las ventas por transferencia no anuladas del intervalo
+    // que aún no tienen un comprobante validado (las que quedan por conciliar)
+    public void recorrerTransferenciasPorConciliar(LocalDateTime fechaInicio, LocalDateTime fechaFin,
+                                                   Consumer<Venta> consumidor) {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(SQL_TRANSFERENCIAS_POR_CONCILIAR, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            pstmt.setFetchSize(FETCH_SIZE_STREAMING);
+            pstmt.setTimestamp(1, Timestamp.valueOf(fechaInicio));
+            pstmt.setTimestamp(2, Timestamp.valueOf(fechaFin));
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    consumidor.accept(mapearVenta(rs));
+                }
+            }
+
+        } catch (SQLException e) {
+            System.err.println("Error al recorrer ventas por transferencia: " + e.getMessage());
+            e.printStackTrace();
+        }
     }
 
-    // Anular venta
+    // Anular venta; si estaba completada se resta de los resúmenes diarios en la misma transacción
     public boolean anular(int idVenta, String motivo, int usuarioAnula) {
         String sql = "UPDATE ventas SET estado = 'ANULADA', motivo_anulacion = ?, " +
                 "fecha_anulacion = CURRENT_TIMESTAMP, anulado_por = ? WHERE id_venta = ?";
 
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                String estadoAnterior = null;
+                try (PreparedStatement pstmt = conn.prepareStatement(
+                        "SELECT estado FROM ventas WHERE id_venta = ? FOR UPDATE")) {
+                    pstmt.setInt(1, idVenta);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        if (rs.next()) {
+                            estadoAnterior = rs.getString("estado");
+                        }
+                    }
+                }
+                if (estadoAnterior == null) {
+                    conn.rollback();
+                    return false;
+                }
 
-            pstmt.setString(1, motivo);
-            pstmt.setInt(2, usuarioAnula);
-            pstmt.setInt(3, idVenta);
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setString(1, motivo);
+                    pstmt.setInt(2, usuarioAnula);
+                    pstmt.setInt(3, idVenta);
+                    pstmt.executeUpdate();
+                }
+                if ("COMPLETADA".equals(estadoAnterior)) {
+                    aplicarResumen(conn, idVenta, -1);
+                }
+
+                conn.commit();
+                return true;
 
-            return pstmt.executeUpdate() > 0;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
 
         } catch (SQLException e) {
             System.err.println("Error al anular venta: " + e.getMessage());
@@ -240,25 +465,32 @@ public class VentaDAO {
         return false;
     }
 
-    // Obtener estadísticas de ventas
-    public VentaEstadisticas obtenerEstadisticas(LocalDateTime fechaInicio, LocalDateTime fechaFin) {
-        String sql = "SELECT COUNT(*) as total_ventas, SUM(total) as total_ingresos, " +
-                "AVG(total) as promedio_venta FROM ventas " +
-                "WHERE fecha_venta BETWEEN ? AND ? AND estado = 'COMPLETADA'";
+    // Mensaje del último error de crear() (por ejemplo, stock insuficiente)
+    public String getUltimoError() {
+        return ultimoError;
+    }
 
+    // Indica si el último crear() o registrarDesdeDiario() falló por no poder hablar con la BD
+    public boolean isSinConexion() {
+        return sinConexion;
+    }
+
+    // Obtener estadísticas de ventas: días completos desde resumen_ventas_dia y, de los días
+    // parciales en los extremos del rango, directo de ventas
+    public VentaEstadisticas obtenerEstadisticas(LocalDateTime fechaInicio, LocalDateTime fechaFin) {
         try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+             PreparedStatement pstmt = conn.prepareStatement(SQL_ESTADISTICAS)) {
 
-            pstmt.setTimestamp(1, Timestamp.valueOf(fechaInicio));
-            pstmt.setTimestamp(2, Timestamp.valueOf(fechaFin));
+            new RangoResumen(fechaInicio, fechaFin).asignarParametros(pstmt, 1);
             ResultSet rs = pstmt.executeQuery();
 
             if (rs.next()) {
-                return new VentaEstadisticas(
-                        rs.getInt("total_ventas"),
-                        rs.getBigDecimal("total_ingresos"),
-                        rs.getBigDecimal("promedio_venta")
-                );
+                int totalVentas = rs.getInt("total_ventas");
+                BigDecimal totalIngresos = rs.getBigDecimal("total_ingresos");
+                BigDecimal promedio = totalVentas > 0 && totalIngresos != null
+                        ? totalIngresos.divide(BigDecimal.valueOf(totalVentas), 2, RoundingMode.HALF_UP)
+                        : BigDecimal.ZERO;
+                return new VentaEstadisticas(totalVentas, totalIngresos, promedio);
             }
 
         } catch (SQLException e) {
@@ -269,31 +501,21 @@ public class VentaDAO {
         return new VentaEstadisticas(0, BigDecimal.ZERO, BigDecimal.ZERO);
     }
 
-    // Obtener productos más vendidos
+    // Obtener productos más vendidos (mismo esquema: resumen_productos_dia más los días parciales)
     public List<ProductoVendido> obtenerProductosMasVendidos(LocalDateTime fechaInicio, LocalDateTime fechaFin, int limite) {
         List<ProductoVendido> productos = new ArrayList<>();
-        String sql = "SELECT p.nombre, SUM(dv.cantidad) as total_vendido, " +
-                "SUM(dv.subtotal) as total_ingresos " +
-                "FROM detalle_ventas dv " +
-                "INNER JOIN productos p ON dv.id_producto = p.id_producto " +
-                "INNER JOIN ventas v ON dv.id_venta = v.id_venta " +
-                "WHERE v.fecha_venta BETWEEN ? AND ? AND v.estado = 'COMPLETADA' " +
-                "GROUP BY p.id_producto, p.nombre " +
-                "ORDER BY total_vendido DESC " +
-                "LIMIT ?";
 
         try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+             PreparedStatement pstmt = conn.prepareStatement(SQL_PRODUCTOS_MAS_VENDIDOS)) {
 
-            pstmt.setTimestamp(1, Timestamp.valueOf(fechaInicio));
-            pstmt.setTimestamp(2, Timestamp.valueOf(fechaFin));
-            pstmt.setInt(3, limite);
+            int siguiente = new RangoResumen(fechaInicio, fechaFin).asignarParametros(pstmt, 1);
+            pstmt.setInt(siguiente, limite);
             ResultSet rs = pstmt.executeQuery();
 
             while (rs.next()) {
                 productos.add(new ProductoVendido(
                         rs.getString("nombre"),
-                        rs.getInt("total_vendido"),
+                        rs.getBigDecimal("total_vendido"),
                         rs.getBigDecimal("total_ingresos")
                 ));
             }
@@ -307,30 +529,227 @@ public class VentaDAO {
     }
 
     // Métodos privados auxiliares
-    private void cargarDetallesVenta(Venta venta) {
-        String sql = "SELECT dv.*, p.nombre, p.codigo_barras, c.nombre as categoria_nombre " +
+
+    // Suma la venta recién insertada a los resúmenes diarios (solo cuentan las completadas)
+    private void acumularResumen(Connection conn, Venta venta) throws SQLException {
+        if ("COMPLETADA".equals(venta.getEstado())) {
+            aplicarResumen(conn, venta.getIdVenta(), 1);
+        }
+    }
+
+    // Aplica una venta a los resúmenes del día de la venta con el signo indicado (+1 alta, -1 anulación)
+    private void aplicarResumen(Connection conn, int idVenta, int signo) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_RESUMEN_VENTA)) {
+            for (int i = 1; i <= 4; i++) {
+                pstmt.setInt(i, signo);
+            }
+            pstmt.setInt(5, idVenta);
+            pstmt.executeUpdate();
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_RESUMEN_PRODUCTOS)) {
+            pstmt.setInt(1, signo);
+            pstmt.setInt(2, signo);
+            pstmt.setInt(3, idVenta);
+            pstmt.executeUpdate();
+        }
+    }
+
+    // Inserta encabezado y detalles; asigna el id generado a la venta
+    private boolean insertarVenta(Connection conn, Venta venta) throws SQLException {
+        String sqlVenta = "INSERT INTO ventas (numero_venta, fecha_venta, id_usuario, metodo_pago, " +
+                "subtotal, impuestos, total, estado, observaciones, referencia_transferencia) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+        try (PreparedStatement pstmtVenta = conn.prepareStatement(sqlVenta, Statement.RETURN_GENERATED_KEYS)) {
+            pstmtVenta.setString(1, venta.getNumeroVenta());
+            pstmtVenta.setTimestamp(2, Timestamp.valueOf(venta.getFechaVenta()));
+            pstmtVenta.setInt(3, venta.getUsuario().getIdUsuario());
+            pstmtVenta.setString(4, venta.getMetodoPago());
+            pstmtVenta.setBigDecimal(5, venta.getSubtotal());
+            pstmtVenta.setBigDecimal(6, venta.getImpuestos());
+            pstmtVenta.setBigDecimal(7, venta.getTotal());
+            pstmtVenta.setString(8, venta.getEstado());
+            pstmtVenta.setString(9, venta.getObservaciones());
+            pstmtVenta.setString(10, venta.getReferenciaTransferencia());
+
+            if (pstmtVenta.executeUpdate() == 0) {
+                return false;
+            }
+            try (ResultSet rs = pstmtVenta.getGeneratedKeys()) {
+                if (rs.next()) {
+                    venta.setIdVenta(rs.getInt(1));
+                }
+            }
+        }
+
+        // Insertar detalles de venta
+        String sqlDetalle = "INSERT INTO detalle_ventas (id_venta, id_producto, cantidad, " +
+                "precio_unitario, subtotal, descuento) VALUES (?, ?, ?, ?, ?, ?)";
+
+        try (PreparedStatement pstmtDetalle = conn.prepareStatement(sqlDetalle)) {
+            for (DetalleVenta detalle : venta.getDetalles()) {
+                pstmtDetalle.setInt(1, venta.getIdVenta());
+                pstmtDetalle.setInt(2, detalle.getProducto().getIdProducto());
+                pstmtDetalle.setInt(3, detalle.getCantidad());
+                pstmtDetalle.setBigDecimal(4, detalle.getPrecioUnitario());
+                pstmtDetalle.setBigDecimal(5, detalle.getSubtotal());
+                pstmtDetalle.setBigDecimal(6, detalle.getDescuento());
+                pstmtDetalle.addBatch();
+            }
+            pstmtDetalle.executeBatch();
+        }
+        return true;
+    }
+
+    private boolean existeNumeroVenta(Connection conn, String numeroVenta) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT 1 FROM ventas WHERE numero_venta = ?")) {
+            pstmt.setString(1, numeroVenta);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    // Errores de comunicación (SQLState clase 08), de conexión cerrada o transitorios (bloqueo mutuo,
+    // espera de bloqueo agotada), a diferencia de errores de datos: reintentar la venta puede funcionar
+    private static boolean esErrorConexion(SQLException e) {
+        String estado = e.getSQLState();
+        return (estado != null && estado.startsWith("08"))
+                || e instanceof SQLTransientException
+                || e instanceof SQLNonTransientConnectionException
+                || e instanceof SQLRecoverableException;
+    }
+
+    // Descuenta el stock de todas las partidas con un solo batch condicionado a que alcance.
+    // Los productos se actualizan en orden de id para que terminales concurrentes tomen
+    // los bloqueos de fila en el mismo orden.
+    private void descontarStock(Connection conn, Venta venta) throws SQLException {
+        Map<Integer, Integer> cantidades = new TreeMap<>();
+        Map<Integer, String> nombres = new HashMap<>();
+        for (DetalleVenta detalle : venta.getDetalles()) {
+            Producto producto = detalle.getProducto();
+            cantidades.merge(producto.getIdProducto(), detalle.getCantidad(), Integer::sum);
+            nombres.put(producto.getIdProducto(), producto.getNombre());
+        }
+
+        String sql = "UPDATE productos SET cantidad_stock = cantidad_stock - ? " +
+                "WHERE id_producto = ? AND cantidad_stock >= ?";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            List<Integer> ids = new ArrayList<>(cantidades.keySet());
+            for (Integer idProducto : ids) {
+                int cantidad = cantidades.get(idProducto);
+                pstmt.setInt(1, cantidad);
+                pstmt.setInt(2, idProducto);
+                pstmt.setInt(3, cantidad);
+                pstmt.addBatch();
+            }
+
+            int[] resultados = pstmt.executeBatch();
+            for (int i = 0; i < resultados.length; i++) {
+                if (resultados[i] == 0) {
+                    throw new StockInsuficienteException("Stock insuficiente para: " + nombres.get(ids.get(i)));
+                }
+            }
+        }
+    }
+
+    // Consulta de encabezados ordenada por (fecha_venta, id_venta) descendente.
+    // Si hay cursor se aplica la condición de keyset; limite <= 0 significa sin LIMIT.
+    static String construirConsultaVentas(LocalDateTime fechaInicio, LocalDateTime fechaFin, Integer idUsuario,
+                                          CursorVenta cursor, int limite) {
+        StringBuilder sql = new StringBuilder(
+                "SELECT v.*, u.nombre_usuario, u.nombre, u.apellidos " +
+                        "FROM ventas v " +
+                        "INNER JOIN usuarios u ON v.id_usuario = u.id_usuario " +
+                        "WHERE 1=1 ");
+
+        if (fechaInicio != null) {
+            sql.append("AND v.fecha_venta >= ? ");
+        }
+        if (fechaFin != null) {
+            sql.append("AND v.fecha_venta <= ? ");
+        }
+        if (idUsuario != null) {
+            sql.append("AND v.id_usuario = ? ");
+        }
+        if (cursor != null) {
+            sql.append("AND (v.fecha_venta < ? OR (v.fecha_venta = ? AND v.id_venta < ?)) ");
+        }
+
+        sql.append("ORDER BY v.fecha_venta DESC, v.id_venta DESC");
+
+        if (limite > 0) {
+            sql.append(" LIMIT ?");
+        }
+
+        return sql.toString();
+    }
+
+    // Detalles de un bloque de ventas: tantos parámetros como ids
+    static String construirConsultaDetalles(int cantidadIds) {
+        return "SELECT dv.*, p.nombre, p.codigo_barras, c.nombre as categoria_nombre " +
                 "FROM detalle_ventas dv " +
                 "INNER JOIN productos p ON dv.id_producto = p.id_producto " +
                 "INNER JOIN categorias c ON p.id_categoria = c.id_categoria " +
-                "WHERE dv.id_venta = ?";
+                "WHERE dv.id_venta IN (" + String.join(",", Collections.nCopies(cantidadIds, "?")) + ") " +
+                "ORDER BY dv.id_venta, dv.id_detalle";
+    }
 
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+    private void asignarParametrosConsulta(PreparedStatement pstmt, LocalDateTime fechaInicio, LocalDateTime fechaFin,
+                                           Integer idUsuario, CursorVenta cursor, int limite) throws SQLException {
+        int paramIndex = 1;
+        if (fechaInicio != null) {
+            pstmt.setTimestamp(paramIndex++, Timestamp.valueOf(fechaInicio));
+        }
+        if (fechaFin != null) {
+            pstmt.setTimestamp(paramIndex++, Timestamp.valueOf(fechaFin));
+        }
+        if (idUsuario != null) {
+            pstmt.setInt(paramIndex++, idUsuario);
+        }
+        if (cursor != null) {
+            Timestamp fechaCursor = Timestamp.valueOf(cursor.getFechaVenta());
+            pstmt.setTimestamp(paramIndex++, fechaCursor);
+            pstmt.setTimestamp(paramIndex++, fechaCursor);
+            pstmt.setInt(paramIndex++, cursor.getIdVenta());
+        }
+        if (limite > 0) {
+            pstmt.setInt(paramIndex++, limite);
+        }
+    }
 
-            pstmt.setInt(1, venta.getIdVenta());
-            ResultSet rs = pstmt.executeQuery();
+    // Carga los detalles de todas las ventas con una consulta IN (...) por bloque de ids
+    private void cargarDetallesVentas(Connection conn, List<Venta> ventas) throws SQLException {
+        if (ventas.isEmpty()) {
+            return;
+        }
 
-            List<DetalleVenta> detalles = new ArrayList<>();
-            while (rs.next()) {
-                DetalleVenta detalle = mapearDetalleVenta(rs);
-                detalles.add(detalle);
-            }
+        Map<Integer, Venta> ventasPorId = new HashMap<>(ventas.size() * 2);
+        for (Venta venta : ventas) {
+            venta.setDetalles(new ArrayList<>());
+            ventasPorId.put(venta.getIdVenta(), venta);
+        }
 
-            venta.setDetalles(detalles);
+        List<Integer> ids = new ArrayList<>(ventasPorId.keySet());
+        for (int inicio = 0; inicio < ids.size(); inicio += TAMANO_BLOQUE_DETALLES) {
+            List<Integer> bloque = ids.subList(inicio, Math.min(inicio + TAMANO_BLOQUE_DETALLES, ids.size()));
 
-        } catch (SQLException e) {
-            System.err.println("Error al cargar detalles de venta: " + e.getMessage());
-            e.printStackTrace();
+            try (PreparedStatement pstmt = conn.prepareStatement(construirConsultaDetalles(bloque.size()))) {
+                int paramIndex = 1;
+                for (Integer idVenta : bloque) {
+                    pstmt.setInt(paramIndex++, idVenta);
+                }
+
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        Venta venta = ventasPorId.get(rs.getInt("id_venta"));
+                        if (venta != null) {
+                            venta.getDetalles().add(mapearDetalleVenta(rs));
+                        }
+                    }
+                }
+            }
         }
     }
 
@@ -399,6 +818,194 @@ public class VentaDAO {
         return detalle;
     }
 
+    /**
+     * Divide un rango de fechas en días completos (se leen de los resúmenes) y los tramos
+     * parciales del primer y último día (se leen de ventas). Así un reporte anual lee a lo más
+     * 366 filas de resumen por combinación más las ventas de dos días, sin importar el historial.
+     */
+    static class RangoResumen {
+        private final LocalDate primerDia;
+        private final LocalDate ultimoDia;
+        private final LocalDateTime inicioTramo1;
+        private final LocalDateTime finTramo1;
+        private final LocalDateTime inicioTramo2;
+        private final LocalDateTime finTramo2;
+
+        RangoResumen(LocalDateTime fechaInicio, LocalDateTime fechaFin) {
+            LocalDate primero = fechaInicio.toLocalTime().equals(LocalTime.MIDNIGHT)
+                    ? fechaInicio.toLocalDate() : fechaInicio.toLocalDate().plusDays(1);
+            // BETWEEN incluye el extremo: el último día está completo si el rango llega a 23:59:59
+            LocalDate ultimo = !fechaFin.toLocalTime().isBefore(LocalTime.of(23, 59, 59))
+                    ? fechaFin.toLocalDate() : fechaFin.toLocalDate().minusDays(1);
+
+            if (primero.isAfter(ultimo)) {
+                // Sin días completos: todo el rango sale de ventas y el tramo de resúmenes queda vacío
+                this.primerDia = primero;
+                this.ultimoDia = primero.minusDays(1);
+                this.inicioTramo1 = fechaInicio;
+                this.finTramo1 = fechaInicio;
+                this.inicioTramo2 = fechaInicio;
+                this.finTramo2 = fechaFin;
+            } else {
+                this.primerDia = primero;
+                this.ultimoDia = ultimo;
+                this.inicioTramo1 = fechaInicio;
+                this.finTramo1 = primero.atStartOfDay();
+                this.inicioTramo2 = ultimo.plusDays(1).atStartOfDay();
+                this.finTramo2 = fechaFin;
+            }
+        }
+
+        // Asigna los 6 parámetros del rango a partir de indice; devuelve el siguiente índice libre
+        int asignarParametros(PreparedStatement pstmt, int indice) throws SQLException {
+            pstmt.setDate(indice, Date.valueOf(primerDia));
+            pstmt.setDate(indice + 1, Date.valueOf(ultimoDia));
+            pstmt.setTimestamp(indice + 2, Timestamp.valueOf(inicioTramo1));
+            pstmt.setTimestamp(indice + 3, Timestamp.valueOf(finTramo1));
+            pstmt.setTimestamp(indice + 4, Timestamp.valueOf(inicioTramo2));
+            pstmt.setTimestamp(indice + 5, Timestamp.valueOf(finTramo2));
+            return indice + 6;
+        }
+    }
+
+    // Se lanza dentro de crear() para cancelar la transacción cuando no alcanza el stock
+    private static class StockInsuficienteException extends SQLException {
+        private static final long serialVersionUID = 1L;
+
+        StockInsuficienteException(String mensaje) {
+            super(mensaje);
+        }
+    }
+
+    // Cursor de paginación: última venta entregada en la página anterior
+    public static class CursorVenta {
+        private final LocalDateTime fechaVenta;
+        private final int idVenta;
+
+        public CursorVenta(LocalDateTime fechaVenta, int idVenta) {
+            this.fechaVenta = fechaVenta;
+            this.idVenta = idVenta;
+        }
+
+        // Getters
+        public LocalDateTime getFechaVenta() { return fechaVenta; }
+        public int getIdVenta() { return idVenta; }
+    }
+
+    public static class PaginaVentas {
+        private final List<Venta> ventas;
+        private final CursorVenta siguienteCursor;
+
+        public PaginaVentas(List<Venta> ventas, CursorVenta siguienteCursor) {
+            this.ventas = ventas;
+            this.siguienteCursor = siguienteCursor;
+        }
+
+        // Getters
+        public List<Venta> getVentas() { return ventas; }
+        public CursorVenta getSiguienteCursor() { return siguienteCursor; }
+        public boolean hayMas() { return siguienteCursor != null; }
+    }
+
+    // Iterador sobre un ResultSet forward-only en modo streaming.
+    // Lee los encabezados por bloques y, si se piden detalles, los carga por bloque
+    // en otra conexión (la de streaming queda ocupada hasta agotar el ResultSet).
+    private class IteradorVentas implements Iterator<Venta>, AutoCloseable {
+        private final boolean incluirDetalles;
+        private final Deque<Venta> bloque = new ArrayDeque<>();
+        private Connection conn;
+        private PreparedStatement pstmt;
+        private ResultSet rs;
+        private boolean agotado = false;
+
+        IteradorVentas(LocalDateTime fechaInicio, LocalDateTime fechaFin, Integer idUsuario, boolean incluirDetalles) {
+            this.incluirDetalles = incluirDetalles;
+            String sql = construirConsultaVentas(fechaInicio, fechaFin, idUsuario, null, 0);
+
+            try {
+                conn = DatabaseConnection.getConnection();
+                pstmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                pstmt.setFetchSize(FETCH_SIZE_STREAMING);
+                asignarParametrosConsulta(pstmt, fechaInicio, fechaFin, idUsuario, null, 0);
+                rs = pstmt.executeQuery();
+            } catch (SQLException e) {
+                System.err.println("Error al iniciar recorrido de ventas: " + e.getMessage());
+                e.printStackTrace();
+                close();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (bloque.isEmpty() && !agotado) {
+                llenarBloque();
+            }
+            return !bloque.isEmpty();
+        }
+
+        @Override
+        public Venta next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return bloque.pollFirst();
+        }
+
+        private void llenarBloque() {
+            if (rs == null) {
+                agotado = true;
+                return;
+            }
+
+            List<Venta> leidas = new ArrayList<>(TAMANO_BLOQUE_DETALLES);
+            try {
+                while (leidas.size() < TAMANO_BLOQUE_DETALLES && rs.next()) {
+                    leidas.add(mapearVenta(rs));
+                }
+                if (leidas.size() < TAMANO_BLOQUE_DETALLES) {
+                    agotado = true;
+                }
+
+                if (incluirDetalles && !leidas.isEmpty()) {
+                    try (Connection connDetalles = DatabaseConnection.getConnection()) {
+                        cargarDetallesVentas(connDetalles, leidas);
+                    }
+                }
+            } catch (SQLException e) {
+                System.err.println("Error al recorrer ventas: " + e.getMessage());
+                e.printStackTrace();
+                agotado = true;
+            }
+
+            bloque.addAll(leidas);
+            if (agotado) {
+                close();
+            }
+        }
+
+        @Override
+        public void close() {
+            agotado = true;
+            try {
+                if (rs != null) {
+                    rs.close();
+                }
+                if (pstmt != null) {
+                    pstmt.close();
+                }
+                if (conn != null) {
+                    conn.close();
+                }
+            } catch (SQLException e) {
+                System.err.println("Error al cerrar recorrido de ventas: " + e.getMessage());
+            } finally {
+                rs = null;
+                pstmt = null;
+                conn = null;
+            }
+        }
+    }
+
     // Clases auxiliares para estadísticas
     public static class VentaEstadisticas {
         private int totalVentas;
@@ -419,18 +1026,18 @@ public class VentaDAO {
 
     public static class ProductoVendido {
         private String nombre;
-        private int cantidadVendida;
+        private BigDecimal cantidadVendida;
         private BigDecimal totalIngresos;
 
-        public ProductoVendido(String nombre, int cantidadVendida, BigDecimal totalIngresos) {
+        public ProductoVendido(String nombre, BigDecimal cantidadVendida, BigDecimal totalIngresos) {
             this.nombre = nombre;
-            this.cantidadVendida = cantidadVendida;
+            this.cantidadVendida = cantidadVendida != null ? cantidadVendida : BigDecimal.ZERO;
             this.totalIngresos = totalIngresos != null ? totalIngresos : BigDecimal.ZERO;
         }
 
         // Getters
         public String getNombre() { return nombre; }
-        public int getCantidadVendida() { return cantidadVendida; }
+        public BigDecimal getCantidadVendida() { return cantidadVendida; }
         public BigDecimal getTotalIngresos() { return totalIngresos; }
     }
 }
\ No newline at end of file
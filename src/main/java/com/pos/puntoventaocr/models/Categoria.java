@@ -25,6 +25,18 @@ public class Categoria {
         this.descripcion = descripcion;
     }
 
+    // Constructor de copia
+    public Categoria(Categoria otra) {
+        this.idCategoria = otra.idCategoria;
+        this.nombre = otra.nombre;
+        this.descripcion = otra.descripcion;
+        this.estado = otra.estado;
+        this.fechaCreacion = otra.fechaCreacion;
+        this.fechaModificacion = otra.fechaModificacion;
+        this.creadoPor = otra.creadoPor;
+        this.modificadoPor = otra.modificadoPor;
+    }
+
     // Métodos de negocio
     public void activar() {
         this.estado = true;
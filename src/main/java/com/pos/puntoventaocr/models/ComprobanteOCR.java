@@ -2,6 +2,8 @@ package com.pos.puntoventaocr.models;
 
 import java.time.LocalDateTime;
 import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
 
 public class ComprobanteOCR {
     private int idComprobante;
@@ -19,6 +21,12 @@ public class ComprobanteOCR {
     private LocalDateTime fechaProcesamiento;
     private Usuario usuarioValidador;
     private String observaciones;
+    private boolean posibleDuplicado; // La misma imagen ya se había procesado (no se persiste)
+    // Confianza OCR (0 a 100) por campo; se persiste dentro de datos_extraidos
+    private Map<String, Double> confianzaCampos = new HashMap<>();
+
+    // Campos que deben leerse con confianza suficiente para aprobar sin revisión
+    private static final String[] CAMPOS_APROBACION = {"montoDetectado", "fechaTransferencia", "referenciaOperacion"};
 
     // Constructor vacío
     public ComprobanteOCR() {
@@ -96,6 +104,33 @@ public class ComprobanteOCR {
         this.observaciones = motivo;
     }
 
+    /**
+     * Un comprobante legible con alta confianza, sin sospecha de duplicado, cuyo monto y día
+     * coinciden con la venta, no necesita revisión humana.
+     *
+     * @param confianzaMinima confianza mínima (0 a 100) de monto, fecha y referencia
+     */
+    public boolean esAprobableAutomaticamente(double confianzaMinima) {
+        if (venta == null || posibleDuplicado || fechaTransferencia == null) {
+            return false;
+        }
+        if (!validarDatos() || !validarContraVenta()) {
+            return false;
+        }
+        for (String campo : CAMPOS_APROBACION) {
+            Double confianza = confianzaCampos.get(campo);
+            if (confianza == null || confianza < confianzaMinima) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Confianza más baja entre los campos conocidos, o -1 si no hay ninguna
+    public double getConfianzaMinima() {
+        return confianzaCampos.values().stream().mapToDouble(Double::doubleValue).min().orElse(-1);
+    }
+
     public boolean verificarReferenciaDuplicada() {
         // Esta lógica debería implementarse en el DAO
         // Por ahora retornamos false como placeholder
@@ -235,6 +270,22 @@ public class ComprobanteOCR {
         this.observaciones = observaciones;
     }
 
+    public boolean isPosibleDuplicado() {
+        return posibleDuplicado;
+    }
+
+    public void setPosibleDuplicado(boolean posibleDuplicado) {
+        this.posibleDuplicado = posibleDuplicado;
+    }
+
+    public Map<String, Double> getConfianzaCampos() {
+        return confianzaCampos;
+    }
+
+    public void setConfianzaCampos(Map<String, Double> confianzaCampos) {
+        this.confianzaCampos = confianzaCampos != null ? confianzaCampos : new HashMap<>();
+    }
+
     @Override
     public String toString() {
         return "ComprobanteOCR{" +
@@ -1,28 +1,69 @@
 package com.pos.puntoventaocr.models;
 
+import com.pos.puntoventaocr.ocr.AnalizadorDiseno;
+import com.pos.puntoventaocr.ocr.CacheResultadosOCR;
+import com.pos.puntoventaocr.ocr.CamposComprobante;
+import com.pos.puntoventaocr.ocr.CatalogoPlantillas;
+import com.pos.puntoventaocr.ocr.EtapaOCR;
+import com.pos.puntoventaocr.ocr.EvaluadorConfianza;
+import com.pos.puntoventaocr.ocr.ExtractorCampos;
+import com.pos.puntoventaocr.ocr.OcrEngine;
+import com.pos.puntoventaocr.ocr.OcrWorkerPool;
+import com.pos.puntoventaocr.ocr.PreprocesadorImagen;
+import com.pos.puntoventaocr.ocr.RasterizadorPdf;
+import com.pos.puntoventaocr.ocr.SimulacionOcrEngine;
+import com.pos.puntoventaocr.ocr.TesseractOcrEngine;
+import com.pos.puntoventaocr.ocr.TextoReconocido;
+
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.io.File;
-import java.math.BigDecimal;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
+import java.io.IOException;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 import javax.imageio.ImageIO;
 
 public class MotorOCR {
     private static MotorOCR instance;
     private Map<String, String> configuracion;
     private String idioma;
-    private int precision;
     private List<String> formatosPermitidos;
-
-    // Patrones para extraer datos
-    private static final Pattern PATRON_MONTO = Pattern.compile("\\$?([0-9,]+\\.?[0-9]*)");
-    private static final Pattern PATRON_FECHA = Pattern.compile("(\\d{1,2}[/-]\\d{1,2}[/-]\\d{2,4})");
-    private static final Pattern PATRON_REFERENCIA = Pattern.compile("([A-Z0-9]{8,20})");
-    private static final Pattern PATRON_BANCO = Pattern.compile("(BBVA|BANAMEX|SANTANDER|HSBC|BANORTE|SCOTIABANK|INBURSA)");
+    private OcrEngine motor;
+    private OcrWorkerPool poolTrabajadores;
+    private PreprocesadorImagen preprocesador;
+    private CacheResultadosOCR cacheResultados;
+    private ExtractorCampos extractorCampos;
+    private AnalizadorDiseno analizadorDiseno;
+    private ExecutorService ejecutorRegiones;
+    private ExecutorService ejecutorPaginas;
+    private RasterizadorPdf rasterizadorPdf;
+
+    // Un permiso por núcleo, compartido por los trabajadores, las regiones y las páginas de PDF:
+    // cada hilo lo toma solo mientras usa CPU (rasterizar, preprocesar, analizar, reconocer) y lo
+    // suelta antes de esperar a sus subtareas, así no hay más trabajo pesado que núcleos ni bloqueos
+    private static final int NUCLEOS = Math.max(1, Runtime.getRuntime().availableProcessors());
+    private final Semaphore permisosCpu = new Semaphore(NUCLEOS, true);
+
+    // Tiempo acumulado (ns) por etapa de preprocesamiento y número de imágenes procesadas
+    private final Map<String, LongAdder> tiemposPreprocesamiento = new ConcurrentHashMap<>();
+    private final LongAdder imagenesPreprocesadas = new LongAdder();
+
+    // Por encima de esta cobertura las regiones no ahorran trabajo frente a la imagen completa
+    private static final double COBERTURA_MAXIMA_REGIONES = 0.85;
+
+    // Configuración que cambia el texto reconocido; forma parte de la clave del caché OCR
+    private static final List<String> CLAVES_FIRMA_CACHE = Arrays.asList("tesseract.path",
+            "preprocesamiento.lado.maximo", "preprocesamiento.binarizacion", "ocr.regiones",
+            "ocr.regiones.maximo", "pdf.dpi", "pdf.paginas.maximo");
 
     // Constructor privado para Singleton
     private MotorOCR() {
@@ -40,187 +81,407 @@ public class MotorOCR {
     public void inicializar() {
         this.configuracion = new HashMap<>();
         this.idioma = "spa"; // Español
-        this.precision = 80; // Precisión del 80%
         this.formatosPermitidos = Arrays.asList("JPG", "JPEG", "PNG", "PDF");
 
         // Configuración por defecto
         configuracion.put("tesseract.path", "/usr/bin/tesseract"); // Ajustar según instalación
         configuracion.put("temp.dir", System.getProperty("java.io.tmpdir"));
         configuracion.put("output.format", "text");
+        configuracion.put("ocr.motor", "auto"); // auto | tesseract | simulacion (solo pruebas)
+        configuracion.put("ocr.timeout.ms", "30000");
+        configuracion.put("ocr.cola.por.hilo", "4");
+        configuracion.put("preprocesamiento.lado.maximo", "2200"); // ~300 DPI en un comprobante de 7"
+        configuracion.put("preprocesamiento.binarizacion", "sauvola"); // sauvola | otsu
+        configuracion.put("ocr.cache.dir", System.getProperty("java.io.tmpdir") + File.separator + "pos-ocr-cache");
+        configuracion.put("ocr.cache.max.mb", "64");
+        configuracion.put("ocr.plantillas.dir", ""); // .properties adicionales de plantillas de bancos
+        configuracion.put("ocr.regiones", "true"); // OCR solo de los bloques de texto detectados
+        configuracion.put("ocr.regiones.maximo", "12");
+        configuracion.put("pdf.poppler.dir", "/usr/bin"); // pdfinfo y pdftoppm
+        configuracion.put("pdf.dpi", "300");
+        configuracion.put("pdf.paginas.maximo", "20");
+        configuracion.put("ocr.confianza.aprobacion", "90"); // confianza mínima (0-100) para aprobar sin revisión
+
+        aplicarConfiguracion();
+    }
+
+    // Reconstruye todo lo que depende de la configuración. Los pools se crean de nuevo al siguiente uso;
+    // los anteriores terminan los trabajos que ya aceptaron
+    private synchronized void aplicarConfiguracion() {
+        this.motor = crearMotor();
+        this.preprocesador = crearPreprocesador();
+        this.cacheResultados = crearCache();
+        this.extractorCampos = new ExtractorCampos(CatalogoPlantillas.cargar(configuracion.get("ocr.plantillas.dir")));
+        this.analizadorDiseno = new AnalizadorDiseno(
+                Integer.parseInt(configuracion.getOrDefault("ocr.regiones.maximo", "12")));
+        this.rasterizadorPdf = new RasterizadorPdf(configuracion.getOrDefault("pdf.poppler.dir", "/usr/bin"),
+                configuracion.get("temp.dir"), obtenerTimeoutMs());
+
+        if (poolTrabajadores != null) {
+            poolTrabajadores.cerrarAlTerminar();
+            poolTrabajadores = null;
+        }
+        if (ejecutorRegiones != null) {
+            ejecutorRegiones.shutdown();
+            ejecutorRegiones = null;
+        }
+        if (ejecutorPaginas != null) {
+            ejecutorPaginas.shutdown();
+            ejecutorPaginas = null;
+        }
+    }
+
+    // Caché de texto OCR por imagen y configuración del motor; si no se puede crear se trabaja sin caché
+    private CacheResultadosOCR crearCache() {
+        try {
+            long maximoMb = Long.parseLong(configuracion.getOrDefault("ocr.cache.max.mb", "64"));
+            if (maximoMb <= 0) {
+                return null;
+            }
+            return new CacheResultadosOCR(configuracion.get("ocr.cache.dir"), maximoMb * 1024 * 1024);
+        } catch (Exception e) {
+            System.err.println("Caché OCR deshabilitado: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private PreprocesadorImagen crearPreprocesador() {
+        int ladoMaximo;
+        try {
+            ladoMaximo = Integer.parseInt(configuracion.getOrDefault("preprocesamiento.lado.maximo", "2200"));
+        } catch (NumberFormatException e) {
+            ladoMaximo = 2200;
+        }
+        PreprocesadorImagen.Binarizacion binarizacion =
+                "otsu".equalsIgnoreCase(configuracion.get("preprocesamiento.binarizacion"))
+                        ? PreprocesadorImagen.Binarizacion.OTSU
+                        : PreprocesadorImagen.Binarizacion.SAUVOLA;
+        return new PreprocesadorImagen(ladoMaximo, binarizacion, true, true);
+    }
+
+    // Elige el motor según configuración. La simulación solo se usa si se pide explícitamente:
+    // en "auto" sin Tesseract cada comprobante termina en ERROR_PROCESAMIENTO
+    private OcrEngine crearMotor() {
+        String tipo = configuracion.getOrDefault("ocr.motor", "auto");
+        if ("simulacion".equalsIgnoreCase(tipo)) {
+            return new SimulacionOcrEngine();
+        }
+
+        TesseractOcrEngine tesseract = new TesseractOcrEngine(
+                configuracion.get("tesseract.path"),
+                idioma,
+                configuracion.get("temp.dir"),
+                obtenerTimeoutMs());
+
+        if (!tesseract.estaDisponible()) {
+            System.err.println("Error: Tesseract no encontrado en " + configuracion.get("tesseract.path") +
+                    "; no se podrán procesar comprobantes");
+        }
+        return tesseract;
+    }
+
+    private long obtenerTimeoutMs() {
+        try {
+            return Long.parseLong(configuracion.getOrDefault("ocr.timeout.ms", "30000"));
+        } catch (NumberFormatException e) {
+            return 30000L;
+        }
+    }
+
+    // Pool de trabajadores compartido, dimensionado a los núcleos disponibles
+    private synchronized OcrWorkerPool obtenerPool() {
+        if (poolTrabajadores == null) {
+            int colaPorHilo = Integer.parseInt(configuracion.getOrDefault("ocr.cola.por.hilo", "4"));
+            poolTrabajadores = OcrWorkerPool.porNucleos(colaPorHilo);
+        }
+        return poolTrabajadores;
+    }
+
+    /**
+     * Procesa el comprobante en el pool de trabajadores OCR.
+     * Si el pool está saturado el futuro termina con RejectedExecutionException.
+     */
+    public CompletableFuture<ComprobanteOCR> procesarComprobanteAsync(String rutaImagen, Venta venta) {
+        return procesarComprobanteAsync(rutaImagen, venta, etapa -> { });
+    }
+
+    /**
+     * Igual que procesarComprobanteAsync notificando cada etapa (desde el hilo trabajador).
+     * Cancelar el futuro interrumpe al trabajador, que se detiene al iniciar la siguiente etapa.
+     */
+    public CompletableFuture<ComprobanteOCR> procesarComprobanteAsync(String rutaImagen, Venta venta,
+                                                                      Consumer<EtapaOCR> avance) {
+        return obtenerPool().intentarEnviar(() -> procesarComprobante(rutaImagen, venta, avance), obtenerTimeoutMs());
+    }
+
+    /**
+     * Igual que procesarComprobanteAsync pero bloquea al productor mientras el pool esté lleno
+     * (para procesos por lotes).
+     */
+    public CompletableFuture<ComprobanteOCR> encolarComprobante(String rutaImagen, Venta venta)
+            throws InterruptedException {
+        return obtenerPool().enviar(() -> procesarComprobante(rutaImagen, venta), obtenerTimeoutMs());
     }
 
     public String procesar(String rutaImagen) {
+        TextoReconocido reconocido = procesar(rutaImagen, etapa -> { });
+        return reconocido != null ? reconocido.getTexto() : null;
+    }
+
+    private TextoReconocido procesar(String rutaImagen, Consumer<EtapaOCR> avance) {
         try {
             // Validar formato
             if (!validarFormato(rutaImagen)) {
                 throw new IllegalArgumentException("Formato de imagen no soportado");
             }
 
-            // Mejorar imagen si es necesario
-            BufferedImage imagenMejorada = mejorarImagen(rutaImagen);
+            // Un PDF se rasteriza y reconoce por páginas
+            if (esPdf(rutaImagen)) {
+                avanzar(avance, EtapaOCR.RECONOCIMIENTO);
+                return procesarPdf(rutaImagen);
+            }
 
-            // Simular procesamiento OCR (en implementación real usarías Tesseract)
-            String textoExtraido = extraerTexto(imagenMejorada);
+            BufferedImage imagen = cargarImagen(rutaImagen);
 
-            return textoExtraido;
+            // Mejorar imagen si es necesario
+            avanzar(avance, EtapaOCR.PREPROCESAMIENTO);
+            BufferedImage imagenMejorada = preprocesarImagen(imagen);
+
+            // Reconocer texto con el motor configurado
+            avanzar(avance, EtapaOCR.RECONOCIMIENTO);
+            return reconocerTexto(imagenMejorada);
 
         } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
             System.err.println("Error en procesamiento OCR: " + e.getMessage());
             return null;
         }
     }
 
-    public String extraerTexto(BufferedImage imagen) {
-        // SIMULACIÓN - En implementación real integrarías con Tesseract
-        // Esta es una simulación para propósitos de demostración
-        return "BBVA MÉXICO\n" +
-                "COMPROBANTE DE TRANSFERENCIA\n" +
-                "FECHA: 15/08/2025 14:30:25\n" +
-                "MONTO: $1,250.00\n" +
-                "REFERENCIA: ABC123DEF456\n" +
-                "CUENTA DESTINO: ****1234\n" +
-                "BENEFICIARIO: COMERCIO XYZ SA\n" +
-                "CONCEPTO: PAGO VENTA";
+    public String extraerTexto(BufferedImage imagen) throws Exception {
+        return reconocerTexto(imagen).getTexto();
     }
 
-    public Map<String, Object> detectarCampos(String textoExtraido) {
-        Map<String, Object> camposDetectados = new HashMap<>();
-
-        if (textoExtraido == null || textoExtraido.trim().isEmpty()) {
-            return camposDetectados;
+    // Texto con la confianza de cada palabra
+    public TextoReconocido reconocerTexto(BufferedImage imagen) throws Exception {
+        if (Boolean.parseBoolean(configuracion.getOrDefault("ocr.regiones", "true")) && motor.soportaRegiones()
+                && imagen.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+            return reconocerPorRegiones(imagen);
         }
+        return reconocerConPermiso(imagen);
+    }
 
-        // Detectar banco
-        String banco = detectarBanco(textoExtraido);
-        if (banco != null) {
-            camposDetectados.put("bancoEmisor", banco);
+    /**
+     * Reconoce solo los bloques de texto que encuentra el análisis de diseño, en paralelo,
+     * y une los resultados en orden de lectura. Si los bloques cubren casi toda la imagen
+     * no hay ahorro y se reconoce completa.
+     */
+    private TextoReconocido reconocerPorRegiones(BufferedImage imagen) throws Exception {
+        List<Rectangle> regiones;
+        permisosCpu.acquire();
+        try {
+            long inicio = System.nanoTime();
+            regiones = analizadorDiseno.detectarRegiones(imagen);
+            registrarTiempo("diseno", System.nanoTime() - inicio);
+        } finally {
+            permisosCpu.release();
         }
 
-        // Detectar monto
-        BigDecimal monto = detectarMonto(textoExtraido);
-        if (monto != null) {
-            camposDetectados.put("montoDetectado", monto);
+        if (regiones.isEmpty()
+                || AnalizadorDiseno.cobertura(regiones, imagen.getWidth(), imagen.getHeight()) > COBERTURA_MAXIMA_REGIONES) {
+            return reconocerConPermiso(imagen);
         }
-
-        // Detectar fecha
-        LocalDateTime fecha = detectarFecha(textoExtraido);
-        if (fecha != null) {
-            camposDetectados.put("fechaTransferencia", fecha);
+        if (regiones.size() == 1) {
+            Rectangle region = regiones.get(0);
+            return reconocerConPermiso(imagen.getSubimage(region.x, region.y, region.width, region.height));
         }
 
-        // Detectar referencia
-        String referencia = detectarReferencia(textoExtraido);
-        if (referencia != null) {
-            camposDetectados.put("referenciaOperacion", referencia);
+        ExecutorService ejecutor = obtenerEjecutorRegiones();
+        List<Future<TextoReconocido>> parciales = new ArrayList<>(regiones.size());
+        for (Rectangle region : regiones) {
+            BufferedImage recorte = imagen.getSubimage(region.x, region.y, region.width, region.height);
+            parciales.add(ejecutor.submit(() -> reconocerConPermiso(recorte)));
         }
 
-        // Detectar cuenta remitente
-        String cuentaRemitente = detectarCuentaRemitente(textoExtraido);
-        if (cuentaRemitente != null) {
-            camposDetectados.put("cuentaRemitente", cuentaRemitente);
-        }
-
-        // Detectar beneficiario
-        String beneficiario = detectarBeneficiario(textoExtraido);
-        if (beneficiario != null) {
-            camposDetectados.put("nombreBeneficiario", beneficiario);
+        List<TextoReconocido> fragmentos = new ArrayList<>(parciales.size());
+        try {
+            for (Future<TextoReconocido> parcial : parciales) {
+                fragmentos.add(parcial.get());
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        } finally {
+            // Si una región falló o se interrumpió el trabajo, las demás ya no sirven
+            for (Future<TextoReconocido> parcial : parciales) {
+                parcial.cancel(true);
+            }
         }
-
-        return camposDetectados;
+        return TextoReconocido.unir(fragmentos);
     }
 
-    private String detectarBanco(String texto) {
-        Matcher matcher = PATRON_BANCO.matcher(texto.toUpperCase());
-        if (matcher.find()) {
-            return matcher.group(1);
+    /**
+     * Rasteriza, preprocesa y reconoce las páginas en paralelo, con a lo más una página en curso
+     * por núcleo, y une el texto en orden. Los datos del comprobante suelen estar en las primeras
+     * páginas: en cuanto el texto acumulado tiene todos los campos, las páginas restantes se cancelan.
+     */
+    private TextoReconocido procesarPdf(String rutaPdf) throws Exception {
+        if (!rasterizadorPdf.estaDisponible()) {
+            throw new IOException("Para procesar PDF se requiere poppler-utils (pdfinfo y pdftoppm) en "
+                    + configuracion.getOrDefault("pdf.poppler.dir", "/usr/bin"));
         }
-        return null;
-    }
 
-    private BigDecimal detectarMonto(String texto) {
-        Matcher matcher = PATRON_MONTO.matcher(texto);
-        while (matcher.find()) {
-            try {
-                String montoStr = matcher.group(1).replace(",", "");
-                BigDecimal monto = new BigDecimal(montoStr);
-                // Filtrar montos muy pequeños o muy grandes
-                if (monto.compareTo(BigDecimal.ONE) > 0 && monto.compareTo(new BigDecimal("1000000")) < 0) {
-                    return monto;
+        RasterizadorPdf.InfoPdf info = rasterizadorPdf.leerInfo(rutaPdf);
+        int paginas = Math.min(info.getPaginas(),
+                Integer.parseInt(configuracion.getOrDefault("pdf.paginas.maximo", "20")));
+        int dpi = info.dpiPara(
+                Integer.parseInt(configuracion.getOrDefault("preprocesamiento.lado.maximo", "2200")),
+                Integer.parseInt(configuracion.getOrDefault("pdf.dpi", "300")));
+        int enVuelo = NUCLEOS;
+
+        List<Future<TextoReconocido>> parciales = new ArrayList<>(paginas);
+        List<TextoReconocido> fragmentos = new ArrayList<>(paginas);
+        StringBuilder texto = new StringBuilder();
+        try {
+            int siguiente = 1;
+            while (siguiente <= paginas && parciales.size() < enVuelo) {
+                parciales.add(enviarPagina(rutaPdf, siguiente++, dpi));
+            }
+
+            for (int i = 0; i < parciales.size(); i++) {
+                TextoReconocido fragmento = parciales.get(i).get();
+                fragmentos.add(fragmento);
+                if (!fragmento.getTexto().trim().isEmpty()) {
+                    texto.append(fragmento.getTexto().trim()).append('\n');
+                }
+                // parciales.get(i) es la página i + 1
+                boolean quedanPaginas = i + 1 < paginas;
+                if (quedanPaginas && detectarCampos(texto.toString()).estaCompleto()) {
+                    break;
+                }
+                if (siguiente <= paginas) {
+                    parciales.add(enviarPagina(rutaPdf, siguiente++, dpi));
                 }
-            } catch (NumberFormatException e) {
-                continue;
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        } finally {
+            // Páginas que ya no hacen falta (campos completos, error o trabajo cancelado)
+            for (Future<TextoReconocido> parcial : parciales) {
+                parcial.cancel(true);
             }
         }
-        return null;
+        return TextoReconocido.unir(fragmentos);
     }
 
-    private LocalDateTime detectarFecha(String texto) {
-        Matcher matcher = PATRON_FECHA.matcher(texto);
-        if (matcher.find()) {
-            String fechaStr = matcher.group(1);
+    private Future<TextoReconocido> enviarPagina(String rutaPdf, int pagina, int dpi) {
+        return obtenerEjecutorPaginas().submit(() -> {
+            BufferedImage imagen;
+            permisosCpu.acquire();
             try {
-                // Intentar diferentes formatos de fecha
-                String[] formatos = {"dd/MM/yyyy", "dd-MM-yyyy", "dd/MM/yy", "dd-MM-yy"};
-
-                for (String formato : formatos) {
-                    try {
-                        DateTimeFormatter formatter = DateTimeFormatter.ofPattern(formato);
-                        return LocalDateTime.parse(fechaStr + " 00:00:00",
-                                DateTimeFormatter.ofPattern(formato + " HH:mm:ss"));
-                    } catch (DateTimeParseException e) {
-                        continue;
-                    }
-                }
-            } catch (Exception e) {
-                System.err.println("Error al parsear fecha: " + e.getMessage());
+                imagen = rasterizadorPdf.rasterizar(rutaPdf, pagina, dpi);
+            } finally {
+                permisosCpu.release();
             }
-        }
-        return null;
+            return reconocerTexto(preprocesarImagen(imagen));
+        });
     }
 
-    private String detectarReferencia(String texto) {
-        Matcher matcher = PATRON_REFERENCIA.matcher(texto);
-        if (matcher.find()) {
-            return matcher.group(1);
+    // Reconocimiento con el motor ocupando uno de los permisos de CPU
+    private TextoReconocido reconocerConPermiso(BufferedImage imagen) throws Exception {
+        permisosCpu.acquire();
+        try {
+            return motor.reconocerConConfianza(imagen);
+        } finally {
+            permisosCpu.release();
         }
-        return null;
     }
 
-    private String detectarCuentaRemitente(String texto) {
-        // Buscar patrones de cuenta (ej: ****1234, XXXX1234)
-        Pattern patronCuenta = Pattern.compile("(\\*{4}\\d{4}|X{4}\\d{4}|\\d{4}-\\d{4}-\\d{4}-\\d{4})");
-        Matcher matcher = patronCuenta.matcher(texto);
-        if (matcher.find()) {
-            return matcher.group(1);
+    private boolean esPdf(String rutaArchivo) {
+        return rutaArchivo.toUpperCase().endsWith(".PDF");
+    }
+
+    // Hilos para reconocer regiones; separado del pool de trabajadores para no bloquearlo con subtareas.
+    // Los tres grupos de hilos comparten permisosCpu: entre todos no usan más núcleos de los que hay
+    private synchronized ExecutorService obtenerEjecutorRegiones() {
+        if (ejecutorRegiones == null) {
+            ejecutorRegiones = crearEjecutor("ocr-region-");
         }
-        return null;
+        return ejecutorRegiones;
     }
 
-    private String detectarBeneficiario(String texto) {
-        // Buscar líneas que contengan "BENEFICIARIO" seguido de un nombre
-        String[] lineas = texto.split("\\n");
-        for (String linea : lineas) {
-            if (linea.toUpperCase().contains("BENEFICIARIO")) {
-                String[] partes = linea.split(":");
-                if (partes.length > 1) {
-                    return partes[1].trim();
-                }
-            }
+    // Hilos para páginas de PDF; distinto del de regiones porque cada página espera a sus regiones
+    private synchronized ExecutorService obtenerEjecutorPaginas() {
+        if (ejecutorPaginas == null) {
+            ejecutorPaginas = crearEjecutor("ocr-pagina-");
         }
-        return null;
+        return ejecutorPaginas;
+    }
+
+    private static ExecutorService crearEjecutor(String prefijo) {
+        AtomicInteger contador = new AtomicInteger();
+        return Executors.newFixedThreadPool(NUCLEOS, r -> {
+            Thread hilo = new Thread(r, prefijo + contador.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+    public CamposComprobante detectarCampos(String textoExtraido) {
+        return extractorCampos.extraer(textoExtraido);
     }
 
     public BufferedImage mejorarImagen(String rutaImagen) throws Exception {
+        return preprocesarImagen(cargarImagen(rutaImagen));
+    }
+
+    private BufferedImage cargarImagen(String rutaImagen) throws IOException {
         BufferedImage imagen = ImageIO.read(new File(rutaImagen));
+        if (imagen == null) {
+            throw new IOException("No se pudo leer la imagen: " + rutaImagen);
+        }
+        return imagen;
+    }
 
-        // Aquí implementarías mejoras de imagen como:
-        // - Ajuste de contraste
-        // - Reducción de ruido
-        // - Corrección de orientación
-        // - Filtros de nitidez
+    private BufferedImage preprocesarImagen(BufferedImage imagen) throws InterruptedException {
+        // Escalado, grises, binarización, enderezado y limpieza de ruido
+        PreprocesadorImagen.Resultado resultado;
+        permisosCpu.acquire();
+        try {
+            resultado = preprocesador.procesar(imagen);
+        } finally {
+            permisosCpu.release();
+        }
 
-        // Por ahora retornamos la imagen original
-        return imagen;
+        resultado.getTiemposNanos().forEach(this::registrarTiempo);
+        imagenesPreprocesadas.increment();
+
+        return resultado.getImagen();
+    }
+
+    // Notifica la etapa; si el trabajo fue cancelado (hilo interrumpido) no se continúa
+    private static void avanzar(Consumer<EtapaOCR> avance, EtapaOCR etapa) throws InterruptedException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedException("Procesamiento OCR cancelado");
+        }
+        avance.accept(etapa);
+    }
+
+    private void registrarTiempo(String etapa, long nanos) {
+        tiemposPreprocesamiento.computeIfAbsent(etapa, k -> new LongAdder()).add(nanos);
+    }
+
+    // Tiempo promedio (ms) de cada etapa de preprocesamiento desde el arranque
+    public Map<String, Double> getTiemposPromedioPreprocesamiento() {
+        Map<String, Double> promedios = new LinkedHashMap<>();
+        long imagenes = imagenesPreprocesadas.sum();
+        if (imagenes == 0) {
+            return promedios;
+        }
+        tiemposPreprocesamiento.forEach((etapa, total) ->
+                promedios.put(etapa, total.sum() / 1_000_000.0 / imagenes));
+        return promedios;
     }
 
     public boolean validarFormato(String rutaArchivo) {
@@ -232,67 +493,117 @@ public class MotorOCR {
         return formatosPermitidos.contains(extension);
     }
 
-    public double obtenerConfianza() {
-        // En implementación real, esto vendría de Tesseract
-        // Por ahora retornamos un valor simulado basado en la precisión configurada
-        return precision / 100.0;
+    /**
+     * Confianza del comprobante (0 a 1): la del campo leído con menos confianza.
+     * Devuelve -1 si el motor no informó confianza (por ejemplo, texto tomado del caché).
+     */
+    public double obtenerConfianza(ComprobanteOCR comprobante) {
+        double minima = comprobante.getConfianzaMinima();
+        return minima < 0 ? -1 : minima / 100.0;
+    }
+
+    // Confianza mínima configurada (0 a 100) para aprobar sin revisión humana
+    public double getConfianzaAprobacion() {
+        try {
+            return Double.parseDouble(configuracion.getOrDefault("ocr.confianza.aprobacion", "90"));
+        } catch (NumberFormatException e) {
+            return 90.0;
+        }
+    }
+
+    public boolean esAprobableAutomaticamente(ComprobanteOCR comprobante) {
+        return comprobante.getEstadoValidacion() == ComprobanteOCR.EstadoOCR.PENDIENTE
+                && comprobante.esAprobableAutomaticamente(getConfianzaAprobacion());
     }
 
     // Método principal para procesar un comprobante completo
     public ComprobanteOCR procesarComprobante(String rutaImagen, Venta venta) {
+        return procesarComprobante(rutaImagen, venta, etapa -> { });
+    }
+
+    public ComprobanteOCR procesarComprobante(String rutaImagen, Venta venta, Consumer<EtapaOCR> avance) {
         try {
             ComprobanteOCR comprobante = new ComprobanteOCR(venta, rutaImagen);
+            avanzar(avance, EtapaOCR.CARGA);
+
+            // La misma imagen ya procesada: se reutiliza el texto y se marca como posible duplicado
+            // El caché guarda solo el texto: sin confianza, un duplicado nunca se aprueba solo
+            String clave = calcularClaveCache(rutaImagen);
+            String textoEnCache = clave != null ? cacheResultados.obtener(clave) : null;
+            TextoReconocido reconocido;
+            if (textoEnCache != null) {
+                comprobante.setPosibleDuplicado(true);
+                reconocido = TextoReconocido.sinConfianza(textoEnCache);
+            } else {
+                reconocido = procesar(rutaImagen, avance);
+                if (reconocido != null && clave != null) {
+                    cacheResultados.guardar(clave, reconocido.getTexto());
+                }
+            }
 
-            // Procesar OCR
-            String textoExtraido = procesar(rutaImagen);
-            if (textoExtraido == null) {
+            if (reconocido == null) {
                 comprobante.setEstadoValidacion(ComprobanteOCR.EstadoOCR.ERROR_PROCESAMIENTO);
                 comprobante.setObservaciones("Error al procesar la imagen");
                 return comprobante;
             }
 
-            // Extraer campos
-            Map<String, Object> campos = detectarCampos(textoExtraido);
-
-            // Mapear campos al comprobante
-            if (campos.containsKey("bancoEmisor")) {
-                comprobante.setBancoEmisor((String) campos.get("bancoEmisor"));
-            }
-
-            if (campos.containsKey("montoDetectado")) {
-                comprobante.setMontoDetectado((BigDecimal) campos.get("montoDetectado"));
-            }
-
-            if (campos.containsKey("fechaTransferencia")) {
-                comprobante.setFechaTransferencia((LocalDateTime) campos.get("fechaTransferencia"));
-            }
-
-            if (campos.containsKey("referenciaOperacion")) {
-                comprobante.setReferenciaOperacion((String) campos.get("referenciaOperacion"));
-            }
-
-            if (campos.containsKey("cuentaRemitente")) {
-                comprobante.setCuentaRemitente((String) campos.get("cuentaRemitente"));
-            }
+            // Extraer campos en una sola pasada
+            avanzar(avance, EtapaOCR.EXTRACCION);
+            CamposComprobante campos = detectarCampos(reconocido.getTexto());
+            EvaluadorConfianza.evaluar(campos, reconocido);
+            comprobante.setConfianzaCampos(campos.getConfianzasPorNombre());
 
-            if (campos.containsKey("nombreBeneficiario")) {
-                comprobante.setNombreBeneficiario((String) campos.get("nombreBeneficiario"));
+            comprobante.setBancoEmisor(campos.getBancoEmisor());
+            if (campos.getMontoDetectado() != null) {
+                comprobante.setMontoDetectado(campos.getMontoDetectado());
             }
+            comprobante.setFechaTransferencia(campos.getFechaTransferencia());
+            comprobante.setReferenciaOperacion(campos.getReferenciaOperacion());
+            comprobante.setCuentaRemitente(campos.getCuentaRemitente());
+            comprobante.setNombreBeneficiario(campos.getNombreBeneficiario());
 
             // Guardar datos extraídos como JSON
-            comprobante.setDatosExtraidos(convertirCamposAJson(campos));
+            comprobante.setDatosExtraidos(campos.aJson());
 
             // Validar datos automáticamente
-            if (comprobante.validarDatos() && comprobante.validarContraVenta()) {
+            avanzar(avance, EtapaOCR.VALIDACION);
+            if (venta == null) {
+                // Comprobante de lote sin venta asociada: queda pendiente de conciliar
+                if (comprobante.validarDatos()) {
+                    comprobante.setEstadoValidacion(ComprobanteOCR.EstadoOCR.PENDIENTE);
+                } else {
+                    comprobante.setEstadoValidacion(ComprobanteOCR.EstadoOCR.RECHAZADO);
+                    comprobante.setObservaciones("Datos incompletos en el comprobante");
+                }
+            } else if (comprobante.validarDatos() && comprobante.validarContraVenta()) {
                 comprobante.setEstadoValidacion(ComprobanteOCR.EstadoOCR.PENDIENTE);
             } else {
                 comprobante.setEstadoValidacion(ComprobanteOCR.EstadoOCR.RECHAZADO);
                 comprobante.setObservaciones("Datos no coinciden con la venta");
             }
 
+            // Indica al validador qué campos revisar con más cuidado
+            String camposDudosos = camposConConfianzaBaja(comprobante);
+            if (!camposDudosos.isEmpty()) {
+                String aviso = "Confianza OCR baja en: " + camposDudosos;
+                comprobante.setObservaciones(comprobante.getObservaciones() != null
+                        ? comprobante.getObservaciones() + ". " + aviso
+                        : aviso);
+            }
+
+            if (comprobante.isPosibleDuplicado()) {
+                String aviso = "Posible duplicado: esta imagen ya fue procesada anteriormente";
+                comprobante.setObservaciones(comprobante.getObservaciones() != null
+                        ? aviso + ". " + comprobante.getObservaciones()
+                        : aviso);
+            }
+
             return comprobante;
 
         } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
             System.err.println("Error al procesar comprobante: " + e.getMessage());
             ComprobanteOCR comprobante = new ComprobanteOCR(venta, rutaImagen);
             comprobante.setEstadoValidacion(ComprobanteOCR.EstadoOCR.ERROR_PROCESAMIENTO);
@@ -301,22 +612,38 @@ public class MotorOCR {
         }
     }
 
-    private String convertirCamposAJson(Map<String, Object> campos) {
-        // Implementación simple de conversión a JSON
-        StringBuilder json = new StringBuilder("{");
-        boolean primero = true;
-
-        for (Map.Entry<String, Object> entry : campos.entrySet()) {
-            if (!primero) {
-                json.append(",");
+    private String camposConConfianzaBaja(ComprobanteOCR comprobante) {
+        double umbral = getConfianzaAprobacion();
+        StringBuilder campos = new StringBuilder();
+        comprobante.getConfianzaCampos().forEach((campo, confianza) -> {
+            if (confianza < umbral) {
+                campos.append(campos.length() > 0 ? ", " : "")
+                        .append(campo).append(" (").append(Math.round(confianza)).append("%)");
             }
-            json.append("\"").append(entry.getKey()).append("\":\"")
-                    .append(entry.getValue().toString()).append("\"");
-            primero = false;
+        });
+        return campos.toString();
+    }
+
+    // Hash de la imagen más la firma del motor y su configuración: el texto guardado con otro motor
+    // (o con otro preprocesamiento o regiones) no se reutiliza
+    private String calcularClaveCache(String rutaImagen) {
+        if (cacheResultados == null) {
+            return null;
         }
+        try {
+            return CacheResultadosOCR.calcularHash(rutaImagen) + "-" + firmaConfiguracion();
+        } catch (IOException e) {
+            System.err.println("Error al calcular hash de imagen: " + e.getMessage());
+            return null;
+        }
+    }
 
-        json.append("}");
-        return json.toString();
+    private String firmaConfiguracion() {
+        StringBuilder firma = new StringBuilder(motor.getNombre()).append('|').append(idioma);
+        for (String clave : CLAVES_FIRMA_CACHE) {
+            firma.append('|').append(configuracion.get(clave));
+        }
+        return CacheResultadosOCR.calcularHashTexto(firma.toString()).substring(0, 16);
     }
 
     // Getters y Setters
@@ -324,24 +651,27 @@ public class MotorOCR {
         return configuracion;
     }
 
-    public void setConfiguracion(Map<String, String> configuracion) {
+    public synchronized void setConfiguracion(Map<String, String> configuracion) {
         this.configuracion = configuracion;
+        aplicarConfiguracion();
     }
 
     public String getIdioma() {
         return idioma;
     }
 
-    public void setIdioma(String idioma) {
+    // El idioma se fija al crear el motor de Tesseract
+    public synchronized void setIdioma(String idioma) {
         this.idioma = idioma;
+        this.motor = crearMotor();
     }
 
-    public int getPrecision() {
-        return precision;
+    public OcrEngine getMotor() {
+        return motor;
     }
 
-    public void setPrecision(int precision) {
-        this.precision = precision;
+    public void setMotor(OcrEngine motor) {
+        this.motor = motor;
     }
 
     public List<String> getFormatosPermitidos() {
@@ -40,6 +40,27 @@ public class Producto {
         this.categoria = categoria;
     }
 
+    // Constructor de copia (el caché de productos entrega copias para no compartir instancias)
+    public Producto(Producto otro) {
+        this.idProducto = otro.idProducto;
+        this.nombre = otro.nombre;
+        this.descripcionCorta = otro.descripcionCorta;
+        this.descripcionLarga = otro.descripcionLarga;
+        this.rutaImagen = otro.rutaImagen;
+        this.precioCompra = otro.precioCompra;
+        this.precioVenta = otro.precioVenta;
+        this.cantidadStock = otro.cantidadStock;
+        this.unidadMedida = otro.unidadMedida;
+        this.categoria = otro.categoria != null ? new Categoria(otro.categoria) : null;
+        this.codigoBarras = otro.codigoBarras;
+        this.estado = otro.estado;
+        this.stockMinimo = otro.stockMinimo;
+        this.fechaCreacion = otro.fechaCreacion;
+        this.fechaModificacion = otro.fechaModificacion;
+        this.creadoPor = otro.creadoPor;
+        this.modificadoPor = otro.modificadoPor;
+    }
+
     // Métodos de negocio
     public boolean hasBajoStock() {
         return cantidadStock <= stockMinimo;
@@ -1,5 +1,7 @@
 package com.pos.puntoventaocr.models;
 
+import com.pos.puntoventaocr.utils.GeneradorNumeroVenta;
+
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -22,7 +24,7 @@ public class Venta {
     private List<DetalleVenta> detalles;
     private String referenciaTransferencia;
 
-    // Constructor vacío
+    // Constructor vacío (para leer ventas ya registradas; no genera número de venta)
     public Venta() {
         this.detalles = new ArrayList<>();
         this.fechaVenta = LocalDateTime.now();
@@ -30,19 +32,20 @@ public class Venta {
         this.subtotal = BigDecimal.ZERO;
         this.impuestos = BigDecimal.ZERO;
         this.total = BigDecimal.ZERO;
-        this.numeroVenta = generarNumeroVenta();
     }
 
-    // Constructor con parámetros
+    // Constructor para una venta nueva: le asigna su número de venta
     public Venta(Usuario usuario, String metodoPago) {
         this();
         this.usuario = usuario;
         this.metodoPago = metodoPago;
+        this.numeroVenta = generarNumeroVenta();
     }
 
     // Métodos de negocio
+    // Único entre terminales y creciente por terminal (ver GeneradorNumeroVenta)
     private String generarNumeroVenta() {
-        return "V" + System.currentTimeMillis();
+        return GeneradorNumeroVenta.getInstance().siguiente();
     }
 
     public void agregarDetalle(DetalleVenta detalle) {
@@ -0,0 +1,180 @@
+package com.pos.puntoventaocr.ocr;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Análisis de diseño por perfiles de proyección sobre una imagen binaria (texto negro, fondo blanco).
+ * Encuentra las líneas de texto con el perfil horizontal, descarta ruido y gráficos (logotipos,
+ * códigos QR, barras) y agrupa las líneas cercanas en bloques. Solo esos bloques se envían al OCR.
+ */
+public class AnalizadorDiseno {
+
+    private static final int FILAS_POR_FRANJA = 64;
+    private static final int ALTO_MINIMO_LINEA = 6;
+    // Una "línea" más alta que esta fracción de la imagen es un gráfico, no texto
+    private static final double ALTO_MAXIMO_LINEA = 0.12;
+    // El texto rara vez cubre más de la mitad de su caja; un bloque casi sólido es una imagen o barra
+    private static final double DENSIDAD_MAXIMA = 0.5;
+    private static final int HUECO_MAXIMO_DENTRO_DE_LINEA = 2;
+
+    private final int maximoRegiones;
+
+    public AnalizadorDiseno(int maximoRegiones) {
+        this.maximoRegiones = Math.max(1, maximoRegiones);
+    }
+
+    public AnalizadorDiseno() {
+        this(12);
+    }
+
+    /**
+     * Regiones con texto en orden de lectura (de arriba hacia abajo). Lista vacía si no hay texto.
+     *
+     * @param binaria imagen TYPE_BYTE_GRAY con valores 0 (tinta) y 255 (fondo)
+     */
+    public List<Rectangle> detectarRegiones(BufferedImage binaria) {
+        if (binaria.getType() != BufferedImage.TYPE_BYTE_GRAY) {
+            throw new IllegalArgumentException("Se esperaba una imagen binaria TYPE_BYTE_GRAY");
+        }
+        int ancho = binaria.getWidth();
+        int alto = binaria.getHeight();
+        byte[] pixeles = ((DataBufferByte) binaria.getRaster().getDataBuffer()).getData();
+
+        int[] perfil = perfilHorizontal(pixeles, ancho, alto);
+        int umbralFila = Math.max(2, ancho / 500);
+
+        List<Rectangle> lineas = new ArrayList<>();
+        int y = 0;
+        while (y < alto) {
+            if (perfil[y] < umbralFila) {
+                y++;
+                continue;
+            }
+            int inicio = y;
+            int fin = y;
+            // Se toleran huecos de 1-2 filas (acentos, puntos de la i)
+            while (y < alto && (perfil[y] >= umbralFila || y - fin <= HUECO_MAXIMO_DENTRO_DE_LINEA)) {
+                if (perfil[y] >= umbralFila) {
+                    fin = y;
+                }
+                y++;
+            }
+
+            Rectangle linea = recortarHorizontal(pixeles, ancho, inicio, fin + 1);
+            if (linea != null && esTexto(pixeles, ancho, alto, linea)) {
+                lineas.add(linea);
+            }
+        }
+
+        if (lineas.isEmpty()) {
+            return lineas;
+        }
+
+        int[] alturas = lineas.stream().mapToInt(r -> r.height).sorted().toArray();
+        int altoMediano = alturas[alturas.length / 2];
+
+        // Se agrupan líneas separadas por menos de una línea; si quedan demasiados bloques
+        // se relaja la tolerancia (cada región es una invocación del motor OCR)
+        double tolerancia = 1.0;
+        List<Rectangle> bloques = agrupar(lineas, (int) Math.round(altoMediano * tolerancia));
+        while (bloques.size() > maximoRegiones) {
+            tolerancia *= 2;
+            bloques = agrupar(lineas, (int) Math.round(altoMediano * tolerancia));
+        }
+
+        // Margen para no cortar ascendentes y descendentes
+        int margen = Math.max(4, altoMediano / 2);
+        for (Rectangle bloque : bloques) {
+            bloque.grow(margen, margen);
+            Rectangle.intersect(bloque, new Rectangle(0, 0, ancho, alto), bloque);
+        }
+        return bloques;
+    }
+
+    /**
+     * Fracción del área de la imagen que cubren las regiones
+     */
+    public static double cobertura(List<Rectangle> regiones, int ancho, int alto) {
+        long area = 0;
+        for (Rectangle region : regiones) {
+            area += (long) region.width * region.height;
+        }
+        return (double) area / ((long) ancho * alto);
+    }
+
+    // Métodos privados auxiliares
+    private static int[] perfilHorizontal(byte[] pixeles, int ancho, int alto) {
+        int[] perfil = new int[alto];
+        int franjas = (alto + FILAS_POR_FRANJA - 1) / FILAS_POR_FRANJA;
+        IntStream.range(0, franjas).parallel().forEach(f -> {
+            int hasta = Math.min(alto, (f + 1) * FILAS_POR_FRANJA);
+            for (int y = f * FILAS_POR_FRANJA; y < hasta; y++) {
+                int negros = 0;
+                for (int i = y * ancho, fin = i + ancho; i < fin; i++) {
+                    if (pixeles[i] == 0) {
+                        negros++;
+                    }
+                }
+                perfil[y] = negros;
+            }
+        });
+        return perfil;
+    }
+
+    // Caja de la línea limitada a las columnas que tienen tinta
+    private static Rectangle recortarHorizontal(byte[] pixeles, int ancho, int yInicio, int yFin) {
+        int[] columnas = new int[ancho];
+        for (int y = yInicio; y < yFin; y++) {
+            for (int x = 0, i = y * ancho; x < ancho; x++, i++) {
+                if (pixeles[i] == 0) {
+                    columnas[x]++;
+                }
+            }
+        }
+
+        int x0 = 0;
+        while (x0 < ancho && columnas[x0] == 0) {
+            x0++;
+        }
+        int x1 = ancho - 1;
+        while (x1 > x0 && columnas[x1] == 0) {
+            x1--;
+        }
+        return x0 >= ancho ? null : new Rectangle(x0, yInicio, x1 - x0 + 1, yFin - yInicio);
+    }
+
+    private static boolean esTexto(byte[] pixeles, int ancho, int alto, Rectangle linea) {
+        if (linea.height < ALTO_MINIMO_LINEA || linea.height > alto * ALTO_MAXIMO_LINEA) {
+            return false;
+        }
+
+        long negros = 0;
+        for (int y = linea.y; y < linea.y + linea.height; y++) {
+            for (int x = linea.x, i = y * ancho + linea.x; x < linea.x + linea.width; x++, i++) {
+                if (pixeles[i] == 0) {
+                    negros++;
+                }
+            }
+        }
+        return negros <= (long) (linea.width * (double) linea.height * DENSIDAD_MAXIMA);
+    }
+
+    private static List<Rectangle> agrupar(List<Rectangle> lineas, int huecoMaximo) {
+        List<Rectangle> bloques = new ArrayList<>();
+        Rectangle actual = null;
+        for (Rectangle linea : lineas) {
+            if (actual != null && linea.y - (actual.y + actual.height) <= huecoMaximo) {
+                actual.add(linea);
+            } else {
+                actual = new Rectangle(linea);
+                bloques.add(actual);
+            }
+        }
+        return bloques;
+    }
+}
@@ -0,0 +1,207 @@
+package com.pos.puntoventaocr.ocr;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Caché persistente de texto OCR. La clave la arma quien lo usa: el SHA-256 del archivo de imagen
+ * más una firma del motor y la configuración que produjeron el texto (ver MotorOCR).
+ * Cada entrada es un archivo <clave>.txt en el directorio del caché. El orden LRU se lleva en
+ * memoria y se persiste con la fecha de modificación (se actualiza en cada acierto), así que
+ * sobrevive a reinicios. Cuando el tamaño total supera el máximo se borran las menos usadas.
+ */
+public class CacheResultadosOCR {
+
+    private static final String EXTENSION = ".txt";
+    private static final int TAMANO_BUFFER = 64 * 1024;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Path directorio;
+    private final long tamanoMaximoBytes;
+
+    // hash -> tamaño en bytes; accessOrder = true deja primero la entrada menos usada
+    private final LinkedHashMap<String, Long> entradas = new LinkedHashMap<>(256, 0.75f, true);
+    private long tamanoTotal = 0;
+
+    public CacheResultadosOCR(String directorio, long tamanoMaximoBytes) throws IOException {
+        this.directorio = Paths.get(directorio);
+        this.tamanoMaximoBytes = tamanoMaximoBytes;
+        Files.createDirectories(this.directorio);
+        cargarIndice();
+    }
+
+    /**
+     * SHA-256 del contenido del archivo en hexadecimal
+     */
+    public static String calcularHash(String rutaArchivo) throws IOException {
+        MessageDigest digest = crearDigest();
+
+        byte[] buffer = new byte[TAMANO_BUFFER];
+        try (InputStream entrada = Files.newInputStream(Paths.get(rutaArchivo))) {
+            int leidos;
+            while ((leidos = entrada.read(buffer)) != -1) {
+                digest.update(buffer, 0, leidos);
+            }
+        }
+        return aHex(digest.digest());
+    }
+
+    /**
+     * SHA-256 de un texto en hexadecimal
+     */
+    public static String calcularHashTexto(String texto) {
+        return aHex(crearDigest().digest(texto.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Texto OCR guardado para el hash, o null si no está en caché
+     */
+    public String obtener(String hash) {
+        synchronized (this) {
+            if (!entradas.containsKey(hash)) {
+                return null;
+            }
+            entradas.get(hash); // Marca la entrada como usada recientemente
+        }
+
+        Path archivo = rutaEntrada(hash);
+        try {
+            String texto = new String(Files.readAllBytes(archivo), StandardCharsets.UTF_8);
+            Files.setLastModifiedTime(archivo, FileTime.fromMillis(System.currentTimeMillis()));
+            return texto;
+        } catch (IOException e) {
+            // Borrado por fuera o ilegible: se descarta la entrada
+            quitar(hash);
+            return null;
+        }
+    }
+
+    public void guardar(String hash, String texto) {
+        byte[] contenido = texto.getBytes(StandardCharsets.UTF_8);
+        Path archivo = rutaEntrada(hash);
+
+        try {
+            // Escritura atómica: otro proceso nunca ve una entrada a medias
+            Path temporal = Files.createTempFile(directorio, hash, ".tmp");
+            Files.write(temporal, contenido);
+            Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Error al guardar en caché OCR: " + e.getMessage());
+            return;
+        }
+
+        List<String> expulsadas = new ArrayList<>();
+        synchronized (this) {
+            Long anterior = entradas.put(hash, (long) contenido.length);
+            tamanoTotal += contenido.length - (anterior != null ? anterior : 0L);
+
+            Iterator<Map.Entry<String, Long>> iterador = entradas.entrySet().iterator();
+            while (tamanoTotal > tamanoMaximoBytes && iterador.hasNext()) {
+                Map.Entry<String, Long> masAntigua = iterador.next();
+                if (masAntigua.getKey().equals(hash)) {
+                    continue;
+                }
+                tamanoTotal -= masAntigua.getValue();
+                expulsadas.add(masAntigua.getKey());
+                iterador.remove();
+            }
+        }
+
+        for (String expulsada : expulsadas) {
+            try {
+                Files.deleteIfExists(rutaEntrada(expulsada));
+            } catch (IOException e) {
+                System.err.println("Error al expulsar entrada del caché OCR: " + e.getMessage());
+            }
+        }
+    }
+
+    public synchronized int getTamano() {
+        return entradas.size();
+    }
+
+    public synchronized long getTamanoBytes() {
+        return tamanoTotal;
+    }
+
+    // Métodos privados auxiliares
+    private static MessageDigest crearDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    private static String aHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            hex[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(hex);
+    }
+
+    private Path rutaEntrada(String hash) {
+        return directorio.resolve(hash + EXTENSION);
+    }
+
+    private synchronized void quitar(String hash) {
+        Long tamano = entradas.remove(hash);
+        if (tamano != null) {
+            tamanoTotal -= tamano;
+        }
+    }
+
+    // Reconstruye el índice LRU desde disco, de la entrada más antigua a la más reciente
+    private void cargarIndice() throws IOException {
+        // Temporales que quedaron de una escritura interrumpida
+        try (DirectoryStream<Path> temporales = Files.newDirectoryStream(directorio, "*.tmp")) {
+            for (Path temporal : temporales) {
+                Files.deleteIfExists(temporal);
+            }
+        }
+
+        List<Path> archivos = new ArrayList<>();
+        try (DirectoryStream<Path> contenido = Files.newDirectoryStream(directorio, "*" + EXTENSION)) {
+            for (Path archivo : contenido) {
+                archivos.add(archivo);
+            }
+        }
+
+        List<FileTime> fechas = new ArrayList<>(archivos.size());
+        for (Path archivo : archivos) {
+            fechas.add(Files.getLastModifiedTime(archivo));
+        }
+        List<Integer> orden = new ArrayList<>();
+        for (int i = 0; i < archivos.size(); i++) {
+            orden.add(i);
+        }
+        orden.sort(Comparator.comparing(fechas::get));
+
+        synchronized (this) {
+            for (int i : orden) {
+                Path archivo = archivos.get(i);
+                String nombre = archivo.getFileName().toString();
+                long tamano = Files.size(archivo);
+                entradas.put(nombre.substring(0, nombre.length() - EXTENSION.length()), tamano);
+                tamanoTotal += tamano;
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.pos.puntoventaocr.ocr;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Campos detectados en el texto de un comprobante de transferencia.
+ * Cualquier campo puede ser null si no se encontró en el texto.
+ */
+public class CamposComprobante {
+
+    // Campos del comprobante; el nombre es la llave usada en JSON y en ComprobanteOCR
+    public enum Campo {
+        BANCO("bancoEmisor"),
+        MONTO("montoDetectado"),
+        FECHA("fechaTransferencia"),
+        REFERENCIA("referenciaOperacion"),
+        CUENTA("cuentaRemitente"),
+        BENEFICIARIO("nombreBeneficiario");
+
+        private final String nombre;
+
+        Campo(String nombre) {
+            this.nombre = nombre;
+        }
+
+        public String getNombre() { return nombre; }
+    }
+
+    private String bancoEmisor;
+    private BigDecimal montoDetectado;
+    private LocalDateTime fechaTransferencia;
+    private String referenciaOperacion;
+    private String cuentaRemitente;
+    private String nombreBeneficiario;
+    private String plantilla; // Id de la plantilla de banco usada
+    // Confianza OCR (0 a 100) de las palabras de cada campo; falta si el motor no la informa
+    private final Map<Campo, Double> confianzas = new EnumMap<>(Campo.class);
+
+    public boolean estaCompleto() {
+        return bancoEmisor != null && montoDetectado != null && fechaTransferencia != null
+                && referenciaOperacion != null && cuentaRemitente != null && nombreBeneficiario != null;
+    }
+
+    public boolean estaVacio() {
+        return bancoEmisor == null && montoDetectado == null && fechaTransferencia == null
+                && referenciaOperacion == null && cuentaRemitente == null && nombreBeneficiario == null;
+    }
+
+    // Representación JSON para la columna datos_extraidos (solo los campos detectados)
+    public String aJson() {
+        StringBuilder json = new StringBuilder(256).append('{');
+        agregar(json, "bancoEmisor", bancoEmisor);
+        agregar(json, "montoDetectado", montoDetectado != null ? montoDetectado.toPlainString() : null);
+        agregar(json, "fechaTransferencia", fechaTransferencia != null ? fechaTransferencia.toString() : null);
+        agregar(json, "referenciaOperacion", referenciaOperacion);
+        agregar(json, "cuentaRemitente", cuentaRemitente);
+        agregar(json, "nombreBeneficiario", nombreBeneficiario);
+        agregar(json, "plantilla", plantilla);
+        if (!confianzas.isEmpty()) {
+            json.append(json.length() > 1 ? "," : "").append("\"confianza\":{");
+            boolean primero = true;
+            for (Map.Entry<Campo, Double> entrada : confianzas.entrySet()) {
+                json.append(primero ? "" : ",").append('"').append(entrada.getKey().getNombre()).append("\":")
+                        .append(Math.round(entrada.getValue() * 10) / 10.0);
+                primero = false;
+            }
+            json.append('}');
+        }
+        return json.append('}').toString();
+    }
+
+    public void setConfianza(Campo campo, double confianza) {
+        confianzas.put(campo, confianza);
+    }
+
+    // Confianza del campo, o null si no se conoce
+    public Double getConfianza(Campo campo) {
+        return confianzas.get(campo);
+    }
+
+    // Confianzas por nombre de campo (bancoEmisor, montoDetectado, ...)
+    public Map<String, Double> getConfianzasPorNombre() {
+        Map<String, Double> porNombre = new LinkedHashMap<>();
+        confianzas.forEach((campo, confianza) -> porNombre.put(campo.getNombre(), confianza));
+        return porNombre;
+    }
+
+    private static void agregar(StringBuilder json, String llave, String valor) {
+        if (valor == null) {
+            return;
+        }
+        if (json.length() > 1) {
+            json.append(',');
+        }
+        json.append('"').append(llave).append("\":\"");
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            switch (c) {
+                case '"': json.append("\\\""); break;
+                case '\\': json.append("\\\\"); break;
+                case '\n': json.append("\\n"); break;
+                case '\r': json.append("\\r"); break;
+                case '\t': json.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+
+    // Getters y Setters
+    public String getBancoEmisor() { return bancoEmisor; }
+    public void setBancoEmisor(String bancoEmisor) { this.bancoEmisor = bancoEmisor; }
+
+    public BigDecimal getMontoDetectado() { return montoDetectado; }
+    public void setMontoDetectado(BigDecimal montoDetectado) { this.montoDetectado = montoDetectado; }
+
+    public LocalDateTime getFechaTransferencia() { return fechaTransferencia; }
+    public void setFechaTransferencia(LocalDateTime fechaTransferencia) { this.fechaTransferencia = fechaTransferencia; }
+
+    public String getReferenciaOperacion() { return referenciaOperacion; }
+    public void setReferenciaOperacion(String referenciaOperacion) { this.referenciaOperacion = referenciaOperacion; }
+
+    public String getCuentaRemitente() { return cuentaRemitente; }
+    public void setCuentaRemitente(String cuentaRemitente) { this.cuentaRemitente = cuentaRemitente; }
+
+    public String getNombreBeneficiario() { return nombreBeneficiario; }
+    public void setNombreBeneficiario(String nombreBeneficiario) { this.nombreBeneficiario = nombreBeneficiario; }
+
+    public String getPlantilla() { return plantilla; }
+    public void setPlantilla(String plantilla) { this.plantilla = plantilla; }
+
+    @Override
+    public String toString() {
+        return "CamposComprobante" + aJson();
+    }
+}
@@ -0,0 +1,106 @@
+package com.pos.puntoventaocr.ocr;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.regex.Matcher;
+
+/**
+ * Conjunto de plantillas de banco disponibles.
+ * Primero se cargan las incluidas en la aplicación (plantillas-bancos.properties) y después
+ * los .properties del directorio externo, que agregan bancos o reemplazan una plantilla con el mismo id.
+ */
+public class CatalogoPlantillas {
+
+    private static final String RECURSO_PLANTILLAS = "/com/pos/puntoventaocr/ocr/plantillas-bancos.properties";
+
+    private final List<PlantillaBanco> plantillas;
+    private final PlantillaBanco generica = PlantillaBanco.generica();
+
+    public CatalogoPlantillas(List<PlantillaBanco> plantillas) {
+        this.plantillas = Collections.unmodifiableList(new ArrayList<>(plantillas));
+    }
+
+    /**
+     * @param directorioExterno directorio con .properties adicionales; puede ser null o vacío
+     */
+    public static CatalogoPlantillas cargar(String directorioExterno) {
+        Map<String, PlantillaBanco> porId = new LinkedHashMap<>();
+
+        try (InputStream recurso = CatalogoPlantillas.class.getResourceAsStream(RECURSO_PLANTILLAS)) {
+            if (recurso != null) {
+                agregar(porId, leer(recurso), RECURSO_PLANTILLAS);
+            }
+        } catch (IOException e) {
+            System.err.println("Error al cargar plantillas de bancos incluidas: " + e.getMessage());
+        }
+
+        if (directorioExterno != null && !directorioExterno.trim().isEmpty()) {
+            Path directorio = Paths.get(directorioExterno);
+            if (Files.isDirectory(directorio)) {
+                try (DirectoryStream<Path> archivos = Files.newDirectoryStream(directorio, "*.properties")) {
+                    for (Path archivo : archivos) {
+                        try (InputStream entrada = Files.newInputStream(archivo)) {
+                            agregar(porId, leer(entrada), archivo.toString());
+                        }
+                    }
+                } catch (IOException e) {
+                    System.err.println("Error al cargar plantillas de bancos de " + directorio + ": " + e.getMessage());
+                }
+            }
+        }
+
+        return new CatalogoPlantillas(new ArrayList<>(porId.values()));
+    }
+
+    /**
+     * Elige la plantilla cuyo patrón de detección aparece primero en el texto
+     * (el nombre del banco suele estar en el encabezado). Si ninguno coincide, la genérica.
+     *
+     * @param textoMayusculas texto OCR ya convertido a mayúsculas
+     */
+    public PlantillaBanco detectar(String textoMayusculas) {
+        PlantillaBanco elegida = generica;
+        int mejorPosicion = Integer.MAX_VALUE;
+
+        for (PlantillaBanco plantilla : plantillas) {
+            Matcher matcher = plantilla.getDeteccion().matcher(textoMayusculas);
+            if (matcher.find() && matcher.start() < mejorPosicion) {
+                mejorPosicion = matcher.start();
+                elegida = plantilla;
+            }
+        }
+        return elegida;
+    }
+
+    public List<PlantillaBanco> getPlantillas() {
+        return plantillas;
+    }
+
+    // Métodos privados auxiliares
+    private static Properties leer(InputStream entrada) throws IOException {
+        Properties propiedades = new Properties();
+        try (Reader lector = new InputStreamReader(entrada, StandardCharsets.UTF_8)) {
+            propiedades.load(lector);
+        }
+        return propiedades;
+    }
+
+    private static void agregar(Map<String, PlantillaBanco> porId, Properties propiedades, String origen) {
+        for (PlantillaBanco plantilla : PlantillaBanco.desdePropiedades(propiedades, origen)) {
+            porId.put(plantilla.getId(), plantilla);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.pos.puntoventaocr.ocr;
+
+/**
+ * Etapas del procesamiento de un comprobante, en orden, con la fracción de avance
+ * aproximada al iniciar cada una (el reconocimiento es la etapa más larga).
+ */
+public enum EtapaOCR {
+    CARGA("Cargando imagen", 0.0),
+    PREPROCESAMIENTO("Preprocesando imagen", 0.10),
+    RECONOCIMIENTO("Reconociendo texto", 0.30),
+    EXTRACCION("Extrayendo datos", 0.85),
+    VALIDACION("Validando datos", 0.95);
+
+    private final String descripcion;
+    private final double progreso;
+
+    EtapaOCR(String descripcion, double progreso) {
+        this.descripcion = descripcion;
+        this.progreso = progreso;
+    }
+
+    public String getDescripcion() { return descripcion; }
+    public double getProgreso() { return progreso; }
+}
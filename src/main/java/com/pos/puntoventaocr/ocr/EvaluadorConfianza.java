@@ -0,0 +1,149 @@
+package com.pos.puntoventaocr.ocr;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Calcula la confianza de cada campo extraído a partir de la confianza de las palabras del OCR.
+ * Busca en las palabras reconocidas la secuencia que forma el valor del campo; la confianza
+ * del campo es la de su palabra menos confiable. Si el valor aparece varias veces se toma la
+ * aparición más confiable (una lectura clara del mismo valor basta para confirmarlo).
+ */
+public class EvaluadorConfianza {
+
+    private EvaluadorConfianza() {
+    }
+
+    public static void evaluar(CamposComprobante campos, TextoReconocido reconocido) {
+        if (!reconocido.tieneConfianza()) {
+            return;
+        }
+
+        // Palabras normalizadas (solo letras y dígitos), sin las que quedan vacías
+        List<String> textos = new ArrayList<>();
+        List<Double> confianzas = new ArrayList<>();
+        for (TextoReconocido.Palabra palabra : reconocido.getPalabras()) {
+            String normalizada = normalizar(palabra.getTexto());
+            if (!normalizada.isEmpty()) {
+                textos.add(normalizada);
+                confianzas.add(palabra.getConfianza());
+            }
+        }
+
+        asignar(campos, CamposComprobante.Campo.BANCO, buscarTexto(campos.getBancoEmisor(), textos, confianzas));
+        asignar(campos, CamposComprobante.Campo.REFERENCIA, buscarTexto(campos.getReferenciaOperacion(), textos, confianzas));
+        asignar(campos, CamposComprobante.Campo.CUENTA, buscarTexto(campos.getCuentaRemitente(), textos, confianzas));
+        asignar(campos, CamposComprobante.Campo.BENEFICIARIO, buscarTexto(campos.getNombreBeneficiario(), textos, confianzas));
+        if (campos.getMontoDetectado() != null) {
+            asignar(campos, CamposComprobante.Campo.MONTO,
+                    buscarDigitos(digitosMonto(campos.getMontoDetectado()), textos, confianzas));
+        }
+        if (campos.getFechaTransferencia() != null) {
+            asignar(campos, CamposComprobante.Campo.FECHA,
+                    buscarDigitos(digitosFecha(campos.getFechaTransferencia().toLocalDate()), textos, confianzas));
+        }
+    }
+
+    // Métodos privados auxiliares
+    private static void asignar(CamposComprobante campos, CamposComprobante.Campo campo, double confianza) {
+        if (confianza >= 0) {
+            campos.setConfianza(campo, confianza);
+        }
+    }
+
+    // Mejor aparición de la secuencia de palabras del valor; -1 si no aparece
+    private static double buscarTexto(String valor, List<String> textos, List<Double> confianzas) {
+        if (valor == null) {
+            return -1;
+        }
+        List<String> tokens = new ArrayList<>();
+        for (String token : valor.split("\\s+")) {
+            String normalizado = normalizar(token);
+            if (!normalizado.isEmpty()) {
+                tokens.add(normalizado);
+            }
+        }
+        if (tokens.isEmpty()) {
+            return -1;
+        }
+
+        double mejor = -1;
+        for (int inicio = 0; inicio + tokens.size() <= textos.size(); inicio++) {
+            double minimo = Double.MAX_VALUE;
+            int i = 0;
+            while (i < tokens.size() && coincide(textos.get(inicio + i), tokens.get(i), tokens.size() == 1)) {
+                minimo = Math.min(minimo, confianzas.get(inicio + i));
+                i++;
+            }
+            if (i == tokens.size()) {
+                mejor = Math.max(mejor, minimo);
+            }
+        }
+        return mejor;
+    }
+
+    // Un valor de una sola palabra puede venir pegado a su etiqueta ("REF:ABC123" -> "REFABC123")
+    private static boolean coincide(String palabra, String token, boolean unico) {
+        return palabra.equals(token) || (unico && token.length() >= 4 && palabra.contains(token));
+    }
+
+    // Palabras cuyos dígitos son exactamente alguna de las formas del valor
+    private static double buscarDigitos(String[] formas, List<String> textos, List<Double> confianzas) {
+        double mejor = -1;
+        for (int i = 0; i < textos.size(); i++) {
+            String digitos = soloDigitos(textos.get(i));
+            if (digitos.isEmpty()) {
+                continue;
+            }
+            for (String forma : formas) {
+                if (digitos.equals(forma)) {
+                    mejor = Math.max(mejor, confianzas.get(i));
+                    break;
+                }
+            }
+        }
+        return mejor;
+    }
+
+    // "$1,250.00" se extrae como 1250.00 y "1,250" como 1250; en ambos casos coinciden los dígitos
+    private static String[] digitosMonto(BigDecimal monto) {
+        return new String[]{soloDigitos(monto.toPlainString())};
+    }
+
+    private static String[] digitosFecha(LocalDate fecha) {
+        String dia = String.valueOf(fecha.getDayOfMonth());
+        String mes = String.valueOf(fecha.getMonthValue());
+        String dia2 = String.format("%02d", fecha.getDayOfMonth());
+        String mes2 = String.format("%02d", fecha.getMonthValue());
+        String anio = String.valueOf(fecha.getYear());
+        String anio2 = anio.substring(anio.length() - 2);
+        return new String[]{
+                dia2 + mes2 + anio, dia + mes + anio, dia2 + mes2 + anio2, dia + mes + anio2
+        };
+    }
+
+    private static String normalizar(String texto) {
+        StringBuilder normalizado = new StringBuilder(texto.length());
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                normalizado.append(c);
+            }
+        }
+        return normalizado.toString().toUpperCase(Locale.ROOT);
+    }
+
+    private static String soloDigitos(String texto) {
+        StringBuilder digitos = new StringBuilder(texto.length());
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digitos.append(c);
+            }
+        }
+        return digitos.toString();
+    }
+}
@@ -0,0 +1,331 @@
+package com.pos.puntoventaocr.ocr;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Extrae los campos de un comprobante recorriendo el texto OCR una sola vez, línea por línea.
+ * Primero identifica el banco emisor y después usa las etiquetas de su plantilla para ubicar
+ * cada campo; lo que no aparece junto a una etiqueta se completa con coincidencias libres.
+ * Los patrones y formateadores son constantes y los Matcher se reutilizan entre líneas.
+ * Es inmutable y seguro entre hilos.
+ */
+public class ExtractorCampos {
+
+    private static final Pattern PATRON_MONTO = Pattern.compile("(\\$)?\\s*(\\d{1,3}(?:,\\d{3})+(?:\\.\\d{1,2})?|\\d+(?:\\.\\d{1,2})?)");
+    private static final Pattern PATRON_FECHA = Pattern.compile("(\\d{1,2})([/-])(\\d{1,2})\\2(\\d{2,4})");
+    // Sin etiqueta la referencia debe llevar al menos un dígito y medir de 8 a 20 caracteres
+    private static final Pattern PATRON_REFERENCIA_LIBRE = Pattern.compile("\\b((?=[A-Z]*\\d)[A-Z0-9]{8,20})\\b");
+
+    private static final DateTimeFormatter FORMATO_BARRA = DateTimeFormatter.ofPattern("d/M/yyyy");
+    private static final DateTimeFormatter FORMATO_BARRA_CORTO = DateTimeFormatter.ofPattern("d/M/yy");
+    private static final DateTimeFormatter FORMATO_GUION = DateTimeFormatter.ofPattern("d-M-yyyy");
+    private static final DateTimeFormatter FORMATO_GUION_CORTO = DateTimeFormatter.ofPattern("d-M-yy");
+
+    private static final BigDecimal MONTO_MINIMO = BigDecimal.ONE;
+    private static final BigDecimal MONTO_MAXIMO = new BigDecimal("1000000");
+
+    // Campo cuya etiqueta quedó sola en su línea; el valor se busca en la siguiente
+    private enum Campo { MONTO, REFERENCIA, BENEFICIARIO, CUENTA, FECHA }
+
+    private final CatalogoPlantillas catalogo;
+
+    public ExtractorCampos(CatalogoPlantillas catalogo) {
+        this.catalogo = catalogo;
+    }
+
+    public ExtractorCampos() {
+        this(CatalogoPlantillas.cargar(null));
+    }
+
+    public CamposComprobante extraer(String texto) {
+        CamposComprobante campos = new CamposComprobante();
+        if (texto == null || texto.isEmpty()) {
+            return campos;
+        }
+
+        String mayusculas = texto.toUpperCase(Locale.ROOT);
+        PlantillaBanco plantilla = catalogo.detectar(mayusculas);
+        campos.setPlantilla(plantilla.getId());
+        if (!plantilla.esGenerica()) {
+            campos.setBancoEmisor(plantilla.getBanco());
+        }
+
+        // Un Matcher por patrón para todo el texto; reset() por línea no asigna memoria nueva
+        Matcher banco = plantilla.esGenerica() ? plantilla.getDeteccion().matcher("") : null;
+        Matcher monto = PATRON_MONTO.matcher("");
+        Matcher fecha = PATRON_FECHA.matcher("");
+        Matcher cuenta = plantilla.getPatronCuenta().matcher("");
+        Matcher referencia = plantilla.getPatronReferencia().matcher("");
+        Matcher referenciaLibre = PATRON_REFERENCIA_LIBRE.matcher("");
+
+        // Candidatos de menor prioridad; solo se usan si el campo no aparece junto a su etiqueta
+        BigDecimal montoConSigno = null;
+        BigDecimal montoSinEtiqueta = null;
+        String referenciaSinEtiqueta = null;
+        String cuentaSinEtiqueta = null;
+        LocalDate fechaSinEtiqueta = null;
+
+        // Si el inicio de la región no aparece (otro diseño del comprobante, error de OCR) se usa todo el texto
+        boolean enRegion = plantilla.getRegionInicio() == null || !mayusculas.contains(plantilla.getRegionInicio());
+        Campo pendiente = null;
+
+        int inicio = 0;
+        int largo = mayusculas.length();
+        while (inicio < largo && !campos.estaCompleto()) {
+            int fin = mayusculas.indexOf('\n', inicio);
+            if (fin < 0) {
+                fin = largo;
+            }
+            String linea = mayusculas.substring(inicio, fin).trim();
+            inicio = fin + 1;
+            if (linea.isEmpty()) {
+                continue;
+            }
+
+            if (!enRegion) {
+                if (!linea.contains(plantilla.getRegionInicio())) {
+                    continue;
+                }
+                enRegion = true;
+            }
+            if (plantilla.getRegionFin() != null && linea.contains(plantilla.getRegionFin())) {
+                break;
+            }
+
+            // Valor de una etiqueta que venía sola en la línea anterior
+            if (pendiente != null) {
+                Campo campo = pendiente;
+                pendiente = null;
+                if (asignarPendiente(campo, linea, campos, monto, referencia, cuenta, fecha)) {
+                    continue;
+                }
+            }
+
+            if (banco != null && campos.getBancoEmisor() == null && banco.reset(linea).find()) {
+                campos.setBancoEmisor(banco.group(1));
+            }
+
+            boolean ignorar = posicionEtiqueta(linea, plantilla.getEtiquetasIgnorar()) >= 0;
+
+            // Fecha
+            boolean lineaConFecha = fecha.reset(linea).find();
+            int etiquetaFecha = posicionEtiqueta(linea, plantilla.getEtiquetasFecha());
+            if (lineaConFecha) {
+                LocalDate dia = parsearFecha(fecha);
+                if (dia != null && etiquetaFecha >= 0) {
+                    campos.setFechaTransferencia(dia.atStartOfDay());
+                } else if (dia != null && fechaSinEtiqueta == null) {
+                    fechaSinEtiqueta = dia;
+                }
+            } else if (etiquetaFecha >= 0 && campos.getFechaTransferencia() == null) {
+                pendiente = Campo.FECHA;
+            }
+
+            // Cuenta
+            if (campos.getCuentaRemitente() == null) {
+                int etiqueta = posicionEtiqueta(linea, plantilla.getEtiquetasCuenta());
+                if (etiqueta >= 0) {
+                    if (cuenta.reset(resto(linea, etiqueta)).find()) {
+                        campos.setCuentaRemitente(cuenta.group(1));
+                    } else {
+                        pendiente = Campo.CUENTA;
+                    }
+                } else if (cuentaSinEtiqueta == null && cuenta.reset(linea).find()) {
+                    cuentaSinEtiqueta = cuenta.group(1);
+                }
+            }
+
+            // Beneficiario
+            if (campos.getNombreBeneficiario() == null) {
+                int etiqueta = posicionEtiqueta(linea, plantilla.getEtiquetasBeneficiario());
+                if (etiqueta >= 0) {
+                    String valor = resto(linea, etiqueta);
+                    if (!valor.isEmpty()) {
+                        campos.setNombreBeneficiario(valor);
+                    } else {
+                        pendiente = Campo.BENEFICIARIO;
+                    }
+                }
+            }
+
+            // Monto: las líneas de comisión, saldo, etc. no cuentan
+            if (campos.getMontoDetectado() == null && !ignorar) {
+                int etiqueta = posicionEtiqueta(linea, plantilla.getEtiquetasMonto());
+                if (etiqueta >= 0) {
+                    BigDecimal valor = primerMonto(monto.reset(resto(linea, etiqueta)), false);
+                    if (valor != null) {
+                        campos.setMontoDetectado(valor);
+                    } else {
+                        pendiente = Campo.MONTO;
+                    }
+                } else if (!lineaConFecha && posicionEtiqueta(linea, plantilla.getEtiquetasCuenta()) < 0
+                        && !cuenta.reset(linea).find()) {
+                    if (montoConSigno == null) {
+                        montoConSigno = primerMonto(monto.reset(linea), true);
+                    }
+                    if (montoSinEtiqueta == null) {
+                        montoSinEtiqueta = primerMonto(monto.reset(linea), false);
+                    }
+                }
+            }
+
+            // Referencia
+            if (campos.getReferenciaOperacion() == null) {
+                int etiqueta = posicionEtiqueta(linea, plantilla.getEtiquetasReferencia());
+                if (etiqueta >= 0) {
+                    if (referencia.reset(resto(linea, etiqueta)).find()) {
+                        campos.setReferenciaOperacion(referencia.group(1));
+                    } else {
+                        pendiente = Campo.REFERENCIA;
+                    }
+                } else if (referenciaSinEtiqueta == null && referenciaLibre.reset(linea).find()) {
+                    referenciaSinEtiqueta = referenciaLibre.group(1);
+                }
+            }
+        }
+
+        if (campos.getMontoDetectado() == null) {
+            campos.setMontoDetectado(montoConSigno != null ? montoConSigno : montoSinEtiqueta);
+        }
+        if (campos.getReferenciaOperacion() == null) {
+            campos.setReferenciaOperacion(referenciaSinEtiqueta);
+        }
+        if (campos.getCuentaRemitente() == null) {
+            campos.setCuentaRemitente(cuentaSinEtiqueta);
+        }
+        if (campos.getFechaTransferencia() == null && fechaSinEtiqueta != null) {
+            campos.setFechaTransferencia(fechaSinEtiqueta.atStartOfDay());
+        }
+        return campos;
+    }
+
+    public CatalogoPlantillas getCatalogo() {
+        return catalogo;
+    }
+
+    // Métodos privados auxiliares
+    private static boolean asignarPendiente(Campo campo, String linea, CamposComprobante campos,
+                                            Matcher monto, Matcher referencia, Matcher cuenta, Matcher fecha) {
+        switch (campo) {
+            case MONTO:
+                BigDecimal valor = primerMonto(monto.reset(linea), false);
+                if (valor != null) {
+                    campos.setMontoDetectado(valor);
+                    return true;
+                }
+                return false;
+            case REFERENCIA:
+                if (referencia.reset(linea).find()) {
+                    campos.setReferenciaOperacion(referencia.group(1));
+                    return true;
+                }
+                return false;
+            case CUENTA:
+                if (cuenta.reset(linea).find()) {
+                    campos.setCuentaRemitente(cuenta.group(1));
+                    return true;
+                }
+                return false;
+            case FECHA:
+                LocalDate dia = fecha.reset(linea).find() ? parsearFecha(fecha) : null;
+                if (dia != null) {
+                    campos.setFechaTransferencia(dia.atStartOfDay());
+                    return true;
+                }
+                return false;
+            case BENEFICIARIO:
+                // Una línea con ':' es otra etiqueta, no el nombre
+                if (linea.indexOf(':') < 0) {
+                    campos.setNombreBeneficiario(linea);
+                    return true;
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Posición donde termina la primera etiqueta encontrada como palabra completa, o -1.
+     * Una etiqueta que empieza con ^ solo cuenta al inicio de la línea.
+     */
+    private static int posicionEtiqueta(String linea, String[] etiquetas) {
+        int mejor = -1;
+        int mejorInicio = Integer.MAX_VALUE;
+        for (String etiqueta : etiquetas) {
+            if (etiqueta.startsWith("^")) {
+                int finEtiqueta = etiqueta.length() - 1;
+                if (linea.regionMatches(0, etiqueta, 1, finEtiqueta)
+                        && (finEtiqueta == linea.length() || !Character.isLetterOrDigit(linea.charAt(finEtiqueta)))) {
+                    return finEtiqueta;
+                }
+                continue;
+            }
+            int desde = 0;
+            int indice;
+            while ((indice = linea.indexOf(etiqueta, desde)) >= 0 && indice < mejorInicio) {
+                int finEtiqueta = indice + etiqueta.length();
+                boolean inicioPalabra = indice == 0 || !Character.isLetterOrDigit(linea.charAt(indice - 1));
+                boolean finPalabra = finEtiqueta == linea.length() || !Character.isLetterOrDigit(linea.charAt(finEtiqueta));
+                if (inicioPalabra && finPalabra) {
+                    mejorInicio = indice;
+                    mejor = finEtiqueta;
+                    break;
+                }
+                desde = indice + 1;
+            }
+        }
+        return mejor;
+    }
+
+    // Texto después de la etiqueta, sin separadores iniciales
+    private static String resto(String linea, int finEtiqueta) {
+        int i = finEtiqueta;
+        while (i < linea.length()) {
+            char c = linea.charAt(i);
+            if (!Character.isWhitespace(c) && c != ':' && c != '.' && c != '#') {
+                break;
+            }
+            i++;
+        }
+        return linea.substring(i).trim();
+    }
+
+    // Primer monto dentro del rango válido; con soloConSigno exige el símbolo $
+    private static BigDecimal primerMonto(Matcher matcher, boolean soloConSigno) {
+        while (matcher.find()) {
+            if (soloConSigno && matcher.group(1) == null) {
+                continue;
+            }
+            String digitos = matcher.group(2);
+            BigDecimal valor = new BigDecimal(digitos.indexOf(',') >= 0 ? digitos.replace(",", "") : digitos);
+            if (valor.compareTo(MONTO_MINIMO) > 0 && valor.compareTo(MONTO_MAXIMO) < 0) {
+                return valor;
+            }
+        }
+        return null;
+    }
+
+    private static LocalDate parsearFecha(Matcher fecha) {
+        boolean conBarra = "/".equals(fecha.group(2));
+        boolean anioCorto = fecha.group(4).length() == 2;
+        if (fecha.group(4).length() == 3) {
+            return null;
+        }
+
+        DateTimeFormatter formato = conBarra
+                ? (anioCorto ? FORMATO_BARRA_CORTO : FORMATO_BARRA)
+                : (anioCorto ? FORMATO_GUION_CORTO : FORMATO_GUION);
+        try {
+            return LocalDate.parse(fecha.group(), formato);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
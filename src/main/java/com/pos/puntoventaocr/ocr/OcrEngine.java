@@ -0,0 +1,27 @@
+package com.pos.puntoventaocr.ocr;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Motor de reconocimiento de texto intercambiable usado por MotorOCR.
+ * Las implementaciones deben poder llamarse desde varios hilos a la vez.
+ */
+public interface OcrEngine {
+
+    // Reconoce el texto de la imagen (ya preprocesada)
+    String reconocer(BufferedImage imagen) throws IOException, InterruptedException;
+
+    // Texto con la confianza de cada palabra; los motores que no la informan devuelven solo el texto
+    default TextoReconocido reconocerConConfianza(BufferedImage imagen) throws IOException, InterruptedException {
+        return TextoReconocido.sinConfianza(reconocer(imagen));
+    }
+
+    // Nombre para bitácora y diagnóstico
+    String getNombre();
+
+    // Indica si tiene sentido reconocer recortes de la imagen por separado (OCR por regiones)
+    default boolean soportaRegiones() {
+        return true;
+    }
+}
@@ -0,0 +1,154 @@
+package com.pos.puntoventaocr.ocr;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool acotado de trabajadores OCR.
+ * Hay un hilo por núcleo y una cola limitada; cuando la cola está llena, enviar() bloquea
+ * al productor (contrapresión) en lugar de acumular trabajos sin límite.
+ * Cada trabajo tiene un tiempo límite: al vencer se interrumpe el hilo trabajador.
+ */
+public class OcrWorkerPool {
+
+    private final ExecutorService trabajadores;
+    private final ScheduledExecutorService temporizador;
+    private final Semaphore cupos;
+    private final int hilos;
+    private final int capacidadCola;
+    private final AtomicInteger enProceso = new AtomicInteger();
+
+    public OcrWorkerPool(int hilos, int capacidadCola) {
+        if (hilos <= 0 || capacidadCola < 0) {
+            throw new IllegalArgumentException("Configuración de pool OCR inválida");
+        }
+        this.hilos = hilos;
+        this.capacidadCola = capacidadCola;
+        this.cupos = new Semaphore(hilos + capacidadCola, true);
+
+        AtomicInteger contador = new AtomicInteger();
+        this.trabajadores = new ThreadPoolExecutor(hilos, hilos, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+            Thread hilo = new Thread(r, "ocr-trabajador-" + contador.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        this.temporizador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "ocr-temporizador");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+    // Pool dimensionado a los núcleos disponibles
+    public static OcrWorkerPool porNucleos(int trabajosEnColaPorHilo) {
+        int nucleos = Math.max(1, Runtime.getRuntime().availableProcessors());
+        return new OcrWorkerPool(nucleos, nucleos * trabajosEnColaPorHilo);
+    }
+
+    /**
+     * Envía un trabajo; bloquea mientras el pool y su cola estén llenos.
+     */
+    public <T> CompletableFuture<T> enviar(Callable<T> trabajo, long timeoutMs) throws InterruptedException {
+        cupos.acquire();
+        return ejecutar(trabajo, timeoutMs);
+    }
+
+    /**
+     * Envía un trabajo solo si hay cupo; si no, el futuro termina con RejectedExecutionException.
+     */
+    public <T> CompletableFuture<T> intentarEnviar(Callable<T> trabajo, long timeoutMs) {
+        if (!cupos.tryAcquire()) {
+            CompletableFuture<T> rechazado = new CompletableFuture<>();
+            rechazado.completeExceptionally(new RejectedExecutionException(
+                    "Pool OCR saturado (" + hilos + " hilos, cola de " + capacidadCola + ")"));
+            return rechazado;
+        }
+        return ejecutar(trabajo, timeoutMs);
+    }
+
+    public void cerrar() {
+        trabajadores.shutdownNow();
+        temporizador.shutdownNow();
+    }
+
+    // No acepta más trabajos; los que ya están en curso o en cola terminan normalmente
+    public void cerrarAlTerminar() {
+        trabajadores.shutdown();
+        temporizador.shutdown();
+    }
+
+    public int getHilos() {
+        return hilos;
+    }
+
+    public int getEnProceso() {
+        return enProceso.get();
+    }
+
+    public int getCuposDisponibles() {
+        return cupos.availablePermits();
+    }
+
+    // Métodos privados auxiliares
+    private <T> CompletableFuture<T> ejecutar(Callable<T> trabajo, long timeoutMs) {
+        CompletableFuture<T> resultado = new CompletableFuture<>();
+
+        Future<?> tarea;
+        try {
+            tarea = trabajadores.submit(() -> {
+                if (resultado.isDone()) {
+                    return; // Cancelado o vencido mientras esperaba en cola
+                }
+                enProceso.incrementAndGet();
+                try {
+                    resultado.complete(trabajo.call());
+                } catch (Throwable e) {
+                    resultado.completeExceptionally(e);
+                } finally {
+                    enProceso.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            cupos.release();
+            resultado.completeExceptionally(e);
+            return resultado;
+        }
+
+        ScheduledFuture<?> vencimiento = null;
+        if (timeoutMs > 0) {
+            vencimiento = temporizador.schedule(() -> {
+                if (resultado.completeExceptionally(
+                        new TimeoutException("Trabajo OCR excedió " + timeoutMs + " ms"))) {
+                    tarea.cancel(true);
+                }
+            }, timeoutMs, TimeUnit.MILLISECONDS);
+        }
+
+        ScheduledFuture<?> vencimientoFinal = vencimiento;
+        resultado.whenComplete((valor, error) -> {
+            cupos.release();
+            if (vencimientoFinal != null) {
+                vencimientoFinal.cancel(false);
+            }
+            // Si quien llamó canceló el futuro, también se interrumpe el trabajador
+            if (resultado.isCancelled()) {
+                tarea.cancel(true);
+            }
+        });
+
+        return resultado;
+    }
+}
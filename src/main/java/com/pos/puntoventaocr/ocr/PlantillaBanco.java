@@ -0,0 +1,169 @@
+package com.pos.puntoventaocr.ocr;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Plantilla de extracción para el comprobante de un banco: cómo reconocerlo y qué etiquetas
+ * (anclas) preceden a cada campo en su diseño. Se define en archivos .properties con llaves
+ * del tipo <id>.<propiedad>, por ejemplo:
+ *
+ *   bbva.banco=BBVA
+ *   bbva.deteccion=BBVA|BANCOMER
+ *   bbva.monto.etiquetas=IMPORTE,MONTO
+ *   bbva.referencia.etiquetas=CLAVE DE RASTREO,FOLIO
+ *   bbva.ignorar.etiquetas=COMISION,IVA,SALDO
+ *
+ * Las etiquetas se comparan como palabras completas sobre el texto en mayúsculas.
+ * El valor se toma después de la etiqueta (o de ':') o, si la línea no trae valor, de la siguiente.
+ */
+public class PlantillaBanco {
+
+    public static final String ID_GENERICA = "generica";
+
+    private static final Pattern PATRON_BANCO_GENERICO =
+            Pattern.compile("(BBVA|BANAMEX|SANTANDER|HSBC|BANORTE|SCOTIABANK|INBURSA)");
+    private static final Pattern PATRON_CUENTA_GENERICO =
+            Pattern.compile("(\\*{4}\\d{4}|X{4}\\d{4}|\\d{4}-\\d{4}-\\d{4}-\\d{4})");
+    private static final Pattern PATRON_REFERENCIA_GENERICO =
+            Pattern.compile("\\b((?=[A-Z]*\\d)[A-Z0-9]{6,30})\\b");
+
+    private final String id;
+    private final String banco;
+    private final Pattern deteccion;
+    private final String[] etiquetasMonto;
+    private final String[] etiquetasReferencia;
+    private final String[] etiquetasBeneficiario;
+    private final String[] etiquetasCuenta;
+    private final String[] etiquetasFecha;
+    private final String[] etiquetasIgnorar;
+    private final Pattern patronReferencia;
+    private final Pattern patronCuenta;
+    private final String regionInicio;
+    private final String regionFin;
+
+    public PlantillaBanco(String id, String banco, Pattern deteccion,
+                          String[] etiquetasMonto, String[] etiquetasReferencia, String[] etiquetasBeneficiario,
+                          String[] etiquetasCuenta, String[] etiquetasFecha, String[] etiquetasIgnorar,
+                          Pattern patronReferencia, Pattern patronCuenta, String regionInicio, String regionFin) {
+        this.id = id;
+        this.banco = banco;
+        this.deteccion = deteccion;
+        this.etiquetasMonto = etiquetasMonto;
+        this.etiquetasReferencia = etiquetasReferencia;
+        this.etiquetasBeneficiario = etiquetasBeneficiario;
+        this.etiquetasCuenta = etiquetasCuenta;
+        this.etiquetasFecha = etiquetasFecha;
+        this.etiquetasIgnorar = etiquetasIgnorar;
+        this.patronReferencia = patronReferencia;
+        this.patronCuenta = patronCuenta;
+        this.regionInicio = regionInicio;
+        this.regionFin = regionFin;
+    }
+
+    /**
+     * Plantilla usada cuando ningún banco coincide: el banco se toma del propio texto
+     */
+    public static PlantillaBanco generica() {
+        return new PlantillaBanco(ID_GENERICA, null, PATRON_BANCO_GENERICO,
+                new String[]{"MONTO", "IMPORTE", "TOTAL", "CANTIDAD"},
+                new String[]{"REFERENCIA", "FOLIO", "CLAVE DE RASTREO", "NUMERO DE OPERACION", "NÚMERO DE OPERACIÓN"},
+                new String[]{"BENEFICIARIO"},
+                new String[0],
+                new String[0],
+                new String[]{"COMISION", "COMISIÓN", "SALDO"},
+                PATRON_REFERENCIA_GENERICO, PATRON_CUENTA_GENERICO, null, null);
+    }
+
+    /**
+     * Lee todas las plantillas definidas en las propiedades (una por cada <id>.deteccion).
+     * Las propiedades no indicadas toman el valor de la plantilla genérica.
+     */
+    public static List<PlantillaBanco> desdePropiedades(Properties propiedades, String origen) {
+        TreeSet<String> ids = new TreeSet<>();
+        for (String llave : propiedades.stringPropertyNames()) {
+            if (llave.endsWith(".deteccion")) {
+                ids.add(llave.substring(0, llave.length() - ".deteccion".length()));
+            }
+        }
+
+        PlantillaBanco base = generica();
+        List<PlantillaBanco> plantillas = new ArrayList<>();
+        for (String id : ids) {
+            try {
+                plantillas.add(new PlantillaBanco(id,
+                        propiedades.getProperty(id + ".banco", id.toUpperCase(Locale.ROOT)),
+                        Pattern.compile(propiedades.getProperty(id + ".deteccion"),
+                                Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE),
+                        lista(propiedades, id + ".monto.etiquetas", base.etiquetasMonto),
+                        lista(propiedades, id + ".referencia.etiquetas", base.etiquetasReferencia),
+                        lista(propiedades, id + ".beneficiario.etiquetas", base.etiquetasBeneficiario),
+                        lista(propiedades, id + ".cuenta.etiquetas", base.etiquetasCuenta),
+                        lista(propiedades, id + ".fecha.etiquetas", base.etiquetasFecha),
+                        lista(propiedades, id + ".ignorar.etiquetas", base.etiquetasIgnorar),
+                        patron(propiedades, id + ".referencia.patron", base.patronReferencia),
+                        patron(propiedades, id + ".cuenta.patron", base.patronCuenta),
+                        texto(propiedades, id + ".region.inicio"),
+                        texto(propiedades, id + ".region.fin")));
+            } catch (PatternSyntaxException e) {
+                System.err.println("Plantilla de banco '" + id + "' inválida en " + origen + ": " + e.getMessage());
+            }
+        }
+        return plantillas;
+    }
+
+    public boolean esGenerica() {
+        return banco == null;
+    }
+
+    // Métodos privados auxiliares
+    private static String[] lista(Properties propiedades, String llave, String[] porDefecto) {
+        String valor = propiedades.getProperty(llave);
+        if (valor == null) {
+            return porDefecto;
+        }
+        List<String> etiquetas = new ArrayList<>();
+        for (String etiqueta : valor.split(",")) {
+            String limpia = etiqueta.trim().toUpperCase(Locale.ROOT);
+            if (!limpia.isEmpty()) {
+                etiquetas.add(limpia);
+            }
+        }
+        return etiquetas.toArray(new String[0]);
+    }
+
+    private static Pattern patron(Properties propiedades, String llave, Pattern porDefecto) {
+        String valor = propiedades.getProperty(llave);
+        return valor != null && !valor.trim().isEmpty() ? Pattern.compile(valor.trim()) : porDefecto;
+    }
+
+    private static String texto(Properties propiedades, String llave) {
+        String valor = propiedades.getProperty(llave);
+        return valor != null && !valor.trim().isEmpty() ? valor.trim().toUpperCase(Locale.ROOT) : null;
+    }
+
+    // Getters
+    public String getId() { return id; }
+    public String getBanco() { return banco; }
+    public Pattern getDeteccion() { return deteccion; }
+    public String[] getEtiquetasMonto() { return etiquetasMonto; }
+    public String[] getEtiquetasReferencia() { return etiquetasReferencia; }
+    public String[] getEtiquetasBeneficiario() { return etiquetasBeneficiario; }
+    public String[] getEtiquetasCuenta() { return etiquetasCuenta; }
+    public String[] getEtiquetasFecha() { return etiquetasFecha; }
+    public String[] getEtiquetasIgnorar() { return etiquetasIgnorar; }
+    public Pattern getPatronReferencia() { return patronReferencia; }
+    public Pattern getPatronCuenta() { return patronCuenta; }
+    public String getRegionInicio() { return regionInicio; }
+    public String getRegionFin() { return regionFin; }
+
+    @Override
+    public String toString() {
+        return id;
+    }
+}
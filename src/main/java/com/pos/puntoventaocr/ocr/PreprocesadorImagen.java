@@ -0,0 +1,421 @@
+package com.pos.puntoventaocr.ocr;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Pipeline de preprocesamiento para OCR: escalado, escala de grises, binarización,
+ * enderezado y eliminación de ruido.
+ * Trabaja sobre arreglos int[]/byte[] del raster (no getRGB por píxel) y reparte cada
+ * etapa en franjas horizontales que se procesan en paralelo.
+ */
+public class PreprocesadorImagen {
+
+    public enum Binarizacion { OTSU, SAUVOLA }
+
+    // Etapas (también son las llaves del mapa de tiempos)
+    public static final String ETAPA_ESCALADO = "escalado";
+    public static final String ETAPA_GRISES = "grises";
+    public static final String ETAPA_BINARIZACION = "binarizacion";
+    public static final String ETAPA_ENDEREZADO = "enderezado";
+    public static final String ETAPA_RUIDO = "ruido";
+
+    private static final int FILAS_POR_FRANJA = 64;
+    private static final byte NEGRO = 0;
+    private static final byte BLANCO = (byte) 255;
+
+    // Parámetros de Sauvola
+    private static final double SAUVOLA_K = 0.34;
+    private static final double SAUVOLA_R = 128.0;
+
+    // Enderezado: ángulos probados y ancho de la imagen reducida usada para estimarlo
+    private static final double ANGULO_MAXIMO = 5.0;
+    private static final double PASO_ANGULO = 0.25;
+    private static final double ANGULO_MINIMO_CORRECCION = 0.3;
+    private static final int ANCHO_ESTIMACION = 600;
+
+    private final int ladoMaximoPx;
+    private final Binarizacion binarizacion;
+    private final boolean enderezar;
+    private final boolean eliminarRuido;
+
+    /**
+     * @param ladoMaximoPx lado mayor de la imagen de salida; 2200 px equivale a ~300 DPI
+     *                     en un comprobante de 7 pulgadas
+     */
+    public PreprocesadorImagen(int ladoMaximoPx, Binarizacion binarizacion, boolean enderezar, boolean eliminarRuido) {
+        this.ladoMaximoPx = ladoMaximoPx;
+        this.binarizacion = binarizacion;
+        this.enderezar = enderezar;
+        this.eliminarRuido = eliminarRuido;
+    }
+
+    public PreprocesadorImagen() {
+        this(2200, Binarizacion.SAUVOLA, true, true);
+    }
+
+    public Resultado procesar(BufferedImage original) {
+        Map<String, Long> tiempos = new LinkedHashMap<>();
+
+        long inicio = System.nanoTime();
+        BufferedImage rgb = escalar(original);
+        int ancho = rgb.getWidth();
+        int alto = rgb.getHeight();
+        int[] pixeles = ((DataBufferInt) rgb.getRaster().getDataBuffer()).getData();
+        inicio = registrar(tiempos, ETAPA_ESCALADO, inicio);
+
+        byte[] grises = aGrises(pixeles, ancho, alto);
+        inicio = registrar(tiempos, ETAPA_GRISES, inicio);
+
+        byte[] binaria = binarizacion == Binarizacion.OTSU
+                ? binarizarOtsu(grises, ancho, alto)
+                : binarizarSauvola(grises, ancho, alto);
+        inicio = registrar(tiempos, ETAPA_BINARIZACION, inicio);
+
+        double angulo = 0.0;
+        if (enderezar) {
+            angulo = estimarInclinacion(binaria, ancho, alto);
+            if (Math.abs(angulo) >= ANGULO_MINIMO_CORRECCION) {
+                binaria = rotar(binaria, ancho, alto, -angulo);
+            }
+            inicio = registrar(tiempos, ETAPA_ENDEREZADO, inicio);
+        }
+
+        if (eliminarRuido) {
+            binaria = filtroMayoria(binaria, ancho, alto);
+            registrar(tiempos, ETAPA_RUIDO, inicio);
+        }
+
+        return new Resultado(aImagen(binaria, ancho, alto), angulo, tiempos);
+    }
+
+    // === ETAPAS ===
+
+    // Reduce (nunca amplía) y de paso convierte a TYPE_INT_RGB para tener un int[] directo
+    private BufferedImage escalar(BufferedImage original) {
+        int ancho = original.getWidth();
+        int alto = original.getHeight();
+        double factor = Math.min(1.0, (double) ladoMaximoPx / Math.max(ancho, alto));
+
+        BufferedImage actual = original;
+        // Reducciones grandes en pasos de 1/2 para no perder trazos finos con bilineal
+        while (factor < 0.5) {
+            actual = redimensionar(actual, actual.getWidth() / 2, actual.getHeight() / 2);
+            factor *= 2;
+        }
+
+        int anchoFinal = Math.max(1, (int) Math.round(actual.getWidth() * factor));
+        int altoFinal = Math.max(1, (int) Math.round(actual.getHeight() * factor));
+        if (actual.getType() == BufferedImage.TYPE_INT_RGB
+                && anchoFinal == actual.getWidth() && altoFinal == actual.getHeight()) {
+            return actual;
+        }
+        return redimensionar(actual, anchoFinal, altoFinal);
+    }
+
+    private BufferedImage redimensionar(BufferedImage origen, int ancho, int alto) {
+        BufferedImage destino = new BufferedImage(ancho, alto, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = destino.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(origen, 0, 0, ancho, alto, null);
+        } finally {
+            g.dispose();
+        }
+        return destino;
+    }
+
+    private byte[] aGrises(int[] pixeles, int ancho, int alto) {
+        byte[] grises = new byte[ancho * alto];
+        enFranjas(alto, (desde, hasta) -> {
+            for (int i = desde * ancho, fin = hasta * ancho; i < fin; i++) {
+                int p = pixeles[i];
+                int r = (p >> 16) & 0xFF;
+                int g = (p >> 8) & 0xFF;
+                int b = p & 0xFF;
+                // Luma BT.601 en punto fijo
+                grises[i] = (byte) ((r * 77 + g * 150 + b * 29) >> 8);
+            }
+        });
+        return grises;
+    }
+
+    private byte[] binarizarOtsu(byte[] grises, int ancho, int alto) {
+        int franjas = (alto + FILAS_POR_FRANJA - 1) / FILAS_POR_FRANJA;
+        int[][] parciales = new int[franjas][256];
+
+        IntStream.range(0, franjas).parallel().forEach(f -> {
+            int[] histograma = parciales[f];
+            int desde = f * FILAS_POR_FRANJA * ancho;
+            int hasta = Math.min(alto, (f + 1) * FILAS_POR_FRANJA) * ancho;
+            for (int i = desde; i < hasta; i++) {
+                histograma[grises[i] & 0xFF]++;
+            }
+        });
+
+        int[] histograma = new int[256];
+        for (int[] parcial : parciales) {
+            for (int v = 0; v < 256; v++) {
+                histograma[v] += parcial[v];
+            }
+        }
+
+        int umbral = umbralOtsu(histograma, ancho * alto);
+        byte[] binaria = new byte[grises.length];
+        enFranjas(alto, (desde, hasta) -> {
+            for (int i = desde * ancho, fin = hasta * ancho; i < fin; i++) {
+                binaria[i] = (grises[i] & 0xFF) > umbral ? BLANCO : NEGRO;
+            }
+        });
+        return binaria;
+    }
+
+    private int umbralOtsu(int[] histograma, int total) {
+        long sumaTotal = 0;
+        for (int v = 0; v < 256; v++) {
+            sumaTotal += (long) v * histograma[v];
+        }
+
+        long sumaFondo = 0;
+        int pesoFondo = 0;
+        double mejorVarianza = -1;
+        int umbral = 127;
+
+        for (int v = 0; v < 256; v++) {
+            pesoFondo += histograma[v];
+            if (pesoFondo == 0) {
+                continue;
+            }
+            int pesoFrente = total - pesoFondo;
+            if (pesoFrente == 0) {
+                break;
+            }
+            sumaFondo += (long) v * histograma[v];
+
+            double mediaFondo = (double) sumaFondo / pesoFondo;
+            double mediaFrente = (double) (sumaTotal - sumaFondo) / pesoFrente;
+            double diferencia = mediaFondo - mediaFrente;
+            double varianza = (double) pesoFondo * pesoFrente * diferencia * diferencia;
+
+            if (varianza > mejorVarianza) {
+                mejorVarianza = varianza;
+                umbral = v;
+            }
+        }
+        return umbral;
+    }
+
+    // Umbral local de Sauvola con imágenes integrales (costo O(1) por píxel sin importar la ventana).
+    // Ambas integrales son long: con int la suma se desborda a partir de unos 8.4 millones de píxeles blancos
+    private byte[] binarizarSauvola(byte[] grises, int ancho, int alto) {
+        int anchoIntegral = ancho + 1;
+        long[] suma = new long[anchoIntegral * (alto + 1)];
+        long[] sumaCuadrados = new long[anchoIntegral * (alto + 1)];
+
+        for (int y = 0; y < alto; y++) {
+            long filaSuma = 0;
+            long filaCuadrados = 0;
+            int base = (y + 1) * anchoIntegral;
+            int anterior = y * anchoIntegral;
+            for (int x = 0; x < ancho; x++) {
+                int v = grises[y * ancho + x] & 0xFF;
+                filaSuma += v;
+                filaCuadrados += (long) v * v;
+                suma[base + x + 1] = suma[anterior + x + 1] + filaSuma;
+                sumaCuadrados[base + x + 1] = sumaCuadrados[anterior + x + 1] + filaCuadrados;
+            }
+        }
+
+        int radio = Math.max(7, Math.max(ancho, alto) / 80);
+        byte[] binaria = new byte[grises.length];
+
+        enFranjas(alto, (desde, hasta) -> {
+            for (int y = desde; y < hasta; y++) {
+                int y0 = Math.max(0, y - radio);
+                int y1 = Math.min(alto, y + radio + 1);
+                for (int x = 0; x < ancho; x++) {
+                    int x0 = Math.max(0, x - radio);
+                    int x1 = Math.min(ancho, x + radio + 1);
+                    int area = (x1 - x0) * (y1 - y0);
+
+                    long s = suma[y1 * anchoIntegral + x1] - suma[y0 * anchoIntegral + x1]
+                            - suma[y1 * anchoIntegral + x0] + suma[y0 * anchoIntegral + x0];
+                    long s2 = sumaCuadrados[y1 * anchoIntegral + x1] - sumaCuadrados[y0 * anchoIntegral + x1]
+                            - sumaCuadrados[y1 * anchoIntegral + x0] + sumaCuadrados[y0 * anchoIntegral + x0];
+
+                    double media = (double) s / area;
+                    double varianza = Math.max(0.0, (double) s2 / area - media * media);
+                    double umbral = media * (1 + SAUVOLA_K * (Math.sqrt(varianza) / SAUVOLA_R - 1));
+
+                    int i = y * ancho + x;
+                    binaria[i] = (grises[i] & 0xFF) > umbral ? BLANCO : NEGRO;
+                }
+            }
+        });
+        return binaria;
+    }
+
+    // Estima la inclinación del texto maximizando la nitidez del perfil de proyección horizontal
+    private double estimarInclinacion(byte[] binaria, int ancho, int alto) {
+        int paso = Math.max(1, ancho / ANCHO_ESTIMACION);
+        int anchoReducido = ancho / paso;
+        int altoReducido = alto / paso;
+
+        // Coordenadas de los píxeles negros en la imagen reducida
+        int[] xs = new int[anchoReducido * altoReducido];
+        int[] ys = new int[anchoReducido * altoReducido];
+        int negros = 0;
+        for (int y = 0; y < altoReducido; y++) {
+            for (int x = 0; x < anchoReducido; x++) {
+                if (binaria[(y * paso) * ancho + x * paso] == NEGRO) {
+                    xs[negros] = x;
+                    ys[negros] = y;
+                    negros++;
+                }
+            }
+        }
+        if (negros == 0) {
+            return 0.0;
+        }
+
+        int totalNegros = negros;
+        int pasos = (int) Math.round(2 * ANGULO_MAXIMO / PASO_ANGULO) + 1;
+        double[] puntajes = new double[pasos];
+        int margen = anchoReducido + altoReducido;
+
+        IntStream.range(0, pasos).parallel().forEach(k -> {
+            double radianes = Math.toRadians(-ANGULO_MAXIMO + k * PASO_ANGULO);
+            double seno = Math.sin(radianes);
+            double coseno = Math.cos(radianes);
+            int[] perfil = new int[2 * margen + 1];
+
+            for (int i = 0; i < totalNegros; i++) {
+                int fila = (int) Math.round(ys[i] * coseno - xs[i] * seno) + margen;
+                perfil[fila]++;
+            }
+
+            double puntaje = 0;
+            for (int f = 1; f < perfil.length; f++) {
+                double diferencia = perfil[f] - perfil[f - 1];
+                puntaje += diferencia * diferencia;
+            }
+            puntajes[k] = puntaje;
+        });
+
+        int mejor = pasos / 2;
+        for (int k = 0; k < pasos; k++) {
+            if (puntajes[k] > puntajes[mejor]) {
+                mejor = k;
+            }
+        }
+        return -ANGULO_MAXIMO + mejor * PASO_ANGULO;
+    }
+
+    // Rotación por vecino más cercano alrededor del centro; lo que queda fuera se pinta de blanco
+    private byte[] rotar(byte[] binaria, int ancho, int alto, double grados) {
+        double radianes = Math.toRadians(grados);
+        double seno = Math.sin(radianes);
+        double coseno = Math.cos(radianes);
+        double cx = ancho / 2.0;
+        double cy = alto / 2.0;
+        byte[] rotada = new byte[binaria.length];
+
+        enFranjas(alto, (desde, hasta) -> {
+            for (int y = desde; y < hasta; y++) {
+                double dy = y - cy;
+                for (int x = 0; x < ancho; x++) {
+                    double dx = x - cx;
+                    // Transformación inversa: de destino a origen
+                    int xo = (int) Math.round(dx * coseno + dy * seno + cx);
+                    int yo = (int) Math.round(-dx * seno + dy * coseno + cy);
+                    rotada[y * ancho + x] = (xo >= 0 && xo < ancho && yo >= 0 && yo < alto)
+                            ? binaria[yo * ancho + xo]
+                            : BLANCO;
+                }
+            }
+        });
+        return rotada;
+    }
+
+    // Mediana 3x3 sobre imagen binaria (= mayoría de 9): quita puntos sueltos sin engrosar el texto
+    private byte[] filtroMayoria(byte[] binaria, int ancho, int alto) {
+        byte[] limpia = binaria.clone();
+        if (ancho < 3 || alto < 3) {
+            return limpia;
+        }
+
+        enFranjas(alto, (desde, hasta) -> {
+            for (int y = Math.max(1, desde); y < Math.min(alto - 1, hasta); y++) {
+                for (int x = 1; x < ancho - 1; x++) {
+                    int negros = 0;
+                    for (int dy = -1; dy <= 1; dy++) {
+                        int fila = (y + dy) * ancho + x;
+                        if (binaria[fila - 1] == NEGRO) negros++;
+                        if (binaria[fila] == NEGRO) negros++;
+                        if (binaria[fila + 1] == NEGRO) negros++;
+                    }
+                    limpia[y * ancho + x] = negros >= 5 ? NEGRO : BLANCO;
+                }
+            }
+        });
+        return limpia;
+    }
+
+    // === AUXILIARES ===
+
+    private interface TrabajoFranja {
+        void procesar(int filaDesde, int filaHasta);
+    }
+
+    private void enFranjas(int alto, TrabajoFranja trabajo) {
+        int franjas = (alto + FILAS_POR_FRANJA - 1) / FILAS_POR_FRANJA;
+        IntStream.range(0, franjas).parallel().forEach(f ->
+                trabajo.procesar(f * FILAS_POR_FRANJA, Math.min(alto, (f + 1) * FILAS_POR_FRANJA)));
+    }
+
+    private BufferedImage aImagen(byte[] datos, int ancho, int alto) {
+        BufferedImage imagen = new BufferedImage(ancho, alto, BufferedImage.TYPE_BYTE_GRAY);
+        byte[] destino = ((DataBufferByte) imagen.getRaster().getDataBuffer()).getData();
+        System.arraycopy(datos, 0, destino, 0, datos.length);
+        return imagen;
+    }
+
+    private static long registrar(Map<String, Long> tiempos, String etapa, long inicio) {
+        long ahora = System.nanoTime();
+        tiempos.put(etapa, ahora - inicio);
+        return ahora;
+    }
+
+    // Resultado del preprocesamiento con el tiempo (ns) de cada etapa
+    public static class Resultado {
+        private final BufferedImage imagen;
+        private final double anguloCorregido;
+        private final Map<String, Long> tiemposNanos;
+
+        public Resultado(BufferedImage imagen, double anguloCorregido, Map<String, Long> tiemposNanos) {
+            this.imagen = imagen;
+            this.anguloCorregido = anguloCorregido;
+            this.tiemposNanos = Collections.unmodifiableMap(tiemposNanos);
+        }
+
+        // Getters
+        public BufferedImage getImagen() { return imagen; }
+        public double getAnguloCorregido() { return anguloCorregido; }
+        public Map<String, Long> getTiemposNanos() { return tiemposNanos; }
+
+        public long getTiempoTotalNanos() {
+            long total = 0;
+            for (long t : tiemposNanos.values()) {
+                total += t;
+            }
+            return total;
+        }
+    }
+}
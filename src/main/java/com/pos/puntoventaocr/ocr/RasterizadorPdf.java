@@ -0,0 +1,170 @@
+package com.pos.puntoventaocr.ocr;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Convierte páginas de un PDF en imágenes con las herramientas de poppler (pdfinfo y pdftoppm),
+ * ejecutadas como subproceso igual que Tesseract. Cada página se rasteriza por separado,
+ * de modo que un PDF largo nunca se carga completo en memoria.
+ */
+public class RasterizadorPdf {
+
+    private static final Pattern PATRON_PAGINAS = Pattern.compile("(?m)^Pages:\\s+(\\d+)");
+    private static final Pattern PATRON_TAMANO = Pattern.compile("(?m)^Page size:\\s+([\\d.]+) x ([\\d.]+) pts");
+
+    private final Path pdfinfo;
+    private final Path pdftoppm;
+    private final Path directorioTemporal;
+    private final long timeoutMs;
+
+    /**
+     * @param directorioPoppler directorio que contiene pdfinfo y pdftoppm
+     */
+    public RasterizadorPdf(String directorioPoppler, String directorioTemporal, long timeoutMs) {
+        this.pdfinfo = Paths.get(directorioPoppler, "pdfinfo");
+        this.pdftoppm = Paths.get(directorioPoppler, "pdftoppm");
+        this.directorioTemporal = Paths.get(directorioTemporal);
+        this.timeoutMs = timeoutMs;
+    }
+
+    // Indica si ambos binarios existen y se pueden ejecutar
+    public boolean estaDisponible() {
+        return Files.isExecutable(pdfinfo) && Files.isExecutable(pdftoppm);
+    }
+
+    public InfoPdf leerInfo(String rutaPdf) throws IOException, InterruptedException {
+        String salida = ejecutar(Arrays.asList(pdfinfo.toString(), rutaPdf));
+
+        Matcher paginas = PATRON_PAGINAS.matcher(salida);
+        if (!paginas.find()) {
+            throw new IOException("No se pudo leer el número de páginas de " + rutaPdf);
+        }
+        Matcher tamano = PATRON_TAMANO.matcher(salida);
+        double ancho = 0;
+        double alto = 0;
+        if (tamano.find()) {
+            ancho = Double.parseDouble(tamano.group(1));
+            alto = Double.parseDouble(tamano.group(2));
+        }
+        return new InfoPdf(Integer.parseInt(paginas.group(1)), ancho, alto);
+    }
+
+    /**
+     * Rasteriza una página (base 1) en escala de grises
+     */
+    public BufferedImage rasterizar(String rutaPdf, int pagina, int dpi) throws IOException, InterruptedException {
+        Path archivo = Files.createTempFile(directorioTemporal, "pdf-", "");
+        // Con -singlefile pdftoppm escribe <prefijo>.png
+        Path imagen = Paths.get(archivo + ".png");
+
+        try {
+            List<String> comando = new ArrayList<>();
+            comando.add(pdftoppm.toString());
+            comando.add("-r");
+            comando.add(String.valueOf(dpi));
+            comando.add("-f");
+            comando.add(String.valueOf(pagina));
+            comando.add("-l");
+            comando.add(String.valueOf(pagina));
+            comando.add("-gray");
+            comando.add("-png");
+            comando.add("-singlefile");
+            comando.add(rutaPdf);
+            comando.add(archivo.toString());
+            ejecutar(comando);
+
+            BufferedImage resultado = ImageIO.read(imagen.toFile());
+            if (resultado == null) {
+                throw new IOException("pdftoppm no generó la página " + pagina + " de " + rutaPdf);
+            }
+            return resultado;
+
+        } finally {
+            Files.deleteIfExists(archivo);
+            Files.deleteIfExists(imagen);
+        }
+    }
+
+    // Métodos privados auxiliares
+    private String ejecutar(List<String> comando) throws IOException, InterruptedException {
+        Path salida = Files.createTempFile(directorioTemporal, "pdf-", ".out");
+        Path errores = Files.createTempFile(directorioTemporal, "pdf-", ".err");
+
+        try {
+            // Salida a archivo para que waitFor() responda a interrupciones (ver TesseractOcrEngine)
+            Process proceso = new ProcessBuilder(comando)
+                    .redirectOutput(salida.toFile())
+                    .redirectError(errores.toFile())
+                    .start();
+
+            try {
+                if (!proceso.waitFor(timeoutMs, TimeUnit.MILLISECONDS)) {
+                    throw new IOException(new File(comando.get(0)).getName()
+                            + " excedió el tiempo límite de " + timeoutMs + " ms");
+                }
+            } finally {
+                if (proceso.isAlive()) {
+                    proceso.destroyForcibly();
+                }
+            }
+
+            if (proceso.exitValue() != 0) {
+                String detalle = new String(Files.readAllBytes(errores), StandardCharsets.UTF_8).trim();
+                throw new IOException(new File(comando.get(0)).getName()
+                        + " terminó con código " + proceso.exitValue() + ": " + detalle);
+            }
+
+            return new String(Files.readAllBytes(salida), StandardCharsets.UTF_8);
+
+        } finally {
+            Files.deleteIfExists(salida);
+            Files.deleteIfExists(errores);
+        }
+    }
+
+    /**
+     * Número de páginas y tamaño (en puntos, 1/72") de la primera página
+     */
+    public static class InfoPdf {
+        private final int paginas;
+        private final double anchoPuntos;
+        private final double altoPuntos;
+
+        public InfoPdf(int paginas, double anchoPuntos, double altoPuntos) {
+            this.paginas = paginas;
+            this.anchoPuntos = anchoPuntos;
+            this.altoPuntos = altoPuntos;
+        }
+
+        /**
+         * Resolución para que el lado mayor de la página no exceda ladoMaximoPx, sin pasar de dpiMaximo.
+         * Rasterizar más grande solo haría que el preprocesador reduzca la imagen después.
+         */
+        public int dpiPara(int ladoMaximoPx, int dpiMaximo) {
+            double ladoPuntos = Math.max(anchoPuntos, altoPuntos);
+            if (ladoPuntos <= 0 || ladoMaximoPx <= 0) {
+                return dpiMaximo;
+            }
+            int dpi = (int) Math.floor(ladoMaximoPx * 72.0 / ladoPuntos);
+            return Math.max(72, Math.min(dpiMaximo, dpi));
+        }
+
+        // Getters
+        public int getPaginas() { return paginas; }
+        public double getAnchoPuntos() { return anchoPuntos; }
+        public double getAltoPuntos() { return altoPuntos; }
+    }
+}
@@ -0,0 +1,69 @@
+package com.pos.puntoventaocr.ocr;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Motor determinista que siempre devuelve el mismo comprobante BBVA.
+ * Solo para pruebas: se usa únicamente con ocr.motor=simulacion, nunca como respaldo de Tesseract.
+ */
+public class SimulacionOcrEngine implements OcrEngine {
+
+    private static final String TEXTO_SIMULADO = "BBVA MÉXICO\n" +
+            "COMPROBANTE DE TRANSFERENCIA\n" +
+            "FECHA: 15/08/2025 14:30:25\n" +
+            "MONTO: $1,250.00\n" +
+            "REFERENCIA: ABC123DEF456\n" +
+            "CUENTA DESTINO: ****1234\n" +
+            "BENEFICIARIO: COMERCIO XYZ SA\n" +
+            "CONCEPTO: PAGO VENTA";
+
+    private final String texto;
+    private final double confianza;
+
+    public SimulacionOcrEngine() {
+        this(TEXTO_SIMULADO);
+    }
+
+    // Sin confianza: el texto simulado nunca debe aprobarse sin revisión
+    public SimulacionOcrEngine(String texto) {
+        this(texto, -1);
+    }
+
+    // Todas las palabras se informan con la misma confianza; negativa = sin confianza
+    public SimulacionOcrEngine(String texto, double confianza) {
+        this.texto = texto;
+        this.confianza = confianza;
+    }
+
+    @Override
+    public String reconocer(BufferedImage imagen) {
+        return texto;
+    }
+
+    @Override
+    public TextoReconocido reconocerConConfianza(BufferedImage imagen) {
+        if (confianza < 0) {
+            return TextoReconocido.sinConfianza(texto);
+        }
+        List<TextoReconocido.Palabra> palabras = new ArrayList<>();
+        for (String palabra : texto.trim().split("\\s+")) {
+            if (!palabra.isEmpty()) {
+                palabras.add(new TextoReconocido.Palabra(palabra, confianza));
+            }
+        }
+        return new TextoReconocido(texto, palabras);
+    }
+
+    @Override
+    public String getNombre() {
+        return "simulacion";
+    }
+
+    // Devuelve siempre el texto completo, así que reconocer recortes solo lo duplicaría
+    @Override
+    public boolean soportaRegiones() {
+        return false;
+    }
+}
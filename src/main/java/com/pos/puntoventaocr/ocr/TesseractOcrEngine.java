@@ -0,0 +1,161 @@
+package com.pos.puntoventaocr.ocr;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Motor OCR que ejecuta el binario local de Tesseract como subproceso.
+ * Cada llamada usa sus propios archivos temporales, por lo que es seguro entre hilos.
+ */
+public class TesseractOcrEngine implements OcrEngine {
+
+    private final String rutaTesseract;
+    private final String idioma;
+    private final Path directorioTemporal;
+    private final long timeoutMs;
+
+    public TesseractOcrEngine(String rutaTesseract, String idioma, String directorioTemporal, long timeoutMs) {
+        this.rutaTesseract = rutaTesseract;
+        this.idioma = idioma;
+        this.directorioTemporal = Paths.get(directorioTemporal);
+        this.timeoutMs = timeoutMs;
+    }
+
+    // Indica si el binario configurado existe y se puede ejecutar
+    public boolean estaDisponible() {
+        File binario = new File(rutaTesseract);
+        return binario.isFile() && binario.canExecute();
+    }
+
+    @Override
+    public String reconocer(BufferedImage imagen) throws IOException, InterruptedException {
+        return ejecutar(imagen, false);
+    }
+
+    /**
+     * Usa la salida TSV de Tesseract (una fila por palabra con su confianza) y reconstruye
+     * el texto línea por línea, así que basta una sola ejecución para ambos.
+     */
+    @Override
+    public TextoReconocido reconocerConConfianza(BufferedImage imagen) throws IOException, InterruptedException {
+        return interpretarTsv(ejecutar(imagen, true));
+    }
+
+    @Override
+    public String getNombre() {
+        return "tesseract";
+    }
+
+    /**
+     * Columnas TSV: level page_num block_num par_num line_num word_num left top width height conf text.
+     * Solo las filas de nivel 5 son palabras; conf es -1 en filas sin texto.
+     */
+    static TextoReconocido interpretarTsv(String tsv) {
+        StringBuilder texto = new StringBuilder();
+        List<TextoReconocido.Palabra> palabras = new ArrayList<>();
+        String lineaActual = null;
+
+        for (String fila : tsv.split("\r?\n")) {
+            String[] columnas = fila.split("\t", 12);
+            if (columnas.length < 12 || !"5".equals(columnas[0])) {
+                continue;
+            }
+            String palabra = columnas[11].trim();
+            double confianza;
+            try {
+                confianza = Double.parseDouble(columnas[10]);
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            if (palabra.isEmpty() || confianza < 0) {
+                continue;
+            }
+
+            String linea = columnas[1] + '.' + columnas[2] + '.' + columnas[3] + '.' + columnas[4];
+            if (!linea.equals(lineaActual)) {
+                if (lineaActual != null) {
+                    texto.append('\n');
+                }
+                lineaActual = linea;
+            } else {
+                texto.append(' ');
+            }
+            texto.append(palabra);
+            palabras.add(new TextoReconocido.Palabra(palabra, confianza));
+        }
+        if (lineaActual != null) {
+            texto.append('\n');
+        }
+        return new TextoReconocido(texto.toString(), palabras);
+    }
+
+    // Métodos privados auxiliares
+    private String ejecutar(BufferedImage imagen, boolean tsv) throws IOException, InterruptedException {
+        if (!estaDisponible()) {
+            throw new IOException("Tesseract no encontrado en " + rutaTesseract);
+        }
+        Path entrada = Files.createTempFile(directorioTemporal, "ocr-", ".png");
+        Path salida = Files.createTempFile(directorioTemporal, "ocr-", ".txt");
+        Path errores = Files.createTempFile(directorioTemporal, "ocr-", ".err");
+
+        try {
+            ImageIO.write(imagen, "png", entrada.toFile());
+
+            // Salida y errores van a archivo: waitFor() sí responde a interrupciones,
+            // a diferencia de una lectura bloqueante del stdout del proceso
+            ProcessBuilder builder = new ProcessBuilder(construirComando(entrada, tsv))
+                    .redirectOutput(salida.toFile())
+                    .redirectError(errores.toFile());
+            // El paralelismo lo da el pool de trabajadores; un hilo OpenMP por proceso evita sobresuscribir
+            builder.environment().put("OMP_THREAD_LIMIT", "1");
+            Process proceso = builder.start();
+
+            try {
+                if (!proceso.waitFor(timeoutMs, TimeUnit.MILLISECONDS)) {
+                    throw new IOException("Tesseract excedió el tiempo límite de " + timeoutMs + " ms");
+                }
+            } finally {
+                if (proceso.isAlive()) {
+                    proceso.destroyForcibly();
+                }
+            }
+
+            if (proceso.exitValue() != 0) {
+                String detalle = new String(Files.readAllBytes(errores), StandardCharsets.UTF_8).trim();
+                throw new IOException("Tesseract terminó con código " + proceso.exitValue() + ": " + detalle);
+            }
+
+            return new String(Files.readAllBytes(salida), StandardCharsets.UTF_8);
+
+        } finally {
+            Files.deleteIfExists(entrada);
+            Files.deleteIfExists(salida);
+            Files.deleteIfExists(errores);
+        }
+    }
+
+    private List<String> construirComando(Path entrada, boolean tsv) {
+        List<String> comando = new ArrayList<>();
+        comando.add(rutaTesseract);
+        comando.add(entrada.toString());
+        comando.add("stdout");
+        comando.add("-l");
+        comando.add(idioma);
+        // Un bloque uniforme de texto: es el diseño típico de un comprobante
+        comando.add("--psm");
+        comando.add("6");
+        if (tsv) {
+            comando.add("tsv");
+        }
+        return comando;
+    }
+}
@@ -0,0 +1,73 @@
+package com.pos.puntoventaocr.ocr;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Texto reconocido junto con las palabras y su confianza (0 a 100) en orden de lectura.
+ * Un motor que no informa confianza devuelve la lista de palabras vacía.
+ */
+public class TextoReconocido {
+
+    private final String texto;
+    private final List<Palabra> palabras;
+
+    public TextoReconocido(String texto, List<Palabra> palabras) {
+        this.texto = texto != null ? texto : "";
+        this.palabras = Collections.unmodifiableList(palabras);
+    }
+
+    public static TextoReconocido sinConfianza(String texto) {
+        return new TextoReconocido(texto, Collections.emptyList());
+    }
+
+    /**
+     * Une fragmentos (regiones o páginas) en orden; cada fragmento no vacío termina en salto de línea
+     */
+    public static TextoReconocido unir(List<TextoReconocido> fragmentos) {
+        StringBuilder texto = new StringBuilder();
+        List<Palabra> palabras = new ArrayList<>();
+        for (TextoReconocido fragmento : fragmentos) {
+            String recortado = fragmento.getTexto().trim();
+            if (!recortado.isEmpty()) {
+                texto.append(recortado).append('\n');
+            }
+            palabras.addAll(fragmento.getPalabras());
+        }
+        return new TextoReconocido(texto.toString(), palabras);
+    }
+
+    public boolean tieneConfianza() {
+        return !palabras.isEmpty();
+    }
+
+    // Confianza promedio de todas las palabras, o -1 si el motor no la informa
+    public double getConfianzaPromedio() {
+        if (palabras.isEmpty()) {
+            return -1;
+        }
+        double suma = 0;
+        for (Palabra palabra : palabras) {
+            suma += palabra.getConfianza();
+        }
+        return suma / palabras.size();
+    }
+
+    public String getTexto() { return texto; }
+    public List<Palabra> getPalabras() { return palabras; }
+
+    public static class Palabra {
+        private final String texto;
+        private final double confianza;
+
+        public Palabra(String texto, double confianza) {
+            this.texto = texto;
+            this.confianza = confianza;
+        }
+
+        // Getters
+        public String getTexto() { return texto; }
+        public double getConfianza() { return confianza; }
+    }
+}
@@ -0,0 +1,344 @@
+package com.pos.puntoventaocr.services;
+
+import com.pos.puntoventaocr.dao.ComprobanteOCRDAO;
+import com.pos.puntoventaocr.dao.VentaDAO;
+import com.pos.puntoventaocr.models.ComprobanteOCR;
+import com.pos.puntoventaocr.models.Venta;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Conciliación de comprobantes OCR pendientes contra ventas por transferencia.
+ * Los comprobantes se indexan en memoria por referencia, por venta asociada y por (monto, día);
+ * las ventas se leen en streaming una sola vez. Cada venta se concilia por referencia o por la venta
+ * asociada al momento de leerla; las demás se resuelven al final por monto y fecha, primero el mismo
+ * día y después con un día de tolerancia. Lo que queda sin pareja de cada lado se informa.
+ *
+ * Uso desatendido: java ... ConciliacionTransferencias [yyyy-MM-dd [yyyy-MM-dd]] [--aplicar]
+ */
+public class ConciliacionTransferencias {
+
+    // Transferencias hechas cerca de la medianoche o aplicadas al día siguiente por el banco
+    private static final int DIAS_TOLERANCIA = 1;
+
+    public enum TipoCoincidencia {
+        REFERENCIA, // La referencia capturada en la venta coincide con la del comprobante
+        REFERENCIA_CON_DIFERENCIA, // Misma referencia pero el monto no coincide
+        VENTA_ASOCIADA, // El comprobante ya estaba asociado a la venta y el monto coincide
+        MONTO_FECHA, // Único comprobante y única venta con el mismo monto y día
+        MONTO_FECHA_AMBIGUA, // Mismo monto y día, pero había otros comprobantes u otras ventas candidatas
+        MONTO_FECHA_CERCANA // Mismo monto con un día de diferencia
+    }
+
+    private final ComprobanteOCRDAO comprobanteDAO;
+    private final VentaDAO ventaDAO;
+
+    public ConciliacionTransferencias() {
+        this(new ComprobanteOCRDAO(), new VentaDAO());
+    }
+
+    public ConciliacionTransferencias(ComprobanteOCRDAO comprobanteDAO, VentaDAO ventaDAO) {
+        this.comprobanteDAO = comprobanteDAO;
+        this.ventaDAO = ventaDAO;
+    }
+
+    public static void main(String[] args) {
+        boolean aplicar = false;
+        List<LocalDate> fechas = new ArrayList<>();
+        for (String arg : args) {
+            if ("--aplicar".equals(arg)) {
+                aplicar = true;
+            } else {
+                fechas.add(LocalDate.parse(arg));
+            }
+        }
+        LocalDate desde = fechas.isEmpty() ? LocalDate.now().minusDays(1) : fechas.get(0);
+        LocalDate hasta = fechas.size() > 1 ? fechas.get(1) : desde;
+
+        ConciliacionTransferencias conciliacion = new ConciliacionTransferencias();
+        Resultado resultado = conciliacion.conciliar(desde, hasta);
+        System.out.println(resultado);
+        if (aplicar) {
+            System.out.println("Comprobantes asociados a su venta: " + conciliacion.aplicar(resultado));
+        }
+    }
+
+    public Resultado conciliar(LocalDate desde, LocalDate hasta) {
+        return conciliar(desde.atStartOfDay(), hasta.atTime(LocalTime.MAX));
+    }
+
+    /**
+     * Concilia las ventas por transferencia del intervalo. Los comprobantes se buscan con
+     * la tolerancia de días a cada lado.
+     */
+    public Resultado conciliar(LocalDateTime fechaInicio, LocalDateTime fechaFin) {
+        long inicio = System.nanoTime();
+        Conciliador conciliador = new Conciliador();
+
+        comprobanteDAO.recorrerPendientes(fechaInicio.toLocalDate().minusDays(DIAS_TOLERANCIA).atStartOfDay(),
+                fechaFin.toLocalDate().plusDays(DIAS_TOLERANCIA).atTime(LocalTime.MAX),
+                conciliador::agregarComprobante);
+        ventaDAO.recorrerTransferenciasPorConciliar(fechaInicio, fechaFin, conciliador::conciliarVenta);
+
+        return conciliador.terminar((System.nanoTime() - inicio) / 1_000_000);
+    }
+
+    /**
+     * Asocia a su venta los comprobantes sin venta de las coincidencias seguras;
+     * así entran a la cola de validación ligados a la venta correcta.
+     */
+    public int aplicar(Resultado resultado) {
+        Map<Integer, Integer> ventaPorComprobante = new LinkedHashMap<>();
+        for (Coincidencia coincidencia : resultado.getCoincidencias()) {
+            if (coincidencia.esSegura() && coincidencia.getComprobante().getVenta() == null) {
+                ventaPorComprobante.put(coincidencia.getComprobante().getIdComprobante(),
+                        coincidencia.getVenta().getIdVenta());
+            }
+        }
+        return comprobanteDAO.asociarVentas(ventaPorComprobante);
+    }
+
+    /**
+     * Motor de conciliación en memoria: primero se agregan todos los comprobantes,
+     * después se pasan las ventas una por una y al final se llama a terminar().
+     */
+    public static class Conciliador {
+        private final Map<String, ComprobanteOCR> porReferencia = new HashMap<>();
+        private final Map<Integer, ComprobanteOCR> porVenta = new HashMap<>();
+        private final Map<String, Deque<ComprobanteOCR>> porMontoFecha = new HashMap<>();
+        private final List<ComprobanteOCR> comprobantes = new ArrayList<>();
+        // Comprobantes ya conciliados; se omiten al sacarlos de los índices (borrado perezoso)
+        private final Set<Integer> usados = new HashSet<>();
+        private final List<Venta> diferidas = new ArrayList<>();
+        private final List<Coincidencia> coincidencias = new ArrayList<>();
+        // Ventas diferidas por (monto, día): con más de una, ninguna puede quedarse el comprobante con seguridad
+        private final Map<String, Integer> ventasPorMontoFecha = new HashMap<>();
+        private int ventasRevisadas = 0;
+
+        public void agregarComprobante(ComprobanteOCR comprobante) {
+            comprobantes.add(comprobante);
+
+            // Asociado por el cajero: solo puede conciliarse con esa venta
+            if (comprobante.getVenta() != null && comprobante.getVenta().getIdVenta() > 0) {
+                porVenta.put(comprobante.getVenta().getIdVenta(), comprobante);
+                return;
+            }
+
+            String referencia = normalizarReferencia(comprobante.getReferenciaOperacion());
+            if (referencia != null) {
+                porReferencia.putIfAbsent(referencia, comprobante);
+            }
+            String clave = claveMontoFecha(comprobante.getMontoDetectado(),
+                    comprobante.getFechaTransferencia() != null ? comprobante.getFechaTransferencia().toLocalDate() : null);
+            if (clave != null) {
+                porMontoFecha.computeIfAbsent(clave, k -> new ArrayDeque<>()).addLast(comprobante);
+            }
+        }
+
+        public void conciliarVenta(Venta venta) {
+            ventasRevisadas++;
+
+            String referencia = normalizarReferencia(venta.getReferenciaTransferencia());
+            ComprobanteOCR porRef = referencia != null ? porReferencia.get(referencia) : null;
+            if (porRef != null && !usados.contains(porRef.getIdComprobante())) {
+                registrar(venta, porRef, mismoMonto(venta, porRef)
+                        ? TipoCoincidencia.REFERENCIA : TipoCoincidencia.REFERENCIA_CON_DIFERENCIA);
+                return;
+            }
+
+            ComprobanteOCR asociado = porVenta.get(venta.getIdVenta());
+            if (asociado != null && mismoMonto(venta, asociado)) {
+                registrar(venta, asociado, TipoCoincidencia.VENTA_ASOCIADA);
+                return;
+            }
+
+            // Por monto y fecha al final, cuando ya se tomaron todas las coincidencias por referencia
+            diferidas.add(venta);
+            String clave = claveMontoFecha(venta.getTotal(),
+                    venta.getFechaVenta() != null ? venta.getFechaVenta().toLocalDate() : null);
+            if (clave != null) {
+                ventasPorMontoFecha.merge(clave, 1, Integer::sum);
+            }
+        }
+
+        public Resultado terminar(long duracionMs) {
+            List<Venta> sinComprobante = new ArrayList<>();
+
+            // Mismo día primero para que una coincidencia cercana no le gane a una exacta
+            List<Venta> restantes = new ArrayList<>();
+            for (Venta venta : diferidas) {
+                if (!conciliarPorMontoFecha(venta, 0)) {
+                    restantes.add(venta);
+                }
+            }
+            for (Venta venta : restantes) {
+                boolean conciliada = false;
+                for (int dias = 1; dias <= DIAS_TOLERANCIA && !conciliada; dias++) {
+                    conciliada = conciliarPorMontoFecha(venta, -dias) || conciliarPorMontoFecha(venta, dias);
+                }
+                if (!conciliada) {
+                    sinComprobante.add(venta);
+                }
+            }
+
+            List<ComprobanteOCR> sinVenta = new ArrayList<>();
+            for (ComprobanteOCR comprobante : comprobantes) {
+                if (!usados.contains(comprobante.getIdComprobante())) {
+                    sinVenta.add(comprobante);
+                }
+            }
+            return new Resultado(coincidencias, sinComprobante, sinVenta, ventasRevisadas, duracionMs);
+        }
+
+        // Métodos privados auxiliares
+        private boolean conciliarPorMontoFecha(Venta venta, int desplazamientoDias) {
+            if (venta.getFechaVenta() == null) {
+                return false;
+            }
+            String clave = claveMontoFecha(venta.getTotal(),
+                    venta.getFechaVenta().toLocalDate().plusDays(desplazamientoDias));
+            Deque<ComprobanteOCR> candidatos = clave != null ? porMontoFecha.get(clave) : null;
+            if (candidatos == null) {
+                return false;
+            }
+
+            while (!candidatos.isEmpty() && usados.contains(candidatos.peekFirst().getIdComprobante())) {
+                candidatos.pollFirst();
+            }
+            ComprobanteOCR comprobante = candidatos.pollFirst();
+            if (comprobante == null) {
+                return false;
+            }
+
+            TipoCoincidencia tipo;
+            if (desplazamientoDias != 0) {
+                tipo = TipoCoincidencia.MONTO_FECHA_CERCANA;
+            } else if (quedanDisponibles(candidatos) || ventasPorMontoFecha.getOrDefault(clave, 0) > 1) {
+                tipo = TipoCoincidencia.MONTO_FECHA_AMBIGUA;
+            } else {
+                tipo = TipoCoincidencia.MONTO_FECHA;
+            }
+            registrar(venta, comprobante, tipo);
+            return true;
+        }
+
+        private boolean quedanDisponibles(Deque<ComprobanteOCR> candidatos) {
+            for (ComprobanteOCR candidato : candidatos) {
+                if (!usados.contains(candidato.getIdComprobante())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void registrar(Venta venta, ComprobanteOCR comprobante, TipoCoincidencia tipo) {
+            usados.add(comprobante.getIdComprobante());
+            coincidencias.add(new Coincidencia(venta, comprobante, tipo));
+        }
+
+        private static boolean mismoMonto(Venta venta, ComprobanteOCR comprobante) {
+            return venta.getTotal() != null && comprobante.getMontoDetectado() != null
+                    && venta.getTotal().compareTo(comprobante.getMontoDetectado()) == 0;
+        }
+    }
+
+    // Referencia en mayúsculas sin espacios ni signos; null si no tiene caracteres útiles
+    static String normalizarReferencia(String referencia) {
+        if (referencia == null) {
+            return null;
+        }
+        StringBuilder normalizada = new StringBuilder(referencia.length());
+        for (int i = 0; i < referencia.length(); i++) {
+            char c = referencia.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                normalizada.append(c);
+            }
+        }
+        return normalizada.length() > 0 ? normalizada.toString().toUpperCase(Locale.ROOT) : null;
+    }
+
+    // 1250, 1250.0 y 1250.00 deben dar la misma llave
+    static String claveMontoFecha(BigDecimal monto, LocalDate fecha) {
+        if (monto == null || fecha == null || monto.signum() <= 0) {
+            return null;
+        }
+        return monto.setScale(2, RoundingMode.HALF_UP).toPlainString() + "|" + fecha;
+    }
+
+    public static class Coincidencia {
+        private final Venta venta;
+        private final ComprobanteOCR comprobante;
+        private final TipoCoincidencia tipo;
+
+        public Coincidencia(Venta venta, ComprobanteOCR comprobante, TipoCoincidencia tipo) {
+            this.venta = venta;
+            this.comprobante = comprobante;
+            this.tipo = tipo;
+        }
+
+        // Las ambiguas, cercanas o con diferencia de monto requieren revisión humana
+        public boolean esSegura() {
+            return tipo == TipoCoincidencia.REFERENCIA || tipo == TipoCoincidencia.VENTA_ASOCIADA
+                    || tipo == TipoCoincidencia.MONTO_FECHA;
+        }
+
+        // Getters
+        public Venta getVenta() { return venta; }
+        public ComprobanteOCR getComprobante() { return comprobante; }
+        public TipoCoincidencia getTipo() { return tipo; }
+    }
+
+    public static class Resultado {
+        private final List<Coincidencia> coincidencias;
+        private final List<Venta> ventasSinComprobante;
+        private final List<ComprobanteOCR> comprobantesSinVenta;
+        private final int ventasRevisadas;
+        private final long duracionMs;
+
+        public Resultado(List<Coincidencia> coincidencias, List<Venta> ventasSinComprobante,
+                         List<ComprobanteOCR> comprobantesSinVenta, int ventasRevisadas, long duracionMs) {
+            this.coincidencias = Collections.unmodifiableList(coincidencias);
+            this.ventasSinComprobante = Collections.unmodifiableList(ventasSinComprobante);
+            this.comprobantesSinVenta = Collections.unmodifiableList(comprobantesSinVenta);
+            this.ventasRevisadas = ventasRevisadas;
+            this.duracionMs = duracionMs;
+        }
+
+        public Map<TipoCoincidencia, Integer> contarPorTipo() {
+            Map<TipoCoincidencia, Integer> conteo = new LinkedHashMap<>();
+            for (Coincidencia coincidencia : coincidencias) {
+                conteo.merge(coincidencia.getTipo(), 1, Integer::sum);
+            }
+            return conteo;
+        }
+
+        // Getters
+        public List<Coincidencia> getCoincidencias() { return coincidencias; }
+        public List<Venta> getVentasSinComprobante() { return ventasSinComprobante; }
+        public List<ComprobanteOCR> getComprobantesSinVenta() { return comprobantesSinVenta; }
+        public int getVentasRevisadas() { return ventasRevisadas; }
+        public long getDuracionMs() { return duracionMs; }
+
+        @Override
+        public String toString() {
+            return "Conciliación: " + ventasRevisadas + " ventas, " + coincidencias.size() + " conciliadas "
+                    + contarPorTipo() + ", " + ventasSinComprobante.size() + " ventas sin comprobante, "
+                    + comprobantesSinVenta.size() + " comprobantes sin venta (" + duracionMs + " ms)";
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package com.pos.puntoventaocr.services;
+
+import com.pos.puntoventaocr.dao.ComprobanteOCRDAO;
+import com.pos.puntoventaocr.models.ComprobanteOCR;
+import com.pos.puntoventaocr.utils.FiltroBloom;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Detector de referencias de operación repetidas sin una consulta por comprobante.
+ * Dos filtros de Bloom en memoria: uno con las referencias y otro con sus variantes de un carácter
+ * borrado. Se cargan de la BD al arrancar, la capa de servicios les avisa de cada comprobante que
+ * guarda, y se recargan periódicamente para incluir lo que registraron las otras terminales.
+ * La BD solo se consulta cuando un filtro dice "puede estar", para descartar falsos positivos.
+ * Una referencia de otra terminal aún no recargada la detecta el índice UNIQUE al insertar.
+ *
+ * Con las variantes se detectan lecturas OCR con un carácter cambiado, sobrante o faltante
+ * (distancia de edición 1): dos cadenas están a distancia 1 si y solo si comparten una variante.
+ */
+public class DetectorReferencias {
+    private static volatile DetectorReferencias instance;
+
+    private static final double TASA_FALSOS_POSITIVOS = 0.01;
+    private static final int CAPACIDAD_MINIMA = 50_000;
+    // Las referencias miden de 8 a 20 caracteres: la referencia más sus borrados
+    private static final int VARIANTES_POR_REFERENCIA = 21;
+    // Con referencias más cortas una diferencia de un carácter ya no sugiere un error de lectura
+    private static final int LONGITUD_MINIMA_SIMILAR = 8;
+    private static final long ESPERA_REINTENTO_MS = 60_000;
+    private static final long INTERVALO_RECARGA_SEG = Long.getLong("pos.referencias.recargaSeg", 600L);
+
+    public enum TipoCoincidencia {
+        NINGUNA, DUPLICADA, SIMILAR
+    }
+
+    private final ComprobanteOCRDAO comprobanteDAO;
+    private final ScheduledExecutorService recarga;
+    private volatile Filtros filtros;
+    private volatile long proximoIntento = 0;
+
+    // Referencias insertadas mientras se cargaban los filtros; se aplican al terminar la carga
+    private final Set<String> pendientes = new LinkedHashSet<>();
+    private boolean cargando = false;
+
+    // Constructor privado para Singleton
+    private DetectorReferencias() {
+        this.comprobanteDAO = new ComprobanteOCRDAO();
+        this.recarga = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "detector-referencias-recarga");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        recarga.scheduleWithFixedDelay(this::recargar,
+                INTERVALO_RECARGA_SEG, INTERVALO_RECARGA_SEG, TimeUnit.SECONDS);
+    }
+
+    // Método para obtener la instancia única
+    public static DetectorReferencias getInstance() {
+        if (instance == null) {
+            synchronized (DetectorReferencias.class) {
+                if (instance == null) {
+                    instance = new DetectorReferencias();
+                }
+            }
+        }
+        return instance;
+    }
+
+    // Aviso de la capa de servicios tras guardar un comprobante; no hace nada si el detector no se ha creado
+    public static void notificarInsercion(String referencia) {
+        DetectorReferencias detector = instance;
+        if (detector != null) {
+            detector.registrar(referencia);
+        }
+    }
+
+    /**
+     * Carga (o recarga) los filtros con las referencias vigentes de la BD
+     */
+    public synchronized void cargar() {
+        synchronized (pendientes) {
+            cargando = true;
+        }
+        try {
+            long capacidad = Math.max(CAPACIDAD_MINIMA, 2L * comprobanteDAO.contarReferencias());
+            Filtros nuevos = new Filtros(capacidad);
+            if (!comprobanteDAO.recorrerReferencias(nuevos::agregar)) {
+                proximoIntento = System.currentTimeMillis() + ESPERA_REINTENTO_MS;
+                return;
+            }
+
+            synchronized (pendientes) {
+                filtros = nuevos;
+                pendientes.forEach(nuevos::agregar);
+            }
+            System.out.println("Detector de referencias cargado: " + nuevos.exactas.getInsertados() +
+                    " referencias (" + (nuevos.exactas.getTamanoBytes() + nuevos.variantes.getTamanoBytes()) / 1024 + " KB)");
+
+        } catch (RuntimeException e) {
+            proximoIntento = System.currentTimeMillis() + ESPERA_REINTENTO_MS;
+            System.err.println("Error al cargar detector de referencias: " + e.getMessage());
+        } finally {
+            synchronized (pendientes) {
+                cargando = false;
+                pendientes.clear();
+            }
+        }
+    }
+
+    public void registrar(String referencia) {
+        String clave = normalizar(referencia);
+        if (clave.isEmpty()) {
+            return;
+        }
+        synchronized (pendientes) {
+            if (cargando) {
+                pendientes.add(clave);
+            }
+        }
+        Filtros actuales = filtros;
+        if (actuales != null) {
+            actuales.agregar(clave);
+        }
+    }
+
+    /**
+     * Indica si la referencia ya está registrada o si hay una registrada a un carácter de distancia
+     */
+    public Verificacion verificar(String referencia) {
+        String clave = normalizar(referencia);
+        if (clave.isEmpty()) {
+            return Verificacion.NINGUNA;
+        }
+
+        Filtros actuales = obtenerFiltros();
+        if (actuales == null) {
+            // Sin filtros (BD no disponible al cargar): solo la comprobación exacta de siempre
+            return comprobanteDAO.existeReferencia(clave)
+                    ? new Verificacion(TipoCoincidencia.DUPLICADA, clave) : Verificacion.NINGUNA;
+        }
+
+        if (actuales.exactas.puedeContener(clave) && comprobanteDAO.existeReferencia(clave)) {
+            return new Verificacion(TipoCoincidencia.DUPLICADA, clave);
+        }
+
+        if (clave.length() >= LONGITUD_MINIMA_SIMILAR) {
+            List<String> patrones = patronesSimilares(clave, actuales.variantes);
+            if (!patrones.isEmpty()) {
+                for (String candidata : comprobanteDAO.buscarReferenciasSimilares(patrones)) {
+                    String normalizada = normalizar(candidata);
+                    if (!normalizada.equals(clave) && distanciaMaximaUno(clave, normalizada)) {
+                        return new Verificacion(TipoCoincidencia.SIMILAR, candidata);
+                    }
+                }
+            }
+        }
+        return Verificacion.NINGUNA;
+    }
+
+    /**
+     * Verifica la referencia del comprobante y deja el resultado en él: una referencia ya registrada
+     * rechaza el comprobante y una similar lo marca como posible duplicado para revisión.
+     */
+    public Verificacion marcar(ComprobanteOCR comprobante) {
+        Verificacion verificacion = verificar(comprobante.getReferenciaOperacion());
+        switch (verificacion.getTipo()) {
+            case DUPLICADA:
+                marcarDuplicada(comprobante);
+                break;
+            case SIMILAR:
+                comprobante.setPosibleDuplicado(true);
+                agregarObservacion(comprobante, "Posible duplicado: la referencia se parece a " +
+                        verificacion.getReferencia() + " ya registrada (posible error de lectura)");
+                break;
+            default:
+                break;
+        }
+        return verificacion;
+    }
+
+    public static void marcarDuplicada(ComprobanteOCR comprobante) {
+        comprobante.setPosibleDuplicado(true);
+        comprobante.setEstadoValidacion(ComprobanteOCR.EstadoOCR.RECHAZADO);
+        agregarObservacion(comprobante, "Referencia duplicada: " +
+                comprobante.getReferenciaOperacion() + " ya está registrada");
+    }
+
+    // Forma con la que se comparan las referencias (la BD compara sin distinguir mayúsculas)
+    public static String normalizar(String referencia) {
+        return referencia != null ? referencia.trim().toUpperCase(Locale.ROOT) : "";
+    }
+
+    // Métodos privados auxiliares
+
+    // Solo recarga filtros ya cargados; la primera carga la pide quien usa el detector
+    private void recargar() {
+        if (filtros != null) {
+            cargar();
+        }
+    }
+    private Filtros obtenerFiltros() {
+        Filtros actuales = filtros;
+        if (actuales != null && !actuales.estaSaturado()) {
+            return actuales;
+        }
+        if (System.currentTimeMillis() < proximoIntento) {
+            return actuales;
+        }
+        synchronized (this) {
+            // Otro hilo pudo cargarlos mientras se esperaba
+            if (filtros == actuales) {
+                cargar();
+            }
+            return filtros;
+        }
+    }
+
+    /**
+     * Patrones LIKE para las referencias que comparten con la clave la variante que el filtro
+     * reconoce. Si ninguna variante está en el filtro no hay referencias similares y no se consulta la BD.
+     */
+    private static List<String> patronesSimilares(String clave, FiltroBloom variantes) {
+        Set<String> patrones = new LinkedHashSet<>();
+        // La clave es un borrado de una referencia registrada: falta un carácter
+        if (variantes.puedeContener(clave)) {
+            for (int i = 0; i <= clave.length(); i++) {
+                patrones.add(escapar(clave.substring(0, i)) + "_" + escapar(clave.substring(i)));
+            }
+        }
+        for (int i = 0; i < clave.length(); i++) {
+            String borrado = clave.substring(0, i) + clave.substring(i + 1);
+            if (variantes.puedeContener(borrado)) {
+                // Sobra un carácter, o hay uno cambiado en la misma posición
+                patrones.add(escapar(borrado));
+                patrones.add(escapar(clave.substring(0, i)) + "_" + escapar(clave.substring(i + 1)));
+            }
+        }
+        return new ArrayList<>(patrones);
+    }
+
+    // Escape por defecto de LIKE en MySQL: barra invertida
+    private static String escapar(String texto) {
+        return texto.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private static boolean distanciaMaximaUno(String a, String b) {
+        if (Math.abs(a.length() - b.length()) > 1) {
+            return false;
+        }
+        String corta = a.length() <= b.length() ? a : b;
+        String larga = corta == a ? b : a;
+
+        int i = 0;
+        while (i < corta.length() && corta.charAt(i) == larga.charAt(i)) {
+            i++;
+        }
+        if (corta.length() == larga.length()) {
+            // Sustitución: el resto debe ser igual tras el primer carácter distinto
+            return i >= corta.length() - 1 || corta.substring(i + 1).equals(larga.substring(i + 1));
+        }
+        // Inserción: la larga sin su carácter i es la corta
+        return corta.substring(i).equals(larga.substring(i + 1));
+    }
+
+    private static void agregarObservacion(ComprobanteOCR comprobante, String aviso) {
+        comprobante.setObservaciones(comprobante.getObservaciones() != null
+                ? aviso + ". " + comprobante.getObservaciones()
+                : aviso);
+    }
+
+    private static class Filtros {
+        private final FiltroBloom exactas;
+        private final FiltroBloom variantes;
+
+        Filtros(long capacidad) {
+            this.exactas = new FiltroBloom(capacidad, TASA_FALSOS_POSITIVOS);
+            this.variantes = new FiltroBloom(capacidad * VARIANTES_POR_REFERENCIA, TASA_FALSOS_POSITIVOS);
+        }
+
+        void agregar(String referencia) {
+            String clave = normalizar(referencia);
+            if (clave.isEmpty()) {
+                return;
+            }
+            exactas.agregar(clave);
+            variantes.agregar(clave);
+            for (int i = 0; i < clave.length(); i++) {
+                variantes.agregar(clave.substring(0, i) + clave.substring(i + 1));
+            }
+        }
+
+        // Las variantes se dimensionan por referencia; referencias más largas solo suben su tasa de falsos positivos
+        boolean estaSaturado() {
+            return exactas.estaSaturado();
+        }
+    }
+
+    /**
+     * Resultado de la verificación; en SIMILAR la referencia es la registrada que se parece
+     */
+    public static class Verificacion {
+        static final Verificacion NINGUNA = new Verificacion(TipoCoincidencia.NINGUNA, null);
+
+        private final TipoCoincidencia tipo;
+        private final String referencia;
+
+        Verificacion(TipoCoincidencia tipo, String referencia) {
+            this.tipo = tipo;
+            this.referencia = referencia;
+        }
+
+        // Getters
+        public TipoCoincidencia getTipo() { return tipo; }
+        public String getReferencia() { return referencia; }
+    }
+}
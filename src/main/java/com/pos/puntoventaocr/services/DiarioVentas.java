@@ -0,0 +1,494 @@
+package com.pos.puntoventaocr.services;
+
+import com.pos.puntoventaocr.dao.VentaDAO;
+import com.pos.puntoventaocr.models.DetalleVenta;
+import com.pos.puntoventaocr.models.Producto;
+import com.pos.puntoventaocr.models.Usuario;
+import com.pos.puntoventaocr.models.Venta;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.CRC32;
+
+/**
+ * Diario local de ventas (registro de escritura anticipada) para seguir vendiendo sin MySQL.
+ * Cada venta se agrega al diario y se fuerza a disco antes de intentar guardarla en la BD.
+ * Si la BD no responde, la venta queda cobrada y un hilo de fondo la reenvía después,
+ * de forma idempotente por numero_venta (VentaDAO.registrarDesdeDiario).
+ *
+ * Una venta que la BD rechaza por sus datos al reenviarla se descarta del diario (no se reintenta)
+ * y se entrega al operador con tomarRechazadas() para que la revise a mano.
+ *
+ * El diario se divide en segmentos; un segmento se borra cuando todas sus ventas y las de
+ * los segmentos anteriores ya se resolvieron. Cada línea es: tipo \t numero_venta \t datos \t crc32,
+ * donde los datos van en Base64 y una línea truncada por un corte de luz se ignora.
+ */
+public class DiarioVentas {
+    private static volatile DiarioVentas instance;
+
+    private static final String DIRECTORIO = System.getProperty("pos.diario.dir",
+            Paths.get(System.getProperty("user.home"), ".puntoventaocr", "diario").toString());
+    private static final long INTERVALO_REENVIO_SEG = Long.getLong("pos.diario.reenvioSeg", 15L);
+    // Espera máxima por el commit en la BD antes de dar la venta por cobrada y pendiente de sincronizar
+    private static final long ESPERA_CONFIRMACION_MS = Long.getLong("pos.diario.esperaMs", 3000L);
+    private static final long TAMANO_SEGMENTO = 1024 * 1024;
+
+    private static final String PREFIJO_SEGMENTO = "ventas-";
+    private static final String EXTENSION_SEGMENTO = ".diario";
+
+    // Tipos de línea: la venta cobrada, y su resolución (ya está en la BD, o la BD la rechazó)
+    private static final String TIPO_VENTA = "VENTA";
+    private static final String TIPO_APLICADA = "APLICADA";
+    private static final String TIPO_DESCARTADA = "DESCARTADA";
+
+    public enum EstadoRegistro {
+        GUARDADA, PENDIENTE_SINCRONIZAR, RECHAZADA
+    }
+
+    private final Path directorio;
+    private final EscritorVentas escritorVentas;
+    private final ScheduledExecutorService reenvio;
+
+    // Estado protegido por el monitor de esta instancia
+    private FileChannel canal;
+    private int segmentoActual;
+    private long tamanoActual;
+    private boolean disponible;
+    // Ventas sin resolver de cada segmento (incluye segmentos vacíos, para borrarlos en orden)
+    private final NavigableMap<Integer, Set<String>> sinResolverPorSegmento = new TreeMap<>();
+    private final Map<String, Integer> segmentoPorVenta = new LinkedHashMap<>();
+    // Ventas cobradas sin conexión, en orden de cobro, esperando reenvío
+    private final Map<String, Venta> pendientes = new LinkedHashMap<>();
+    // Ventas cobradas que la BD rechazó después de cobrarlas, con el motivo, para el operador
+    private final Map<String, String> rechazadas = new LinkedHashMap<>();
+
+    // Constructor privado para Singleton
+    private DiarioVentas() {
+        this.directorio = Paths.get(DIRECTORIO);
+        this.escritorVentas = EscritorVentas.getInstance();
+        try {
+            Files.createDirectories(directorio);
+            recuperar();
+            abrirSegmento(sinResolverPorSegmento.isEmpty() ? 1 : sinResolverPorSegmento.lastKey() + 1);
+            borrarSegmentosResueltos();
+            disponible = true;
+            if (!pendientes.isEmpty()) {
+                System.out.println("Diario de ventas: " + pendientes.size() + " ventas pendientes de sincronizar");
+            }
+        } catch (IOException e) {
+            // Sin diario se sigue vendiendo, pero solo con la BD disponible
+            System.err.println("Error al abrir diario de ventas en " + directorio + ": " + e.getMessage());
+        }
+
+        this.reenvio = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "diario-ventas-reenvio");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        reenvio.scheduleWithFixedDelay(this::reenviarPendientes,
+                INTERVALO_REENVIO_SEG, INTERVALO_REENVIO_SEG, TimeUnit.SECONDS);
+    }
+
+    // Método para obtener la instancia única
+    public static DiarioVentas getInstance() {
+        if (instance == null) {
+            synchronized (DiarioVentas.class) {
+                if (instance == null) {
+                    instance = new DiarioVentas();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Registra una venta cobrada. Si la BD no está disponible la venta queda en el diario
+     * (PENDIENTE_SINCRONIZAR) y el stock se descuenta en el caché local; la venta ya es válida.
+     * RECHAZADA significa que la BD la rechazó (por ejemplo, stock insuficiente).
+     *
+     * Se espera el commit a lo sumo ESPERA_CONFIRMACION_MS para no congelar la caja con una BD lenta;
+     * después la venta se da por PENDIENTE_SINCRONIZAR y su resultado se aplica cuando llegue.
+     */
+    public Resultado registrar(Venta venta) {
+        boolean enDiario = anexarVenta(venta);
+
+        // El escritor agrupa el commit con las ventas que lleguen al mismo tiempo
+        CompletableFuture<Venta> envio = escritorVentas.enviar(venta);
+        EscritorVentas.VentaNoGuardadaException error;
+        try {
+            envio.get(ESPERA_CONFIRMACION_MS, TimeUnit.MILLISECONDS);
+            if (enDiario) {
+                resolver(venta.getNumeroVenta(), TIPO_APLICADA);
+            }
+            return new Resultado(EstadoRegistro.GUARDADA, null);
+        } catch (ExecutionException e) {
+            error = comoNoGuardada(e.getCause());
+        } catch (TimeoutException e) {
+            envio.whenComplete((guardada, falla) -> aplicarResultadoTardio(venta, enDiario, falla));
+            return new Resultado(EstadoRegistro.PENDIENTE_SINCRONIZAR,
+                    "La base de datos no confirmó la venta en " + ESPERA_CONFIRMACION_MS + " ms");
+        } catch (InterruptedException e) {
+            // Se desconoce si la venta se confirmó: la venta queda en el diario y el reenvío es idempotente
+            Thread.currentThread().interrupt();
+            error = new EscritorVentas.VentaNoGuardadaException("Registro interrumpido", true);
+        }
+
+        if (enDiario && error.isSinConexion()) {
+            dejarPendiente(venta);
+            return new Resultado(EstadoRegistro.PENDIENTE_SINCRONIZAR, error.getMessage());
+        }
+
+        if (enDiario) {
+            resolver(venta.getNumeroVenta(), TIPO_DESCARTADA);
+        }
+        return new Resultado(EstadoRegistro.RECHAZADA, error.getMessage());
+    }
+
+    /**
+     * Reenvía a la BD las ventas pendientes en orden de cobro. Se detiene al primer error de conexión;
+     * una venta que la BD rechaza por sus datos ya no puede entrar reintentándola: se descarta del
+     * diario y se avisa al operador.
+     */
+    public void reenviarPendientes() {
+        List<Venta> porEnviar;
+        synchronized (this) {
+            if (pendientes.isEmpty()) {
+                return;
+            }
+            porEnviar = new ArrayList<>(pendientes.values());
+        }
+
+        try {
+            VentaDAO ventaDAO = new VentaDAO();
+            int enviadas = 0;
+            for (Venta venta : porEnviar) {
+                if (ventaDAO.registrarDesdeDiario(venta)) {
+                    resolver(venta.getNumeroVenta(), TIPO_APLICADA);
+                    enviadas++;
+                } else if (ventaDAO.isSinConexion()) {
+                    break;
+                } else {
+                    descartarCobrada(venta.getNumeroVenta(), ventaDAO.getUltimoError());
+                }
+            }
+            if (enviadas > 0) {
+                System.out.println("Diario de ventas: " + enviadas + " ventas sincronizadas, " +
+                        getPendientes() + " pendientes");
+            }
+        } catch (RuntimeException e) {
+            // Una excepción no debe cancelar la tarea periódica
+            System.err.println("Error al reenviar ventas del diario: " + e.getMessage());
+        }
+    }
+
+    public synchronized int getPendientes() {
+        return pendientes.size();
+    }
+
+    /**
+     * Entrega (y olvida) las ventas cobradas que la BD rechazó al sincronizarlas: numero_venta y motivo
+     */
+    public synchronized Map<String, String> tomarRechazadas() {
+        Map<String, String> entregadas = new LinkedHashMap<>(rechazadas);
+        rechazadas.clear();
+        return entregadas;
+    }
+
+    // Métodos privados auxiliares
+
+    private static EscritorVentas.VentaNoGuardadaException comoNoGuardada(Throwable causa) {
+        return causa instanceof EscritorVentas.VentaNoGuardadaException
+                ? (EscritorVentas.VentaNoGuardadaException) causa
+                : new EscritorVentas.VentaNoGuardadaException(causa.getMessage(), false);
+    }
+
+    // Venta cobrada sin confirmación de la BD: se reenvía después y el caché descuenta su stock
+    private void dejarPendiente(Venta venta) {
+        synchronized (this) {
+            pendientes.put(venta.getNumeroVenta(), venta);
+        }
+        for (DetalleVenta detalle : venta.getDetalles()) {
+            ProductoCache.notificarVenta(detalle.getProducto().getIdProducto(), detalle.getCantidad());
+        }
+    }
+
+    // Resultado del commit que llegó después de dar la venta por pendiente (hilo del escritor)
+    private void aplicarResultadoTardio(Venta venta, boolean enDiario, Throwable falla) {
+        if (falla == null) {
+            if (enDiario) {
+                resolver(venta.getNumeroVenta(), TIPO_APLICADA);
+            }
+            return;
+        }
+        EscritorVentas.VentaNoGuardadaException error = comoNoGuardada(falla);
+        if (enDiario && error.isSinConexion()) {
+            dejarPendiente(venta);
+        } else if (enDiario) {
+            descartarCobrada(venta.getNumeroVenta(), error.getMessage());
+        } else {
+            // Sin diario no hay copia local que reenviar
+            synchronized (this) {
+                rechazadas.put(venta.getNumeroVenta(), error.getMessage());
+            }
+            System.err.println("ATENCIÓN: venta " + venta.getNumeroVenta() + " cobrada pero no guardada " +
+                    "(sin diario local): " + error.getMessage() + ". Regístrela a mano.");
+        }
+    }
+
+    // Venta ya cobrada que la BD rechaza por sus datos: reintentarla no sirve, se saca del diario
+    private void descartarCobrada(String numeroVenta, String motivo) {
+        synchronized (this) {
+            rechazadas.put(numeroVenta, motivo);
+        }
+        resolver(numeroVenta, TIPO_DESCARTADA);
+        System.err.println("ATENCIÓN: venta " + numeroVenta + " cobrada pero rechazada por la BD al " +
+                "sincronizarla: " + motivo + ". Se descartó del diario; revísela a mano.");
+    }
+
+    // Agrega la venta y la fuerza a disco; false si el diario no está disponible
+    private synchronized boolean anexarVenta(Venta venta) {
+        if (!disponible) {
+            return false;
+        }
+        try {
+            anexar(TIPO_VENTA, venta.getNumeroVenta(), serializar(venta), true);
+            sinResolverPorSegmento.get(segmentoActual).add(venta.getNumeroVenta());
+            segmentoPorVenta.put(venta.getNumeroVenta(), segmentoActual);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error al escribir venta en el diario: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Marca la venta como resuelta. Solo DESCARTADA se fuerza a disco: perder una APLICADA
+     * provoca un reenvío que la BD ignora, pero perder una DESCARTADA registraría una venta rechazada.
+     */
+    private synchronized void resolver(String numeroVenta, String tipo) {
+        pendientes.remove(numeroVenta);
+        try {
+            anexar(tipo, numeroVenta, "", TIPO_DESCARTADA.equals(tipo));
+        } catch (IOException e) {
+            System.err.println("Error al escribir en el diario de ventas: " + e.getMessage());
+            return;
+        }
+        Integer segmento = segmentoPorVenta.remove(numeroVenta);
+        if (segmento != null && sinResolverPorSegmento.containsKey(segmento)) {
+            sinResolverPorSegmento.get(segmento).remove(numeroVenta);
+        }
+        borrarSegmentosResueltos();
+    }
+
+    private void anexar(String tipo, String numeroVenta, String datos, boolean forzar) throws IOException {
+        if (tamanoActual >= TAMANO_SEGMENTO) {
+            canal.close();
+            abrirSegmento(segmentoActual + 1);
+            borrarSegmentosResueltos();
+        }
+
+        String contenido = tipo + "\t" + numeroVenta + "\t" + datos;
+        String linea = contenido + "\t" + crc(contenido) + "\n";
+        ByteBuffer buffer = ByteBuffer.wrap(linea.getBytes(StandardCharsets.UTF_8));
+        tamanoActual += buffer.remaining();
+        while (buffer.hasRemaining()) {
+            canal.write(buffer);
+        }
+        if (forzar) {
+            canal.force(false);
+        }
+    }
+
+    private void abrirSegmento(int numero) throws IOException {
+        Path archivo = rutaSegmento(numero);
+        canal = FileChannel.open(archivo, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segmentoActual = numero;
+        tamanoActual = canal.size();
+        sinResolverPorSegmento.putIfAbsent(numero, new HashSet<>());
+    }
+
+    // Los segmentos se borran del más antiguo al más nuevo: la resolución de una venta
+    // siempre queda en su segmento o en uno posterior, que sigue existiendo
+    private void borrarSegmentosResueltos() {
+        while (!sinResolverPorSegmento.isEmpty()) {
+            Map.Entry<Integer, Set<String>> primero = sinResolverPorSegmento.firstEntry();
+            if (primero.getKey() == segmentoActual || !primero.getValue().isEmpty()) {
+                return;
+            }
+            try {
+                Files.deleteIfExists(rutaSegmento(primero.getKey()));
+            } catch (IOException e) {
+                System.err.println("Error al borrar segmento del diario: " + e.getMessage());
+                return;
+            }
+            sinResolverPorSegmento.pollFirstEntry();
+        }
+    }
+
+    // Lee los segmentos existentes en orden; las ventas sin resolución quedan pendientes
+    private void recuperar() throws IOException {
+        try (DirectoryStream<Path> archivos = Files.newDirectoryStream(directorio,
+                PREFIJO_SEGMENTO + "*" + EXTENSION_SEGMENTO)) {
+            for (Path archivo : archivos) {
+                String nombre = archivo.getFileName().toString();
+                try {
+                    int numero = Integer.parseInt(nombre.substring(PREFIJO_SEGMENTO.length(),
+                            nombre.length() - EXTENSION_SEGMENTO.length()));
+                    sinResolverPorSegmento.put(numero, new HashSet<>());
+                } catch (NumberFormatException e) {
+                    System.err.println("Archivo ajeno en el diario de ventas: " + nombre);
+                }
+            }
+        }
+
+        for (Map.Entry<Integer, Set<String>> segmento : sinResolverPorSegmento.entrySet()) {
+            for (String linea : Files.readAllLines(rutaSegmento(segmento.getKey()), StandardCharsets.UTF_8)) {
+                String[] campos = linea.split("\t", -1);
+                if (campos.length != 4
+                        || !crc(campos[0] + "\t" + campos[1] + "\t" + campos[2]).equals(campos[3])) {
+                    System.err.println("Línea dañada en el diario de ventas, se ignora");
+                    continue;
+                }
+
+                String numeroVenta = campos[1];
+                if (TIPO_VENTA.equals(campos[0])) {
+                    pendientes.put(numeroVenta, deserializar(numeroVenta, campos[2]));
+                    segmento.getValue().add(numeroVenta);
+                    segmentoPorVenta.put(numeroVenta, segmento.getKey());
+                } else {
+                    pendientes.remove(numeroVenta);
+                    Integer origen = segmentoPorVenta.remove(numeroVenta);
+                    if (origen != null) {
+                        sinResolverPorSegmento.get(origen).remove(numeroVenta);
+                    }
+                }
+            }
+        }
+    }
+
+    private Path rutaSegmento(int numero) {
+        return directorio.resolve(String.format("%s%06d%s", PREFIJO_SEGMENTO, numero, EXTENSION_SEGMENTO));
+    }
+
+    private static String crc(String contenido) {
+        CRC32 crc = new CRC32();
+        crc.update(contenido.getBytes(StandardCharsets.UTF_8));
+        return Long.toHexString(crc.getValue());
+    }
+
+    private static String serializar(Venta venta) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(venta.getFechaVenta().toString());
+            out.writeInt(venta.getUsuario().getIdUsuario());
+            escribirTexto(out, venta.getMetodoPago());
+            escribirTexto(out, venta.getSubtotal().toPlainString());
+            escribirTexto(out, venta.getImpuestos().toPlainString());
+            escribirTexto(out, venta.getTotal().toPlainString());
+            escribirTexto(out, venta.getEstado());
+            escribirTexto(out, venta.getObservaciones());
+            escribirTexto(out, venta.getReferenciaTransferencia());
+
+            out.writeInt(venta.getDetalles().size());
+            for (DetalleVenta detalle : venta.getDetalles()) {
+                out.writeInt(detalle.getProducto().getIdProducto());
+                escribirTexto(out, detalle.getProducto().getNombre());
+                out.writeInt(detalle.getCantidad());
+                escribirTexto(out, detalle.getPrecioUnitario().toPlainString());
+                escribirTexto(out, detalle.getDescuento().toPlainString());
+                escribirTexto(out, detalle.getSubtotal().toPlainString());
+            }
+        }
+        return Base64.getEncoder().encodeToString(bytes.toByteArray());
+    }
+
+    private static Venta deserializar(String numeroVenta, String datos) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getDecoder().decode(datos)))) {
+            Venta venta = new Venta();
+            venta.setNumeroVenta(numeroVenta);
+            venta.setFechaVenta(LocalDateTime.parse(in.readUTF()));
+            Usuario usuario = new Usuario();
+            usuario.setIdUsuario(in.readInt());
+            venta.setUsuario(usuario);
+            venta.setMetodoPago(leerTexto(in));
+            venta.setSubtotal(new BigDecimal(leerTexto(in)));
+            venta.setImpuestos(new BigDecimal(leerTexto(in)));
+            venta.setTotal(new BigDecimal(leerTexto(in)));
+            venta.setEstado(leerTexto(in));
+            venta.setObservaciones(leerTexto(in));
+            venta.setReferenciaTransferencia(leerTexto(in));
+
+            int partidas = in.readInt();
+            for (int i = 0; i < partidas; i++) {
+                Producto producto = new Producto();
+                producto.setIdProducto(in.readInt());
+                producto.setNombre(leerTexto(in));
+                int cantidad = in.readInt();
+                DetalleVenta detalle = new DetalleVenta(producto, cantidad, new BigDecimal(leerTexto(in)));
+                detalle.setDescuento(new BigDecimal(leerTexto(in)));
+                detalle.setSubtotal(new BigDecimal(leerTexto(in)));
+                detalle.setVenta(venta);
+                // Sin agregarDetalle(): los totales se conservan tal como se cobraron
+                venta.getDetalles().add(detalle);
+            }
+            return venta;
+        }
+    }
+
+    private static void escribirTexto(DataOutputStream out, String texto) throws IOException {
+        out.writeBoolean(texto != null);
+        if (texto != null) {
+            out.writeUTF(texto);
+        }
+    }
+
+    private static String leerTexto(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * Resultado de registrar(); el mensaje es el error de la BD cuando lo hay
+     */
+    public static class Resultado {
+        private final EstadoRegistro estado;
+        private final String mensaje;
+
+        public Resultado(EstadoRegistro estado, String mensaje) {
+            this.estado = estado;
+            this.mensaje = mensaje;
+        }
+
+        // Getters
+        public EstadoRegistro getEstado() { return estado; }
+        public String getMensaje() { return mensaje; }
+    }
+}
@@ -0,0 +1,122 @@
+package com.pos.puntoventaocr.services;
+
+import com.pos.puntoventaocr.dao.VentaDAO;
+import com.pos.puntoventaocr.models.DetalleVenta;
+import com.pos.puntoventaocr.models.Venta;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Escritor de ventas: las ventas se encolan y un solo hilo las guarda en orden, cada una en su
+ * propia transacción (VentaDAO.crear). Cada venta recibe su propio futuro, que se completa después
+ * del commit; si la venta se rechaza el futuro falla con VentaNoGuardadaException.
+ *
+ * Cada caja corre su propia instancia de la aplicación y cobra una venta a la vez, así que no hay
+ * varias ventas que agrupar en un commit. Lo que aporta el escritor es sacar el commit del hilo que
+ * cobra (quien espera puede dejar de hacerlo y dejar la venta en el diario) y serializar las
+ * escrituras de la caja en un solo hilo.
+ */
+public class EscritorVentas {
+    private static volatile EscritorVentas instance;
+
+    private final VentaDAO ventaDAO;
+    private final BlockingQueue<Solicitud> cola = new LinkedBlockingQueue<>();
+    private final Thread hiloEscritor;
+
+    // Constructor privado para Singleton
+    private EscritorVentas() {
+        this.ventaDAO = new VentaDAO();
+        this.hiloEscritor = new Thread(this::escribir, "ventas-escritor");
+        hiloEscritor.setDaemon(true);
+        hiloEscritor.start();
+    }
+
+    // Método para obtener la instancia única
+    public static EscritorVentas getInstance() {
+        if (instance == null) {
+            synchronized (EscritorVentas.class) {
+                if (instance == null) {
+                    instance = new EscritorVentas();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Encola la venta; el futuro se completa con la misma venta (ya con id) cuando se confirma
+     */
+    public CompletableFuture<Venta> enviar(Venta venta) {
+        Solicitud solicitud = new Solicitud(venta);
+        cola.add(solicitud);
+        return solicitud.resultado;
+    }
+
+    public int getEnCola() {
+        return cola.size();
+    }
+
+    // Métodos privados auxiliares
+    private void escribir() {
+        while (true) {
+            Solicitud solicitud;
+            try {
+                solicitud = cola.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            try {
+                guardar(solicitud);
+            } catch (RuntimeException e) {
+                // El hilo escritor debe seguir vivo; la venta se reporta como no guardada
+                System.err.println("Error al guardar venta: " + e.getMessage());
+                solicitud.resultado.completeExceptionally(new VentaNoGuardadaException(e.getMessage(), true));
+            }
+        }
+    }
+
+    private void guardar(Solicitud solicitud) {
+        if (ventaDAO.crear(solicitud.venta)) {
+            for (DetalleVenta detalle : solicitud.venta.getDetalles()) {
+                ProductoCache.notificarVenta(detalle.getProducto().getIdProducto(), detalle.getCantidad());
+            }
+            solicitud.resultado.complete(solicitud.venta);
+        } else {
+            String error = ventaDAO.getUltimoError();
+            solicitud.resultado.completeExceptionally(new VentaNoGuardadaException(
+                    error != null ? error : "No se pudo insertar la venta", ventaDAO.isSinConexion()));
+        }
+    }
+
+    private static class Solicitud {
+        private final Venta venta;
+        private final CompletableFuture<Venta> resultado = new CompletableFuture<>();
+
+        Solicitud(Venta venta) {
+            this.venta = venta;
+        }
+    }
+
+    /**
+     * La venta no se guardó. Si fue por falta de conexión puede reintentarse más tarde;
+     * si no, la BD la rechazó por sus datos (por ejemplo, stock insuficiente).
+     */
+    public static class VentaNoGuardadaException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        private final boolean sinConexion;
+
+        public VentaNoGuardadaException(String mensaje, boolean sinConexion) {
+            super(mensaje);
+            this.sinConexion = sinConexion;
+        }
+
+        public boolean isSinConexion() {
+            return sinConexion;
+        }
+    }
+}
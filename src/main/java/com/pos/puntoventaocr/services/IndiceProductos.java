@@ -0,0 +1,400 @@
+package com.pos.puntoventaocr.services;
+
+import com.pos.puntoventaocr.models.Producto;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Índice invertido en memoria para buscar productos mientras se escribe, sobre nombre,
+ * descripción corta y código de barras. El texto se pliega (minúsculas, sin acentos ni signos),
+ * así que "cafe" encuentra "Café" y "nino" encuentra "Niño".
+ *
+ * Cada palabra aporta sus trigramas y sus prefijos de uno y dos caracteres. Un término de tres o más
+ * caracteres se busca por el trigrama con menos productos y los candidatos se confirman con contains;
+ * uno más corto se busca como inicio de palabra. Los resultados se ordenan por relevancia:
+ * código exacto, nombre que empieza con el término, palabra del nombre que empieza con él, etc.
+ *
+ * Las listas por clave son arreglos simples y cada producto recuerda su posición en ellas, así que
+ * agregarlo o quitarlo no recorre listas de miles de productos. Se actualiza producto por producto
+ * desde ProductoCache; las búsquedas pueden correr en paralelo (candado de lectura/escritura).
+ */
+public class IndiceProductos {
+
+    private static final int LONGITUD_GRAMA = 3;
+    private static final String MARCA_PREFIJO = "^";
+    private static final Pattern MARCAS_DIACRITICAS = Pattern.compile("\\p{M}+");
+    private static final Pattern NO_ALFANUMERICO = Pattern.compile("[^a-z0-9]+");
+
+    // Puntos por término según dónde aparece
+    private static final int PUNTOS_CODIGO_EXACTO = 1000;
+    private static final int PUNTOS_CODIGO_PREFIJO = 400;
+    private static final int PUNTOS_NOMBRE_PREFIJO = 200;
+    private static final int PUNTOS_PALABRA_NOMBRE = 100;
+    private static final int PUNTOS_EN_NOMBRE = 50;
+    private static final int PUNTOS_EN_OTRO_CAMPO = 10;
+
+    private static final Comparator<Resultado> POR_RELEVANCIA = Comparator
+            .comparingInt((Resultado r) -> -r.puntos)
+            .thenComparingInt(r -> r.entrada.nombre.length())
+            .thenComparing(r -> r.entrada.nombre);
+    private static final Comparator<Resultado> POR_NOMBRE = Comparator.comparing(r -> r.entrada.nombre);
+
+    private final Map<Integer, Entrada> entradas = new HashMap<>();
+    private final Map<String, Lista> listas = new HashMap<>();
+    private final ReentrantReadWriteLock candado = new ReentrantReadWriteLock();
+
+    /**
+     * Agrega el producto o reemplaza su versión anterior
+     */
+    public void agregar(Producto producto) {
+        Entrada entrada = new Entrada(producto);
+        Set<String> claves = entrada.clavesNuevas;
+        entrada.clavesNuevas = null;
+        candado.writeLock().lock();
+        try {
+            quitarEntrada(producto.getIdProducto());
+            entradas.put(producto.getIdProducto(), entrada);
+            entrada.listas = new Lista[claves.size()];
+            entrada.posiciones = new int[claves.size()];
+            int i = 0;
+            for (String clave : claves) {
+                Lista lista = listas.computeIfAbsent(clave, Lista::new);
+                entrada.listas[i] = lista;
+                entrada.posiciones[i] = lista.agregar(entrada);
+                i++;
+            }
+        } finally {
+            candado.writeLock().unlock();
+        }
+    }
+
+    public void quitar(int idProducto) {
+        candado.writeLock().lock();
+        try {
+            quitarEntrada(idProducto);
+        } finally {
+            candado.writeLock().unlock();
+        }
+    }
+
+    public void limpiar() {
+        candado.writeLock().lock();
+        try {
+            entradas.clear();
+            listas.clear();
+        } finally {
+            candado.writeLock().unlock();
+        }
+    }
+
+    public int getTamano() {
+        candado.readLock().lock();
+        try {
+            return entradas.size();
+        } finally {
+            candado.readLock().unlock();
+        }
+    }
+
+    /**
+     * Productos que contienen todos los términos del texto, del más al menos relevante.
+     * Con el texto vacío devuelve todos ordenados por nombre. limite <= 0 significa sin límite.
+     */
+    public List<Producto> buscar(String texto, int limite, boolean soloActivos) {
+        Termino[] terminos = terminos(texto);
+        candado.readLock().lock();
+        try {
+            if (terminos.length == 0) {
+                Seleccion seleccion = new Seleccion(limite, POR_NOMBRE);
+                for (Entrada entrada : entradas.values()) {
+                    if (!soloActivos || entrada.producto.isEstado()) {
+                        seleccion.ofrecer(entrada, 0);
+                    }
+                }
+                return seleccion.productos();
+            }
+
+            Lista candidatos = listaMasCorta(terminos);
+            if (candidatos == null) {
+                return new ArrayList<>();
+            }
+            Seleccion seleccion = new Seleccion(limite, POR_RELEVANCIA);
+            for (int i = 0; i < candidatos.tamano; i++) {
+                Entrada entrada = candidatos.entradas[i];
+                if (soloActivos && !entrada.producto.isEstado()) {
+                    continue;
+                }
+                int puntos = puntuar(entrada, terminos);
+                if (puntos > 0) {
+                    seleccion.ofrecer(entrada, puntos);
+                }
+            }
+            return seleccion.productos();
+        } finally {
+            candado.readLock().unlock();
+        }
+    }
+
+    // Minúsculas, sin acentos y con cualquier signo convertido en espacio
+    public static String plegar(String texto) {
+        if (texto == null || texto.isEmpty()) {
+            return "";
+        }
+        String sinAcentos = MARCAS_DIACRITICAS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("");
+        return NO_ALFANUMERICO.matcher(sinAcentos.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    // Métodos privados auxiliares
+    private static Termino[] terminos(String texto) {
+        String plegado = plegar(texto);
+        if (plegado.isEmpty()) {
+            return new Termino[0];
+        }
+        String[] partes = plegado.split(" ");
+        Termino[] terminos = new Termino[partes.length];
+        for (int i = 0; i < partes.length; i++) {
+            terminos[i] = new Termino(partes[i]);
+        }
+        return terminos;
+    }
+
+    // La lista más corta entre las claves de todos los términos; null si algún término no tiene ninguna
+    private Lista listaMasCorta(Termino[] terminos) {
+        Lista menor = null;
+        for (Termino termino : terminos) {
+            for (String clave : clavesBusqueda(termino.texto)) {
+                Lista lista = listas.get(clave);
+                if (lista == null || lista.tamano == 0) {
+                    return null;
+                }
+                if (menor == null || lista.tamano < menor.tamano) {
+                    menor = lista;
+                }
+            }
+        }
+        return menor;
+    }
+
+    private static List<String> clavesBusqueda(String termino) {
+        List<String> claves = new ArrayList<>();
+        if (termino.length() < LONGITUD_GRAMA) {
+            claves.add(MARCA_PREFIJO + termino);
+        } else {
+            for (int i = 0; i + LONGITUD_GRAMA <= termino.length(); i++) {
+                claves.add(termino.substring(i, i + LONGITUD_GRAMA));
+            }
+        }
+        return claves;
+    }
+
+    // Suma de puntos de todos los términos; 0 si alguno no aparece
+    private static int puntuar(Entrada entrada, Termino[] terminos) {
+        int puntos = 0;
+        for (Termino termino : terminos) {
+            int puntosTermino = puntuar(entrada, termino);
+            if (puntosTermino == 0) {
+                return 0;
+            }
+            puntos += puntosTermino;
+        }
+        return puntos;
+    }
+
+    private static int puntuar(Entrada entrada, Termino termino) {
+        String texto = termino.texto;
+        if (entrada.codigo.equals(texto)) {
+            return PUNTOS_CODIGO_EXACTO;
+        }
+        if (!entrada.codigo.isEmpty() && entrada.codigo.startsWith(texto)) {
+            return PUNTOS_CODIGO_PREFIJO;
+        }
+        if (entrada.nombre.startsWith(texto)) {
+            return PUNTOS_NOMBRE_PREFIJO;
+        }
+        if (entrada.nombre.contains(termino.inicioPalabra)) {
+            return PUNTOS_PALABRA_NOMBRE;
+        }
+        if (texto.length() < LONGITUD_GRAMA) {
+            // Los términos cortos solo cuentan como inicio de palabra
+            return entrada.otros.startsWith(texto) || entrada.otros.contains(termino.inicioPalabra)
+                    ? PUNTOS_EN_OTRO_CAMPO : 0;
+        }
+        if (entrada.nombre.contains(texto)) {
+            return PUNTOS_EN_NOMBRE;
+        }
+        return entrada.otros.contains(texto) ? PUNTOS_EN_OTRO_CAMPO : 0;
+    }
+
+    private void quitarEntrada(int idProducto) {
+        Entrada anterior = entradas.remove(idProducto);
+        if (anterior == null) {
+            return;
+        }
+        for (int i = 0; i < anterior.listas.length; i++) {
+            Lista lista = anterior.listas[i];
+            lista.quitar(anterior.posiciones[i]);
+            if (lista.tamano == 0) {
+                listas.remove(lista.clave);
+            }
+        }
+    }
+
+    private static class Termino {
+        private final String texto;
+        private final String inicioPalabra;
+
+        Termino(String texto) {
+            this.texto = texto;
+            this.inicioPalabra = " " + texto;
+        }
+    }
+
+    /**
+     * Campos plegados del producto, las listas en que aparece y su posición en cada una,
+     * para quitarlo en tiempo constante por lista aunque la lista tenga miles de productos.
+     * Las claves se calculan fuera del candado y solo se conservan las instancias del mapa.
+     */
+    private static class Entrada {
+        private final Producto producto;
+        private final String nombre;
+        // Descripción corta y código de barras
+        private final String otros;
+        private final String codigo;
+        private Set<String> clavesNuevas = new HashSet<>();
+        private Lista[] listas;
+        private int[] posiciones;
+
+        void moverPosicion(Lista lista, int posicion) {
+            for (int i = 0; i < listas.length; i++) {
+                if (listas[i] == lista) {
+                    posiciones[i] = posicion;
+                    return;
+                }
+            }
+        }
+
+        Entrada(Producto producto) {
+            this.producto = producto;
+            this.nombre = plegar(producto.getNombre());
+            this.codigo = plegar(producto.getCodigoBarras()).replace(" ", "");
+            String descripcion = plegar(producto.getDescripcionCorta());
+            this.otros = descripcion.isEmpty() ? codigo : codigo.isEmpty() ? descripcion : descripcion + " " + codigo;
+
+            agregarClaves(nombre);
+            agregarClaves(otros);
+        }
+
+        private void agregarClaves(String texto) {
+            if (texto.isEmpty()) {
+                return;
+            }
+            for (String palabra : texto.split(" ")) {
+                clavesNuevas.add(MARCA_PREFIJO + palabra.substring(0, 1));
+                if (palabra.length() >= 2) {
+                    clavesNuevas.add(MARCA_PREFIJO + palabra.substring(0, 2));
+                }
+                for (int i = 0; i + LONGITUD_GRAMA <= palabra.length(); i++) {
+                    clavesNuevas.add(palabra.substring(i, i + LONGITUD_GRAMA));
+                }
+            }
+        }
+    }
+
+    // Productos de una clave, sin orden; quitar mueve el último al hueco
+    private static class Lista {
+        private final String clave;
+        private Entrada[] entradas = new Entrada[4];
+        private int tamano = 0;
+
+        Lista(String clave) {
+            this.clave = clave;
+        }
+
+        // Devuelve la posición en que quedó
+        int agregar(Entrada entrada) {
+            if (tamano == entradas.length) {
+                entradas = Arrays.copyOf(entradas, tamano * 2);
+            }
+            entradas[tamano] = entrada;
+            return tamano++;
+        }
+
+        void quitar(int posicion) {
+            Entrada ultima = entradas[--tamano];
+            entradas[tamano] = null;
+            if (posicion < tamano) {
+                entradas[posicion] = ultima;
+                ultima.moverPosicion(this, posicion);
+            }
+        }
+    }
+
+    private static class Resultado {
+        private final Entrada entrada;
+        private final int puntos;
+
+        Resultado(Entrada entrada, int puntos) {
+            this.entrada = entrada;
+            this.puntos = puntos;
+        }
+    }
+
+    // Con límite conserva solo los mejores en un montículo acotado; sin límite los junta todos
+    private static class Seleccion {
+        private final int limite;
+        private final Comparator<Resultado> orden;
+        private final PriorityQueue<Resultado> mejores;
+        private final List<Resultado> todos;
+
+        Seleccion(int limite, Comparator<Resultado> orden) {
+            this.limite = limite;
+            this.orden = orden;
+            this.mejores = limite > 0 ? new PriorityQueue<>(limite + 1, orden.reversed()) : null;
+            this.todos = limite > 0 ? null : new ArrayList<>();
+        }
+
+        void ofrecer(Entrada entrada, int puntos) {
+            if (mejores == null) {
+                todos.add(new Resultado(entrada, puntos));
+                return;
+            }
+            if (mejores.size() < limite) {
+                mejores.add(new Resultado(entrada, puntos));
+                return;
+            }
+            Resultado peor = mejores.peek();
+            // Descarte rápido sin crear el resultado: la mayoría de los candidatos no entra
+            if (orden == POR_RELEVANCIA && (puntos < peor.puntos
+                    || puntos == peor.puntos && entrada.nombre.length() > peor.entrada.nombre.length())) {
+                return;
+            }
+            Resultado resultado = new Resultado(entrada, puntos);
+            if (orden.compare(resultado, peor) < 0) {
+                mejores.poll();
+                mejores.add(resultado);
+            }
+        }
+
+        List<Producto> productos() {
+            List<Resultado> resultados = mejores != null ? new ArrayList<>(mejores) : todos;
+            resultados.sort(orden);
+            List<Producto> productos = new ArrayList<>(resultados.size());
+            for (Resultado resultado : resultados) {
+                productos.add(resultado.entrada.producto);
+            }
+            return productos;
+        }
+    }
+}
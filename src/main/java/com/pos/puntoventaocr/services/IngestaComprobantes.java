@@ -0,0 +1,453 @@
+package com.pos.puntoventaocr.services;
+
+import com.pos.puntoventaocr.dao.ComprobanteOCRDAO;
+import com.pos.puntoventaocr.dao.VentaDAO;
+import com.pos.puntoventaocr.models.ComprobanteOCR;
+import com.pos.puntoventaocr.models.MotorOCR;
+import com.pos.puntoventaocr.models.Venta;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Ingesta desatendida de comprobantes: vigila un directorio de entrada con WatchService,
+ * procesa cada imagen nueva en el pool de MotorOCR y guarda los resultados por lotes.
+ * Los archivos ya guardados quedan en un manifiesto durable, así que al reiniciar
+ * no se vuelven a procesar.
+ *
+ * Uso: java ... IngestaComprobantes /ruta/al/directorio
+ * Con -Dpos.ingesta.usuarioAprobacion=<id de usuario> los comprobantes asociados a una venta
+ * que coinciden y se leyeron con alta confianza se aprueban sin revisión.
+ * Un comprobante cuya referencia ya está registrada se guarda rechazado como duplicado.
+ */
+public class IngestaComprobantes {
+
+    public static final String NOMBRE_MANIFIESTO = ".procesados.manifest";
+
+    private static final int TAMANO_LOTE = 50;
+    private static final long ESPERA_LOTE_MS = 2000;
+    private static final long INTERVALO_ESTABILIDAD_MS = 1000;
+    private static final long ESPERA_REINTENTO_MS = 30_000;
+    // Usuario a cuyo nombre se aprueban los comprobantes confiables; 0 = todos quedan para revisión
+    private static final int USUARIO_APROBACION = Integer.getInteger("pos.ingesta.usuarioAprobacion", 0);
+
+    // Si el archivo empieza con un número de venta (p. ej. V1700000000000_bbva.png) se asocia a esa venta
+    private static final Pattern PATRON_NUMERO_VENTA = Pattern.compile("^(V\\d{6,19})");
+
+    private final Path directorio;
+    private final MotorOCR motorOCR;
+    private final ComprobanteOCRDAO comprobanteDAO;
+    private final VentaDAO ventaDAO;
+    private final DetectorReferencias detectorReferencias;
+    private final ManifiestoProcesados manifiesto;
+
+    // Archivos vistos por WatchService y la última clave observada ("" = aún no revisado)
+    private final Map<Path, String> candidatos = new ConcurrentHashMap<>();
+    private final Set<String> enProceso = ConcurrentHashMap.newKeySet();
+    private final BlockingQueue<Resultado> resultados = new LinkedBlockingQueue<>();
+    // Resultados que la BD no guardó por una falla transitoria; solo los usa el hilo escritor
+    private final List<Resultado> reintentos = new ArrayList<>();
+    private long proximoReintento = 0;
+
+    private WatchService vigilante;
+    private ScheduledExecutorService programador;
+    private Thread hiloVigilante;
+    private Thread hiloEscritor;
+    private volatile boolean activo = false;
+
+    public IngestaComprobantes(Path directorio) throws IOException {
+        this.directorio = directorio;
+        this.motorOCR = MotorOCR.getInstance();
+        this.comprobanteDAO = new ComprobanteOCRDAO();
+        this.ventaDAO = new VentaDAO();
+        this.detectorReferencias = DetectorReferencias.getInstance();
+        Files.createDirectories(directorio);
+        this.manifiesto = new ManifiestoProcesados(directorio.resolve(NOMBRE_MANIFIESTO));
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Uso: IngestaComprobantes <directorio de entrada>");
+            System.exit(1);
+        }
+
+        IngestaComprobantes ingesta = new IngestaComprobantes(Paths.get(args[0]));
+        Runtime.getRuntime().addShutdownHook(new Thread(ingesta::detener, "ingesta-cierre"));
+        ingesta.iniciar();
+        ingesta.hiloEscritor.join();
+    }
+
+    public synchronized void iniciar() throws IOException {
+        if (activo) {
+            return;
+        }
+        activo = true;
+
+        vigilante = FileSystems.getDefault().newWatchService();
+        directorio.register(vigilante, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+        programador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "ingesta-programador");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        programador.scheduleWithFixedDelay(this::revisarCandidatos,
+                INTERVALO_ESTABILIDAD_MS, INTERVALO_ESTABILIDAD_MS, TimeUnit.MILLISECONDS);
+
+        hiloVigilante = new Thread(this::vigilar, "ingesta-vigilante");
+        hiloVigilante.setDaemon(true);
+        hiloVigilante.start();
+
+        // Referencias ya registradas en memoria antes del primer lote
+        detectorReferencias.cargar();
+
+        hiloEscritor = new Thread(this::escribirResultados, "ingesta-escritor");
+        hiloEscritor.start();
+
+        // Archivos que llegaron mientras el proceso estaba detenido
+        escanearDirectorio();
+        System.out.println("Ingesta de comprobantes iniciada en " + directorio +
+                " (" + manifiesto.getTamano() + " archivos ya procesados)");
+    }
+
+    /**
+     * Deja de aceptar archivos, guarda lo que ya estaba en proceso y cierra el manifiesto
+     */
+    public void detener() {
+        synchronized (this) {
+            if (!activo) {
+                return;
+            }
+            activo = false;
+        }
+
+        programador.shutdownNow();
+        try {
+            vigilante.close();
+        } catch (IOException e) {
+            System.err.println("Error al cerrar WatchService: " + e.getMessage());
+        }
+
+        try {
+            hiloEscritor.join();
+            manifiesto.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            System.err.println("Error al cerrar manifiesto: " + e.getMessage());
+        }
+    }
+
+    public int getPendientes() {
+        return enProceso.size();
+    }
+
+    // === VIGILANCIA DEL DIRECTORIO ===
+
+    private void vigilar() {
+        try {
+            while (activo) {
+                WatchKey llave = vigilante.take();
+                for (WatchEvent<?> evento : llave.pollEvents()) {
+                    if (evento.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        // Se perdieron eventos: se revisa el directorio completo
+                        escanearDirectorio();
+                    } else {
+                        agregarCandidato(directorio.resolve((Path) evento.context()));
+                    }
+                }
+                if (!llave.reset()) {
+                    System.err.println("El directorio de ingesta ya no es accesible: " + directorio);
+                    break;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Cierre normal
+        }
+    }
+
+    private void escanearDirectorio() {
+        try (DirectoryStream<Path> archivos = Files.newDirectoryStream(directorio)) {
+            for (Path archivo : archivos) {
+                agregarCandidato(archivo);
+            }
+        } catch (IOException e) {
+            System.err.println("Error al escanear directorio de ingesta: " + e.getMessage());
+        }
+    }
+
+    private void agregarCandidato(Path archivo) {
+        String nombre = archivo.getFileName().toString();
+        if (nombre.startsWith(".") || !motorOCR.validarFormato(nombre)) {
+            return;
+        }
+        candidatos.putIfAbsent(archivo, "");
+    }
+
+    // Un archivo se envía cuando su tamaño y fecha no cambiaron entre dos revisiones (copia terminada)
+    private void revisarCandidatos() {
+        for (Map.Entry<Path, String> candidato : candidatos.entrySet()) {
+            Path archivo = candidato.getKey();
+            try {
+                if (!Files.isRegularFile(archivo)) {
+                    candidatos.remove(archivo);
+                    continue;
+                }
+
+                String clave = ManifiestoProcesados.clave(archivo);
+                if (!clave.equals(candidato.getValue())) {
+                    candidato.setValue(clave);
+                    continue;
+                }
+
+                candidatos.remove(archivo);
+                if (!manifiesto.contiene(clave) && enProceso.add(clave)) {
+                    try {
+                        enviar(archivo, clave);
+                    } catch (InterruptedException e) {
+                        enProceso.remove(clave);
+                        throw e;
+                    } catch (RuntimeException e) {
+                        // Una excepción no debe cancelar la tarea periódica; el archivo se reintenta al reiniciar
+                        enProceso.remove(clave);
+                        System.err.println("Error al enviar archivo " + archivo + ": " + e.getMessage());
+                    }
+                }
+
+            } catch (IOException e) {
+                candidatos.remove(archivo);
+                System.err.println("Error al revisar archivo " + archivo + ": " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // encolarComprobante bloquea mientras el pool OCR esté lleno (contrapresión hacia el directorio)
+    private void enviar(Path archivo, String clave) throws InterruptedException {
+        String ruta = archivo.toString();
+        Venta venta = buscarVentaPorNombre(archivo.getFileName().toString());
+
+        motorOCR.encolarComprobante(ruta, venta).whenComplete((comprobante, error) -> {
+            if (error != null) {
+                Throwable causa = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error;
+                comprobante = new ComprobanteOCR(venta, ruta);
+                comprobante.setEstadoValidacion(ComprobanteOCR.EstadoOCR.ERROR_PROCESAMIENTO);
+                comprobante.setObservaciones("Error técnico: " + causa.getMessage());
+            }
+            resultados.add(new Resultado(clave, comprobante));
+        });
+    }
+
+    private Venta buscarVentaPorNombre(String nombreArchivo) {
+        Matcher matcher = PATRON_NUMERO_VENTA.matcher(nombreArchivo);
+        return matcher.find() ? ventaDAO.buscarPorNumero(matcher.group(1)) : null;
+    }
+
+    // === ESCRITURA POR LOTES ===
+
+    private void escribirResultados() {
+        try {
+            while (activo || !enProceso.isEmpty()) {
+                Resultado primero = resultados.poll(ESPERA_LOTE_MS, TimeUnit.MILLISECONDS);
+
+                List<Resultado> lote = new ArrayList<>(TAMANO_LOTE);
+                if (primero != null) {
+                    lote.add(primero);
+                    resultados.drainTo(lote, TAMANO_LOTE - 1);
+                }
+                tomarReintentos(lote);
+                if (!lote.isEmpty()) {
+                    guardarLote(lote);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Agrega al lote los reintentos cuya espera ya pasó. Al detener la ingesta se abandonan:
+     * no están en el manifiesto, así que se procesan de nuevo en el próximo arranque.
+     */
+    private void tomarReintentos(List<Resultado> lote) {
+        if (reintentos.isEmpty()) {
+            return;
+        }
+        if (!activo) {
+            for (Resultado resultado : reintentos) {
+                enProceso.remove(resultado.clave);
+            }
+            reintentos.clear();
+            return;
+        }
+        if (System.currentTimeMillis() >= proximoReintento) {
+            int cantidad = Math.min(reintentos.size(), Math.max(0, TAMANO_LOTE - lote.size()));
+            List<Resultado> tomados = reintentos.subList(0, cantidad);
+            lote.addAll(tomados);
+            tomados.clear();
+        }
+    }
+
+    private void guardarLote(List<Resultado> lote) {
+        List<ComprobanteOCR> comprobantes = new ArrayList<>(lote.size());
+        for (Resultado resultado : lote) {
+            comprobantes.add(resultado.comprobante);
+        }
+        marcarDuplicados(comprobantes);
+
+        Set<ComprobanteOCR> guardados = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<ComprobanteOCR> rechazados = Collections.newSetFromMap(new IdentityHashMap<>());
+        try {
+            ComprobanteOCRDAO.ResultadoLote resultadoLote = comprobanteDAO.crearLote(comprobantes);
+            guardados.addAll(resultadoLote.getGuardados());
+            rechazados.addAll(resultadoLote.getRechazados());
+
+            // Referencia que otra terminal registró después de la última carga del detector:
+            // el índice UNIQUE la rechaza y el comprobante se guarda como duplicado
+            List<ComprobanteOCR> duplicados = resultadoLote.getDuplicados();
+            if (!duplicados.isEmpty()) {
+                for (ComprobanteOCR comprobante : duplicados) {
+                    detectorReferencias.registrar(comprobante.getReferenciaOperacion());
+                    DetectorReferencias.marcarDuplicada(comprobante);
+                    comprobante.setReferenciaOperacion(null);
+                }
+                ComprobanteOCRDAO.ResultadoLote reintento = comprobanteDAO.crearLote(duplicados);
+                guardados.addAll(reintento.getGuardados());
+                rechazados.addAll(reintento.getRechazados());
+            }
+        } catch (RuntimeException e) {
+            // Sin conexión disponible; el hilo escritor debe seguir vivo
+            System.err.println("Error al guardar lote de comprobantes: " + e.getMessage());
+        }
+        for (ComprobanteOCR comprobante : guardados) {
+            if (comprobante.getEstadoValidacion() != ComprobanteOCR.EstadoOCR.RECHAZADO) {
+                detectorReferencias.registrar(comprobante.getReferenciaOperacion());
+            }
+        }
+        int aprobados = aprobarConfiables(guardados);
+
+        // Solo los rechazados por sus datos (p. ej. una restricción) quedan como NO_GUARDADO y no se reintentan.
+        // Los que fallaron por la BD (conexión, bloqueo) no se registran y se reintentan más tarde.
+        List<ManifiestoProcesados.Entrada> entradas = new ArrayList<>();
+        List<Resultado> porReintentar = new ArrayList<>();
+        for (Resultado resultado : lote) {
+            if (guardados.contains(resultado.comprobante)) {
+                entradas.add(new ManifiestoProcesados.Entrada(resultado.clave,
+                        resultado.comprobante.getEstadoValidacion().name(),
+                        resultado.comprobante.getIdComprobante()));
+            } else if (rechazados.contains(resultado.comprobante)) {
+                entradas.add(new ManifiestoProcesados.Entrada(resultado.clave, "NO_GUARDADO", 0));
+            } else {
+                porReintentar.add(resultado);
+            }
+        }
+
+        try {
+            manifiesto.registrar(entradas);
+        } catch (IOException e) {
+            System.err.println("Error al escribir manifiesto de ingesta: " + e.getMessage());
+        } finally {
+            for (Resultado resultado : lote) {
+                if (!porReintentar.contains(resultado)) {
+                    enProceso.remove(resultado.clave);
+                }
+            }
+        }
+        if (!porReintentar.isEmpty()) {
+            reintentos.addAll(porReintentar);
+            proximoReintento = System.currentTimeMillis() + ESPERA_REINTENTO_MS;
+        }
+
+        System.out.println("Lote de comprobantes guardado: " + guardados.size() + " de " + lote.size() +
+                (aprobados > 0 ? " (" + aprobados + " aprobados automáticamente)" : "") +
+                (porReintentar.isEmpty() ? "" : "; " + porReintentar.size() + " se reintentarán"));
+    }
+
+    /**
+     * Comprobantes reenviados: la referencia ya registrada (o repetida en el mismo lote) se rechaza
+     * antes de insertar. El filtro en memoria evita una consulta por comprobante.
+     */
+    private void marcarDuplicados(List<ComprobanteOCR> comprobantes) {
+        Set<String> referenciasLote = new HashSet<>();
+        for (ComprobanteOCR comprobante : comprobantes) {
+            String referencia = comprobante.getReferenciaOperacion();
+            if (referencia == null) {
+                continue;
+            }
+            try {
+                boolean duplicada;
+                if (!referenciasLote.add(DetectorReferencias.normalizar(referencia))) {
+                    DetectorReferencias.marcarDuplicada(comprobante);
+                    duplicada = true;
+                } else {
+                    duplicada = detectorReferencias.marcar(comprobante).getTipo()
+                            == DetectorReferencias.TipoCoincidencia.DUPLICADA;
+                }
+                // referencia_operacion es UNIQUE: el rechazado se guarda sin ella (queda en observaciones)
+                if (duplicada) {
+                    comprobante.setReferenciaOperacion(null);
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Error al verificar referencia " + referencia + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // Solo aplica a comprobantes asociados a una venta por nombre de archivo
+    private int aprobarConfiables(Set<ComprobanteOCR> guardados) {
+        if (USUARIO_APROBACION <= 0) {
+            return 0;
+        }
+        int aprobados = 0;
+        for (ComprobanteOCR comprobante : guardados) {
+            try {
+                if (motorOCR.esAprobableAutomaticamente(comprobante)
+                        && comprobanteDAO.aprobar(comprobante.getIdComprobante(), USUARIO_APROBACION)) {
+                    comprobante.setEstadoValidacion(ComprobanteOCR.EstadoOCR.VALIDADO);
+                    aprobados++;
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Error al aprobar comprobante " + comprobante.getIdComprobante() + ": " + e.getMessage());
+            }
+        }
+        return aprobados;
+    }
+
+    private static class Resultado {
+        private final String clave;
+        private final ComprobanteOCR comprobante;
+
+        Resultado(String clave, ComprobanteOCR comprobante) {
+            this.clave = clave;
+            this.comprobante = comprobante;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.pos.puntoventaocr.services;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registro durable (solo se agrega al final) de los archivos ya procesados por la ingesta por lotes.
+ * Cada línea es: clave \t estado \t idComprobante \t fecha. La clave combina nombre, tamaño y fecha
+ * de modificación, así un archivo reemplazado con el mismo nombre sí se vuelve a procesar.
+ */
+public class ManifiestoProcesados implements AutoCloseable {
+
+    private final Set<String> procesados = ConcurrentHashMap.newKeySet();
+    private final FileChannel canal;
+
+    public ManifiestoProcesados(Path archivo) throws IOException {
+        if (Files.exists(archivo)) {
+            for (String linea : Files.readAllLines(archivo, StandardCharsets.UTF_8)) {
+                int separador = linea.indexOf('\t');
+                // Una última línea truncada por un corte de luz no tiene separador y se ignora
+                if (separador > 0) {
+                    procesados.add(linea.substring(0, separador));
+                }
+            }
+        }
+        this.canal = FileChannel.open(archivo, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    public static String clave(Path archivo) throws IOException {
+        BasicFileAttributes atributos = Files.readAttributes(archivo, BasicFileAttributes.class);
+        return archivo.getFileName() + "|" + atributos.size() + "|" + atributos.lastModifiedTime().toMillis();
+    }
+
+    public boolean contiene(String clave) {
+        return procesados.contains(clave);
+    }
+
+    /**
+     * Agrega las entradas y fuerza la escritura a disco antes de regresar
+     */
+    public synchronized void registrar(List<Entrada> entradas) throws IOException {
+        if (entradas.isEmpty()) {
+            return;
+        }
+
+        StringBuilder texto = new StringBuilder();
+        String fecha = LocalDateTime.now().toString();
+        for (Entrada entrada : entradas) {
+            texto.append(entrada.getClave()).append('\t')
+                    .append(entrada.getEstado()).append('\t')
+                    .append(entrada.getIdComprobante()).append('\t')
+                    .append(fecha).append('\n');
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(texto.toString().getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            canal.write(buffer);
+        }
+        canal.force(false);
+
+        for (Entrada entrada : entradas) {
+            procesados.add(entrada.getClave());
+        }
+    }
+
+    public int getTamano() {
+        return procesados.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        canal.close();
+    }
+
+    public static class Entrada {
+        private final String clave;
+        private final String estado;
+        private final int idComprobante;
+
+        public Entrada(String clave, String estado, int idComprobante) {
+            this.clave = clave;
+            this.estado = estado;
+            this.idComprobante = idComprobante;
+        }
+
+        // Getters
+        public String getClave() { return clave; }
+        public String getEstado() { return estado; }
+        public int getIdComprobante() { return idComprobante; }
+    }
+}
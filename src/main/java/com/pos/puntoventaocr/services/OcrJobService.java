@@ -0,0 +1,161 @@
+package com.pos.puntoventaocr.services;
+
+import com.pos.puntoventaocr.models.ComprobanteOCR;
+import com.pos.puntoventaocr.models.MotorOCR;
+import com.pos.puntoventaocr.models.Venta;
+import com.pos.puntoventaocr.ocr.EtapaOCR;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Trabajos OCR interactivos sobre el pool acotado de MotorOCR.
+ * Cada envío devuelve un Trabajo con su futuro, la etapa actual y cancelación.
+ * Si la misma imagen ya se está procesando para la misma venta se devuelve el trabajo en curso
+ * en lugar de lanzar otro reconocimiento. Antes de entregar el resultado se revisa si la
+ * referencia ya estaba registrada (DetectorReferencias).
+ */
+public class OcrJobService {
+    private static volatile OcrJobService instance;
+
+    private final MotorOCR motorOCR;
+    private final DetectorReferencias detectorReferencias;
+    private final Map<String, Trabajo> enCurso = new ConcurrentHashMap<>();
+
+    // Constructor privado para Singleton
+    private OcrJobService() {
+        this.motorOCR = MotorOCR.getInstance();
+        this.detectorReferencias = DetectorReferencias.getInstance();
+    }
+
+    // Método para obtener la instancia única
+    public static OcrJobService getInstance() {
+        if (instance == null) {
+            synchronized (OcrJobService.class) {
+                if (instance == null) {
+                    instance = new OcrJobService();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Envía la imagen a procesar. No bloquea: si el pool está saturado el futuro del trabajo
+     * termina con RejectedExecutionException.
+     */
+    public Trabajo enviar(String rutaImagen, Venta venta) {
+        String clave = clave(rutaImagen, venta);
+        Trabajo nuevo = new Trabajo(rutaImagen);
+        Trabajo existente = enCurso.putIfAbsent(clave, nuevo);
+        if (existente != null) {
+            return existente;
+        }
+
+        // Se inicia fuera del mapa: un rechazo inmediato completa el futuro en este mismo hilo
+        nuevo.resultado.whenComplete((comprobante, error) -> enCurso.remove(clave, nuevo));
+        CompletableFuture<ComprobanteOCR> proceso =
+                motorOCR.procesarComprobanteAsync(rutaImagen, venta, nuevo::avanzar);
+        nuevo.iniciar(proceso, this::verificarReferencia);
+        return nuevo;
+    }
+
+    public int getTrabajosEnCurso() {
+        return enCurso.size();
+    }
+
+    // Se ejecuta en el hilo trabajador; un fallo aquí no debe perder el resultado del OCR
+    private void verificarReferencia(ComprobanteOCR comprobante) {
+        try {
+            detectorReferencias.marcar(comprobante);
+        } catch (RuntimeException e) {
+            System.err.println("Error al verificar referencia: " + e.getMessage());
+        }
+    }
+
+    // Misma imagen = mismo archivo sin modificar; se evita leer el contenido en el hilo que envía
+    private static String clave(String rutaImagen, Venta venta) {
+        File archivo = new File(rutaImagen).getAbsoluteFile();
+        return archivo.getPath() + "|" + archivo.length() + "|" + archivo.lastModified()
+                + "|" + (venta != null ? venta.getIdVenta() : 0);
+    }
+
+    /**
+     * Trabajo OCR en curso. Los observadores de avance se invocan desde el hilo trabajador;
+     * la interfaz debe pasar a su propio hilo (Platform.runLater).
+     */
+    public static class Trabajo {
+        private final String rutaImagen;
+        private final CompletableFuture<ComprobanteOCR> resultado = new CompletableFuture<>();
+        private final List<Consumer<EtapaOCR>> observadores = new CopyOnWriteArrayList<>();
+        private volatile EtapaOCR etapa;
+
+        private Trabajo(String rutaImagen) {
+            this.rutaImagen = rutaImagen;
+        }
+
+        private void iniciar(CompletableFuture<ComprobanteOCR> proceso, Consumer<ComprobanteOCR> verificacion) {
+            proceso.whenComplete((comprobante, error) -> {
+                if (error != null) {
+                    resultado.completeExceptionally(error instanceof CompletionException && error.getCause() != null
+                            ? error.getCause() : error);
+                } else {
+                    verificacion.accept(comprobante);
+                    resultado.complete(comprobante);
+                }
+            });
+            // Cancelar el trabajo cancela el proceso, y el pool interrumpe al trabajador
+            resultado.whenComplete((comprobante, error) -> {
+                if (resultado.isCancelled()) {
+                    proceso.cancel(true);
+                }
+            });
+        }
+
+        private void avanzar(EtapaOCR nuevaEtapa) {
+            etapa = nuevaEtapa;
+            for (Consumer<EtapaOCR> observador : observadores) {
+                observador.accept(nuevaEtapa);
+            }
+        }
+
+        /**
+         * Registra un observador de avance; si el trabajo ya inició se le notifica la etapa actual.
+         */
+        public void alAvanzar(Consumer<EtapaOCR> observador) {
+            observadores.add(observador);
+            EtapaOCR actual = etapa;
+            if (actual != null) {
+                observador.accept(actual);
+            }
+        }
+
+        /**
+         * Cancela el trabajo. Si varios solicitantes comparten el trabajo, se cancela para todos.
+         */
+        public boolean cancelar() {
+            return resultado.cancel(true);
+        }
+
+        public CompletableFuture<ComprobanteOCR> getResultado() { return resultado; }
+        public EtapaOCR getEtapa() { return etapa; }
+        public String getRutaImagen() { return rutaImagen; }
+        public boolean isTerminado() { return resultado.isDone(); }
+        public boolean isCancelado() { return resultado.isCancelled(); }
+
+        // Fracción de avance (0 a 1) según la etapa actual
+        public double getProgreso() {
+            if (resultado.isDone()) {
+                return 1.0;
+            }
+            EtapaOCR actual = etapa;
+            return actual != null ? actual.getProgreso() : 0.0;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.pos.puntoventaocr.services;
+
+import com.pos.puntoventaocr.dao.ProductoDAO;
+import com.pos.puntoventaocr.models.Producto;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Catálogo de productos en memoria con índices hash por id y por código de barras, y un índice
+ * de texto (IndiceProductos) para la búsqueda mientras se escribe.
+ * Se carga completo una vez y después se mantiene con los avisos de los servicios y controladores
+ * que modifican productos en esta terminal y con un refresco periódico por fecha_modificacion
+ * (cambios de otras terminales).
+ *
+ * Las instancias guardadas nunca salen del caché: las consultas devuelven copias, así que quien las
+ * recibe puede modificarlas sin afectar a otras pantallas ni al hilo de refresco.
+ */
+public class ProductoCache {
+    private static volatile ProductoCache instance;
+
+    private static final long INTERVALO_REFRESCO_SEG = Long.getLong("pos.cache.productos.refrescoSeg", 30L);
+
+    private final ProductoDAO productoDAO;
+    private final Map<Integer, Producto> porId = new ConcurrentHashMap<>();
+    private final Map<String, Producto> porCodigoBarras = new ConcurrentHashMap<>();
+    private final IndiceProductos indiceTexto = new IndiceProductos();
+    private final ScheduledExecutorService refresco;
+    private volatile LocalDateTime ultimaModificacion;
+    private volatile boolean cargado = false;
+
+    // Constructor privado para Singleton
+    private ProductoCache() {
+        this.productoDAO = new ProductoDAO();
+        this.refresco = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "cache-productos-refresco");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        refresco.scheduleWithFixedDelay(this::refrescarDelta,
+                INTERVALO_REFRESCO_SEG, INTERVALO_REFRESCO_SEG, TimeUnit.SECONDS);
+    }
+
+    // Método para obtener la instancia única
+    public static ProductoCache getInstance() {
+        if (instance == null) {
+            synchronized (ProductoCache.class) {
+                if (instance == null) {
+                    instance = new ProductoCache();
+                }
+            }
+        }
+        return instance;
+    }
+
+    // Avisos de la capa de servicios; no hacen nada si el caché no se ha creado
+
+    // Después de guardar una venta en la BD o en el diario local
+    public static void notificarVenta(int idProducto, int cantidadVendida) {
+        ProductoCache cache = instance;
+        if (cache != null) {
+            cache.descontarStock(idProducto, cantidadVendida);
+        }
+    }
+
+    /**
+     * Carga el catálogo en el hilo de refresco, para que la primera búsqueda no lo haga en el hilo
+     * de la interfaz. Se llama al iniciar sesión.
+     */
+    public void precargar() {
+        if (!cargado) {
+            refresco.execute(() -> {
+                try {
+                    asegurarCargado();
+                } catch (RuntimeException e) {
+                    System.err.println("Error al precargar caché de productos: " + e.getMessage());
+                }
+            });
+        }
+    }
+
+    /**
+     * Carga (o recarga) el catálogo completo
+     */
+    public synchronized void cargar() {
+        List<Producto> productos = productoDAO.listarTodos();
+
+        porId.clear();
+        porCodigoBarras.clear();
+        indiceTexto.limpiar();
+        LocalDateTime maxima = null;
+        for (Producto producto : productos) {
+            indexar(producto);
+            maxima = masReciente(maxima, producto.getFechaModificacion());
+        }
+
+        ultimaModificacion = maxima;
+        cargado = true;
+    }
+
+    /**
+     * Aplica los productos modificados desde el último refresco
+     */
+    public void refrescarDelta() {
+        if (!cargado) {
+            return;
+        }
+        try {
+            LocalDateTime desde = ultimaModificacion;
+            List<Producto> modificados = desde != null
+                    ? productoDAO.listarModificadosDesde(desde)
+                    : productoDAO.listarTodos();
+
+            LocalDateTime maxima = desde;
+            for (Producto producto : modificados) {
+                indexar(producto);
+                maxima = masReciente(maxima, producto.getFechaModificacion());
+            }
+            ultimaModificacion = maxima;
+        } catch (RuntimeException e) {
+            System.err.println("Error al refrescar caché de productos: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Busca por código de barras sin ir a la base de datos.
+     * Solo consulta la BD si el código no está en memoria (producto dado de alta en otra terminal
+     * o catálogo todavía sin cargar). Nunca dispara la carga completa: se usa desde el hilo de la interfaz.
+     */
+    public Producto buscarPorCodigoBarras(String codigoBarras) {
+        if (codigoBarras == null) {
+            return null;
+        }
+
+        Producto producto = porCodigoBarras.get(codigoBarras);
+        if (producto == null) {
+            producto = productoDAO.buscarPorCodigoBarras(codigoBarras);
+            if (producto != null) {
+                indexar(producto);
+            }
+        }
+        return copiar(producto);
+    }
+
+    public Producto buscarPorId(int idProducto) {
+        asegurarCargado();
+        Producto producto = porId.get(idProducto);
+        if (producto == null) {
+            producto = productoDAO.buscarPorId(idProducto);
+            if (producto != null) {
+                indexar(producto);
+            }
+        }
+        return copiar(producto);
+    }
+
+    public List<Producto> listarTodos() {
+        asegurarCargado();
+        List<Producto> productos = copiar(porId.values());
+        productos.sort(Comparator.comparing(Producto::getNombre, Comparator.nullsLast(String::compareToIgnoreCase)));
+        return productos;
+    }
+
+    public List<Producto> listarActivos() {
+        List<Producto> productos = listarTodos();
+        productos.removeIf(p -> !p.isEstado());
+        return productos;
+    }
+
+    /**
+     * Búsqueda por nombre, descripción corta o código de barras sin ir a la base de datos,
+     * ordenada por relevancia. limite <= 0 significa sin límite.
+     */
+    public List<Producto> buscar(String texto, int limite, boolean soloActivos) {
+        asegurarCargado();
+        return copiar(indiceTexto.buscar(texto, limite, soloActivos));
+    }
+
+    public int getTamano() {
+        return porId.size();
+    }
+
+    /**
+     * Vuelve a leer el producto de la BD; llamar después de crearlo, actualizarlo o eliminarlo con ProductoDAO
+     */
+    public void refrescarProducto(int idProducto) {
+        Producto producto = productoDAO.buscarPorId(idProducto);
+        if (producto != null) {
+            indexar(producto);
+        } else {
+            Producto anterior = porId.remove(idProducto);
+            if (anterior != null && anterior.getCodigoBarras() != null) {
+                porCodigoBarras.remove(anterior.getCodigoBarras(), anterior);
+            }
+            indiceTexto.quitar(idProducto);
+        }
+    }
+
+    // Métodos privados auxiliares
+    // Si la precarga está en curso se espera a que termine en lugar de cargar otra vez
+    private void asegurarCargado() {
+        if (!cargado) {
+            synchronized (this) {
+                if (!cargado) {
+                    cargar();
+                }
+            }
+        }
+    }
+
+    private void descontarStock(int idProducto, int cantidad) {
+        Producto producto = porId.get(idProducto);
+        if (producto != null) {
+            synchronized (producto) {
+                producto.setCantidadStock(producto.getCantidadStock() - cantidad);
+            }
+        }
+    }
+
+    // Inserta o reemplaza el producto manteniendo los índices consistentes
+    private void indexar(Producto producto) {
+        Producto anterior = porId.put(producto.getIdProducto(), producto);
+        if (anterior != null && anterior.getCodigoBarras() != null
+                && !anterior.getCodigoBarras().equals(producto.getCodigoBarras())) {
+            porCodigoBarras.remove(anterior.getCodigoBarras(), anterior);
+        }
+        if (producto.getCodigoBarras() != null && !producto.getCodigoBarras().isEmpty()) {
+            porCodigoBarras.put(producto.getCodigoBarras(), producto);
+        }
+        indiceTexto.agregar(producto);
+    }
+
+    private static Producto copiar(Producto producto) {
+        return producto != null ? new Producto(producto) : null;
+    }
+
+    private static List<Producto> copiar(Collection<Producto> productos) {
+        List<Producto> copias = new ArrayList<>(productos.size());
+        for (Producto producto : productos) {
+            copias.add(new Producto(producto));
+        }
+        return copias;
+    }
+
+    private static LocalDateTime masReciente(LocalDateTime actual, LocalDateTime candidata) {
+        if (candidata == null) {
+            return actual;
+        }
+        return actual == null || candidata.isAfter(actual) ? candidata : actual;
+    }
+}
@@ -0,0 +1,116 @@
+package com.pos.puntoventaocr.utils;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Búsqueda mientras se escribe sin trabar la interfaz. Cada solicitud reemplaza a la anterior:
+ * la consulta corre fuera del hilo de JavaFX cuando el usuario deja de escribir por ESPERA_MS,
+ * las solicitudes que quedaron atrás se cancelan (o se descarta su resultado si ya corrían)
+ * y solo el resultado de la última se publica, con el ejecutor de la interfaz (Platform::runLater).
+ *
+ * Uso desde un controlador, en el hilo de JavaFX:
+ *   busqueda = new BusquedaDiferida<>(texto -> cache.buscar(texto, 200, true), datos::setAll, error, Platform::runLater);
+ *   txtBuscar.textProperty().addListener((obs, anterior, nuevo) -> busqueda.solicitar(nuevo));
+ *
+ * @param <C> criterio de búsqueda (capturado en el hilo de la interfaz)
+ * @param <R> resultado de la consulta
+ */
+public class BusquedaDiferida<C, R> {
+
+    public static final long ESPERA_MS = Long.getLong("pos.busqueda.esperaMs", 150L);
+
+    // Un solo hilo para todas las pantallas: solo una está activa a la vez y así no se crea uno por ventana
+    private static final ScheduledExecutorService EJECUTOR = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread hilo = new Thread(r, "busqueda-diferida");
+        hilo.setDaemon(true);
+        return hilo;
+    });
+
+    private final Function<C, R> consulta;
+    private final Consumer<R> publicar;
+    private final Consumer<Exception> alFallar;
+    private final Executor hiloInterfaz;
+    private final long esperaMs;
+
+    // Generación de la última solicitud; un resultado se publica solo si su generación sigue vigente
+    private final AtomicLong generacion = new AtomicLong();
+    private ScheduledFuture<?> pendiente;
+
+    public BusquedaDiferida(Function<C, R> consulta, Consumer<R> publicar, Consumer<Exception> alFallar,
+                            Executor hiloInterfaz) {
+        this(consulta, publicar, alFallar, hiloInterfaz, ESPERA_MS);
+    }
+
+    public BusquedaDiferida(Function<C, R> consulta, Consumer<R> publicar, Consumer<Exception> alFallar,
+                            Executor hiloInterfaz, long esperaMs) {
+        this.consulta = consulta;
+        this.publicar = publicar;
+        this.alFallar = alFallar;
+        this.hiloInterfaz = hiloInterfaz;
+        this.esperaMs = esperaMs;
+    }
+
+    /**
+     * Programa la búsqueda con el criterio; cancela la que estuviera esperando
+     */
+    public synchronized void solicitar(C criterio) {
+        programar(criterio, esperaMs);
+    }
+
+    /**
+     * Igual que solicitar, sin esperar a que el usuario deje de escribir (cambio de un filtro, recarga)
+     */
+    public synchronized void solicitarAhora(C criterio) {
+        programar(criterio, 0);
+    }
+
+    /**
+     * Descarta la búsqueda pendiente y el resultado de la que esté corriendo
+     */
+    public synchronized void cancelar() {
+        generacion.incrementAndGet();
+        if (pendiente != null) {
+            pendiente.cancel(false);
+            pendiente = null;
+        }
+    }
+
+    // Métodos privados auxiliares
+    private void programar(C criterio, long espera) {
+        long solicitud = generacion.incrementAndGet();
+        if (pendiente != null) {
+            // Sin interrumpir: una consulta a la BD interrumpida puede dejar la conexión inservible
+            pendiente.cancel(false);
+        }
+        pendiente = EJECUTOR.schedule(() -> ejecutar(criterio, solicitud), espera, TimeUnit.MILLISECONDS);
+    }
+
+    private void ejecutar(C criterio, long solicitud) {
+        if (solicitud != generacion.get()) {
+            return;
+        }
+        try {
+            R resultado = consulta.apply(criterio);
+            if (solicitud != generacion.get()) {
+                return;
+            }
+            // Se revisa otra vez en el hilo de la interfaz: pudo llegar otra solicitud mientras tanto
+            hiloInterfaz.execute(() -> {
+                if (solicitud == generacion.get()) {
+                    publicar.accept(resultado);
+                }
+            });
+        } catch (RuntimeException e) {
+            if (solicitud == generacion.get()) {
+                hiloInterfaz.execute(() -> alFallar.accept(e));
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.pos.puntoventaocr.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Filtro de Bloom para cadenas: responde "seguro no está" o "puede estar".
+ * Se dimensiona con la cantidad esperada de elementos y la tasa de falsos positivos deseada.
+ * Usa doble hashing (h1 + i*h2) de 64 bits a partir de un solo hash, así que cada consulta calcula
+ * un solo hash y las posiciones alcanzan todo el arreglo aunque pase de 2^31 bits.
+ * Las inserciones son atómicas y sin bloqueos; es seguro entre hilos.
+ */
+public class FiltroBloom {
+
+    private final AtomicLongArray bits;
+    private final long totalBits;
+    private final int funciones;
+    private final long capacidad;
+    private final LongAdder insertados = new LongAdder();
+
+    public FiltroBloom(long elementosEsperados, double tasaFalsosPositivos) {
+        if (elementosEsperados <= 0 || tasaFalsosPositivos <= 0 || tasaFalsosPositivos >= 1) {
+            throw new IllegalArgumentException("Parámetros de filtro de Bloom inválidos");
+        }
+        // m = -n ln p / (ln 2)^2, k = m/n ln 2
+        long m = (long) Math.ceil(-elementosEsperados * Math.log(tasaFalsosPositivos) / (Math.log(2) * Math.log(2)));
+        int palabras = (int) Math.min(Integer.MAX_VALUE, (m + 63) / 64);
+        this.bits = new AtomicLongArray(palabras);
+        this.totalBits = (long) palabras * 64;
+        this.funciones = Math.max(1, (int) Math.round((double) totalBits / elementosEsperados * Math.log(2)));
+        this.capacidad = elementosEsperados;
+    }
+
+    public void agregar(String valor) {
+        long hash = hash64(valor);
+        long h2 = segundoHash(hash);
+        for (int i = 1; i <= funciones; i++) {
+            long bit = indice(hash + i * h2, totalBits);
+            int palabra = (int) (bit >>> 6);
+            long mascara = 1L << (bit & 63);
+            long actual;
+            do {
+                actual = bits.get(palabra);
+                if ((actual & mascara) != 0) {
+                    break;
+                }
+            } while (!bits.compareAndSet(palabra, actual, actual | mascara));
+        }
+        insertados.increment();
+    }
+
+    public boolean puedeContener(String valor) {
+        long hash = hash64(valor);
+        long h2 = segundoHash(hash);
+        for (int i = 1; i <= funciones; i++) {
+            long bit = indice(hash + i * h2, totalBits);
+            if ((bits.get((int) (bit >>> 6)) & (1L << (bit & 63))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Pasada la capacidad la tasa de falsos positivos crece; conviene reconstruirlo más grande
+    public boolean estaSaturado() {
+        return insertados.sum() > capacidad;
+    }
+
+    public long getInsertados() { return insertados.sum(); }
+    public long getCapacidad() { return capacidad; }
+    public long getTamanoBytes() { return totalBits / 8; }
+
+    // Métodos privados auxiliares
+    // Posición sin signo en [0, totalBits): usa los 64 bits de la combinación
+    static long indice(long combinado, long totalBits) {
+        return Long.remainderUnsigned(combinado, totalBits);
+    }
+
+    // Paso impar derivado del mismo hash, para que sus múltiplos no se repitan en arreglos de 64*k bits
+    private static long segundoHash(long hash) {
+        return Long.rotateLeft(hash, 32) | 1L;
+    }
+
+    // FNV-1a de 64 bits con mezcla final (fmix64 de MurmurHash3) para dispersar los bits altos
+    private static long hash64(String valor) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : valor.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= (b & 0xff);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
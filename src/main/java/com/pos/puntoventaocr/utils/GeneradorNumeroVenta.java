@@ -0,0 +1,175 @@
+package com.pos.puntoventaocr.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Números de venta únicos entre terminales sin consultar la BD, al estilo Snowflake:
+ * 41 bits de milisegundos desde 2024-01-01, 10 bits de terminal y 12 bits de secuencia.
+ * El valor cabe en 63 bits, así que "V" + 19 dígitos como máximo entra en numero_venta VARCHAR(20).
+ *
+ * La marca de tiempo y la secuencia viven en un solo AtomicLong y avanzan con compareAndSet, sin bloqueos.
+ * Si se agota la secuencia de un milisegundo (más de 4096 ventas) se toma prestado el siguiente,
+ * y si el reloj retrocede se sigue desde el último valor emitido: los números nunca se repiten ni bajan.
+ *
+ * La terminal (0..1023, distinta en cada caja) es obligatoria porque dos cajas con el mismo valor pueden
+ * emitir el mismo número. Se toma de -Dpos.terminal.id o, si no se indica, de terminal.id en
+ * ~/.puntoventaocr/terminal.properties (otra ruta con -Dpos.terminal.archivo). Ese archivo lo escribe
+ * la pantalla de inicio de sesión la primera vez que se abre la aplicación en la caja.
+ */
+public class GeneradorNumeroVenta {
+    private static volatile GeneradorNumeroVenta instance;
+
+    private static final long EPOCA_MS = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+    private static final int BITS_TERMINAL = 10;
+    private static final int BITS_SECUENCIA = 12;
+    private static final long MAXIMO_TERMINAL = (1L << BITS_TERMINAL) - 1;
+    private static final long MASCARA_SECUENCIA = (1L << BITS_SECUENCIA) - 1;
+
+    private static final String ARCHIVO_CONFIGURACION = System.getProperty("pos.terminal.archivo",
+            Paths.get(System.getProperty("user.home"), ".puntoventaocr", "terminal.properties").toString());
+    private static final String LLAVE_TERMINAL = "terminal.id";
+
+    public static final String PREFIJO = "V";
+    public static final int TERMINAL_MAXIMA = (int) MAXIMO_TERMINAL;
+
+    private final long terminal;
+    // (milisegundo << BITS_SECUENCIA) | secuencia del último número emitido
+    private final AtomicLong ultimo = new AtomicLong();
+
+    public GeneradorNumeroVenta(int terminal) {
+        if (terminal < 0 || terminal > MAXIMO_TERMINAL) {
+            throw new IllegalArgumentException("La terminal debe estar entre 0 y " + MAXIMO_TERMINAL);
+        }
+        this.terminal = terminal;
+    }
+
+    // Método para obtener la instancia única
+    public static GeneradorNumeroVenta getInstance() {
+        if (instance == null) {
+            synchronized (GeneradorNumeroVenta.class) {
+                if (instance == null) {
+                    instance = new GeneradorNumeroVenta(terminalConfigurada());
+                }
+            }
+        }
+        return instance;
+    }
+
+    public String siguiente() {
+        return PREFIJO + siguienteId();
+    }
+
+    public long siguienteId() {
+        while (true) {
+            long actual = ultimo.get();
+            long ahora = System.currentTimeMillis() - EPOCA_MS;
+            long siguiente = (ahora << BITS_SECUENCIA) > actual
+                    ? ahora << BITS_SECUENCIA
+                    : actual + 1; // mismo milisegundo (o reloj atrasado); al desbordar pasa al siguiente
+            if (ultimo.compareAndSet(actual, siguiente)) {
+                long milisegundo = siguiente >>> BITS_SECUENCIA;
+                return (milisegundo << (BITS_TERMINAL + BITS_SECUENCIA))
+                        | (terminal << BITS_SECUENCIA)
+                        | (siguiente & MASCARA_SECUENCIA);
+            }
+        }
+    }
+
+    public int getTerminal() {
+        return (int) terminal;
+    }
+
+    // Terminal que generó un número de venta de este formato, o -1 si no lo es
+    public static int terminalDe(String numeroVenta) {
+        if (numeroVenta == null || !numeroVenta.startsWith(PREFIJO)) {
+            return -1;
+        }
+        try {
+            long id = Long.parseLong(numeroVenta.substring(PREFIJO.length()));
+            return (int) ((id >>> BITS_SECUENCIA) & MAXIMO_TERMINAL);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Indica si la terminal de esta caja está configurada y es válida; se revisa al iniciar la aplicación
+     */
+    public static boolean estaConfigurada() {
+        try {
+            terminalConfigurada();
+            return true;
+        } catch (IllegalStateException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Guarda la terminal de esta caja para los siguientes arranques (configuración inicial)
+     */
+    public static void guardarTerminal(int terminal) throws IOException {
+        if (terminal < 0 || terminal > MAXIMO_TERMINAL) {
+            throw new IllegalArgumentException("La terminal debe estar entre 0 y " + MAXIMO_TERMINAL);
+        }
+        Path archivo = Paths.get(ARCHIVO_CONFIGURACION);
+        if (archivo.getParent() != null) {
+            Files.createDirectories(archivo.getParent());
+        }
+        Properties propiedades = new Properties();
+        propiedades.setProperty(LLAVE_TERMINAL, String.valueOf(terminal));
+        try (OutputStream salida = Files.newOutputStream(archivo)) {
+            propiedades.store(salida, "Terminal de esta caja: distinta en cada una, entre 0 y " + MAXIMO_TERMINAL);
+        }
+    }
+
+    public static String getArchivoConfiguracion() {
+        return ARCHIVO_CONFIGURACION;
+    }
+
+    // Métodos privados auxiliares
+    private static int terminalConfigurada() {
+        String configurada = System.getProperty("pos.terminal.id");
+        String origen = "pos.terminal.id";
+        if (configurada == null || configurada.trim().isEmpty()) {
+            configurada = leerArchivoConfiguracion();
+            origen = LLAVE_TERMINAL + " en " + ARCHIVO_CONFIGURACION;
+        }
+        if (configurada == null || configurada.trim().isEmpty()) {
+            throw new IllegalStateException("Falta configurar la terminal de esta caja (0.." + MAXIMO_TERMINAL +
+                    "): -Dpos.terminal.id o " + LLAVE_TERMINAL + " en " + ARCHIVO_CONFIGURACION);
+        }
+        int terminal;
+        try {
+            terminal = Integer.parseInt(configurada.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException(origen + " no es un número: " + configurada);
+        }
+        if (terminal < 0 || terminal > MAXIMO_TERMINAL) {
+            throw new IllegalStateException(origen + " debe estar entre 0 y " + MAXIMO_TERMINAL + ": " + terminal);
+        }
+        return terminal;
+    }
+
+    private static String leerArchivoConfiguracion() {
+        Path archivo = Paths.get(ARCHIVO_CONFIGURACION);
+        if (!Files.isRegularFile(archivo)) {
+            return null;
+        }
+        Properties propiedades = new Properties();
+        try (InputStream entrada = Files.newInputStream(archivo)) {
+            propiedades.load(entrada);
+        } catch (IOException e) {
+            System.err.println("Error al leer la configuración de la terminal: " + e.getMessage());
+            return null;
+        }
+        return propiedades.getProperty(LLAVE_TERMINAL);
+    }
+}
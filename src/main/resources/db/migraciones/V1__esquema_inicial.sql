@@ -1,6 +1,5 @@
--- Crear base de datos
-CREATE DATABASE IF NOT EXISTS punto_venta_ocr;
-USE punto_venta_ocr;
+-- V1: esquema inicial (antes database/schema.sql). MigradorEsquema lo aplica sobre la base de la
+-- URL de conexión, que debe existir: CREATE DATABASE IF NOT EXISTS punto_venta_ocr;
 
 -- Tabla de Roles
 CREATE TABLE IF NOT EXISTS roles (
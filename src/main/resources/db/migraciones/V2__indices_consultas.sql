@@ -0,0 +1,167 @@
+-- V2: índices compuestos y de cobertura según las consultas de los DAO.
+-- Se aplica sobre V1__esquema_inicial.sql. Cada índice indica la consulta a la que sirve;
+-- VerificadorPlanesTest (dao) revisa con EXPLAIN que ninguna de ellas vuelva a recorrer la tabla completa.
+-- En InnoDB todo índice secundario lleva al final la clave primaria, así que los ORDER BY que
+-- desempatan por id_venta / id_detalle / id_comprobante quedan resueltos por el propio índice.
+--
+-- MySQL no tiene CREATE INDEX IF NOT EXISTS ni DROP INDEX IF EXISTS: cada cambio se arma en @sql
+-- consultando information_schema y se ejecuta con PREPARE ('DO 0' si ya está hecho). Así la migración
+-- puede repetirse si falló a medias. Las bases registradas como línea base pueden tener ya las columnas
+-- que usan los DAO (fecha_venta, cantidad_stock) en lugar de las de V1 (fecha, stock); se usa la que exista.
+
+SET @fecha_venta = IF(EXISTS (SELECT 1 FROM information_schema.columns WHERE table_schema = DATABASE()
+                                  AND table_name = 'ventas' AND column_name = 'fecha_venta'), 'fecha_venta', 'fecha');
+SET @stock = IF(EXISTS (SELECT 1 FROM information_schema.columns WHERE table_schema = DATABASE()
+                            AND table_name = 'productos' AND column_name = 'cantidad_stock'), 'cantidad_stock', 'stock');
+
+-- ventas ---------------------------------------------------------------------------------------
+
+-- VentaDAO.obtenerEstadisticas (días parciales) y obtenerProductosMasVendidos:
+-- estado = 'COMPLETADA' AND rango de fecha; incluye total para no leer la fila
+SET @sql = IF(EXISTS (SELECT 1 FROM information_schema.statistics WHERE table_schema = DATABASE()
+                          AND table_name = 'ventas' AND index_name = 'idx_ventas_estado_fecha'), 'DO 0',
+              CONCAT('CREATE INDEX idx_ventas_estado_fecha ON ventas(estado, ', @fecha_venta, ', total)'));
+PREPARE sentencia FROM @sql;
+EXECUTE sentencia;
+DEALLOCATE PREPARE sentencia;
+
+-- VentaDAO.listarVentas / listarPagina / recorrerVentas con filtro de usuario:
+-- id_usuario = ? AND rango de fecha ORDER BY fecha DESC, id_venta DESC
+SET @sql = IF(EXISTS (SELECT 1 FROM information_schema.statistics WHERE table_schema = DATABASE()
+                          AND table_name = 'ventas' AND index_name = 'idx_ventas_usuario_fecha'), 'DO 0',
+              CONCAT('CREATE INDEX idx_ventas_usuario_fecha ON ventas(id_usuario, ', @fecha_venta, ')'));
+PREPARE sentencia FROM @sql;
+EXECUTE sentencia;
+DEALLOCATE PREPARE sentencia;
+
+-- VentaDAO.recorrerTransferenciasPorConciliar:
+-- metodo_pago = 'TRANSFERENCIA' AND rango de fecha ORDER BY fecha, id_venta; estado se filtra en el índice
+SET @sql = IF(EXISTS (SELECT 1 FROM information_schema.statistics WHERE table_schema = DATABASE()
+                          AND table_name = 'ventas' AND index_name = 'idx_ventas_metodo_fecha'), 'DO 0',
+              CONCAT('CREATE INDEX idx_ventas_metodo_fecha ON ventas(metodo_pago, ', @fecha_venta, ', estado)'));
+PREPARE sentencia FROM @sql;
+EXECUTE sentencia;
+DEALLOCATE PREPARE sentencia;
+
+-- detalle_ventas -------------------------------------------------------------------------------
+
+-- VentaDAO.cargarDetallesVentas (id_venta IN ... ORDER BY id_venta, id_detalle) y aplicarResumen /
+-- obtenerProductosMasVendidos, que solo leen id_producto, cantidad y subtotal: índice de cobertura.
+-- Sustituye como índice de la llave foránea al que MySQL creó implícitamente sobre id_venta.
+SET @sql = IF(EXISTS (SELECT 1 FROM information_schema.statistics WHERE table_schema = DATABASE()
+                          AND table_name = 'detalle_ventas' AND index_name = 'idx_detalle_ventas_venta'), 'DO 0',
+              'CREATE INDEX idx_detalle_ventas_venta ON detalle_ventas(id_venta, id_producto, cantidad, subtotal)');
+PREPARE sentencia FROM @sql;
+EXECUTE sentencia;
+DEALLOCATE PREPARE sentencia;
+
+-- comprobantes_ocr -----------------------------------------------------------------------------
+
+-- ComprobanteOCRDAO.listarPorEstado: estado_validacion = ? ORDER BY fecha_procesamiento DESC;
+-- también obtenerEstadisticas, que cuenta por estado recorriendo solo este índice
+SET @sql = IF(EXISTS (SELECT 1 FROM information_schema.statistics WHERE table_schema = DATABASE()
+                          AND table_name = 'comprobantes_ocr' AND index_name = 'idx_comprobantes_estado_proceso'), 'DO 0',
+              'CREATE INDEX idx_comprobantes_estado_proceso ON comprobantes_ocr(estado_validacion, fecha_procesamiento)');
+PREPARE sentencia FROM @sql;
+EXECUTE sentencia;
+DEALLOCATE PREPARE sentencia;
+
+-- ComprobanteOCRDAO.recorrerPendientes:
+-- estado_validacion = ? AND (fecha_transferencia IS NULL OR fecha_transferencia BETWEEN ? AND ?)
+SET @sql = IF(EXISTS (SELECT 1 FROM information_schema.statistics WHERE table_schema = DATABASE()
+                          AND table_name = 'comprobantes_ocr' AND index_name = 'idx_comprobantes_estado_transferencia'), 'DO 0',
+              'CREATE INDEX idx_comprobantes_estado_transferencia ON comprobantes_ocr(estado_validacion, fecha_transferencia)');
+PREPARE sentencia FROM @sql;
+EXECUTE sentencia;
+DEALLOCATE PREPARE sentencia;
+
+-- ComprobanteOCRDAO.listarPorFecha: fecha_procesamiento BETWEEN ? AND ? ORDER BY fecha_procesamiento DESC
+SET @sql = IF(EXISTS (SELECT 1 FROM information_schema.statistics WHERE table_schema = DATABASE()
+                          AND table_name = 'comprobantes_ocr' AND index_name = 'idx_comprobantes_proceso'), 'DO 0',
+              'CREATE INDEX idx_comprobantes_proceso ON comprobantes_ocr(fecha_procesamiento)');
+PREPARE sentencia FROM @sql;
+EXECUTE sentencia;
+DEALLOCATE PREPARE sentencia;
+
+-- VentaDAO.recorrerTransferenciasPorConciliar (NOT EXISTS ... id_venta = ? AND estado_validacion = 'VALIDADO').
+-- Sustituye al índice implícito de la llave foránea sobre id_venta.
+SET @sql = IF(EXISTS (SELECT 1 FROM information_schema.statistics WHERE table_schema = DATABASE()
+                          AND table_name = 'comprobantes_ocr' AND index_name = 'idx_comprobantes_venta_estado'), 'DO 0',
+              'CREATE INDEX idx_comprobantes_venta_estado ON comprobantes_ocr(id_venta, estado_validacion)');
+PREPARE sentencia FROM @sql;
+EXECUTE sentencia;
+DEALLOCATE PREPARE sentencia;
+
+-- ComprobanteOCRDAO.existeReferencia, contarReferencias, recorrerReferencias y buscarReferenciasSimilares:
+-- referencia_operacion con estado_validacion != 'RECHAZADO'; de cobertura para no leer las filas.
+-- Reemplaza a idx_comprobantes_referencia, que duplicaba el índice UNIQUE de la columna.
+SET @sql = IF(EXISTS (SELECT 1 FROM information_schema.statistics WHERE table_schema = DATABASE()
+                          AND table_name = 'comprobantes_ocr' AND index_name = 'idx_comprobantes_referencia_estado'), 'DO 0',
+              'CREATE INDEX idx_comprobantes_referencia_estado ON comprobantes_ocr(referencia_operacion, estado_validacion)');
+PREPARE sentencia FROM @sql;
+EXECUTE sentencia;
+DEALLOCATE PREPARE sentencia;
+
+SET @sql = IF(EXISTS (SELECT 1 FROM information_schema.statistics WHERE table_schema = DATABASE()
+                          AND table_name = 'comprobantes_ocr' AND index_name = 'idx_comprobantes_referencia'),
+              'DROP INDEX idx_comprobantes_referencia ON comprobantes_ocr', 'DO 0');
+PREPARE sentencia FROM @sql;
+EXECUTE sentencia;
+DEALLOCATE PREPARE sentencia;
+
+-- productos ------------------------------------------------------------------------------------
+
+-- ProductoDAO.listarActivos y buscarPorNombre: estado = TRUE ORDER BY nombre
+SET @sql = IF(EXISTS (SELECT 1 FROM information_schema.statistics WHERE table_schema = DATABASE()
+                          AND table_name = 'productos' AND index_name = 'idx_productos_estado_nombre'), 'DO 0',
+              'CREATE INDEX idx_productos_estado_nombre ON productos(estado, nombre)');
+PREPARE sentencia FROM @sql;
+EXECUTE sentencia;
+DEALLOCATE PREPARE sentencia;
+
+-- ProductoDAO.listarPorCategoria (id_categoria = ? AND estado = TRUE ORDER BY nombre) y
+-- CategoriaDAO.estaEnUso / contarProductosPorCategoria (COUNT con id_categoria = ? AND estado = TRUE).
+-- Sustituye al índice implícito de la llave foránea sobre id_categoria.
+SET @sql = IF(EXISTS (SELECT 1 FROM information_schema.statistics WHERE table_schema = DATABASE()
+                          AND table_name = 'productos' AND index_name = 'idx_productos_categoria_estado'), 'DO 0',
+              'CREATE INDEX idx_productos_categoria_estado ON productos(id_categoria, estado, nombre)');
+PREPARE sentencia FROM @sql;
+EXECUTE sentencia;
+DEALLOCATE PREPARE sentencia;
+
+-- ProductoDAO.listarModificadosDesde (refresco incremental de ProductoCache): fecha_modificacion >= ?
+SET @sql = IF(EXISTS (SELECT 1 FROM information_schema.statistics WHERE table_schema = DATABASE()
+                          AND table_name = 'productos' AND index_name = 'idx_productos_modificacion'), 'DO 0',
+              'CREATE INDEX idx_productos_modificacion ON productos(fecha_modificacion)');
+PREPARE sentencia FROM @sql;
+EXECUTE sentencia;
+DEALLOCATE PREPARE sentencia;
+
+-- ProductoDAO.listarBajoStock: estado = TRUE AND stock <= stock_minimo ORDER BY stock;
+-- la comparación entre columnas se evalúa dentro del índice
+SET @sql = IF(EXISTS (SELECT 1 FROM information_schema.statistics WHERE table_schema = DATABASE()
+                          AND table_name = 'productos' AND index_name = 'idx_productos_estado_stock'), 'DO 0',
+              CONCAT('CREATE INDEX idx_productos_estado_stock ON productos(estado, ', @stock, ', stock_minimo)'));
+PREPARE sentencia FROM @sql;
+EXECUTE sentencia;
+DEALLOCATE PREPARE sentencia;
+
+-- categorias -----------------------------------------------------------------------------------
+
+-- CategoriaDAO.listarActivas: estado = TRUE ORDER BY nombre
+SET @sql = IF(EXISTS (SELECT 1 FROM information_schema.statistics WHERE table_schema = DATABASE()
+                          AND table_name = 'categorias' AND index_name = 'idx_categorias_estado_nombre'), 'DO 0',
+              'CREATE INDEX idx_categorias_estado_nombre ON categorias(estado, nombre)');
+PREPARE sentencia FROM @sql;
+EXECUTE sentencia;
+DEALLOCATE PREPARE sentencia;
+
+-- usuarios -------------------------------------------------------------------------------------
+
+-- idx_usuarios_nombre duplicaba el índice UNIQUE de nombre_usuario (UsuarioDAO.autenticar lo usa)
+SET @sql = IF(EXISTS (SELECT 1 FROM information_schema.statistics WHERE table_schema = DATABASE()
+                          AND table_name = 'usuarios' AND index_name = 'idx_usuarios_nombre'),
+              'DROP INDEX idx_usuarios_nombre ON usuarios', 'DO 0');
+PREPARE sentencia FROM @sql;
+EXECUTE sentencia;
+DEALLOCATE PREPARE sentencia;
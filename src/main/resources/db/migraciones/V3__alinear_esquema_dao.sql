@@ -0,0 +1,157 @@
+-- V3: alinea el esquema con las columnas que usan los DAO. RENAME COLUMN conserva datos,
+-- índices y llaves foráneas, así que los índices de V2 siguen sirviendo a las mismas consultas.
+--
+-- Las bases registradas como línea base pueden tener ya parte de estos cambios (fecha_venta, impuestos,
+-- cantidad_stock...). Como en V2, cada cambio se arma en @sql según information_schema y se ejecuta con
+-- PREPARE, o se omite ('DO 0') si ya está hecho; así la migración también puede repetirse si falló a medias.
+
+-- ventas: VentaDAO usa fecha_venta e impuestos, y guarda observaciones, referencia y datos de anulación
+SET @sql = IF(EXISTS (SELECT 1 FROM information_schema.columns WHERE table_schema = DATABASE()
+                          AND table_name = 'ventas' AND column_name = 'fecha')
+                  AND NOT EXISTS (SELECT 1 FROM information_schema.columns WHERE table_schema = DATABASE()
+                          AND table_name = 'ventas' AND column_name = 'fecha_venta'),
+              'ALTER TABLE ventas RENAME COLUMN fecha TO fecha_venta', 'DO 0');
+PREPARE sentencia FROM @sql;
+EXECUTE sentencia;
+DEALLOCATE PREPARE sentencia;
+
+SET @sql = IF(EXISTS (SELECT 1 FROM information_schema.columns WHERE table_schema = DATABASE()
+                          AND table_name = 'ventas' AND column_name = 'iva')
+                  AND NOT EXISTS (SELECT 1 FROM information_schema.columns WHERE table_schema = DATABASE()
+                          AND table_name = 'ventas' AND column_name = 'impuestos'),
+              'ALTER TABLE ventas RENAME COLUMN iva TO impuestos', 'DO 0');
+PREPARE sentencia FROM @sql;
+EXECUTE sentencia;
+DEALLOCATE PREPARE sentencia;
+
+SET @sql = IF(EXISTS (SELECT 1 FROM information_schema.columns WHERE table_schema = DATABASE()
+                          AND table_name = 'ventas' AND column_name = 'referencia_transferencia'), 'DO 0',
+              'ALTER TABLE ventas ADD COLUMN referencia_transferencia VARCHAR(100) AFTER metodo_pago');
+PREPARE sentencia FROM @sql;
+EXECUTE sentencia;
+DEALLOCATE PREPARE sentencia;
+
+SET @sql = IF(EXISTS (SELECT 1 FROM information_schema.columns WHERE table_schema = DATABASE()
+                          AND table_name = 'ventas' AND column_name = 'observaciones'), 'DO 0',
+              'ALTER TABLE ventas ADD COLUMN observaciones TEXT');
+PREPARE sentencia FROM @sql;
+EXECUTE sentencia;
+DEALLOCATE PREPARE sentencia;
+
+SET @sql = IF(EXISTS (SELECT 1 FROM information_schema.columns WHERE table_schema = DATABASE()
+                          AND table_name = 'ventas' AND column_name = 'fecha_anulacion'), 'DO 0',
+              'ALTER TABLE ventas ADD COLUMN fecha_anulacion DATETIME');
+PREPARE sentencia FROM @sql;
+EXECUTE sentencia;
+DEALLOCATE PREPARE sentencia;
+
+SET @sql = IF(EXISTS (SELECT 1 FROM information_schema.columns WHERE table_schema = DATABASE()
+                          AND table_name = 'ventas' AND column_name = 'anulado_por'), 'DO 0',
+              'ALTER TABLE ventas ADD COLUMN anulado_por INT');
+PREPARE sentencia FROM @sql;
+EXECUTE sentencia;
+DEALLOCATE PREPARE sentencia;
+
+SET @sql = IF(EXISTS (SELECT 1 FROM information_schema.key_column_usage WHERE table_schema = DATABASE()
+                          AND table_name = 'ventas' AND column_name = 'anulado_por'
+                          AND referenced_table_name IS NOT NULL), 'DO 0',
+              'ALTER TABLE ventas ADD FOREIGN KEY (anulado_por) REFERENCES usuarios(id_usuario)');
+PREPARE sentencia FROM @sql;
+EXECUTE sentencia;
+DEALLOCATE PREPARE sentencia;
+
+-- productos: ProductoDAO usa cantidad_stock y ruta_imagen, no asigna codigo_interno
+-- y maneja estado como activo/inactivo (TRUE/FALSE)
+SET @sql = IF(EXISTS (SELECT 1 FROM information_schema.columns WHERE table_schema = DATABASE()
+                          AND table_name = 'productos' AND column_name = 'stock')
+                  AND NOT EXISTS (SELECT 1 FROM information_schema.columns WHERE table_schema = DATABASE()
+                          AND table_name = 'productos' AND column_name = 'cantidad_stock'),
+              'ALTER TABLE productos RENAME COLUMN stock TO cantidad_stock', 'DO 0');
+PREPARE sentencia FROM @sql;
+EXECUTE sentencia;
+DEALLOCATE PREPARE sentencia;
+
+SET @sql = IF(EXISTS (SELECT 1 FROM information_schema.columns WHERE table_schema = DATABASE()
+                          AND table_name = 'productos' AND column_name = 'imagen')
+                  AND NOT EXISTS (SELECT 1 FROM information_schema.columns WHERE table_schema = DATABASE()
+                          AND table_name = 'productos' AND column_name = 'ruta_imagen'),
+              'ALTER TABLE productos RENAME COLUMN imagen TO ruta_imagen', 'DO 0');
+PREPARE sentencia FROM @sql;
+EXECUTE sentencia;
+DEALLOCATE PREPARE sentencia;
+
+SET @sql = IF(EXISTS (SELECT 1 FROM information_schema.columns WHERE table_schema = DATABASE()
+                          AND table_name = 'productos' AND column_name = 'codigo_interno'),
+              'ALTER TABLE productos MODIFY COLUMN codigo_interno VARCHAR(50) NULL', 'DO 0');
+PREPARE sentencia FROM @sql;
+EXECUTE sentencia;
+DEALLOCATE PREPARE sentencia;
+
+-- estado pasa de ENUM a BOOLEAN solo si todavía no es booleano (TINYINT). Los agotados siguen en el
+-- catálogo; inactivos y descontinuados no. '1' se conserva por si una ejecución anterior quedó a medias.
+SET @convertir_estado = EXISTS (SELECT 1 FROM information_schema.columns WHERE table_schema = DATABASE()
+                                    AND table_name = 'productos' AND column_name = 'estado' AND data_type <> 'tinyint');
+
+SET @sql = IF(@convertir_estado, 'ALTER TABLE productos MODIFY COLUMN estado VARCHAR(20) DEFAULT ''ACTIVO''', 'DO 0');
+PREPARE sentencia FROM @sql;
+EXECUTE sentencia;
+DEALLOCATE PREPARE sentencia;
+
+SET @sql = IF(@convertir_estado,
+              'UPDATE productos SET estado = IF(estado IN (''ACTIVO'', ''AGOTADO'', ''1''), ''1'', ''0'')', 'DO 0');
+PREPARE sentencia FROM @sql;
+EXECUTE sentencia;
+DEALLOCATE PREPARE sentencia;
+
+SET @sql = IF(@convertir_estado, 'ALTER TABLE productos MODIFY COLUMN estado BOOLEAN DEFAULT TRUE', 'DO 0');
+PREPARE sentencia FROM @sql;
+EXECUTE sentencia;
+DEALLOCATE PREPARE sentencia;
+
+-- categorias: CategoriaDAO registra quién crea y modifica
+SET @sql = IF(EXISTS (SELECT 1 FROM information_schema.columns WHERE table_schema = DATABASE()
+                          AND table_name = 'categorias' AND column_name = 'fecha_modificacion'), 'DO 0',
+              'ALTER TABLE categorias ADD COLUMN fecha_modificacion TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP');
+PREPARE sentencia FROM @sql;
+EXECUTE sentencia;
+DEALLOCATE PREPARE sentencia;
+
+SET @sql = IF(EXISTS (SELECT 1 FROM information_schema.columns WHERE table_schema = DATABASE()
+                          AND table_name = 'categorias' AND column_name = 'creado_por'), 'DO 0',
+              'ALTER TABLE categorias ADD COLUMN creado_por INT');
+PREPARE sentencia FROM @sql;
+EXECUTE sentencia;
+DEALLOCATE PREPARE sentencia;
+
+SET @sql = IF(EXISTS (SELECT 1 FROM information_schema.columns WHERE table_schema = DATABASE()
+                          AND table_name = 'categorias' AND column_name = 'modificado_por'), 'DO 0',
+              'ALTER TABLE categorias ADD COLUMN modificado_por INT');
+PREPARE sentencia FROM @sql;
+EXECUTE sentencia;
+DEALLOCATE PREPARE sentencia;
+
+SET @sql = IF(EXISTS (SELECT 1 FROM information_schema.key_column_usage WHERE table_schema = DATABASE()
+                          AND table_name = 'categorias' AND column_name = 'creado_por'
+                          AND referenced_table_name IS NOT NULL), 'DO 0',
+              'ALTER TABLE categorias ADD FOREIGN KEY (creado_por) REFERENCES usuarios(id_usuario)');
+PREPARE sentencia FROM @sql;
+EXECUTE sentencia;
+DEALLOCATE PREPARE sentencia;
+
+SET @sql = IF(EXISTS (SELECT 1 FROM information_schema.key_column_usage WHERE table_schema = DATABASE()
+                          AND table_name = 'categorias' AND column_name = 'modificado_por'
+                          AND referenced_table_name IS NOT NULL), 'DO 0',
+              'ALTER TABLE categorias ADD FOREIGN KEY (modificado_por) REFERENCES usuarios(id_usuario)');
+PREPARE sentencia FROM @sql;
+EXECUTE sentencia;
+DEALLOCATE PREPARE sentencia;
+
+-- comprobantes_ocr: ComprobanteOCRDAO usa usuario_validador
+SET @sql = IF(EXISTS (SELECT 1 FROM information_schema.columns WHERE table_schema = DATABASE()
+                          AND table_name = 'comprobantes_ocr' AND column_name = 'id_usuario_validador')
+                  AND NOT EXISTS (SELECT 1 FROM information_schema.columns WHERE table_schema = DATABASE()
+                          AND table_name = 'comprobantes_ocr' AND column_name = 'usuario_validador'),
+              'ALTER TABLE comprobantes_ocr RENAME COLUMN id_usuario_validador TO usuario_validador', 'DO 0');
+PREPARE sentencia FROM @sql;
+EXECUTE sentencia;
+DEALLOCATE PREPARE sentencia;
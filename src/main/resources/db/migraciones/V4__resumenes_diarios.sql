@@ -0,0 +1,43 @@
+-- V4: resúmenes diarios de ventas COMPLETADAS, mantenidos en la misma transacción que cada venta
+-- (las anulaciones restan). Los reportes leen de aquí en lugar de recorrer ventas y detalle_ventas.
+-- Va después de V3 porque la carga inicial lee las columnas fecha_venta e impuestos.
+
+CREATE TABLE IF NOT EXISTS resumen_ventas_dia (
+    fecha DATE NOT NULL,
+    id_usuario INT NOT NULL,
+    metodo_pago VARCHAR(20) NOT NULL,
+    num_ventas INT NOT NULL DEFAULT 0,
+    subtotal DECIMAL(14,2) NOT NULL DEFAULT 0,
+    impuestos DECIMAL(14,2) NOT NULL DEFAULT 0,
+    total DECIMAL(14,2) NOT NULL DEFAULT 0,
+    PRIMARY KEY (fecha, id_usuario, metodo_pago)
+);
+
+CREATE TABLE IF NOT EXISTS resumen_productos_dia (
+    fecha DATE NOT NULL,
+    id_producto INT NOT NULL,
+    cantidad DECIMAL(12,2) NOT NULL DEFAULT 0,
+    total DECIMAL(14,2) NOT NULL DEFAULT 0,
+    PRIMARY KEY (fecha, id_producto)
+);
+
+-- Carga inicial con el historial existente. El UPDATE asigna en lugar de sumar,
+-- así que repetirla deja los mismos totales.
+INSERT INTO resumen_ventas_dia (fecha, id_usuario, metodo_pago, num_ventas, subtotal, impuestos, total)
+SELECT * FROM (
+    SELECT DATE(fecha_venta) AS fecha, id_usuario, metodo_pago, COUNT(*) AS num_ventas,
+           SUM(subtotal) AS subtotal, SUM(impuestos) AS impuestos, SUM(total) AS total
+    FROM ventas WHERE estado = 'COMPLETADA'
+    GROUP BY DATE(fecha_venta), id_usuario, metodo_pago
+) AS nuevo
+ON DUPLICATE KEY UPDATE num_ventas = nuevo.num_ventas, subtotal = nuevo.subtotal,
+                        impuestos = nuevo.impuestos, total = nuevo.total;
+
+INSERT INTO resumen_productos_dia (fecha, id_producto, cantidad, total)
+SELECT * FROM (
+    SELECT DATE(v.fecha_venta) AS fecha, dv.id_producto, SUM(dv.cantidad) AS cantidad, SUM(dv.subtotal) AS total
+    FROM detalle_ventas dv INNER JOIN ventas v ON dv.id_venta = v.id_venta
+    WHERE v.estado = 'COMPLETADA'
+    GROUP BY DATE(v.fecha_venta), dv.id_producto
+) AS nuevo
+ON DUPLICATE KEY UPDATE cantidad = nuevo.cantidad, total = nuevo.total;
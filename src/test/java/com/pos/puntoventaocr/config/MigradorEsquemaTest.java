@@ -0,0 +1,52 @@
+package com.pos.puntoventaocr.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MigradorEsquemaTest {
+
+    @Test
+    void separaPorPuntoYComaYDescartaVacias() {
+        List<String> sentencias = MigradorEsquema.dividirSentencias(
+                "CREATE TABLE a (id INT);\n\n  ;\nINSERT INTO a VALUES (1);\nINSERT INTO a VALUES (2)");
+
+        assertEquals(List.of("CREATE TABLE a (id INT)", "INSERT INTO a VALUES (1)", "INSERT INTO a VALUES (2)"),
+                sentencias);
+    }
+
+    @Test
+    void omiteComentariosDeLineaYDeBloque() {
+        List<String> sentencias = MigradorEsquema.dividirSentencias(
+                "-- encabezado; con punto y coma\n" +
+                "# otro comentario;\n" +
+                "/* bloque; de\n varias líneas */ SELECT 1;\n" +
+                "SELECT 2 -- al final de la línea;\n;");
+
+        assertEquals(List.of("SELECT 1", "SELECT 2"), sentencias);
+    }
+
+    @Test
+    void respetaPuntoYComaYComentariosDentroDeCadenas() {
+        List<String> sentencias = MigradorEsquema.dividirSentencias(
+                "INSERT INTO t VALUES ('a;b', \"--no\", `c;d`);" +
+                "INSERT INTO t VALUES ('it\\'s; escapado', '/* no */')");
+
+        assertEquals(List.of("INSERT INTO t VALUES ('a;b', \"--no\", `c;d`)",
+                "INSERT INTO t VALUES ('it\\'s; escapado', '/* no */')"), sentencias);
+    }
+
+    @Test
+    void cadenaSinCerrarTerminaElScript() {
+        List<String> sentencias = MigradorEsquema.dividirSentencias("SELECT 'abierta; sin cerrar");
+
+        assertEquals(List.of("SELECT 'abierta; sin cerrar"), sentencias);
+    }
+
+    @Test
+    void scriptSoloConComentariosNoTieneSentencias() {
+        assertEquals(List.of(), MigradorEsquema.dividirSentencias("-- nada\n/* tampoco */\n"));
+    }
+}
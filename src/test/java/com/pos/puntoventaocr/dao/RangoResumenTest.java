@@ -0,0 +1,90 @@
+package com.pos.puntoventaocr.dao;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RangoResumenTest {
+
+    @Test
+    void rangoDeDiasCompletosSoloLeeResumenes() throws SQLException {
+        Map<Integer, Object> parametros = asignar(new VentaDAO.RangoResumen(
+                LocalDateTime.of(2024, 3, 1, 0, 0), LocalDateTime.of(2024, 3, 3, 23, 59, 59)), 1);
+
+        assertEquals(Date.valueOf(LocalDate.of(2024, 3, 1)), parametros.get(1));
+        assertEquals(Date.valueOf(LocalDate.of(2024, 3, 3)), parametros.get(2));
+        // Los tramos parciales quedan vacíos: [inicio, inicio) y [fin + 1 día, fin]
+        assertEquals(Timestamp.valueOf(LocalDateTime.of(2024, 3, 1, 0, 0)), parametros.get(3));
+        assertEquals(Timestamp.valueOf(LocalDateTime.of(2024, 3, 1, 0, 0)), parametros.get(4));
+        assertEquals(Timestamp.valueOf(LocalDateTime.of(2024, 3, 4, 0, 0)), parametros.get(5));
+        assertEquals(Timestamp.valueOf(LocalDateTime.of(2024, 3, 3, 23, 59, 59)), parametros.get(6));
+    }
+
+    @Test
+    void extremosParcialesSeLeenDeVentas() throws SQLException {
+        Map<Integer, Object> parametros = asignar(new VentaDAO.RangoResumen(
+                LocalDateTime.of(2024, 3, 1, 10, 0), LocalDateTime.of(2024, 3, 3, 12, 0)), 1);
+
+        assertEquals(Date.valueOf(LocalDate.of(2024, 3, 2)), parametros.get(1));
+        assertEquals(Date.valueOf(LocalDate.of(2024, 3, 2)), parametros.get(2));
+        assertEquals(Timestamp.valueOf(LocalDateTime.of(2024, 3, 1, 10, 0)), parametros.get(3));
+        assertEquals(Timestamp.valueOf(LocalDateTime.of(2024, 3, 2, 0, 0)), parametros.get(4));
+        assertEquals(Timestamp.valueOf(LocalDateTime.of(2024, 3, 3, 0, 0)), parametros.get(5));
+        assertEquals(Timestamp.valueOf(LocalDateTime.of(2024, 3, 3, 12, 0)), parametros.get(6));
+    }
+
+    @Test
+    void rangoDentroDeUnDiaNoUsaResumenes() throws SQLException {
+        Map<Integer, Object> parametros = asignar(new VentaDAO.RangoResumen(
+                LocalDateTime.of(2024, 3, 1, 9, 0), LocalDateTime.of(2024, 3, 1, 18, 0)), 1);
+
+        // primerDia > ultimoDia: el BETWEEN de resúmenes no devuelve filas
+        assertEquals(Date.valueOf(LocalDate.of(2024, 3, 2)), parametros.get(1));
+        assertEquals(Date.valueOf(LocalDate.of(2024, 3, 1)), parametros.get(2));
+        assertEquals(parametros.get(3), parametros.get(4));
+        assertEquals(Timestamp.valueOf(LocalDateTime.of(2024, 3, 1, 9, 0)), parametros.get(5));
+        assertEquals(Timestamp.valueOf(LocalDateTime.of(2024, 3, 1, 18, 0)), parametros.get(6));
+    }
+
+    @Test
+    void asignaDesdeElIndiceIndicadoYDevuelveElSiguiente() throws SQLException {
+        Map<Integer, Object> parametros = new TreeMap<>();
+        int siguiente = new VentaDAO.RangoResumen(LocalDateTime.of(2024, 3, 1, 0, 0),
+                LocalDateTime.of(2024, 3, 2, 0, 0)).asignarParametros(registrador(parametros), 3);
+
+        assertEquals(9, siguiente);
+        assertEquals(List.of(3, 4, 5, 6, 7, 8), new ArrayList<>(parametros.keySet()));
+    }
+
+    // Métodos privados auxiliares
+
+    private static Map<Integer, Object> asignar(VentaDAO.RangoResumen rango, int indice) throws SQLException {
+        Map<Integer, Object> parametros = new TreeMap<>();
+        rango.asignarParametros(registrador(parametros), indice);
+        return parametros;
+    }
+
+    // PreparedStatement que solo anota los valores de setDate/setTimestamp por índice
+    private static PreparedStatement registrador(Map<Integer, Object> parametros) {
+        return (PreparedStatement) Proxy.newProxyInstance(RangoResumenTest.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, (proxy, metodo, args) -> {
+                    if (metodo.getName().startsWith("set") && args != null && args.length == 2) {
+                        parametros.put((Integer) args[0], args[1]);
+                        return null;
+                    }
+                    throw new UnsupportedOperationException(metodo.getName());
+                });
+    }
+}
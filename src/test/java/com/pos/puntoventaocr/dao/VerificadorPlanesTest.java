@@ -0,0 +1,193 @@
+package com.pos.puntoventaocr.dao;
+
+import com.pos.puntoventaocr.config.DatabaseConnection;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verificación de planes de ejecución: corre EXPLAIN sobre las consultas de los DAO (las mismas
+ * constantes que ejecutan) y falla si alguna recorre completa (type = ALL) una tabla grande.
+ * Es la prueba de regresión de los índices de db/migraciones.
+ *
+ * Con pocas filas el optimizador prefiere recorrer la tabla aunque exista el índice, por eso las
+ * tablas con menos de UMBRAL_FILAS filas estimadas no cuentan. Con -Dpos.pruebas.sembrar=N se insertan
+ * antes N ventas sintéticas marcadas con el prefijo PLAN- y se borran al terminar.
+ *
+ * Necesita una base de pruebas: mvn test -Dgroups=integracion -Dpos.pruebas.integracion=true
+ */
+@Tag("integracion")
+@EnabledIfSystemProperty(named = "pos.pruebas.integracion", matches = "true")
+class VerificadorPlanesTest {
+
+    private static final long UMBRAL_FILAS = 1_000;
+    private static final String PREFIJO_SEMILLA = "PLAN-";
+
+    // Consultas que leen toda la tabla por diseño (listados completos y estadísticas globales)
+    private static final Set<String> RECORRIDO_PERMITIDO = Set.of(
+            "ProductoDAO.listarTodos", "ComprobanteOCRDAO.listarTodos", "VentaDAO.listarTodas");
+
+    private final List<String> fallas = new ArrayList<>();
+
+    @Test
+    void lasConsultasDeLosDaoUsanIndices() throws SQLException {
+        int sembrar = Integer.getInteger("pos.pruebas.sembrar", 0);
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            assertNotNull(conn, "Sin conexión a la base de datos de pruebas");
+            if (sembrar > 0) {
+                sembrar(conn, sembrar);
+            }
+            try {
+                verificar(conn);
+            } finally {
+                if (sembrar > 0) {
+                    limpiar(conn);
+                }
+            }
+        } finally {
+            DatabaseConnection.closeConnection();
+        }
+
+        assertTrue(fallas.isEmpty(), fallas.size() + " consulta(s) sin índice:\n  " + String.join("\n  ", fallas));
+    }
+
+    // Métodos privados auxiliares
+
+    private void verificar(Connection conn) throws SQLException {
+        LocalDateTime ahora = LocalDateTime.now();
+        LocalDateTime ayer = ahora.minusDays(1);
+        LocalDate hoy = ahora.toLocalDate();
+        Object[] rango = {Date.valueOf(hoy.minusDays(30)), Date.valueOf(hoy.minusDays(1)),
+                Timestamp.valueOf(hoy.minusDays(31).atTime(12, 0)), Timestamp.valueOf(hoy.minusDays(30).atStartOfDay()),
+                Timestamp.valueOf(hoy.atStartOfDay()), Timestamp.valueOf(ahora)};
+
+        explicar(conn, "VentaDAO.buscarPorNumero", VentaDAO.SQL_BUSCAR_POR_NUMERO, "V1");
+        explicar(conn, "VentaDAO.listarVentas",
+                VentaDAO.construirConsultaVentas(ayer, ahora, null, null, 100),
+                Timestamp.valueOf(ayer), Timestamp.valueOf(ahora), 100);
+        explicar(conn, "VentaDAO.listarVentas (usuario)",
+                VentaDAO.construirConsultaVentas(ahora.minusDays(30), ahora, 1, null, 100),
+                Timestamp.valueOf(ahora.minusDays(30)), Timestamp.valueOf(ahora), 1, 100);
+        explicar(conn, "VentaDAO.listarVentas (página siguiente)",
+                VentaDAO.construirConsultaVentas(null, null, null, new VentaDAO.CursorVenta(ayer, 1000), 100),
+                Timestamp.valueOf(ayer), Timestamp.valueOf(ayer), 1000, 100);
+        explicar(conn, "VentaDAO.listarPorUsuario", VentaDAO.construirConsultaVentas(null, null, 1, null, 0), 1);
+        explicar(conn, "VentaDAO.listarTodas", VentaDAO.construirConsultaVentas(null, null, null, null, 0));
+        explicar(conn, "VentaDAO.cargarDetallesVentas", VentaDAO.construirConsultaDetalles(3), 1, 2, 3);
+        explicar(conn, "VentaDAO.recorrerTransferenciasPorConciliar", VentaDAO.SQL_TRANSFERENCIAS_POR_CONCILIAR,
+                Timestamp.valueOf(ayer), Timestamp.valueOf(ahora));
+        explicar(conn, "VentaDAO.obtenerEstadisticas", VentaDAO.SQL_ESTADISTICAS, rango);
+        explicar(conn, "VentaDAO.obtenerProductosMasVendidos", VentaDAO.SQL_PRODUCTOS_MAS_VENDIDOS,
+                rango[0], rango[1], rango[2], rango[3], rango[4], rango[5], 10);
+        explicar(conn, "VentaDAO.aplicarResumen (ventas)", VentaDAO.SQL_RESUMEN_VENTA, 1, 1, 1, 1, 1);
+        explicar(conn, "VentaDAO.aplicarResumen (productos)", VentaDAO.SQL_RESUMEN_PRODUCTOS, 1, 1, 1);
+
+        explicar(conn, "ComprobanteOCRDAO.buscarPorReferencia", ComprobanteOCRDAO.SQL_BUSCAR_POR_REFERENCIA,
+                "REF00000001");
+        explicar(conn, "ComprobanteOCRDAO.listarPorEstado", ComprobanteOCRDAO.SQL_LISTAR_POR_ESTADO, "PENDIENTE");
+        explicar(conn, "ComprobanteOCRDAO.recorrerPendientes", ComprobanteOCRDAO.SQL_RECORRER_PENDIENTES,
+                "PENDIENTE", Timestamp.valueOf(hoy.minusDays(2).atStartOfDay()), Timestamp.valueOf(ahora));
+        explicar(conn, "ComprobanteOCRDAO.listarPorFecha", ComprobanteOCRDAO.SQL_LISTAR_POR_FECHA,
+                Timestamp.valueOf(ayer), Timestamp.valueOf(ahora));
+        explicar(conn, "ComprobanteOCRDAO.existeReferencia", ComprobanteOCRDAO.SQL_EXISTE_REFERENCIA,
+                "REF00000001", "RECHAZADO");
+        explicar(conn, "ComprobanteOCRDAO.recorrerReferencias", ComprobanteOCRDAO.SQL_RECORRER_REFERENCIAS,
+                "RECHAZADO");
+        explicar(conn, "ComprobanteOCRDAO.buscarReferenciasSimilares",
+                ComprobanteOCRDAO.construirConsultaSimilares(2), "RECHAZADO", "REF0000000_", "REF000000_1");
+        explicar(conn, "ComprobanteOCRDAO.obtenerEstadisticas", ComprobanteOCRDAO.SQL_ESTADISTICAS);
+
+        explicar(conn, "ProductoDAO.buscarPorCodigoBarras", ProductoDAO.SQL_BUSCAR_POR_CODIGO_BARRAS, "7500000000001");
+        explicar(conn, "ProductoDAO.listarActivos", ProductoDAO.SQL_LISTAR_ACTIVOS);
+        explicar(conn, "ProductoDAO.listarPorCategoria", ProductoDAO.SQL_LISTAR_POR_CATEGORIA, 1);
+        explicar(conn, "ProductoDAO.buscarPorNombre", ProductoDAO.SQL_BUSCAR_POR_NOMBRE, "%LECHE%");
+        explicar(conn, "ProductoDAO.listarModificadosDesde", ProductoDAO.SQL_LISTAR_MODIFICADOS_DESDE,
+                Timestamp.valueOf(ahora.minusMinutes(1)));
+        explicar(conn, "ProductoDAO.listarBajoStock", ProductoDAO.SQL_LISTAR_BAJO_STOCK);
+        explicar(conn, "ProductoDAO.listarTodos", ProductoDAO.SQL_LISTAR_TODOS);
+
+        explicar(conn, "CategoriaDAO.listarActivas", CategoriaDAO.SQL_LISTAR_ACTIVAS);
+        explicar(conn, "CategoriaDAO.contarProductosPorCategoria", CategoriaDAO.SQL_CONTAR_PRODUCTOS, 1);
+        explicar(conn, "UsuarioDAO.autenticar", UsuarioDAO.SQL_AUTENTICAR, "admin");
+    }
+
+    // EXPLAIN de la consulta con los parámetros dados; anota cada tabla grande recorrida completa
+    private void explicar(Connection conn, String nombre, String sql, Object... parametros) throws SQLException {
+        if (RECORRIDO_PERMITIDO.contains(nombre)) {
+            return;
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement("EXPLAIN " + sql)) {
+            for (int i = 0; i < parametros.length; i++) {
+                pstmt.setObject(i + 1, parametros[i]);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    String tabla = rs.getString("table");
+                    long filas = rs.getLong("rows");
+                    if ("ALL".equals(rs.getString("type")) && filas >= UMBRAL_FILAS
+                            && tabla != null && !tabla.startsWith("<")) {
+                        fallas.add(nombre + ": recorre " + tabla + " (" + filas + " filas estimadas)");
+                    }
+                }
+            }
+        }
+    }
+
+    // Datos sintéticos: n ventas de los últimos 365 días con un detalle y un comprobante cada una,
+    // y n / 10 productos. Se generan en la BD con una CTE recursiva, sin viajes por fila.
+    private static void sembrar(Connection conn, int n) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("SET SESSION cte_max_recursion_depth = " + Math.max(1000, n));
+            stmt.executeUpdate("INSERT INTO productos (nombre, precio_compra, precio_venta, cantidad_stock, " +
+                    "stock_minimo, id_categoria, codigo_barras, estado) " +
+                    "WITH RECURSIVE s (i) AS (SELECT 1 UNION ALL SELECT i + 1 FROM s WHERE i < " + Math.max(1, n / 10) + ") " +
+                    "SELECT CONCAT('" + PREFIJO_SEMILLA + "', i), 10, 15, i % 50, 5, " +
+                    "(SELECT MIN(id_categoria) FROM categorias), CONCAT('" + PREFIJO_SEMILLA + "', i), i % 20 <> 0 FROM s");
+            stmt.executeUpdate("INSERT INTO ventas (numero_venta, fecha_venta, id_usuario, metodo_pago, " +
+                    "subtotal, impuestos, total, estado) " +
+                    "WITH RECURSIVE s (i) AS (SELECT 1 UNION ALL SELECT i + 1 FROM s WHERE i < " + n + ") " +
+                    "SELECT CONCAT('" + PREFIJO_SEMILLA + "', i), NOW() - INTERVAL (i * 31536000 DIV " + n + ") SECOND, " +
+                    "(SELECT MIN(id_usuario) FROM usuarios), ELT(1 + i % 3, 'EFECTIVO', 'TARJETA', 'TRANSFERENCIA'), " +
+                    "100, 16, 116, IF(i % 50 = 0, 'ANULADA', 'COMPLETADA') FROM s");
+            stmt.executeUpdate("INSERT INTO detalle_ventas (id_venta, id_producto, cantidad, precio_unitario, subtotal, descuento) " +
+                    "SELECT v.id_venta, p.id_producto, 1, 100, 100, 0 FROM ventas v " +
+                    "INNER JOIN productos p ON p.codigo_barras = CONCAT('" + PREFIJO_SEMILLA + "', " +
+                    "1 + CAST(SUBSTRING(v.numero_venta, " + (PREFIJO_SEMILLA.length() + 1) + ") AS UNSIGNED) % " +
+                    Math.max(1, n / 10) + ") " +
+                    "WHERE v.numero_venta LIKE '" + PREFIJO_SEMILLA + "%'");
+            stmt.executeUpdate("INSERT INTO comprobantes_ocr (id_venta, imagen_original, monto_detectado, " +
+                    "fecha_transferencia, referencia_operacion, estado_validacion, fecha_procesamiento) " +
+                    "SELECT id_venta, '" + PREFIJO_SEMILLA + "', total, DATE(fecha_venta), numero_venta, " +
+                    "ELT(1 + id_venta % 4, 'VALIDADO', 'PENDIENTE', 'RECHAZADO', 'VALIDADO'), fecha_venta " +
+                    "FROM ventas WHERE numero_venta LIKE '" + PREFIJO_SEMILLA + "%' AND metodo_pago = 'TRANSFERENCIA'");
+            stmt.execute("ANALYZE TABLE productos, ventas, detalle_ventas, comprobantes_ocr");
+        }
+    }
+
+    private static void limpiar(Connection conn) throws SQLException {
+        String condicion = " LIKE '" + PREFIJO_SEMILLA + "%'";
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DELETE FROM comprobantes_ocr WHERE imagen_original = '" + PREFIJO_SEMILLA + "'");
+            stmt.executeUpdate("DELETE dv FROM detalle_ventas dv INNER JOIN ventas v ON dv.id_venta = v.id_venta " +
+                    "WHERE v.numero_venta" + condicion);
+            stmt.executeUpdate("DELETE FROM ventas WHERE numero_venta" + condicion);
+            stmt.executeUpdate("DELETE FROM productos WHERE codigo_barras" + condicion);
+        }
+    }
+}
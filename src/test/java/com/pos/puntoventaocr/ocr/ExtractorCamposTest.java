@@ -0,0 +1,117 @@
+package com.pos.puntoventaocr.ocr;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExtractorCamposTest {
+
+    private final ExtractorCampos extractor = new ExtractorCampos();
+
+    @Test
+    void extraeLosCamposJuntoASusEtiquetas() {
+        CamposComprobante campos = extractor.extraer(
+                "BBVA México\n" +
+                "Transferencia SPEI\n" +
+                "Comisión: $5.00\n" +
+                "Importe: $1,250.50\n" +
+                "Clave de rastreo: MBAN01002403150012345678\n" +
+                "Beneficiario: Juan Pérez López\n" +
+                "Cuenta de retiro: ****1234\n" +
+                "Fecha: 15/03/2024\n");
+
+        assertEquals("bbva", campos.getPlantilla());
+        assertEquals("BBVA", campos.getBancoEmisor());
+        assertEquals(new BigDecimal("1250.50"), campos.getMontoDetectado());
+        assertEquals("MBAN01002403150012345678", campos.getReferenciaOperacion());
+        assertEquals("JUAN PÉREZ LÓPEZ", campos.getNombreBeneficiario());
+        assertEquals("****1234", campos.getCuentaRemitente());
+        assertEquals(LocalDateTime.of(2024, 3, 15, 0, 0), campos.getFechaTransferencia());
+    }
+
+    @Test
+    void etiquetaSolaTomaElValorDeLaLineaSiguiente() {
+        CamposComprobante campos = extractor.extraer(
+                "BBVA\n" +
+                "Importe\n" +
+                "$980.00\n" +
+                "Folio\n" +
+                "ABC12345\n" +
+                "Beneficiario\n" +
+                "Abarrotes La Esquina\n");
+
+        assertEquals(new BigDecimal("980.00"), campos.getMontoDetectado());
+        assertEquals("ABC12345", campos.getReferenciaOperacion());
+        assertEquals("ABARROTES LA ESQUINA", campos.getNombreBeneficiario());
+    }
+
+    @Test
+    void fechaConEtiquetaGanaALaFechaSuelta() {
+        CamposComprobante campos = extractor.extraer(
+                "BBVA\n" +
+                "01/02/2024 10:30\n" +
+                "Fecha de operación: 15-03-24\n");
+
+        assertEquals(LocalDateTime.of(2024, 3, 15, 0, 0), campos.getFechaTransferencia());
+    }
+
+    @Test
+    void montosFueraDeRangoSeDescartan() {
+        assertNull(extractor.extraer("BBVA\nImporte: $0.50\n").getMontoDetectado());
+        assertNull(extractor.extraer("BBVA\nImporte: $1,500,000.00\n").getMontoDetectado());
+    }
+
+    @Test
+    void sinBancoConocidoUsaLaPlantillaGenerica() {
+        CamposComprobante campos = extractor.extraer(
+                "Comprobante de pago\n" +
+                "Monto: 350.00\n" +
+                "Referencia: 7788990011\n" +
+                "Tarjeta XXXX9876\n");
+
+        assertEquals(PlantillaBanco.ID_GENERICA, campos.getPlantilla());
+        assertNull(campos.getBancoEmisor());
+        assertEquals(new BigDecimal("350.00"), campos.getMontoDetectado());
+        assertEquals("7788990011", campos.getReferenciaOperacion());
+        assertEquals("XXXX9876", campos.getCuentaRemitente());
+    }
+
+    @Test
+    void etiquetaConCircunflejoSoloCuentaAlInicioDeLaLinea() {
+        CamposComprobante campos = extractor.extraer(
+                "Nu México\n" +
+                "Transferencia para ahorro\n" +
+                "Para: María López\n");
+
+        assertEquals("nu", campos.getPlantilla());
+        assertEquals("MARÍA LÓPEZ", campos.getNombreBeneficiario());
+    }
+
+    @Test
+    void sinInicioDeRegionSeUsaTodoElTexto() {
+        Properties propiedades = new Properties();
+        propiedades.setProperty("prueba.deteccion", "BANCO PRUEBA");
+        propiedades.setProperty("prueba.region.inicio", "DETALLE DEL MOVIMIENTO");
+        ExtractorCampos conRegion = new ExtractorCampos(
+                new CatalogoPlantillas(PlantillaBanco.desdePropiedades(propiedades, "prueba")));
+
+        CamposComprobante campos = conRegion.extraer(
+                "Banco Prueba\n" +
+                "Monto: 420.00\n");
+
+        assertEquals("prueba", campos.getPlantilla());
+        assertEquals(new BigDecimal("420.00"), campos.getMontoDetectado());
+    }
+
+    @Test
+    void textoVacioNoTieneCampos() {
+        assertTrue(extractor.extraer(null).estaVacio());
+        assertTrue(extractor.extraer("").estaVacio());
+    }
+}
@@ -0,0 +1,186 @@
+package com.pos.puntoventaocr.services;
+
+import com.pos.puntoventaocr.models.ComprobanteOCR;
+import com.pos.puntoventaocr.models.Venta;
+import com.pos.puntoventaocr.services.ConciliacionTransferencias.Coincidencia;
+import com.pos.puntoventaocr.services.ConciliacionTransferencias.Conciliador;
+import com.pos.puntoventaocr.services.ConciliacionTransferencias.Resultado;
+import com.pos.puntoventaocr.services.ConciliacionTransferencias.TipoCoincidencia;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConciliacionTransferenciasTest {
+
+    private static final LocalDateTime DIA = LocalDateTime.of(2024, 3, 15, 12, 0);
+
+    private final Conciliador conciliador = new Conciliador();
+
+    @Test
+    void normalizarReferenciaQuitaSignosYEspacios() {
+        assertEquals("MBAN01A", ConciliacionTransferencias.normalizarReferencia(" mban-01 a "));
+        assertNull(ConciliacionTransferencias.normalizarReferencia(" -/ "));
+        assertNull(ConciliacionTransferencias.normalizarReferencia(null));
+    }
+
+    @Test
+    void claveMontoFechaIgnoraLaEscala() {
+        LocalDate dia = LocalDate.of(2024, 3, 15);
+        assertEquals(ConciliacionTransferencias.claveMontoFecha(new BigDecimal("1250"), dia),
+                ConciliacionTransferencias.claveMontoFecha(new BigDecimal("1250.00"), dia));
+        assertNull(ConciliacionTransferencias.claveMontoFecha(BigDecimal.ZERO, dia));
+        assertNull(ConciliacionTransferencias.claveMontoFecha(new BigDecimal("10"), null));
+    }
+
+    @Test
+    void referenciaGanaAlMontoYFecha() {
+        ComprobanteOCR mismoMonto = comprobante(1, "100.00", DIA, null);
+        ComprobanteOCR conReferencia = comprobante(2, "100.00", DIA, "ref-555");
+        conciliador.agregarComprobante(mismoMonto);
+        conciliador.agregarComprobante(conReferencia);
+        conciliador.conciliarVenta(venta(10, "100", DIA, "REF 555"));
+
+        Resultado resultado = conciliador.terminar(0);
+
+        Coincidencia coincidencia = unica(resultado);
+        assertSame(conReferencia, coincidencia.getComprobante());
+        assertEquals(TipoCoincidencia.REFERENCIA, coincidencia.getTipo());
+        assertEquals(List.of(mismoMonto), resultado.getComprobantesSinVenta());
+    }
+
+    @Test
+    void referenciaConOtroMontoRequiereRevision() {
+        conciliador.agregarComprobante(comprobante(1, "90.00", DIA, "REF555"));
+        conciliador.conciliarVenta(venta(10, "100", DIA, "REF555"));
+
+        Coincidencia coincidencia = unica(conciliador.terminar(0));
+        assertEquals(TipoCoincidencia.REFERENCIA_CON_DIFERENCIA, coincidencia.getTipo());
+        assertFalse(coincidencia.esSegura());
+    }
+
+    @Test
+    void comprobanteAsociadoSoloConciliaConSuVenta() {
+        ComprobanteOCR asociado = comprobante(1, "100.00", DIA, null);
+        asociado.setVenta(venta(20, "100", DIA, null));
+        conciliador.agregarComprobante(asociado);
+        conciliador.conciliarVenta(venta(10, "100", DIA, null));
+        conciliador.conciliarVenta(venta(20, "100", DIA, null));
+
+        Resultado resultado = conciliador.terminar(0);
+
+        Coincidencia coincidencia = unica(resultado);
+        assertEquals(20, coincidencia.getVenta().getIdVenta());
+        assertEquals(TipoCoincidencia.VENTA_ASOCIADA, coincidencia.getTipo());
+        assertEquals(10, resultado.getVentasSinComprobante().get(0).getIdVenta());
+    }
+
+    @Test
+    void montoYFechaUnicoEsSeguroYRepetidoEsAmbiguo() {
+        conciliador.agregarComprobante(comprobante(1, "250.00", DIA, null));
+        conciliador.conciliarVenta(venta(10, "250", DIA, null));
+        assertEquals(TipoCoincidencia.MONTO_FECHA, unica(conciliador.terminar(0)).getTipo());
+
+        Conciliador otro = new Conciliador();
+        otro.agregarComprobante(comprobante(1, "250.00", DIA, null));
+        otro.agregarComprobante(comprobante(2, "250.00", DIA.plusHours(2), null));
+        otro.conciliarVenta(venta(10, "250", DIA, null));
+        Resultado resultado = otro.terminar(0);
+        assertEquals(TipoCoincidencia.MONTO_FECHA_AMBIGUA, unica(resultado).getTipo());
+        assertEquals(1, resultado.getComprobantesSinVenta().size());
+    }
+
+    @Test
+    void dosVentasDelMismoMontoYDiaConUnComprobanteEsAmbiguo() {
+        conciliador.agregarComprobante(comprobante(1, "250.00", DIA, null));
+        conciliador.conciliarVenta(venta(10, "250", DIA, null));
+        conciliador.conciliarVenta(venta(11, "250", DIA.plusHours(3), null));
+
+        Resultado resultado = conciliador.terminar(0);
+
+        Coincidencia coincidencia = unica(resultado);
+        assertEquals(TipoCoincidencia.MONTO_FECHA_AMBIGUA, coincidencia.getTipo());
+        assertFalse(coincidencia.esSegura());
+        assertEquals(1, resultado.getVentasSinComprobante().size());
+    }
+
+    @Test
+    void mismoDiaGanaAlDiaCercano() {
+        // La venta del día siguiente se lee primero, pero no debe quitarle su comprobante exacto a la otra
+        ComprobanteOCR delDia = comprobante(1, "300.00", DIA, null);
+        conciliador.agregarComprobante(delDia);
+        conciliador.conciliarVenta(venta(11, "300", DIA.plusDays(1), null));
+        conciliador.conciliarVenta(venta(10, "300", DIA, null));
+
+        Resultado resultado = conciliador.terminar(0);
+
+        Coincidencia coincidencia = unica(resultado);
+        assertEquals(10, coincidencia.getVenta().getIdVenta());
+        assertEquals(TipoCoincidencia.MONTO_FECHA, coincidencia.getTipo());
+        assertEquals(11, resultado.getVentasSinComprobante().get(0).getIdVenta());
+    }
+
+    @Test
+    void toleraUnDiaDeDiferenciaPeroNoDos() {
+        conciliador.agregarComprobante(comprobante(1, "400.00", DIA.plusDays(1), null));
+        conciliador.agregarComprobante(comprobante(2, "500.00", DIA.plusDays(2), null));
+        conciliador.conciliarVenta(venta(10, "400", DIA, null));
+        conciliador.conciliarVenta(venta(11, "500", DIA, null));
+
+        Resultado resultado = conciliador.terminar(0);
+
+        Coincidencia coincidencia = unica(resultado);
+        assertEquals(10, coincidencia.getVenta().getIdVenta());
+        assertEquals(TipoCoincidencia.MONTO_FECHA_CERCANA, coincidencia.getTipo());
+        assertFalse(coincidencia.esSegura());
+        assertEquals(2, resultado.getVentasRevisadas());
+        assertEquals(11, resultado.getVentasSinComprobante().get(0).getIdVenta());
+        assertEquals(2, resultado.getComprobantesSinVenta().get(0).getIdComprobante());
+    }
+
+    @Test
+    void unComprobanteNoSeUsaDosVeces() {
+        conciliador.agregarComprobante(comprobante(1, "100.00", DIA, "REF1"));
+        conciliador.conciliarVenta(venta(10, "100", DIA, "REF1"));
+        conciliador.conciliarVenta(venta(11, "100", DIA, null));
+
+        Resultado resultado = conciliador.terminar(0);
+
+        assertEquals(1, resultado.getCoincidencias().size());
+        assertEquals(11, resultado.getVentasSinComprobante().get(0).getIdVenta());
+        assertTrue(resultado.getComprobantesSinVenta().isEmpty());
+    }
+
+    // Métodos privados auxiliares
+
+    private static Coincidencia unica(Resultado resultado) {
+        assertEquals(1, resultado.getCoincidencias().size(), resultado.toString());
+        return resultado.getCoincidencias().get(0);
+    }
+
+    private static ComprobanteOCR comprobante(int id, String monto, LocalDateTime fecha, String referencia) {
+        ComprobanteOCR comprobante = new ComprobanteOCR();
+        comprobante.setIdComprobante(id);
+        comprobante.setMontoDetectado(new BigDecimal(monto));
+        comprobante.setFechaTransferencia(fecha);
+        comprobante.setReferenciaOperacion(referencia);
+        return comprobante;
+    }
+
+    private static Venta venta(int id, String total, LocalDateTime fecha, String referencia) {
+        Venta venta = new Venta();
+        venta.setIdVenta(id);
+        venta.setTotal(new BigDecimal(total));
+        venta.setFechaVenta(fecha);
+        venta.setReferenciaTransferencia(referencia);
+        return venta;
+    }
+}
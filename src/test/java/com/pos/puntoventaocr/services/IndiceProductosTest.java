@@ -0,0 +1,122 @@
+package com.pos.puntoventaocr.services;
+
+import com.pos.puntoventaocr.models.Producto;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IndiceProductosTest {
+
+    private final IndiceProductos indice = new IndiceProductos();
+
+    @Test
+    void plegarQuitaAcentosSignosYMayusculas() {
+        assertEquals("cafe de olla 1 kg", IndiceProductos.plegar("  Café de Olla (1 KG)! "));
+        assertEquals("nino", IndiceProductos.plegar("Niño"));
+        assertEquals("", IndiceProductos.plegar(null));
+    }
+
+    @Test
+    void encuentraSinImportarAcentos() {
+        indice.agregar(producto(1, "Café Molido", null, "7501000000011", true));
+        indice.agregar(producto(2, "Galletas Niño", null, "7501000000028", true));
+
+        assertEquals(List.of(1), ids(indice.buscar("cafe", 0, false)));
+        assertEquals(List.of(2), ids(indice.buscar("NINO", 0, false)));
+    }
+
+    @Test
+    void ordenaPorRelevancia() {
+        indice.agregar(producto(1, "Pan dulce", "leche condensada", "7502000000001", true));
+        indice.agregar(producto(2, "Dulce de leche", null, "7502000000002", true));
+        indice.agregar(producto(3, "Leche entera", null, "7502000000003", true));
+        indice.agregar(producto(4, "Lecherita", null, "7502000000004", true));
+        indice.agregar(producto(5, "Mantequilla", null, "leche", true));
+
+        // Código exacto, nombre que empieza con el término (el más corto primero),
+        // palabra del nombre y por último otro campo
+        assertEquals(List.of(5, 4, 3, 2, 1), ids(indice.buscar("leche", 0, false)));
+    }
+
+    @Test
+    void codigoPorPrefijoGanaAlNombre() {
+        indice.agregar(producto(1, "Refresco 7501 edición", null, "1111", true));
+        indice.agregar(producto(2, "Agua", null, "7501234567890", true));
+
+        assertEquals(List.of(2, 1), ids(indice.buscar("7501", 0, false)));
+    }
+
+    @Test
+    void todosLosTerminosDebenAparecer() {
+        indice.agregar(producto(1, "Leche entera 1 L", null, null, true));
+        indice.agregar(producto(2, "Leche deslactosada 1 L", null, null, true));
+
+        assertEquals(List.of(2), ids(indice.buscar("leche deslac", 0, false)));
+        assertTrue(indice.buscar("leche chocolate", 0, false).isEmpty());
+    }
+
+    @Test
+    void terminoCortoSoloCuentaComoInicioDePalabra() {
+        indice.agregar(producto(1, "Arroz", null, null, true));
+        indice.agregar(producto(2, "Frijol negro", null, null, true));
+
+        assertEquals(List.of(1), ids(indice.buscar("ar", 0, false)));
+        assertTrue(indice.buscar("rr", 0, false).isEmpty());
+    }
+
+    @Test
+    void respetaSoloActivosYLimite() {
+        indice.agregar(producto(1, "Jabón de barra", null, null, true));
+        indice.agregar(producto(2, "Jabón líquido", null, null, false));
+        indice.agregar(producto(3, "Jabón en polvo", null, null, true));
+
+        assertEquals(List.of(1, 3), ids(indice.buscar("jabon", 0, true)));
+        assertEquals(1, indice.buscar("jabon", 1, false).size());
+    }
+
+    @Test
+    void textoVacioDevuelveTodosPorNombre() {
+        indice.agregar(producto(1, "Sal", null, null, true));
+        indice.agregar(producto(2, "Azúcar", null, null, true));
+
+        assertEquals(List.of(2, 1), ids(indice.buscar("  ", 0, false)));
+    }
+
+    @Test
+    void agregarReemplazaYQuitarElimina() {
+        indice.agregar(producto(1, "Atún en agua", null, null, true));
+        indice.agregar(producto(1, "Sardina en tomate", null, null, true));
+
+        assertTrue(indice.buscar("atun", 0, false).isEmpty());
+        assertEquals(List.of(1), ids(indice.buscar("sardina", 0, false)));
+        assertEquals(1, indice.getTamano());
+
+        indice.quitar(1);
+        assertTrue(indice.buscar("sardina", 0, false).isEmpty());
+        assertEquals(0, indice.getTamano());
+    }
+
+    // Métodos privados auxiliares
+
+    private static Producto producto(int id, String nombre, String descripcion, String codigo, boolean activo) {
+        Producto producto = new Producto();
+        producto.setIdProducto(id);
+        producto.setNombre(nombre);
+        producto.setDescripcionCorta(descripcion);
+        producto.setCodigoBarras(codigo);
+        producto.setEstado(activo);
+        return producto;
+    }
+
+    private static List<Integer> ids(List<Producto> productos) {
+        List<Integer> ids = new ArrayList<>();
+        for (Producto producto : productos) {
+            ids.add(producto.getIdProducto());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,71 @@
+package com.pos.puntoventaocr.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FiltroBloomTest {
+
+    @Test
+    void rechazaParametrosInvalidos() {
+        assertThrows(IllegalArgumentException.class, () -> new FiltroBloom(0, 0.01));
+        assertThrows(IllegalArgumentException.class, () -> new FiltroBloom(100, 0));
+        assertThrows(IllegalArgumentException.class, () -> new FiltroBloom(100, 1));
+    }
+
+    @Test
+    void noTieneFalsosNegativos() {
+        FiltroBloom filtro = new FiltroBloom(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filtro.agregar("REF" + i);
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filtro.puedeContener("REF" + i), "REF" + i);
+        }
+        assertEquals(10_000, filtro.getInsertados());
+    }
+
+    @Test
+    void falsosPositivosCercaDeLaTasaPedida() {
+        FiltroBloom filtro = new FiltroBloom(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filtro.agregar("REF" + i);
+        }
+        int falsosPositivos = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filtro.puedeContener("OTRA" + i)) {
+                falsosPositivos++;
+            }
+        }
+        // 1 % esperado; se deja margen para no depender de la distribución exacta del hash
+        assertTrue(falsosPositivos < 300, "Falsos positivos: " + falsosPositivos);
+    }
+
+    @Test
+    void filtroVacioNoContieneNada() {
+        FiltroBloom filtro = new FiltroBloom(100, 0.01);
+        assertFalse(filtro.puedeContener("REF1"));
+        assertFalse(filtro.puedeContener(""));
+    }
+
+    @Test
+    void indiceUsaPosicionesMasAllaDe2a31() {
+        long totalBits = 1L << 36;
+        assertEquals((1L << 35) + 5, FiltroBloom.indice((1L << 35) + 5, totalBits));
+        // Un valor negativo se toma sin signo y sigue dentro del arreglo
+        assertEquals(totalBits - 1, FiltroBloom.indice(-1L, totalBits));
+    }
+
+    @Test
+    void seSaturaAlPasarLaCapacidad() {
+        FiltroBloom filtro = new FiltroBloom(2, 0.01);
+        filtro.agregar("A");
+        filtro.agregar("B");
+        assertFalse(filtro.estaSaturado());
+        filtro.agregar("C");
+        assertTrue(filtro.estaSaturado());
+    }
+}